@@ -0,0 +1,16 @@
+package com.vr.portal.config;
+
+import com.fasterxml.jackson.databind.Module;
+import com.fasterxml.jackson.module.blackbird.BlackbirdModule;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class JacksonConfig {
+    
+    // Picked up by Spring Boot's ObjectMapper: property access through generated lambdas instead of reflection
+    @Bean
+    public Module blackbirdModule() {
+        return new BlackbirdModule();
+    }
+}
\ No newline at end of file
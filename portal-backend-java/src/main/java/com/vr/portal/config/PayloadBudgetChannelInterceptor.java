@@ -0,0 +1,69 @@
+package com.vr.portal.config;
+
+import com.vr.portal.service.PayloadBudgetService;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHandler;
+import org.springframework.messaging.support.AbstractSubscribableChannel;
+import org.springframework.messaging.support.ExecutorChannelInterceptor;
+import org.springframework.messaging.support.MessageBuilder;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Holds a STOMP frame's payload against the memory budget from the moment it enters a
+ * broker channel until every handler subscribed to that channel is done with it. On the
+ * inbound channel a frame that does not fit in time is refused, which the client sees as
+ * a STOMP ERROR frame; on the outbound channel frames are only accounted.
+ */
+public class PayloadBudgetChannelInterceptor implements ExecutorChannelInterceptor {
+    
+    private static final String RESERVATION_HEADER = PayloadBudgetChannelInterceptor.class.getName() + ".reservation";
+    
+    private final PayloadBudgetService payloadBudgetService;
+    private final PayloadBudgetService.PayloadType type;
+    
+    public PayloadBudgetChannelInterceptor(PayloadBudgetService payloadBudgetService, PayloadBudgetService.PayloadType type) {
+        this.payloadBudgetService = payloadBudgetService;
+        this.type = type;
+    }
+    
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        // CONNECT, SUBSCRIBE and heart-beat frames carry no body
+        if (!(message.getPayload() instanceof byte[] payload) || payload.length == 0) {
+            return message;
+        }
+        PayloadBudgetService.Reservation reservation = type == PayloadBudgetService.PayloadType.OUTBOUND
+                ? payloadBudgetService.account(type, payload.length)
+                : payloadBudgetService.reserve(type, payload.length);
+        int handlers = channel instanceof AbstractSubscribableChannel subscribable
+                ? Math.max(1, subscribable.getSubscribers().size())
+                : 1;
+        return MessageBuilder.fromMessage(message)
+                .setHeader(RESERVATION_HEADER, new Held(reservation, handlers))
+                .build();
+    }
+    
+    @Override
+    public void afterSendCompletion(Message<?> message, MessageChannel channel, boolean sent, Exception ex) {
+        // Not handed to the executor, so no handler will release it
+        if ((!sent || ex != null) && message.getHeaders().get(RESERVATION_HEADER) instanceof Held held) {
+            held.reservation().close();
+        }
+    }
+    
+    @Override
+    public void afterMessageHandled(Message<?> message, MessageChannel channel, MessageHandler handler, Exception ex) {
+        if (message.getHeaders().get(RESERVATION_HEADER) instanceof Held held && held.remaining().decrementAndGet() <= 0) {
+            held.reservation().close();
+        }
+    }
+    
+    private record Held(PayloadBudgetService.Reservation reservation, AtomicInteger remaining) {
+        
+        Held(PayloadBudgetService.Reservation reservation, int handlers) {
+            this(reservation, new AtomicInteger(handlers));
+        }
+    }
+}
\ No newline at end of file
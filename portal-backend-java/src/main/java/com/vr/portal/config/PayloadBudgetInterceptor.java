@@ -0,0 +1,45 @@
+package com.vr.portal.config;
+
+import com.vr.portal.service.PayloadBudgetService;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+/**
+ * Reserves the request body against the upload budget before the multipart body is
+ * read; multipart resolution is lazy so that this runs first. Bodies without a
+ * Content-Length are charged the multipart size limit.
+ */
+@Component
+public class PayloadBudgetInterceptor implements HandlerInterceptor {
+    
+    private static final String RESERVATION_ATTRIBUTE = PayloadBudgetInterceptor.class.getName() + ".reservation";
+    
+    private final PayloadBudgetService payloadBudgetService;
+    
+    @Value("${spring.servlet.multipart.max-request-size:50MB}")
+    private DataSize maxRequestSize;
+    
+    public PayloadBudgetInterceptor(PayloadBudgetService payloadBudgetService) {
+        this.payloadBudgetService = payloadBudgetService;
+    }
+    
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        long length = request.getContentLengthLong();
+        long bytes = length >= 0 ? Math.min(length, maxRequestSize.toBytes()) : maxRequestSize.toBytes();
+        request.setAttribute(RESERVATION_ATTRIBUTE,
+                payloadBudgetService.reserve(PayloadBudgetService.PayloadType.UPLOAD, bytes));
+        return true;
+    }
+    
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        if (request.getAttribute(RESERVATION_ATTRIBUTE) instanceof PayloadBudgetService.Reservation reservation) {
+            reservation.close();
+        }
+    }
+}
\ No newline at end of file
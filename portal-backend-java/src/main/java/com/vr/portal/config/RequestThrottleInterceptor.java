@@ -0,0 +1,39 @@
+package com.vr.portal.config;
+
+import com.vr.portal.service.RequestThrottleService;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+@Component
+public class RequestThrottleInterceptor implements HandlerInterceptor {
+    
+    private static final String PERMIT_ATTRIBUTE = RequestThrottleInterceptor.class.getName() + ".permit";
+    
+    private final RequestThrottleService requestThrottleService;
+    
+    public RequestThrottleInterceptor(RequestThrottleService requestThrottleService) {
+        this.requestThrottleService = requestThrottleService;
+    }
+    
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        request.setAttribute(PERMIT_ATTRIBUTE, requestThrottleService.admit(currentUser(request)));
+        return true;
+    }
+    
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        if (request.getAttribute(PERMIT_ATTRIBUTE) instanceof RequestThrottleService.Permit permit) {
+            permit.close();
+        }
+    }
+    
+    private String currentUser(HttpServletRequest request) {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        return authentication != null ? authentication.getName() : request.getRemoteAddr();
+    }
+}
\ No newline at end of file
@@ -0,0 +1,82 @@
+package com.vr.portal.config;
+
+import com.vr.portal.dto.AgentCommand;
+import com.vr.portal.dto.AgentEvent;
+import com.vr.portal.entity.AgentEntityListener;
+import com.vr.portal.entity.FileOperationEntityListener;
+import com.vr.portal.util.MerkleTree;
+import org.springframework.aot.hint.BindingReflectionHintsRegistrar;
+import org.springframework.aot.hint.MemberCategory;
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.aot.hint.RuntimeHintsRegistrar;
+import org.springframework.aot.hint.TypeReference;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.ImportRuntimeHints;
+
+import java.util.List;
+
+/**
+ * Reflection and resource hints for a GraalVM native image (mvn -Pnative native:compile).
+ * Spring's AOT processing covers beans, controllers, @MessageMapping payloads and the JPA
+ * entities; this adds what it cannot see: types Jackson reads outside of a controller
+ * signature, Hibernate's entity listeners and the jjwt implementation, which is loaded by
+ * class name from the runtime-only jjwt-impl and jjwt-jackson jars.
+ */
+@Configuration
+@ImportRuntimeHints(RuntimeHintsConfig.PortalRuntimeHints.class)
+public class RuntimeHintsConfig {
+    
+    private static final List<String> JJWT_IMPL_CLASSES = List.of(
+            "io.jsonwebtoken.impl.DefaultJwtBuilder",
+            "io.jsonwebtoken.impl.DefaultJwtParserBuilder",
+            "io.jsonwebtoken.impl.DefaultJwtHeaderBuilder",
+            "io.jsonwebtoken.impl.DefaultClaimsBuilder",
+            "io.jsonwebtoken.impl.io.StandardCompressionAlgorithms",
+            "io.jsonwebtoken.impl.security.StandardSecureDigestAlgorithms",
+            "io.jsonwebtoken.impl.security.StandardKeyAlgorithms",
+            "io.jsonwebtoken.impl.security.StandardEncryptionAlgorithms",
+            "io.jsonwebtoken.impl.security.StandardHashAlgorithms",
+            "io.jsonwebtoken.impl.security.StandardKeyOperations",
+            "io.jsonwebtoken.impl.security.KeysBridge",
+            "io.jsonwebtoken.impl.security.JwksBridge",
+            "io.jsonwebtoken.impl.security.DefaultDynamicJwkBuilder",
+            "io.jsonwebtoken.impl.security.DefaultJwkParserBuilder",
+            "io.jsonwebtoken.impl.security.DefaultJwkSetBuilder",
+            "io.jsonwebtoken.impl.security.DefaultJwkSetParserBuilder",
+            "io.jsonwebtoken.jackson.io.JacksonSerializer",
+            "io.jsonwebtoken.jackson.io.JacksonDeserializer"
+    );
+    
+    static class PortalRuntimeHints implements RuntimeHintsRegistrar {
+        
+        private final BindingReflectionHintsRegistrar bindingHints = new BindingReflectionHintsRegistrar();
+        
+        @Override
+        public void registerHints(RuntimeHints hints, ClassLoader classLoader) {
+            // Agent commands are written and read through ObjectWriters/ObjectReaders built at startup
+            bindingHints.registerReflectionHints(hints.reflection(), AgentCommand.class);
+            for (Class<?> command : AgentCommand.class.getPermittedSubclasses()) {
+                bindingHints.registerReflectionHints(hints.reflection(), command);
+            }
+            bindingHints.registerReflectionHints(hints.reflection(),
+                    AgentEvent.Connect.class, AgentEvent.Disconnect.class, AgentEvent.OutputChunk.class,
+                    AgentEvent.FileListing.class, AgentEvent.FileEntry.class, MerkleTree.Entry.class);
+            
+            // Created by Hibernate through SpringBeanContainer
+            hints.reflection().registerType(AgentEntityListener.class, MemberCategory.INVOKE_PUBLIC_CONSTRUCTORS,
+                    MemberCategory.INVOKE_PUBLIC_METHODS);
+            hints.reflection().registerType(FileOperationEntityListener.class, MemberCategory.INVOKE_PUBLIC_CONSTRUCTORS,
+                    MemberCategory.INVOKE_PUBLIC_METHODS);
+            
+            // jjwt-api finds its implementation with Class.forName and static bridge methods
+            for (String className : JJWT_IMPL_CLASSES) {
+                hints.reflection().registerType(TypeReference.of(className),
+                        MemberCategory.INVOKE_DECLARED_CONSTRUCTORS, MemberCategory.INVOKE_DECLARED_METHODS,
+                        MemberCategory.DECLARED_FIELDS);
+            }
+            hints.resources().registerPattern("META-INF/services/io.jsonwebtoken.*");
+            
+            hints.resources().registerPattern("schema-sqlite.sql");
+        }
+    }
+}
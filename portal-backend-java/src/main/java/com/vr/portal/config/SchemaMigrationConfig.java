@@ -0,0 +1,67 @@
+package com.vr.portal.config;
+
+import org.springframework.boot.autoconfigure.sql.init.SqlDataSourceScriptDatabaseInitializer;
+import org.springframework.boot.autoconfigure.sql.init.SqlInitializationProperties;
+import org.springframework.boot.sql.init.DatabaseInitializationMode;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.util.List;
+
+/**
+ * schema-sqlite.sql only creates what is missing, so columns added to existing tables
+ * after a database was first created never reach it. Before the script runs, those
+ * columns are added to tables that lack them and backfilled, which keeps the indexes
+ * in the script and Hibernate's validation working on databases from older releases.
+ */
+@Configuration
+public class SchemaMigrationConfig {
+    
+    private record AddedColumn(String table, String column, String type, String backfill) {}
+    
+    // In release order; each backfill runs once, right after its column is added
+    private static final List<AddedColumn> ADDED_COLUMNS = List.of(
+            new AddedColumn("users", "network_id", "varchar(255)", null),
+            new AddedColumn("file_operations", "network_id", "varchar(255)",
+                    "UPDATE file_operations SET network_id = (SELECT a.network_id FROM agents a WHERE a.id = file_operations.agent_id)"),
+            new AddedColumn("rollouts", "network_id", "varchar(255)",
+                    "UPDATE rollouts SET network_id = (SELECT CASE WHEN COUNT(DISTINCT t.network_id) = 1 AND COUNT(t.network_id) = COUNT(*)"
+                            + " THEN MIN(t.network_id) END FROM rollout_targets t WHERE t.rollout_id = rollouts.id)"),
+            new AddedColumn("integrity_references", "network_id", "varchar(255)",
+                    "UPDATE integrity_references SET network_id = (SELECT a.network_id FROM agents a WHERE a.id = integrity_references.source_agent_id)"),
+            new AddedColumn("rollouts", "wave_baseline_completed", "integer NOT NULL DEFAULT 0", null),
+            new AddedColumn("rollouts", "wave_baseline_failed", "integer NOT NULL DEFAULT 0", null)
+    );
+    
+    // Replaces Spring Boot's initializer, so the entity manager still waits for it
+    @Bean
+    public SqlDataSourceScriptDatabaseInitializer dataSourceScriptDatabaseInitializer(
+            DataSource dataSource,
+            SqlInitializationProperties properties
+    ) {
+        return new SqlDataSourceScriptDatabaseInitializer(dataSource, properties) {
+            @Override
+            public boolean initializeDatabase() {
+                if (properties.getMode() == DatabaseInitializationMode.ALWAYS) {
+                    migrate(new JdbcTemplate(dataSource));
+                }
+                return super.initializeDatabase();
+            }
+        };
+    }
+    
+    private static void migrate(JdbcTemplate jdbc) {
+        for (AddedColumn added : ADDED_COLUMNS) {
+            List<String> columns = jdbc.queryForList("SELECT name FROM pragma_table_info(?)", String.class, added.table());
+            // A missing table is created complete by the schema script
+            if (columns.isEmpty() || columns.contains(added.column())) {
+                continue;
+            }
+            jdbc.execute("ALTER TABLE " + added.table() + " ADD COLUMN " + added.column() + " " + added.type());
+            int rows = added.backfill() != null ? jdbc.update(added.backfill()) : 0;
+            System.out.println("Added " + added.table() + "." + added.column() + " (" + rows + " rows backfilled)");
+        }
+    }
+}
\ No newline at end of file
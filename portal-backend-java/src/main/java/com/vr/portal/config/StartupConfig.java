@@ -0,0 +1,49 @@
+package com.vr.portal.config;
+
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.boot.LazyInitializationExcludeFilter;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.util.ReflectionUtils;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Method;
+import java.util.List;
+
+@Configuration
+public class StartupConfig {
+    
+    // Beans that do work without being asked for stay eager under spring.main.lazy-initialization
+    private static final List<Class<? extends Annotation>> EAGER_METHOD_ANNOTATIONS =
+            List.of(Scheduled.class, PostConstruct.class, EventListener.class);
+    
+    // Static so the filter is available before any other bean of this class is created
+    @Bean
+    public static LazyInitializationExcludeFilter backgroundWorkLazyInitializationExcludeFilter() {
+        return (beanName, beanDefinition, beanType) -> StartupConfig.doesBackgroundWork(beanType);
+    }
+    
+    static boolean doesBackgroundWork(Class<?> beanType) {
+        if (beanType == null) {
+            return false;
+        }
+        if (ApplicationListener.class.isAssignableFrom(beanType)
+                || SmartInitializingSingleton.class.isAssignableFrom(beanType)) {
+            return true;
+        }
+        for (Method method : ReflectionUtils.getUniqueDeclaredMethods(beanType, ReflectionUtils.USER_DECLARED_METHODS)) {
+            for (Class<? extends Annotation> annotation : EAGER_METHOD_ANNOTATIONS) {
+                // Also matches meta-annotations such as @TransactionalEventListener
+                if (AnnotatedElementUtils.hasAnnotation(method, annotation)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,28 @@
+package com.vr.portal.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+@Configuration
+public class WebMvcConfig implements WebMvcConfigurer {
+    
+    private final RequestThrottleInterceptor requestThrottleInterceptor;
+    private final PayloadBudgetInterceptor payloadBudgetInterceptor;
+    
+    public WebMvcConfig(RequestThrottleInterceptor requestThrottleInterceptor, PayloadBudgetInterceptor payloadBudgetInterceptor) {
+        this.requestThrottleInterceptor = requestThrottleInterceptor;
+        this.payloadBudgetInterceptor = payloadBudgetInterceptor;
+    }
+    
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(requestThrottleInterceptor)
+                .addPathPatterns("/api/files/**", "/api/system/**")
+                // Portal reads, which count against the same user and network budgets
+                .addPathPatterns("/api/agents", "/api/agents/search", "/api/agents/stats", "/api/stats/**");
+        // After the throttle, so rejected requests never hold memory budget
+        registry.addInterceptor(payloadBudgetInterceptor)
+                .addPathPatterns("/api/files/upload");
+    }
+}
\ No newline at end of file
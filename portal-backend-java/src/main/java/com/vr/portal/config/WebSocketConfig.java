@@ -1,11 +1,23 @@
 package com.vr.portal.config;
 
+import com.vr.portal.service.PayloadBudgetService;
+import com.vr.portal.websocket.AgentMessageCodec;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.messaging.converter.MessageConverter;
+import org.springframework.messaging.simp.config.ChannelRegistration;
 import org.springframework.messaging.simp.config.MessageBrokerRegistry;
+import org.springframework.scheduling.TaskScheduler;
 import org.springframework.web.socket.config.annotation.EnableWebSocketMessageBroker;
 import org.springframework.web.socket.config.annotation.StompEndpointRegistry;
 import org.springframework.web.socket.config.annotation.WebSocketMessageBrokerConfigurer;
+import org.springframework.web.socket.config.annotation.WebSocketTransportRegistration;
+import org.springframework.web.socket.server.standard.ServletServerContainerFactoryBean;
+
+import java.util.List;
 
 @Configuration
 @EnableWebSocketMessageBroker
@@ -14,10 +26,74 @@ public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
     @Value("${app.websocket.allowed-origins}")
     private String allowedOrigins;
     
+    @Value("${app.heartbeat.stomp-interval-ms:10000}")
+    private long stompHeartbeatMs;
+    
+    @Value("${app.websocket.max-message-bytes:1048576}")
+    private int maxMessageBytes;
+    
+    private final AgentMessageCodec agentMessageCodec;
+    private final PayloadBudgetService payloadBudgetService;
+    private TaskScheduler messageBrokerTaskScheduler;
+    
+    public WebSocketConfig(AgentMessageCodec agentMessageCodec, PayloadBudgetService payloadBudgetService) {
+        this.agentMessageCodec = agentMessageCodec;
+        this.payloadBudgetService = payloadBudgetService;
+    }
+    
+    // Lazy: the scheduler is defined by the broker configuration this class contributes to
+    @Autowired
+    public void setMessageBrokerTaskScheduler(@Lazy TaskScheduler messageBrokerTaskScheduler) {
+        this.messageBrokerTaskScheduler = messageBrokerTaskScheduler;
+    }
+    
     @Override
     public void configureMessageBroker(MessageBrokerRegistry config) {
-        config.enableSimpleBroker("/topic", "/queue");
+        // Transport-level liveness: the broker sends and expects a heart-beat on every session, and
+        // closes sessions that go quiet, so connection health costs no application messages
+        config.enableSimpleBroker("/topic", "/queue")
+                .setHeartbeatValue(new long[]{stompHeartbeatMs, stompHeartbeatMs})
+                .setTaskScheduler(messageBrokerTaskScheduler);
         config.setApplicationDestinationPrefixes("/app");
+        // Streamed output chunks must reach subscribers in the order they were published
+        config.setPreservePublishOrder(true);
+    }
+    
+    /**
+     * A file_list response from a store directory runs to tens of kilobytes, past the
+     * container's 8 KB default, which would close the agent's session mid-reply.
+     */
+    @Bean
+    public ServletServerContainerFactoryBean webSocketContainer() {
+        ServletServerContainerFactoryBean container = new ServletServerContainerFactoryBean();
+        container.setMaxTextMessageBufferSize(maxMessageBytes);
+        container.setMaxBinaryMessageBufferSize(maxMessageBytes);
+        return container;
+    }
+    
+    @Override
+    public void configureWebSocketTransport(WebSocketTransportRegistration registration) {
+        registration.setMessageSizeLimit(maxMessageBytes);
+    }
+    
+    @Override
+    public void configureClientInboundChannel(ChannelRegistration registration) {
+        // Agent responses and output chunks wait for memory budget, or are refused with an ERROR frame
+        registration.interceptors(new PayloadBudgetChannelInterceptor(payloadBudgetService, PayloadBudgetService.PayloadType.AGENT_MESSAGE));
+    }
+    
+    @Override
+    public void configureClientOutboundChannel(ChannelRegistration registration) {
+        registration.interceptors(new PayloadBudgetChannelInterceptor(payloadBudgetService, PayloadBudgetService.PayloadType.OUTBOUND));
+    }
+    
+    @Override
+    public boolean configureMessageConverters(List<MessageConverter> messageConverters) {
+        // Agents may send application/cbor or application/x-jackson-smile frames; JSON,
+        // String and byte[] converters using the application ObjectMapper come from Spring Boot
+        messageConverters.add(agentMessageCodec.messageConverter(AgentMessageCodec.Encoding.CBOR));
+        messageConverters.add(agentMessageCodec.messageConverter(AgentMessageCodec.Encoding.SMILE));
+        return false;
     }
     
     @Override
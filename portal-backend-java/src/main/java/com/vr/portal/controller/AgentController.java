@@ -1,7 +1,13 @@
 package com.vr.portal.controller;
 
+import com.vr.portal.dto.AgentQuery;
+import com.vr.portal.dto.AgentSummary;
 import com.vr.portal.entity.Agent;
 import com.vr.portal.repository.AgentRepository;
+import com.vr.portal.security.TenantContext;
+import com.vr.portal.service.AgentIndexService;
+import com.vr.portal.service.AgentLivenessService;
+import com.vr.portal.service.DashboardStatsService;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
@@ -16,34 +22,70 @@ import java.util.Optional;
 public class AgentController {
     
     private final AgentRepository agentRepository;
+    private final DashboardStatsService dashboardStatsService;
+    private final AgentIndexService agentIndexService;
+    private final AgentLivenessService agentLivenessService;
     
-    public AgentController(AgentRepository agentRepository) {
+    public AgentController(
+            AgentRepository agentRepository,
+            DashboardStatsService dashboardStatsService,
+            AgentIndexService agentIndexService,
+            AgentLivenessService agentLivenessService
+    ) {
         this.agentRepository = agentRepository;
+        this.dashboardStatsService = dashboardStatsService;
+        this.agentIndexService = agentIndexService;
+        this.agentLivenessService = agentLivenessService;
     }
     
     @GetMapping
-    public ResponseEntity<List<Agent>> getAllAgents() {
-        List<Agent> agents = agentRepository.findAll();
-        return ResponseEntity.ok(agents);
+    public ResponseEntity<List<AgentSummary>> getAllAgents() {
+        // Served from the agent index, which the tenant scoping applies to as well
+        return ResponseEntity.ok(agentIndexService.findAll(new AgentQuery(null, null, null, null, null, null, null)));
+    }
+    
+    @GetMapping("/search")
+    public ResponseEntity<?> searchAgents(
+            @RequestParam(required = false) String networkId,
+            @RequestParam(required = false) String storeId,
+            @RequestParam(required = false) String platform,
+            @RequestParam(required = false) String status,
+            @RequestParam(required = false) String version,
+            @RequestParam(required = false) String versionAtLeast,
+            @RequestParam(required = false) String versionBelow,
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "50") int size
+    ) {
+        AgentQuery query = new AgentQuery(networkId, storeId, platform, status, version, versionAtLeast, versionBelow);
+        return ResponseEntity.ok(agentIndexService.search(query, page, size));
     }
     
     @GetMapping("/{id}")
-    public ResponseEntity<Agent> getAgent(@PathVariable String id) {
-        Optional<Agent> agent = agentRepository.findById(id);
-        return agent.map(ResponseEntity::ok)
+    public ResponseEntity<AgentSummary> getAgent(@PathVariable String id) {
+        // Other networks' agents look exactly like missing ones
+        return agentIndexService.get(id)
+                .map(ResponseEntity::ok)
                 .orElse(ResponseEntity.notFound().build());
     }
     
     @PostMapping("/register")
     public ResponseEntity<?> registerAgent(@RequestBody Agent agent) {
+        String tenant = TenantContext.currentNetworkId();
+        if (tenant != null && agent.getNetworkId() == null) {
+            agent.setNetworkId(tenant);
+        }
+        TenantContext.checkAccess(agent.getNetworkId());
+        
         try {
             agent.setStatus("online");
             agent.setLastSeen(LocalDateTime.now());
             
             Agent savedAgent = agentRepository.save(agent);
+            agentLivenessService.statusSaved(savedAgent.getId(), savedAgent.getStatus());
             return ResponseEntity.ok(Map.of(
                     "message", "Agent registered successfully",
-                    "agent", savedAgent
+                    "agent", savedAgent,
+                    "heartbeatIntervalMs", agentLivenessService.getIntervalMs()
             ));
         } catch (Exception e) {
             return ResponseEntity.badRequest().body(Map.of(
@@ -54,15 +96,14 @@ public class AgentController {
     
     @PutMapping("/{id}/heartbeat")
     public ResponseEntity<?> updateHeartbeat(@PathVariable String id) {
-        Optional<Agent> optionalAgent = agentRepository.findById(id);
+        // In memory only; the row is written when the agent comes back online
+        long intervalMs = agentLivenessService.heartbeat(id);
         
-        if (optionalAgent.isPresent()) {
-            Agent agent = optionalAgent.get();
-            agent.setStatus("online");
-            agent.setLastSeen(LocalDateTime.now());
-            agentRepository.save(agent);
-            
-            return ResponseEntity.ok(Map.of("message", "Heartbeat updated"));
+        if (intervalMs >= 0) {
+            return ResponseEntity.ok(Map.of(
+                    "message", "Heartbeat updated",
+                    "heartbeatIntervalMs", intervalMs
+            ));
         } else {
             return ResponseEntity.notFound().build();
         }
@@ -70,13 +111,15 @@ public class AgentController {
     
     @PutMapping("/{id}/status")
     public ResponseEntity<?> updateStatus(@PathVariable String id, @RequestBody Map<String, String> statusUpdate) {
-        Optional<Agent> optionalAgent = agentRepository.findById(id);
+        Optional<Agent> optionalAgent = agentRepository.findById(id)
+                .filter(found -> TenantContext.canAccess(found.getNetworkId()));
         
         if (optionalAgent.isPresent()) {
             Agent agent = optionalAgent.get();
             agent.setStatus(statusUpdate.get("status"));
             agent.setLastSeen(LocalDateTime.now());
             agentRepository.save(agent);
+            agentLivenessService.statusSaved(id, agent.getStatus());
             
             return ResponseEntity.ok(Map.of("message", "Status updated"));
         } else {
@@ -86,8 +129,9 @@ public class AgentController {
     
     @DeleteMapping("/{id}")
     public ResponseEntity<?> removeAgent(@PathVariable String id) {
-        if (agentRepository.existsById(id)) {
+        if (agentRepository.findById(id).filter(found -> TenantContext.canAccess(found.getNetworkId())).isPresent()) {
             agentRepository.deleteById(id);
+            agentLivenessService.removed(id);
             return ResponseEntity.ok(Map.of("message", "Agent removed successfully"));
         } else {
             return ResponseEntity.notFound().build();
@@ -96,14 +140,6 @@ public class AgentController {
     
     @GetMapping("/stats")
     public ResponseEntity<?> getAgentStats() {
-        long totalAgents = agentRepository.count();
-        long onlineAgents = agentRepository.countOnlineAgents();
-        long offlineAgents = totalAgents - onlineAgents;
-        
-        return ResponseEntity.ok(Map.of(
-                "total", totalAgents,
-                "online", onlineAgents,
-                "offline", offlineAgents
-        ));
+        return ResponseEntity.ok(dashboardStatsService.getAgentStats());
     }
 }
\ No newline at end of file
@@ -0,0 +1,51 @@
+package com.vr.portal.controller;
+
+import com.vr.portal.exception.IdempotencyConflictException;
+import com.vr.portal.exception.PayloadBudgetExceededException;
+import com.vr.portal.exception.TenantAccessDeniedException;
+import com.vr.portal.exception.ThrottledException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+
+import java.util.Map;
+
+@RestControllerAdvice
+public class ApiExceptionHandler {
+    
+    @ExceptionHandler(ThrottledException.class)
+    public ResponseEntity<?> handleThrottled(ThrottledException e) {
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+                .body(Map.of(
+                        "error", e.getMessage(),
+                        "scope", e.getScope(),
+                        "retryAfterSeconds", e.getRetryAfterSeconds()
+                ));
+    }
+    
+    @ExceptionHandler(PayloadBudgetExceededException.class)
+    public ResponseEntity<?> handlePayloadBudgetExceeded(PayloadBudgetExceededException e) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+                .body(Map.of(
+                        "error", e.getMessage(),
+                        "payloadType", e.getPayloadType(),
+                        "retryAfterSeconds", e.getRetryAfterSeconds()
+                ));
+    }
+    
+    @ExceptionHandler(IdempotencyConflictException.class)
+    public ResponseEntity<?> handleIdempotencyConflict(IdempotencyConflictException e) {
+        return ResponseEntity.status(HttpStatus.UNPROCESSABLE_ENTITY)
+                .body(Map.of("error", e.getMessage()));
+    }
+    
+    @ExceptionHandler(TenantAccessDeniedException.class)
+    public ResponseEntity<?> handleTenantAccessDenied(TenantAccessDeniedException e) {
+        return ResponseEntity.status(HttpStatus.FORBIDDEN)
+                .body(Map.of("error", e.getMessage()));
+    }
+}
\ No newline at end of file
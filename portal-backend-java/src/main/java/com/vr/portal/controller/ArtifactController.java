@@ -0,0 +1,168 @@
+package com.vr.portal.controller;
+
+import com.vr.portal.service.ArtifactService;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Optional;
+
+/**
+ * Artifact downloads for agents. Access is granted by the signed URL handed out in
+ * the file_upload message rather than by a JWT. Since artifacts are immutable and
+ * named by digest, the digest doubles as a strong ETag.
+ */
+@RestController
+@RequestMapping("/api/artifacts")
+public class ArtifactController {
+    
+    // Tomcat request attributes for handing a file region to the connector's sendfile
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+    
+    private final ArtifactService artifactService;
+    
+    public ArtifactController(ArtifactService artifactService) {
+        this.artifactService = artifactService;
+    }
+    
+    @RequestMapping(value = "/{digest}", method = {RequestMethod.GET, RequestMethod.HEAD})
+    public void getArtifact(
+            @PathVariable String digest,
+            @RequestParam long expires,
+            @RequestParam String sig,
+            HttpServletRequest request,
+            HttpServletResponse response
+    ) throws IOException {
+        if (!artifactService.verify(digest, expires, sig)) {
+            response.sendError(HttpServletResponse.SC_FORBIDDEN);
+            return;
+        }
+        
+        Optional<Path> artifact = artifactService.resolve(digest);
+        if (artifact.isEmpty()) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+        
+        Path path = artifact.get();
+        long size = Files.size(path);
+        String etag = "\"sha256:" + digest + "\"";
+        
+        response.setHeader(HttpHeaders.ETAG, etag);
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+        response.setHeader(HttpHeaders.CACHE_CONTROL, "private, max-age=31536000, immutable");
+        response.setContentType("application/octet-stream");
+        
+        if (matches(request.getHeader(HttpHeaders.IF_NONE_MATCH), etag)) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+        
+        long start = 0;
+        long end = size - 1;
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        String range = ifRange == null || ifRange.equals(etag) ? request.getHeader(HttpHeaders.RANGE) : null;
+        
+        if (range != null && range.startsWith("bytes=") && !range.contains(",")) {
+            long[] bounds = parseRange(range.substring(6).trim(), size);
+            if (bounds == null) {
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + size);
+                response.sendError(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+                return;
+            }
+            start = bounds[0];
+            end = bounds[1];
+            response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+            response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + size);
+        }
+        
+        long length = size == 0 ? 0 : end - start + 1;
+        response.setContentLengthLong(length);
+        if ("HEAD".equals(request.getMethod()) || length == 0) {
+            return;
+        }
+        
+        Optional<MappedByteBuffer> cached = artifactService.mapped(digest, path, size);
+        if (cached.isPresent()) {
+            writeMapped(cached.get(), start, length, response);
+        } else if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+            // The connector transfers the region straight from the file to the socket
+            request.setAttribute(SENDFILE_FILENAME, path.toAbsolutePath().toString());
+            request.setAttribute(SENDFILE_START, start);
+            request.setAttribute(SENDFILE_END, end + 1);
+        } else {
+            writeFile(path, start, length, response);
+        }
+    }
+    
+    private void writeMapped(MappedByteBuffer mapped, long start, long length, HttpServletResponse response) throws IOException {
+        ByteBuffer slice = mapped.slice((int) start, (int) length);
+        WritableByteChannel out = Channels.newChannel(response.getOutputStream());
+        while (slice.hasRemaining()) {
+            out.write(slice);
+        }
+    }
+    
+    private void writeFile(Path path, long start, long length, HttpServletResponse response) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            WritableByteChannel out = Channels.newChannel(response.getOutputStream());
+            long position = start;
+            long remaining = length;
+            while (remaining > 0) {
+                long written = channel.transferTo(position, remaining, out);
+                position += written;
+                remaining -= written;
+            }
+        }
+    }
+    
+    private boolean matches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            String value = candidate.trim();
+            if (value.equals("*") || value.equals(etag) || value.equals("W/" + etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    private long[] parseRange(String spec, long size) {
+        try {
+            int dash = spec.indexOf('-');
+            if (dash < 0 || size == 0) {
+                return null;
+            }
+            
+            String from = spec.substring(0, dash).trim();
+            String to = spec.substring(dash + 1).trim();
+            if (from.isEmpty()) {
+                // Suffix range: the last N bytes
+                long suffix = Long.parseLong(to);
+                return suffix <= 0 ? null : new long[]{Math.max(0, size - suffix), size - 1};
+            }
+            
+            long start = Long.parseLong(from);
+            long end = to.isEmpty() ? size - 1 : Math.min(Long.parseLong(to), size - 1);
+            return start >= size || end < start ? null : new long[]{start, end};
+            
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
\ No newline at end of file
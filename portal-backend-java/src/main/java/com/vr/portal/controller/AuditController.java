@@ -0,0 +1,51 @@
+package com.vr.portal.controller;
+
+import com.vr.portal.service.OperationEventLogService;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/audit")
+@CrossOrigin
+public class AuditController {
+    
+    private final OperationEventLogService operationEventLogService;
+    
+    public AuditController(OperationEventLogService operationEventLogService) {
+        this.operationEventLogService = operationEventLogService;
+    }
+    
+    @GetMapping("/events")
+    public ResponseEntity<?> getEvents(
+            @RequestParam(required = false) String agentId,
+            @RequestParam(required = false) Long operationId,
+            @RequestParam(required = false) Long from,
+            @RequestParam(required = false) Long to,
+            @RequestParam(defaultValue = "1000") int limit
+    ) {
+        return ResponseEntity.ok(operationEventLogService.events(agentId, operationId, from, to, limit));
+    }
+    
+    @GetMapping("/operations")
+    public ResponseEntity<?> getOperations(
+            @RequestParam(required = false) String agentId,
+            @RequestParam(required = false) Long from,
+            @RequestParam(required = false) Long to
+    ) {
+        return ResponseEntity.ok(operationEventLogService.rebuildViews(agentId, from, to));
+    }
+    
+    @GetMapping("/operations/{operationId}")
+    public ResponseEntity<?> getOperation(@PathVariable Long operationId) {
+        return operationEventLogService.rebuildView(operationId)
+                .<ResponseEntity<?>>map(ResponseEntity::ok)
+                .orElse(ResponseEntity.status(404).body(Map.of("error", "No events for operation " + operationId)));
+    }
+    
+    @GetMapping("/stats")
+    public ResponseEntity<?> getStats() {
+        return ResponseEntity.ok(operationEventLogService.getStats());
+    }
+}
\ No newline at end of file
@@ -0,0 +1,44 @@
+package com.vr.portal.controller;
+
+import com.vr.portal.service.PortalEventStreamService;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+@RestController
+@RequestMapping("/api/events")
+@CrossOrigin
+public class EventStreamController {
+    
+    private final PortalEventStreamService portalEventStreamService;
+    
+    public EventStreamController(PortalEventStreamService portalEventStreamService) {
+        this.portalEventStreamService = portalEventStreamService;
+    }
+    
+    @GetMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter stream(
+            @RequestHeader(value = "Last-Event-ID", required = false) Long lastEventId,
+            @RequestParam(required = false) Long since,
+            @RequestParam(required = false) String types,
+            @RequestParam(required = false) String agentId,
+            @RequestParam(required = false) String topics
+    ) {
+        PortalEventStreamService.Filter filter = PortalEventStreamService.Filter.of(types, agentId, topics);
+        return portalEventStreamService.subscribe(filter, lastEventId != null ? lastEventId : since);
+    }
+    
+    @GetMapping("/poll")
+    public DeferredResult<ResponseEntity<?>> poll(
+            @RequestParam(defaultValue = "0") long after,
+            @RequestParam(defaultValue = "25000") long timeout,
+            @RequestParam(required = false) String types,
+            @RequestParam(required = false) String agentId,
+            @RequestParam(required = false) String topics
+    ) {
+        PortalEventStreamService.Filter filter = PortalEventStreamService.Filter.of(types, agentId, topics);
+        return portalEventStreamService.poll(filter, after, Math.min(Math.max(timeout, 0), 60000));
+    }
+}
\ No newline at end of file
@@ -1,17 +1,18 @@
 package com.vr.portal.controller;
 
-import com.vr.portal.entity.FileOperation;
-import com.vr.portal.repository.FileOperationRepository;
-import com.vr.portal.websocket.WebSocketService;
-import org.apache.commons.io.IOUtils;
+import com.vr.portal.dto.AgentCommand;
+import com.vr.portal.dto.OperationSummary;
+import com.vr.portal.security.PortalUserDetails;
+import com.vr.portal.security.TenantContext;
+import com.vr.portal.service.ArtifactService;
+import com.vr.portal.service.FileOperationService;
+import com.vr.portal.service.OperationReadModelService;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
-import java.time.LocalDateTime;
-import java.util.Base64;
 import java.util.List;
 import java.util.Map;
 
@@ -20,12 +21,18 @@ import java.util.Map;
 @CrossOrigin
 public class FileController {
     
-    private final FileOperationRepository fileOperationRepository;
-    private final WebSocketService webSocketService;
+    private final OperationReadModelService operationReadModelService;
+    private final FileOperationService fileOperationService;
+    private final ArtifactService artifactService;
     
-    public FileController(FileOperationRepository fileOperationRepository, WebSocketService webSocketService) {
-        this.fileOperationRepository = fileOperationRepository;
-        this.webSocketService = webSocketService;
+    public FileController(
+            OperationReadModelService operationReadModelService,
+            FileOperationService fileOperationService,
+            ArtifactService artifactService
+    ) {
+        this.operationReadModelService = operationReadModelService;
+        this.fileOperationService = fileOperationService;
+        this.artifactService = artifactService;
     }
     
     @PostMapping("/upload")
@@ -33,36 +40,33 @@ public class FileController {
             @RequestParam("file") MultipartFile file,
             @RequestParam("agentId") String agentId,
             @RequestParam("targetPath") String targetPath,
+            @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey,
             Authentication authentication
     ) {
         try {
-            // Convert file to base64
-            byte[] fileBytes = IOUtils.toByteArray(file.getInputStream());
-            String base64Data = Base64.getEncoder().encodeToString(fileBytes);
+            // Store the file; the agent pulls it over HTTP instead of through the broker
+            ArtifactService.Artifact artifact = artifactService.store(file);
             
-            // Create file operation record
-            FileOperation operation = new FileOperation(
+            Long operationId = fileOperationService.submit(
+                    idempotencyKey,
                     agentId,
                     "upload",
                     targetPath + "/" + file.getOriginalFilename(),
-                    getCurrentUserId(authentication)
-            );
-            fileOperationRepository.save(operation);
-            
-            // Send to agent via WebSocket
-            Map<String, Object> message = Map.of(
-                    "type", "file_upload",
-                    "operationId", operation.getId(),
-                    "targetPath", targetPath,
-                    "fileName", file.getOriginalFilename(),
-                    "fileData", base64Data
+                    PortalUserDetails.userIdOf(authentication),
+                    new AgentCommand.FileUpload(
+                            null,
+                            targetPath,
+                            file.getOriginalFilename(),
+                            artifact.url(),
+                            artifact.digest(),
+                            artifact.size()
+                    )
             );
             
-            webSocketService.sendToAgent(agentId, message);
-            
             return ResponseEntity.ok(Map.of(
                     "message", "File upload initiated",
-                    "operationId", operation.getId()
+                    "operationId", operationId,
+                    "digest", artifact.digest()
             ));
             
         } catch (IOException e) {
@@ -75,64 +79,48 @@ public class FileController {
     @PostMapping("/download")
     public ResponseEntity<?> downloadFile(
             @RequestBody Map<String, String> request,
+            @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey,
             Authentication authentication
     ) {
         String agentId = request.get("agentId");
         String filePath = request.get("filePath");
         
-        // Create file operation record
-        FileOperation operation = new FileOperation(
+        Long operationId = fileOperationService.submit(
+                idempotencyKey,
                 agentId,
                 "download",
                 filePath,
-                getCurrentUserId(authentication)
-        );
-        fileOperationRepository.save(operation);
-        
-        // Send to agent via WebSocket
-        Map<String, Object> message = Map.of(
-                "type", "file_download",
-                "operationId", operation.getId(),
-                "filePath", filePath
+                PortalUserDetails.userIdOf(authentication),
+                new AgentCommand.FileDownload(null, filePath)
         );
         
-        webSocketService.sendToAgent(agentId, message);
-        
         return ResponseEntity.ok(Map.of(
                 "message", "File download initiated",
-                "operationId", operation.getId()
+                "operationId", operationId
         ));
     }
     
     @PostMapping("/list")
     public ResponseEntity<?> listFiles(
             @RequestBody Map<String, String> request,
+            @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey,
             Authentication authentication
     ) {
         String agentId = request.get("agentId");
         String directoryPath = request.get("directoryPath");
         
-        // Create file operation record
-        FileOperation operation = new FileOperation(
+        Long operationId = fileOperationService.submit(
+                idempotencyKey,
                 agentId,
                 "list",
                 directoryPath,
-                getCurrentUserId(authentication)
+                PortalUserDetails.userIdOf(authentication),
+                new AgentCommand.FileList(null, directoryPath)
         );
-        fileOperationRepository.save(operation);
-        
-        // Send to agent via WebSocket
-        Map<String, Object> message = Map.of(
-                "type", "file_list",
-                "operationId", operation.getId(),
-                "directoryPath", directoryPath
-        );
-        
-        webSocketService.sendToAgent(agentId, message);
         
         return ResponseEntity.ok(Map.of(
                 "message", "File list requested",
-                "operationId", operation.getId()
+                "operationId", operationId
         ));
     }
     
@@ -140,42 +128,32 @@ public class FileController {
     public ResponseEntity<?> deleteFile(
             @PathVariable String agentId,
             @RequestParam String filePath,
+            @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey,
             Authentication authentication
     ) {
-        // Create file operation record
-        FileOperation operation = new FileOperation(
+        Long operationId = fileOperationService.submit(
+                idempotencyKey,
                 agentId,
                 "delete",
                 filePath,
-                getCurrentUserId(authentication)
+                PortalUserDetails.userIdOf(authentication),
+                new AgentCommand.FileDelete(null, filePath)
         );
-        fileOperationRepository.save(operation);
-        
-        // Send to agent via WebSocket
-        Map<String, Object> message = Map.of(
-                "type", "file_delete",
-                "operationId", operation.getId(),
-                "filePath", filePath
-        );
-        
-        webSocketService.sendToAgent(agentId, message);
         
         return ResponseEntity.ok(Map.of(
                 "message", "File deletion initiated",
-                "operationId", operation.getId()
+                "operationId", operationId
         ));
     }
     
     @GetMapping("/operations")
-    public ResponseEntity<List<FileOperation>> getOperations() {
-        List<FileOperation> operations = fileOperationRepository.findAllOrderByCreatedAtDesc();
-        return ResponseEntity.ok(operations);
+    public ResponseEntity<List<OperationSummary>> getOperations() {
+        return ResponseEntity.ok(operationReadModelService.recent(TenantContext.currentNetworkId()));
     }
     
     @GetMapping("/operations/{agentId}")
-    public ResponseEntity<List<FileOperation>> getAgentOperations(@PathVariable String agentId) {
-        List<FileOperation> operations = fileOperationRepository.findByAgentIdOrderByCreatedAtDesc(agentId);
-        return ResponseEntity.ok(operations);
+    public ResponseEntity<List<OperationSummary>> getAgentOperations(@PathVariable String agentId) {
+        return ResponseEntity.ok(operationReadModelService.recentForAgent(TenantContext.currentNetworkId(), agentId));
     }
     
     @PutMapping("/operations/{operationId}/complete")
@@ -183,27 +161,11 @@ public class FileController {
             @PathVariable Long operationId,
             @RequestBody Map<String, Object> result
     ) {
-        FileOperation operation = fileOperationRepository.findById(operationId)
-                .orElse(null);
-        
-        if (operation != null) {
-            operation.setStatus((String) result.get("status"));
-            operation.setCompletedAt(LocalDateTime.now());
-            
-            if (result.containsKey("error")) {
-                operation.setErrorMessage((String) result.get("error"));
-            }
-            
-            fileOperationRepository.save(operation);
-            return ResponseEntity.ok(Map.of("message", "Operation updated"));
+        if (!fileOperationService.canAccess(operationId)) {
+            return ResponseEntity.notFound().build();
         }
-        
-        return ResponseEntity.notFound().build();
-    }
-    
-    private Long getCurrentUserId(Authentication authentication) {
-        // This would typically extract user ID from authentication
-        // For now, return a default value
-        return 1L;
+        return fileOperationService.complete(operationId, (String) result.get("status"), (String) result.get("error"))
+                .<ResponseEntity<?>>map(operation -> ResponseEntity.ok(Map.of("message", "Operation updated")))
+                .orElse(ResponseEntity.notFound().build());
     }
 }
\ No newline at end of file
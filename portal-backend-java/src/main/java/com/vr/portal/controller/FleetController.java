@@ -0,0 +1,136 @@
+package com.vr.portal.controller;
+
+import com.vr.portal.dto.AgentQuery;
+import com.vr.portal.dto.FleetExecuteRequest;
+import com.vr.portal.security.PortalUserDetails;
+import com.vr.portal.service.FileIndexService;
+import com.vr.portal.service.FleetDriftService;
+import com.vr.portal.service.FleetExecutionService;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.Authentication;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.util.List;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/fleet")
+@CrossOrigin
+public class FleetController {
+    
+    private static final MediaType NDJSON = MediaType.parseMediaType("application/x-ndjson");
+    
+    private final FleetDriftService fleetDriftService;
+    private final FleetExecutionService fleetExecutionService;
+    private final FileIndexService fileIndexService;
+    
+    public FleetController(
+            FleetDriftService fleetDriftService,
+            FleetExecutionService fleetExecutionService,
+            FileIndexService fileIndexService
+    ) {
+        this.fleetDriftService = fleetDriftService;
+        this.fleetExecutionService = fleetExecutionService;
+        this.fileIndexService = fileIndexService;
+    }
+    
+    @GetMapping("/drift")
+    public ResponseEntity<StreamingResponseBody> getDriftReport(
+            @RequestParam(required = false) String targetVersion
+    ) {
+        StreamingResponseBody body = out -> fleetDriftService.writeReport(targetVersion, out);
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(body);
+    }
+    
+    @GetMapping("/drift/outdated")
+    public ResponseEntity<StreamingResponseBody> getOutdatedAgents(
+            @RequestParam(required = false) String targetVersion,
+            @RequestParam(required = false) String networkId,
+            @RequestParam(required = false) String storeId
+    ) {
+        StreamingResponseBody body = out -> fleetDriftService.writeOutdatedAgents(targetVersion, networkId, storeId, out);
+        return ResponseEntity.ok()
+                .contentType(NDJSON)
+                .body(body);
+    }
+    
+    @PostMapping("/execute")
+    public ResponseEntity<?> executeOnFleet(@RequestBody FleetExecuteRequest request, Authentication authentication) {
+        try {
+            Map<String, Object> execution = fleetExecutionService.start(request, PortalUserDetails.userIdOf(authentication));
+            return ResponseEntity.ok(Map.of(
+                    "message", "Fleet execution started",
+                    "execution", execution,
+                    "progressTopic", "/topic/fleet-executions/" + execution.get("executionId")
+            ));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+    
+    @GetMapping("/executions")
+    public ResponseEntity<List<Map<String, Object>>> getExecutions() {
+        return ResponseEntity.ok(fleetExecutionService.getExecutions());
+    }
+    
+    @GetMapping("/executions/{id}")
+    public ResponseEntity<?> getExecution(@PathVariable Long id) {
+        return fleetExecutionService.getExecution(id)
+                .<ResponseEntity<?>>map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
+    
+    @GetMapping("/executions/{id}/groups/{hash}/agents")
+    public ResponseEntity<?> getGroupAgents(@PathVariable Long id, @PathVariable String hash) {
+        return fleetExecutionService.getGroupAgents(id, hash)
+                .<ResponseEntity<?>>map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
+    
+    @GetMapping("/files")
+    public ResponseEntity<?> findFile(
+            @RequestParam String path,
+            @RequestParam(required = false) String hash,
+            @RequestParam(required = false) String hashNot,
+            @RequestParam(defaultValue = "false") boolean missing,
+            @RequestParam(required = false) String networkId,
+            @RequestParam(required = false) String storeId,
+            @RequestParam(required = false) String platform,
+            @RequestParam(defaultValue = "1000") int limit
+    ) {
+        AgentQuery query = new AgentQuery(networkId, storeId, platform, null, null, null, null);
+        return ResponseEntity.ok(fileIndexService.findAgents(path, hash, hashNot, missing, query, Math.max(0, limit)));
+    }
+    
+    @GetMapping("/files/versions")
+    public ResponseEntity<?> getFileVersions(
+            @RequestParam String path,
+            @RequestParam(required = false) String networkId,
+            @RequestParam(required = false) String storeId
+    ) {
+        AgentQuery query = new AgentQuery(networkId, storeId, null, null, null, null, null);
+        return ResponseEntity.ok(fileIndexService.versions(path, query));
+    }
+    
+    @GetMapping("/files/search")
+    public ResponseEntity<?> searchFiles(
+            @RequestParam String prefix,
+            @RequestParam(required = false) String networkId,
+            @RequestParam(required = false) String storeId,
+            @RequestParam(defaultValue = "1000") int limit
+    ) {
+        AgentQuery query = new AgentQuery(networkId, storeId, null, null, null, null, null);
+        return ResponseEntity.ok(fileIndexService.search(prefix, query, Math.max(0, limit)));
+    }
+    
+    @GetMapping("/files/agents/{agentId}")
+    public ResponseEntity<?> getAgentFiles(@PathVariable String agentId, @RequestParam(required = false) String prefix) {
+        return fileIndexService.agentFiles(agentId, prefix)
+                .<ResponseEntity<?>>map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
+}
\ No newline at end of file
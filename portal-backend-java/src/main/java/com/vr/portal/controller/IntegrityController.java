@@ -0,0 +1,111 @@
+package com.vr.portal.controller;
+
+import com.vr.portal.dto.IntegrityCheckRequest;
+import com.vr.portal.dto.IntegrityReferenceRequest;
+import com.vr.portal.entity.IntegrityReference;
+import com.vr.portal.security.PortalUserDetails;
+import com.vr.portal.service.IntegrityManifestService;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.Authentication;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/integrity")
+@CrossOrigin
+public class IntegrityController {
+    
+    private final IntegrityManifestService integrityManifestService;
+    
+    public IntegrityController(IntegrityManifestService integrityManifestService) {
+        this.integrityManifestService = integrityManifestService;
+    }
+    
+    @PostMapping("/references")
+    public ResponseEntity<?> createReference(@RequestBody IntegrityReferenceRequest request, Authentication authentication) {
+        try {
+            if (request.getFiles() == null && request.getAgentId() != null) {
+                // Captured from a known-good agent; stored when its manifest arrives
+                Long operationId = integrityManifestService.captureReference(
+                        request.getName(),
+                        request.getAgentId(),
+                        request.getRootPath(),
+                        PortalUserDetails.userIdOf(authentication)
+                );
+                return ResponseEntity.accepted().body(Map.of(
+                        "message", "Reference capture requested",
+                        "operationId", operationId
+                ));
+            }
+            
+            IntegrityReference reference = integrityManifestService.createReference(
+                    request.getName(),
+                    request.getRootPath(),
+                    request.getFiles(),
+                    null
+            );
+            return ResponseEntity.ok(Map.of(
+                    "message", "Reference created",
+                    "reference", reference
+            ));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+    
+    @GetMapping("/references")
+    public ResponseEntity<List<IntegrityReference>> getReferences() {
+        return ResponseEntity.ok(integrityManifestService.getReferences());
+    }
+    
+    @GetMapping("/references/{id}/manifest")
+    public ResponseEntity<?> getManifest(@PathVariable Long id) {
+        return integrityManifestService.getReference(id)
+                .<ResponseEntity<?>>map(reference -> ResponseEntity.ok()
+                        .header("Content-Type", "application/json")
+                        .body(reference.getManifest()))
+                .orElse(ResponseEntity.notFound().build());
+    }
+    
+    @DeleteMapping("/references/{id}")
+    public ResponseEntity<?> deleteReference(@PathVariable Long id) {
+        if (!integrityManifestService.deleteReference(id)) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(Map.of("message", "Reference removed successfully"));
+    }
+    
+    @PostMapping("/checks")
+    public ResponseEntity<?> startCheck(@RequestBody IntegrityCheckRequest request, Authentication authentication) {
+        try {
+            Map<String, Object> check = integrityManifestService.startCheck(request, PortalUserDetails.userIdOf(authentication));
+            return ResponseEntity.ok(Map.of(
+                    "message", "Integrity check started",
+                    "check", check
+            ));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+    
+    @GetMapping("/checks")
+    public ResponseEntity<List<Map<String, Object>>> getChecks() {
+        return ResponseEntity.ok(integrityManifestService.getChecks());
+    }
+    
+    @GetMapping("/checks/{id}")
+    public ResponseEntity<?> getCheck(@PathVariable Long id) {
+        return integrityManifestService.getCheck(id)
+                .<ResponseEntity<?>>map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
+    
+    @GetMapping("/checks/{id}/agents/{agentId}")
+    public ResponseEntity<?> getAgentResult(@PathVariable Long id, @PathVariable String agentId) {
+        return integrityManifestService.getAgentResult(id, agentId)
+                .<ResponseEntity<?>>map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
+}
\ No newline at end of file
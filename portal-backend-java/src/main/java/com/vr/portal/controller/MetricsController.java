@@ -0,0 +1,80 @@
+package com.vr.portal.controller;
+
+import com.vr.portal.service.AgentIndexService;
+import com.vr.portal.service.AgentLivenessService;
+import com.vr.portal.service.FileIndexService;
+import com.vr.portal.service.AgentMailboxService;
+import com.vr.portal.service.OperationEventLogService;
+import com.vr.portal.service.OperationReadModelService;
+import com.vr.portal.service.PayloadBudgetService;
+import com.vr.portal.service.PortalEventStreamService;
+import com.vr.portal.service.RequestThrottleService;
+import com.vr.portal.service.ScheduledJobService;
+import com.vr.portal.websocket.WebSocketService;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/metrics")
+@CrossOrigin
+public class MetricsController {
+    
+    private final RequestThrottleService requestThrottleService;
+    private final AgentMailboxService agentMailboxService;
+    private final PortalEventStreamService portalEventStreamService;
+    private final OperationEventLogService operationEventLogService;
+    private final AgentLivenessService agentLivenessService;
+    private final ScheduledJobService scheduledJobService;
+    private final PayloadBudgetService payloadBudgetService;
+    private final AgentIndexService agentIndexService;
+    private final OperationReadModelService operationReadModelService;
+    private final FileIndexService fileIndexService;
+    private final WebSocketService webSocketService;
+    
+    public MetricsController(
+            RequestThrottleService requestThrottleService,
+            AgentMailboxService agentMailboxService,
+            PortalEventStreamService portalEventStreamService,
+            OperationEventLogService operationEventLogService,
+            AgentLivenessService agentLivenessService,
+            ScheduledJobService scheduledJobService,
+            PayloadBudgetService payloadBudgetService,
+            AgentIndexService agentIndexService,
+            OperationReadModelService operationReadModelService,
+            FileIndexService fileIndexService,
+            WebSocketService webSocketService
+    ) {
+        this.requestThrottleService = requestThrottleService;
+        this.agentMailboxService = agentMailboxService;
+        this.portalEventStreamService = portalEventStreamService;
+        this.operationEventLogService = operationEventLogService;
+        this.agentLivenessService = agentLivenessService;
+        this.scheduledJobService = scheduledJobService;
+        this.payloadBudgetService = payloadBudgetService;
+        this.agentIndexService = agentIndexService;
+        this.operationReadModelService = operationReadModelService;
+        this.fileIndexService = fileIndexService;
+        this.webSocketService = webSocketService;
+    }
+    
+    @GetMapping
+    public ResponseEntity<Map<String, Object>> getMetrics() {
+        return ResponseEntity.ok(Map.of(
+                "throttle", requestThrottleService.getMetrics(),
+                "mailbox", agentMailboxService.getStats(),
+                "eventStreams", portalEventStreamService.getStats(),
+                "auditLog", operationEventLogService.getStats(),
+                "liveness", agentLivenessService.getStats(),
+                "schedules", scheduledJobService.getStats(),
+                "memory", payloadBudgetService.getStats(),
+                "readModel", Map.of(
+                        "agents", agentIndexService.getStats(),
+                        "operations", operationReadModelService.getStats()
+                ),
+                "fileIndex", fileIndexService.getStats(),
+                "messaging", webSocketService.getStats()
+        ));
+    }
+}
\ No newline at end of file
@@ -0,0 +1,93 @@
+package com.vr.portal.controller;
+
+import com.vr.portal.dto.RolloutRequest;
+import com.vr.portal.entity.Rollout;
+import com.vr.portal.entity.RolloutTarget;
+import com.vr.portal.security.PortalUserDetails;
+import com.vr.portal.service.RolloutService;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.Authentication;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.function.Function;
+
+@RestController
+@RequestMapping("/api/rollouts")
+@CrossOrigin
+public class RolloutController {
+    
+    private final RolloutService rolloutService;
+    
+    public RolloutController(RolloutService rolloutService) {
+        this.rolloutService = rolloutService;
+    }
+    
+    @PostMapping
+    public ResponseEntity<?> createRollout(@RequestBody RolloutRequest request, Authentication authentication) {
+        try {
+            Rollout rollout = rolloutService.createRollout(request, PortalUserDetails.userIdOf(authentication));
+            return ResponseEntity.ok(Map.of(
+                    "message", "Rollout created",
+                    "rollout", rollout
+            ));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+    
+    @GetMapping
+    public ResponseEntity<List<Rollout>> getRollouts() {
+        return ResponseEntity.ok(rolloutService.getRollouts());
+    }
+    
+    @GetMapping("/{id}")
+    public ResponseEntity<?> getRollout(@PathVariable Long id) {
+        return rolloutService.getRolloutDetails(id)
+                .<ResponseEntity<?>>map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
+    
+    @GetMapping("/{id}/targets")
+    public ResponseEntity<List<RolloutTarget>> getTargets(@PathVariable Long id) {
+        return rolloutService.getTargets(id)
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
+    
+    @PostMapping("/{id}/start")
+    public ResponseEntity<?> startRollout(@PathVariable Long id) {
+        return changeState(id, rolloutService::start, "Rollout started");
+    }
+    
+    @PostMapping("/{id}/pause")
+    public ResponseEntity<?> pauseRollout(@PathVariable Long id) {
+        return changeState(id, rolloutService::pause, "Rollout paused");
+    }
+    
+    @PostMapping("/{id}/resume")
+    public ResponseEntity<?> resumeRollout(@PathVariable Long id) {
+        return changeState(id, rolloutService::resume, "Rollout resumed");
+    }
+    
+    @PostMapping("/{id}/cancel")
+    public ResponseEntity<?> cancelRollout(@PathVariable Long id) {
+        return changeState(id, rolloutService::cancel, "Rollout cancelled");
+    }
+    
+    private ResponseEntity<?> changeState(Long id, Function<Long, Rollout> action, String message) {
+        try {
+            Rollout rollout = action.apply(id);
+            return ResponseEntity.ok(Map.of(
+                    "message", message,
+                    "rollout", rollout
+            ));
+        } catch (NoSuchElementException e) {
+            return ResponseEntity.notFound().build();
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(409).body(Map.of("error", e.getMessage()));
+        }
+    }
+}
\ No newline at end of file
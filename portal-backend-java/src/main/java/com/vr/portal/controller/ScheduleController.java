@@ -0,0 +1,90 @@
+package com.vr.portal.controller;
+
+import com.vr.portal.dto.ScheduleRequest;
+import com.vr.portal.entity.ScheduledJob;
+import com.vr.portal.security.PortalUserDetails;
+import com.vr.portal.service.ScheduledJobService;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.Authentication;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.function.Function;
+
+@RestController
+@RequestMapping("/api/schedules")
+@CrossOrigin
+public class ScheduleController {
+    
+    private final ScheduledJobService scheduledJobService;
+    
+    public ScheduleController(ScheduledJobService scheduledJobService) {
+        this.scheduledJobService = scheduledJobService;
+    }
+    
+    @PostMapping
+    public ResponseEntity<?> createSchedule(@RequestBody ScheduleRequest request, Authentication authentication) {
+        try {
+            ScheduledJob schedule = scheduledJobService.create(request, PortalUserDetails.userIdOf(authentication));
+            return ResponseEntity.ok(Map.of(
+                    "message", "Schedule created",
+                    "schedule", schedule
+            ));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+    
+    @GetMapping
+    public ResponseEntity<List<ScheduledJob>> getSchedules() {
+        return ResponseEntity.ok(scheduledJobService.getSchedules());
+    }
+    
+    @GetMapping("/{id}")
+    public ResponseEntity<?> getSchedule(@PathVariable Long id) {
+        return scheduledJobService.getSchedule(id)
+                .<ResponseEntity<?>>map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
+    
+    @PostMapping("/{id}/pause")
+    public ResponseEntity<?> pauseSchedule(@PathVariable Long id) {
+        return changeState(id, scheduledJobService::pause, "Schedule paused");
+    }
+    
+    @PostMapping("/{id}/resume")
+    public ResponseEntity<?> resumeSchedule(@PathVariable Long id) {
+        return changeState(id, scheduledJobService::resume, "Schedule resumed");
+    }
+    
+    @PostMapping("/{id}/run")
+    public ResponseEntity<?> runSchedule(@PathVariable Long id) {
+        return changeState(id, scheduledJobService::runNow, "Schedule run started");
+    }
+    
+    @DeleteMapping("/{id}")
+    public ResponseEntity<?> deleteSchedule(@PathVariable Long id) {
+        try {
+            scheduledJobService.delete(id);
+            return ResponseEntity.ok(Map.of("message", "Schedule removed"));
+        } catch (NoSuchElementException e) {
+            return ResponseEntity.notFound().build();
+        }
+    }
+    
+    private ResponseEntity<?> changeState(Long id, Function<Long, ScheduledJob> action, String message) {
+        try {
+            ScheduledJob schedule = action.apply(id);
+            return ResponseEntity.ok(Map.of(
+                    "message", message,
+                    "schedule", schedule
+            ));
+        } catch (NoSuchElementException e) {
+            return ResponseEntity.notFound().build();
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(409).body(Map.of("error", e.getMessage()));
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,30 @@
+package com.vr.portal.controller;
+
+import com.vr.portal.service.DashboardStatsService;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/stats")
+@CrossOrigin
+public class StatsController {
+    
+    private final DashboardStatsService dashboardStatsService;
+    
+    public StatsController(DashboardStatsService dashboardStatsService) {
+        this.dashboardStatsService = dashboardStatsService;
+    }
+    
+    @GetMapping
+    public ResponseEntity<?> getDashboardStats() {
+        return ResponseEntity.ok(dashboardStatsService.getDashboardStats());
+    }
+    
+    @PostMapping("/reconcile")
+    public ResponseEntity<?> reconcile() {
+        dashboardStatsService.reconcile();
+        return ResponseEntity.ok(Map.of("message", "Statistics reconciled"));
+    }
+}
\ No newline at end of file
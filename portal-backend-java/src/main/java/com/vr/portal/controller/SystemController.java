@@ -1,8 +1,10 @@
 package com.vr.portal.controller;
 
-import com.vr.portal.entity.FileOperation;
-import com.vr.portal.repository.FileOperationRepository;
-import com.vr.portal.websocket.WebSocketService;
+import com.vr.portal.dto.AgentCommand;
+import com.vr.portal.security.PortalUserDetails;
+import com.vr.portal.service.FileOperationService;
+import com.vr.portal.service.OperationCoalescingService;
+import com.vr.portal.service.OperationOutputService;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
@@ -14,143 +16,137 @@ import java.util.Map;
 @CrossOrigin
 public class SystemController {
     
-    private final FileOperationRepository fileOperationRepository;
-    private final WebSocketService webSocketService;
+    private final FileOperationService fileOperationService;
+    private final OperationOutputService operationOutputService;
+    private final OperationCoalescingService operationCoalescingService;
     
-    public SystemController(FileOperationRepository fileOperationRepository, WebSocketService webSocketService) {
-        this.fileOperationRepository = fileOperationRepository;
-        this.webSocketService = webSocketService;
+    public SystemController(
+            FileOperationService fileOperationService,
+            OperationOutputService operationOutputService,
+            OperationCoalescingService operationCoalescingService
+    ) {
+        this.fileOperationService = fileOperationService;
+        this.operationOutputService = operationOutputService;
+        this.operationCoalescingService = operationCoalescingService;
     }
     
     @PostMapping("/execute")
     public ResponseEntity<?> executeCommand(
             @RequestBody Map<String, String> request,
+            @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey,
             Authentication authentication
     ) {
         String agentId = request.get("agentId");
         String command = request.get("command");
         
-        // Create file operation record for system command
-        FileOperation operation = new FileOperation(
+        Long operationId = fileOperationService.submit(
+                idempotencyKey,
                 agentId,
                 "system_command",
                 command,
-                getCurrentUserId(authentication)
-        );
-        fileOperationRepository.save(operation);
-        
-        // Send to agent via WebSocket
-        Map<String, Object> message = Map.of(
-                "type", "system_command",
-                "operationId", operation.getId(),
-                "command", command
+                PortalUserDetails.userIdOf(authentication),
+                new AgentCommand.SystemCommand(null, command, true)
         );
         
-        webSocketService.sendToAgent(agentId, message);
-        
         return ResponseEntity.ok(Map.of(
                 "message", "Command execution initiated",
-                "operationId", operation.getId()
+                "operationId", operationId,
+                "outputTopic", "/topic/operations/" + operationId + "/output"
         ));
     }
     
+    @GetMapping("/operations/{operationId}/output")
+    public ResponseEntity<?> getOperationOutput(
+            @PathVariable Long operationId,
+            @RequestParam(defaultValue = "0") long offset,
+            @RequestParam(defaultValue = "65536") int limit
+    ) {
+        if (!fileOperationService.canAccess(operationId)) {
+            return ResponseEntity.notFound().build();
+        }
+        return operationOutputService.read(operationId, offset, limit)
+                .<ResponseEntity<?>>map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
+    
+    @GetMapping("/operations/{operationId}/result")
+    public ResponseEntity<?> getOperationResult(@PathVariable Long operationId) {
+        if (!fileOperationService.canAccess(operationId)) {
+            return ResponseEntity.notFound().build();
+        }
+        return operationCoalescingService.getResult(operationId)
+                .<ResponseEntity<?>>map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
+    
     @PostMapping("/install")
     public ResponseEntity<?> installPackage(
             @RequestBody Map<String, String> request,
+            @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey,
             Authentication authentication
     ) {
         String agentId = request.get("agentId");
         String packageName = request.get("packageName");
         String installCommand = request.get("installCommand");
         
-        // Create file operation record for package installation
-        FileOperation operation = new FileOperation(
+        Long operationId = fileOperationService.submit(
+                idempotencyKey,
                 agentId,
                 "install_package",
                 packageName,
-                getCurrentUserId(authentication)
-        );
-        fileOperationRepository.save(operation);
-        
-        // Send to agent via WebSocket
-        Map<String, Object> message = Map.of(
-                "type", "install_package",
-                "operationId", operation.getId(),
-                "packageName", packageName,
-                "installCommand", installCommand
+                PortalUserDetails.userIdOf(authentication),
+                new AgentCommand.InstallPackage(null, packageName, installCommand)
         );
         
-        webSocketService.sendToAgent(agentId, message);
-        
         return ResponseEntity.ok(Map.of(
                 "message", "Package installation initiated",
-                "operationId", operation.getId()
+                "operationId", operationId
         ));
     }
     
     @PostMapping("/info")
     public ResponseEntity<?> getSystemInfo(
             @RequestBody Map<String, String> request,
+            @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey,
             Authentication authentication
     ) {
         String agentId = request.get("agentId");
         
-        // Create file operation record for system info
-        FileOperation operation = new FileOperation(
+        Long operationId = fileOperationService.submit(
+                idempotencyKey,
                 agentId,
                 "system_info",
                 "system_info",
-                getCurrentUserId(authentication)
+                PortalUserDetails.userIdOf(authentication),
+                new AgentCommand.SystemInfo(null)
         );
-        fileOperationRepository.save(operation);
-        
-        // Send to agent via WebSocket
-        Map<String, Object> message = Map.of(
-                "type", "system_info",
-                "operationId", operation.getId()
-        );
-        
-        webSocketService.sendToAgent(agentId, message);
         
         return ResponseEntity.ok(Map.of(
                 "message", "System info requested",
-                "operationId", operation.getId()
+                "operationId", operationId
         ));
     }
     
     @PostMapping("/restart-agent")
     public ResponseEntity<?> restartAgent(
             @RequestBody Map<String, String> request,
+            @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey,
             Authentication authentication
     ) {
         String agentId = request.get("agentId");
         
-        // Create file operation record for agent restart
-        FileOperation operation = new FileOperation(
+        Long operationId = fileOperationService.submit(
+                idempotencyKey,
                 agentId,
                 "restart_agent",
                 "restart_agent",
-                getCurrentUserId(authentication)
+                PortalUserDetails.userIdOf(authentication),
+                new AgentCommand.RestartAgent(null)
         );
-        fileOperationRepository.save(operation);
-        
-        // Send to agent via WebSocket
-        Map<String, Object> message = Map.of(
-                "type", "restart_agent",
-                "operationId", operation.getId()
-        );
-        
-        webSocketService.sendToAgent(agentId, message);
         
         return ResponseEntity.ok(Map.of(
                 "message", "Agent restart initiated",
-                "operationId", operation.getId()
+                "operationId", operationId
         ));
     }
-    
-    private Long getCurrentUserId(Authentication authentication) {
-        // This would typically extract user ID from authentication
-        // For now, return a default value
-        return 1L;
-    }
 }
\ No newline at end of file
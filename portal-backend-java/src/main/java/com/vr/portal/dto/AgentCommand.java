@@ -0,0 +1,157 @@
+package com.vr.portal.dto;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonSubTypes;
+import com.fasterxml.jackson.annotation.JsonTypeInfo;
+import com.fasterxml.jackson.annotation.JsonTypeName;
+
+import java.util.List;
+
+/**
+ * Messages the backend sends to agents on /queue/agent/{agentId}. The "type" property
+ * carries the discriminator and operationId comes first, so the wire format is the
+ * same {type, operationId, ...fields} object agents have always received. Commands are
+ * built without an operation id and stamped with it once the operation is saved.
+ */
+@JsonTypeInfo(use = JsonTypeInfo.Id.NAME, include = JsonTypeInfo.As.PROPERTY, property = "type")
+@JsonSubTypes({
+        @JsonSubTypes.Type(AgentCommand.FileUpload.class),
+        @JsonSubTypes.Type(AgentCommand.FileDownload.class),
+        @JsonSubTypes.Type(AgentCommand.FileList.class),
+        @JsonSubTypes.Type(AgentCommand.FileDelete.class),
+        @JsonSubTypes.Type(AgentCommand.SystemCommand.class),
+        @JsonSubTypes.Type(AgentCommand.InstallPackage.class),
+        @JsonSubTypes.Type(AgentCommand.SystemInfo.class),
+        @JsonSubTypes.Type(AgentCommand.RestartAgent.class),
+        @JsonSubTypes.Type(AgentCommand.ManifestRequest.class),
+        @JsonSubTypes.Type(AgentCommand.HeartbeatConfig.class),
+        @JsonSubTypes.Type(AgentCommand.FileIndexConfig.class)
+})
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public sealed interface AgentCommand {
+    
+    Long operationId();
+    
+    AgentCommand withOperationId(Long operationId);
+    
+    @JsonIgnore
+    default String type() {
+        return getClass().getAnnotation(JsonTypeName.class).value();
+    }
+    
+    /**
+     * Queued messages with the same key supersede each other; null means never compacted.
+     */
+    @JsonIgnore
+    default String compactionKey() {
+        return null;
+    }
+    
+    @JsonTypeName("file_upload")
+    record FileUpload(Long operationId, String targetPath, String fileName, String url, String digest, long size) implements AgentCommand {
+        public FileUpload withOperationId(Long operationId) {
+            return new FileUpload(operationId, targetPath, fileName, url, digest, size);
+        }
+        
+        public String compactionKey() {
+            return "file_upload:" + targetPath + "/" + fileName;
+        }
+    }
+    
+    @JsonTypeName("file_download")
+    record FileDownload(Long operationId, String filePath) implements AgentCommand {
+        public FileDownload withOperationId(Long operationId) {
+            return new FileDownload(operationId, filePath);
+        }
+    }
+    
+    @JsonTypeName("file_list")
+    record FileList(Long operationId, String directoryPath) implements AgentCommand {
+        public FileList withOperationId(Long operationId) {
+            return new FileList(operationId, directoryPath);
+        }
+        
+        public String compactionKey() {
+            return "file_list:" + directoryPath;
+        }
+    }
+    
+    @JsonTypeName("file_delete")
+    record FileDelete(Long operationId, String filePath) implements AgentCommand {
+        public FileDelete withOperationId(Long operationId) {
+            return new FileDelete(operationId, filePath);
+        }
+    }
+    
+    @JsonTypeName("system_command")
+    record SystemCommand(Long operationId, String command, Boolean streamOutput) implements AgentCommand {
+        public SystemCommand withOperationId(Long operationId) {
+            return new SystemCommand(operationId, command, streamOutput);
+        }
+    }
+    
+    @JsonTypeName("install_package")
+    record InstallPackage(Long operationId, String packageName, String installCommand) implements AgentCommand {
+        public InstallPackage withOperationId(Long operationId) {
+            return new InstallPackage(operationId, packageName, installCommand);
+        }
+    }
+    
+    @JsonTypeName("system_info")
+    record SystemInfo(Long operationId) implements AgentCommand {
+        public SystemInfo withOperationId(Long operationId) {
+            return new SystemInfo(operationId);
+        }
+        
+        public String compactionKey() {
+            return type();
+        }
+    }
+    
+    @JsonTypeName("restart_agent")
+    record RestartAgent(Long operationId) implements AgentCommand {
+        public RestartAgent withOperationId(Long operationId) {
+            return new RestartAgent(operationId);
+        }
+        
+        public String compactionKey() {
+            return type();
+        }
+    }
+    
+    // Round 0 asks for the root hash only; full asks for the flat file list of a capture
+    @JsonTypeName("manifest_request")
+    record ManifestRequest(
+            Long operationId,
+            Long checkId,
+            String rootPath,
+            Integer round,
+            List<String> expand,
+            Boolean full
+    ) implements AgentCommand {
+        public ManifestRequest withOperationId(Long operationId) {
+            return new ManifestRequest(operationId, checkId, rootPath, round, expand, full);
+        }
+    }
+    
+    // Not tied to an operation; sent when the server changes the interval an agent should ping at
+    @JsonTypeName("heartbeat_config")
+    record HeartbeatConfig(Long operationId, long intervalMs, long stompHeartbeatMs) implements AgentCommand {
+        public HeartbeatConfig withOperationId(Long operationId) {
+            return new HeartbeatConfig(operationId, intervalMs, stompHeartbeatMs);
+        }
+    }
+    
+    // Directories the agent reports listings of on /app/agent/files; full asks for a complete listing next time
+    @JsonTypeName("file_index_config")
+    record FileIndexConfig(Long operationId, List<String> paths, long intervalMs, Boolean full) implements AgentCommand {
+        public FileIndexConfig withOperationId(Long operationId) {
+            return new FileIndexConfig(operationId, paths, intervalMs, full);
+        }
+        
+        public String compactionKey() {
+            return type();
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,33 @@
+package com.vr.portal.dto;
+
+import java.util.List;
+
+/**
+ * Typed payloads for the agent -> backend destinations with a fixed shape. Results on
+ * /app/agent/response stay maps: their fields depend on the operation type and they
+ * are cached and forwarded as documents rather than read field by field.
+ */
+public final class AgentEvent {
+    
+    private AgentEvent() {}
+    
+    // encoding selects how commands are sent to the agent: "json" (default), "cbor" or "smile"
+    public record Connect(String agentId, String sessionId, String encoding) {}
+    
+    public record Disconnect(String agentId) {}
+    
+    public record OutputChunk(Long operationId, Long seq, String stream, String data, boolean eof) {}
+    
+    // A full listing replaces the agent's files; otherwise changed and removed apply on top of baseVersion
+    public record FileListing(
+            String agentId,
+            Long baseVersion,
+            Long version,
+            boolean full,
+            List<FileEntry> changed,
+            List<String> removed
+    ) {}
+    
+    // mtime in epoch seconds, hash the hex SHA-256 of the content
+    public record FileEntry(String path, long size, long mtime, String hash) {}
+}
\ No newline at end of file
@@ -0,0 +1,11 @@
+package com.vr.portal.dto;
+
+public record AgentQuery(
+        String networkId,
+        String storeId,
+        String platform,
+        String status,
+        String version,
+        String versionAtLeast,
+        String versionBelow
+) {}
\ No newline at end of file
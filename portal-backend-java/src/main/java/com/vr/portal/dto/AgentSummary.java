@@ -0,0 +1,35 @@
+package com.vr.portal.dto;
+
+import com.vr.portal.entity.Agent;
+
+import java.time.LocalDateTime;
+
+public record AgentSummary(
+        String id,
+        String name,
+        String hostname,
+        String platform,
+        String version,
+        String status,
+        LocalDateTime lastSeen,
+        String ipAddress,
+        String networkId,
+        String storeId,
+        LocalDateTime createdAt
+) {
+    public static AgentSummary from(Agent agent) {
+        return new AgentSummary(
+                agent.getId(),
+                agent.getName(),
+                agent.getHostname(),
+                agent.getPlatform(),
+                agent.getVersion(),
+                agent.getStatus(),
+                agent.getLastSeen(),
+                agent.getIpAddress(),
+                agent.getNetworkId(),
+                agent.getStoreId(),
+                agent.getCreatedAt()
+        );
+    }
+}
\ No newline at end of file
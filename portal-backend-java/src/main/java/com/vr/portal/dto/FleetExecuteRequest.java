@@ -0,0 +1,45 @@
+package com.vr.portal.dto;
+
+import java.util.List;
+
+public class FleetExecuteRequest {
+    private String command;
+    private List<String> agentIds;
+    private String networkId;
+    private String storeId;
+    private String platform;
+    private String status;
+    private String version;
+    private Integer maxConcurrency;
+    private Integer timeoutSeconds;
+    
+    public FleetExecuteRequest() {}
+    
+    // Getters and setters
+    public String getCommand() { return command; }
+    public void setCommand(String command) { this.command = command; }
+    
+    public List<String> getAgentIds() { return agentIds; }
+    public void setAgentIds(List<String> agentIds) { this.agentIds = agentIds; }
+    
+    public String getNetworkId() { return networkId; }
+    public void setNetworkId(String networkId) { this.networkId = networkId; }
+    
+    public String getStoreId() { return storeId; }
+    public void setStoreId(String storeId) { this.storeId = storeId; }
+    
+    public String getPlatform() { return platform; }
+    public void setPlatform(String platform) { this.platform = platform; }
+    
+    public String getStatus() { return status; }
+    public void setStatus(String status) { this.status = status; }
+    
+    public String getVersion() { return version; }
+    public void setVersion(String version) { this.version = version; }
+    
+    public Integer getMaxConcurrency() { return maxConcurrency; }
+    public void setMaxConcurrency(Integer maxConcurrency) { this.maxConcurrency = maxConcurrency; }
+    
+    public Integer getTimeoutSeconds() { return timeoutSeconds; }
+    public void setTimeoutSeconds(Integer timeoutSeconds) { this.timeoutSeconds = timeoutSeconds; }
+}
\ No newline at end of file
@@ -0,0 +1,41 @@
+package com.vr.portal.dto;
+
+import java.util.List;
+
+public class IntegrityCheckRequest {
+    private Long referenceId;
+    private String rootPath;
+    private List<String> agentIds;
+    private String networkId;
+    private String storeId;
+    private String platform;
+    private String status;
+    private String version;
+    
+    public IntegrityCheckRequest() {}
+    
+    // Getters and setters
+    public Long getReferenceId() { return referenceId; }
+    public void setReferenceId(Long referenceId) { this.referenceId = referenceId; }
+    
+    public String getRootPath() { return rootPath; }
+    public void setRootPath(String rootPath) { this.rootPath = rootPath; }
+    
+    public List<String> getAgentIds() { return agentIds; }
+    public void setAgentIds(List<String> agentIds) { this.agentIds = agentIds; }
+    
+    public String getNetworkId() { return networkId; }
+    public void setNetworkId(String networkId) { this.networkId = networkId; }
+    
+    public String getStoreId() { return storeId; }
+    public void setStoreId(String storeId) { this.storeId = storeId; }
+    
+    public String getPlatform() { return platform; }
+    public void setPlatform(String platform) { this.platform = platform; }
+    
+    public String getStatus() { return status; }
+    public void setStatus(String status) { this.status = status; }
+    
+    public String getVersion() { return version; }
+    public void setVersion(String version) { this.version = version; }
+}
\ No newline at end of file
@@ -0,0 +1,27 @@
+package com.vr.portal.dto;
+
+import com.vr.portal.util.MerkleTree;
+
+import java.util.List;
+
+public class IntegrityReferenceRequest {
+    private String name;
+    private String rootPath;
+    private List<MerkleTree.Entry> files;
+    private String agentId;
+    
+    public IntegrityReferenceRequest() {}
+    
+    // Getters and setters
+    public String getName() { return name; }
+    public void setName(String name) { this.name = name; }
+    
+    public String getRootPath() { return rootPath; }
+    public void setRootPath(String rootPath) { this.rootPath = rootPath; }
+    
+    public List<MerkleTree.Entry> getFiles() { return files; }
+    public void setFiles(List<MerkleTree.Entry> files) { this.files = files; }
+    
+    public String getAgentId() { return agentId; }
+    public void setAgentId(String agentId) { this.agentId = agentId; }
+}
\ No newline at end of file
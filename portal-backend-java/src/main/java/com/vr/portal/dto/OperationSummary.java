@@ -0,0 +1,33 @@
+package com.vr.portal.dto;
+
+import com.vr.portal.entity.FileOperation;
+
+import java.time.LocalDateTime;
+
+public record OperationSummary(
+        Long id,
+        String agentId,
+        String operationType,
+        String filePath,
+        String status,
+        String errorMessage,
+        Long userId,
+        String networkId,
+        LocalDateTime createdAt,
+        LocalDateTime completedAt
+) {
+    public static OperationSummary from(FileOperation operation) {
+        return new OperationSummary(
+                operation.getId(),
+                operation.getAgentId(),
+                operation.getOperationType(),
+                operation.getFilePath(),
+                operation.getStatus(),
+                operation.getErrorMessage(),
+                operation.getUserId(),
+                operation.getNetworkId(),
+                operation.getCreatedAt(),
+                operation.getCompletedAt()
+        );
+    }
+}
\ No newline at end of file
@@ -0,0 +1,62 @@
+package com.vr.portal.dto;
+
+import java.util.List;
+import java.util.Map;
+
+public class RolloutRequest {
+    private String name;
+    private String action;
+    private Map<String, String> params;
+    private List<String> agentIds;
+    private String networkId;
+    private String storeId;
+    private Double canaryPercent;
+    private Double growthFactor;
+    private Integer maxConcurrentPerNetwork;
+    private Double maxFailureRate;
+    private Integer minSamples;
+    private Integer waveDelaySeconds;
+    private Integer targetTimeoutSeconds;
+    
+    public RolloutRequest() {}
+    
+    // Getters and setters
+    public String getName() { return name; }
+    public void setName(String name) { this.name = name; }
+    
+    public String getAction() { return action; }
+    public void setAction(String action) { this.action = action; }
+    
+    public Map<String, String> getParams() { return params; }
+    public void setParams(Map<String, String> params) { this.params = params; }
+    
+    public List<String> getAgentIds() { return agentIds; }
+    public void setAgentIds(List<String> agentIds) { this.agentIds = agentIds; }
+    
+    public String getNetworkId() { return networkId; }
+    public void setNetworkId(String networkId) { this.networkId = networkId; }
+    
+    public String getStoreId() { return storeId; }
+    public void setStoreId(String storeId) { this.storeId = storeId; }
+    
+    public Double getCanaryPercent() { return canaryPercent; }
+    public void setCanaryPercent(Double canaryPercent) { this.canaryPercent = canaryPercent; }
+    
+    public Double getGrowthFactor() { return growthFactor; }
+    public void setGrowthFactor(Double growthFactor) { this.growthFactor = growthFactor; }
+    
+    public Integer getMaxConcurrentPerNetwork() { return maxConcurrentPerNetwork; }
+    public void setMaxConcurrentPerNetwork(Integer maxConcurrentPerNetwork) { this.maxConcurrentPerNetwork = maxConcurrentPerNetwork; }
+    
+    public Double getMaxFailureRate() { return maxFailureRate; }
+    public void setMaxFailureRate(Double maxFailureRate) { this.maxFailureRate = maxFailureRate; }
+    
+    public Integer getMinSamples() { return minSamples; }
+    public void setMinSamples(Integer minSamples) { this.minSamples = minSamples; }
+    
+    public Integer getWaveDelaySeconds() { return waveDelaySeconds; }
+    public void setWaveDelaySeconds(Integer waveDelaySeconds) { this.waveDelaySeconds = waveDelaySeconds; }
+    
+    public Integer getTargetTimeoutSeconds() { return targetTimeoutSeconds; }
+    public void setTargetTimeoutSeconds(Integer targetTimeoutSeconds) { this.targetTimeoutSeconds = targetTimeoutSeconds; }
+}
\ No newline at end of file
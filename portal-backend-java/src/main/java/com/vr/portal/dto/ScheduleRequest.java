@@ -0,0 +1,54 @@
+package com.vr.portal.dto;
+
+import java.util.List;
+import java.util.Map;
+
+public class ScheduleRequest {
+    private String name;
+    private String cron;
+    private String timeZone;
+    private String action;
+    private Map<String, String> params;
+    private List<String> agentIds;
+    private String networkId;
+    private String storeId;
+    private String platform;
+    private String status;
+    private Integer spreadSeconds;
+    
+    public ScheduleRequest() {}
+    
+    // Getters and setters
+    public String getName() { return name; }
+    public void setName(String name) { this.name = name; }
+    
+    public String getCron() { return cron; }
+    public void setCron(String cron) { this.cron = cron; }
+    
+    public String getTimeZone() { return timeZone; }
+    public void setTimeZone(String timeZone) { this.timeZone = timeZone; }
+    
+    public String getAction() { return action; }
+    public void setAction(String action) { this.action = action; }
+    
+    public Map<String, String> getParams() { return params; }
+    public void setParams(Map<String, String> params) { this.params = params; }
+    
+    public List<String> getAgentIds() { return agentIds; }
+    public void setAgentIds(List<String> agentIds) { this.agentIds = agentIds; }
+    
+    public String getNetworkId() { return networkId; }
+    public void setNetworkId(String networkId) { this.networkId = networkId; }
+    
+    public String getStoreId() { return storeId; }
+    public void setStoreId(String storeId) { this.storeId = storeId; }
+    
+    public String getPlatform() { return platform; }
+    public void setPlatform(String platform) { this.platform = platform; }
+    
+    public String getStatus() { return status; }
+    public void setStatus(String status) { this.status = status; }
+    
+    public Integer getSpreadSeconds() { return spreadSeconds; }
+    public void setSpreadSeconds(Integer spreadSeconds) { this.spreadSeconds = spreadSeconds; }
+}
\ No newline at end of file
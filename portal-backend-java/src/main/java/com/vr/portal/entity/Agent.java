@@ -6,7 +6,15 @@ import org.hibernate.annotations.CreationTimestamp;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "agents")
+@Table(
+        name = "agents",
+        indexes = {
+                @Index(name = "idx_agents_network", columnList = "network_id"),
+                @Index(name = "idx_agents_store", columnList = "store_id"),
+                @Index(name = "idx_agents_status", columnList = "status")
+        }
+)
+@EntityListeners(AgentEntityListener.class)
 public class Agent {
     @Id
     private String id;
@@ -0,0 +1,34 @@
+package com.vr.portal.entity;
+
+import com.vr.portal.dto.AgentSummary;
+import com.vr.portal.event.AgentChangedEvent;
+import com.vr.portal.event.ChangeType;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import org.springframework.context.ApplicationEventPublisher;
+
+// Instantiated by Hibernate through Spring's bean container, so the publisher is injected
+public class AgentEntityListener {
+    
+    private final ApplicationEventPublisher eventPublisher;
+    
+    public AgentEntityListener(ApplicationEventPublisher eventPublisher) {
+        this.eventPublisher = eventPublisher;
+    }
+    
+    @PostPersist
+    public void onPersist(Agent agent) {
+        eventPublisher.publishEvent(new AgentChangedEvent(AgentSummary.from(agent), ChangeType.CREATED));
+    }
+    
+    @PostUpdate
+    public void onUpdate(Agent agent) {
+        eventPublisher.publishEvent(new AgentChangedEvent(AgentSummary.from(agent), ChangeType.UPDATED));
+    }
+    
+    @PostRemove
+    public void onRemove(Agent agent) {
+        eventPublisher.publishEvent(new AgentChangedEvent(AgentSummary.from(agent), ChangeType.DELETED));
+    }
+}
\ No newline at end of file
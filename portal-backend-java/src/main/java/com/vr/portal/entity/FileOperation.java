@@ -6,10 +6,21 @@ import org.hibernate.annotations.CreationTimestamp;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "file_operations")
+@Table(
+        name = "file_operations",
+        indexes = {
+                @Index(name = "idx_file_operations_agent_created", columnList = "agent_id, created_at"),
+                @Index(name = "idx_file_operations_created", columnList = "created_at"),
+                @Index(name = "idx_file_operations_network_created", columnList = "network_id, created_at"),
+                @Index(name = "idx_file_operations_network_agent_created", columnList = "network_id, agent_id, created_at")
+        }
+)
+@EntityListeners(FileOperationEntityListener.class)
 public class FileOperation {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
+    // SQLite only auto-assigns rowids to INTEGER keys; declared so ddl-auto=validate accepts the column
+    @Column(columnDefinition = "integer")
     private Long id;
     
     @Column(name = "agent_id", nullable = false)
@@ -30,6 +41,10 @@ public class FileOperation {
     @Column(name = "user_id")
     private Long userId;
     
+    // Copied from the agent at dispatch so tenant queries stay on the network-leading indexes
+    @Column(name = "network_id")
+    private String networkId;
+    
     @CreationTimestamp
     @Column(name = "created_at")
     private LocalDateTime createdAt;
@@ -37,6 +52,10 @@ public class FileOperation {
     @Column(name = "completed_at")
     private LocalDateTime completedAt;
     
+    // Status as last read from or written to the database, used to report transitions
+    @Transient
+    private String persistedStatus;
+    
     // Constructors
     public FileOperation() {}
     
@@ -69,9 +88,15 @@ public class FileOperation {
     public Long getUserId() { return userId; }
     public void setUserId(Long userId) { this.userId = userId; }
     
+    public String getNetworkId() { return networkId; }
+    public void setNetworkId(String networkId) { this.networkId = networkId; }
+    
     public LocalDateTime getCreatedAt() { return createdAt; }
     public void setCreatedAt(LocalDateTime createdAt) { this.createdAt = createdAt; }
     
     public LocalDateTime getCompletedAt() { return completedAt; }
     public void setCompletedAt(LocalDateTime completedAt) { this.completedAt = completedAt; }
+    
+    String getPersistedStatus() { return persistedStatus; }
+    void setPersistedStatus(String persistedStatus) { this.persistedStatus = persistedStatus; }
 }
\ No newline at end of file
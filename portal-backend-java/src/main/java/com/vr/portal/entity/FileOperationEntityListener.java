@@ -0,0 +1,49 @@
+package com.vr.portal.entity;
+
+import com.vr.portal.dto.OperationSummary;
+import com.vr.portal.event.ChangeType;
+import com.vr.portal.event.FileOperationChangedEvent;
+import jakarta.persistence.PostLoad;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import org.springframework.context.ApplicationEventPublisher;
+
+// Instantiated by Hibernate through Spring's bean container, so the publisher is injected
+public class FileOperationEntityListener {
+    
+    private final ApplicationEventPublisher eventPublisher;
+    
+    public FileOperationEntityListener(ApplicationEventPublisher eventPublisher) {
+        this.eventPublisher = eventPublisher;
+    }
+    
+    @PostLoad
+    public void onLoad(FileOperation operation) {
+        operation.setPersistedStatus(operation.getStatus());
+    }
+    
+    @PostPersist
+    public void onPersist(FileOperation operation) {
+        publish(operation, null, ChangeType.CREATED);
+    }
+    
+    @PostUpdate
+    public void onUpdate(FileOperation operation) {
+        publish(operation, operation.getPersistedStatus(), ChangeType.UPDATED);
+    }
+    
+    @PostRemove
+    public void onRemove(FileOperation operation) {
+        publish(operation, operation.getPersistedStatus(), ChangeType.DELETED);
+    }
+    
+    private void publish(FileOperation operation, String previousStatus, ChangeType changeType) {
+        eventPublisher.publishEvent(new FileOperationChangedEvent(
+                OperationSummary.from(operation),
+                previousStatus,
+                changeType
+        ));
+        operation.setPersistedStatus(operation.getStatus());
+    }
+}
\ No newline at end of file
@@ -0,0 +1,50 @@
+package com.vr.portal.entity;
+
+import jakarta.persistence.*;
+import org.hibernate.annotations.CreationTimestamp;
+
+import java.time.LocalDateTime;
+
+@Entity
+@Table(
+        name = "idempotency_keys",
+        indexes = @Index(name = "idx_idempotency_keys_created", columnList = "created_at")
+)
+public class IdempotencyRecord {
+    // User id and client key, e.g. "1:5f0c..."
+    @Id
+    @Column(name = "scoped_key")
+    private String scopedKey;
+    
+    @Column(nullable = false)
+    private String fingerprint;
+    
+    @Column(name = "operation_id", nullable = false)
+    private Long operationId;
+    
+    @CreationTimestamp
+    @Column(name = "created_at")
+    private LocalDateTime createdAt;
+    
+    // Constructors
+    public IdempotencyRecord() {}
+    
+    public IdempotencyRecord(String scopedKey, String fingerprint, Long operationId) {
+        this.scopedKey = scopedKey;
+        this.fingerprint = fingerprint;
+        this.operationId = operationId;
+    }
+    
+    // Getters and Setters
+    public String getScopedKey() { return scopedKey; }
+    public void setScopedKey(String scopedKey) { this.scopedKey = scopedKey; }
+    
+    public String getFingerprint() { return fingerprint; }
+    public void setFingerprint(String fingerprint) { this.fingerprint = fingerprint; }
+    
+    public Long getOperationId() { return operationId; }
+    public void setOperationId(Long operationId) { this.operationId = operationId; }
+    
+    public LocalDateTime getCreatedAt() { return createdAt; }
+    public void setCreatedAt(LocalDateTime createdAt) { this.createdAt = createdAt; }
+}
\ No newline at end of file
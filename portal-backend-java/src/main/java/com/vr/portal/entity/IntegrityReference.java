@@ -0,0 +1,88 @@
+package com.vr.portal.entity;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import jakarta.persistence.*;
+import org.hibernate.annotations.CreationTimestamp;
+
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "integrity_references")
+public class IntegrityReference {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(columnDefinition = "integer")
+    private Long id;
+    
+    @Column(nullable = false, unique = true)
+    private String name;
+    
+    @Column(name = "root_path", nullable = false)
+    private String rootPath;
+    
+    @Column(name = "root_hash", nullable = false)
+    private String rootHash;
+    
+    @Column(name = "file_count")
+    private Integer fileCount;
+    
+    @Column(name = "total_bytes")
+    private Long totalBytes;
+    
+    // JSON array of {path, hash, size}, relative to root_path; served by its own endpoint
+    @JsonIgnore
+    @Column(nullable = false, columnDefinition = "TEXT")
+    private String manifest;
+    
+    @Column(name = "source_agent_id")
+    private String sourceAgentId;
+    
+    // Null for references shared with every network
+    @Column(name = "network_id")
+    private String networkId;
+    
+    @CreationTimestamp
+    @Column(name = "created_at")
+    private LocalDateTime createdAt;
+    
+    // Constructors
+    public IntegrityReference() {}
+    
+    public IntegrityReference(String name, String rootPath, String rootHash, String manifest) {
+        this.name = name;
+        this.rootPath = rootPath;
+        this.rootHash = rootHash;
+        this.manifest = manifest;
+    }
+    
+    // Getters and Setters
+    public Long getId() { return id; }
+    public void setId(Long id) { this.id = id; }
+    
+    public String getName() { return name; }
+    public void setName(String name) { this.name = name; }
+    
+    public String getRootPath() { return rootPath; }
+    public void setRootPath(String rootPath) { this.rootPath = rootPath; }
+    
+    public String getRootHash() { return rootHash; }
+    public void setRootHash(String rootHash) { this.rootHash = rootHash; }
+    
+    public Integer getFileCount() { return fileCount; }
+    public void setFileCount(Integer fileCount) { this.fileCount = fileCount; }
+    
+    public Long getTotalBytes() { return totalBytes; }
+    public void setTotalBytes(Long totalBytes) { this.totalBytes = totalBytes; }
+    
+    public String getManifest() { return manifest; }
+    public void setManifest(String manifest) { this.manifest = manifest; }
+    
+    public String getSourceAgentId() { return sourceAgentId; }
+    public void setSourceAgentId(String sourceAgentId) { this.sourceAgentId = sourceAgentId; }
+    
+    public String getNetworkId() { return networkId; }
+    public void setNetworkId(String networkId) { this.networkId = networkId; }
+    
+    public LocalDateTime getCreatedAt() { return createdAt; }
+    public void setCreatedAt(LocalDateTime createdAt) { this.createdAt = createdAt; }
+}
\ No newline at end of file
@@ -0,0 +1,68 @@
+package com.vr.portal.entity;
+
+import jakarta.persistence.*;
+import org.hibernate.annotations.CreationTimestamp;
+
+import java.time.LocalDateTime;
+
+@Entity
+@Table(
+        name = "agent_mailbox",
+        indexes = {
+                @Index(name = "idx_agent_mailbox_agent", columnList = "agent_id, id"),
+                @Index(name = "idx_agent_mailbox_compaction", columnList = "agent_id, compaction_key"),
+                @Index(name = "idx_agent_mailbox_created", columnList = "created_at")
+        }
+)
+public class MailboxMessage {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(columnDefinition = "integer")
+    private Long id;
+    
+    @Column(name = "agent_id", nullable = false)
+    private String agentId;
+    
+    @Column(name = "operation_id")
+    private Long operationId;
+    
+    // Messages with the same key supersede each other; null means never compacted
+    @Column(name = "compaction_key")
+    private String compactionKey;
+    
+    @Column(nullable = false, columnDefinition = "TEXT")
+    private String payload;
+    
+    @CreationTimestamp
+    @Column(name = "created_at")
+    private LocalDateTime createdAt;
+    
+    // Constructors
+    public MailboxMessage() {}
+    
+    public MailboxMessage(String agentId, Long operationId, String compactionKey, String payload) {
+        this.agentId = agentId;
+        this.operationId = operationId;
+        this.compactionKey = compactionKey;
+        this.payload = payload;
+    }
+    
+    // Getters and Setters
+    public Long getId() { return id; }
+    public void setId(Long id) { this.id = id; }
+    
+    public String getAgentId() { return agentId; }
+    public void setAgentId(String agentId) { this.agentId = agentId; }
+    
+    public Long getOperationId() { return operationId; }
+    public void setOperationId(Long operationId) { this.operationId = operationId; }
+    
+    public String getCompactionKey() { return compactionKey; }
+    public void setCompactionKey(String compactionKey) { this.compactionKey = compactionKey; }
+    
+    public String getPayload() { return payload; }
+    public void setPayload(String payload) { this.payload = payload; }
+    
+    public LocalDateTime getCreatedAt() { return createdAt; }
+    public void setCreatedAt(LocalDateTime createdAt) { this.createdAt = createdAt; }
+}
\ No newline at end of file
@@ -0,0 +1,75 @@
+package com.vr.portal.entity;
+
+import jakarta.persistence.*;
+
+import java.time.LocalDateTime;
+
+@Entity
+@Table(
+        name = "file_operation_rollups",
+        uniqueConstraints = @UniqueConstraint(
+                name = "uk_rollup_bucket",
+                columnNames = {"granularity", "bucket_start", "agent_id", "operation_type", "status"}
+        ),
+        indexes = @Index(name = "idx_rollup_granularity_bucket", columnList = "granularity, bucket_start")
+)
+public class OperationRollup {
+    public static final String HOURLY = "hour";
+    public static final String DAILY = "day";
+    
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(columnDefinition = "integer")
+    private Long id;
+    
+    @Column(nullable = false)
+    private String granularity;
+    
+    @Column(name = "bucket_start", nullable = false)
+    private LocalDateTime bucketStart;
+    
+    @Column(name = "agent_id", nullable = false)
+    private String agentId;
+    
+    @Column(name = "operation_type", nullable = false)
+    private String operationType;
+    
+    @Column(nullable = false)
+    private String status;
+    
+    @Column(name = "operation_count", nullable = false)
+    private long operationCount;
+    
+    // Constructors
+    public OperationRollup() {}
+    
+    public OperationRollup(String granularity, LocalDateTime bucketStart, String agentId, String operationType, String status) {
+        this.granularity = granularity;
+        this.bucketStart = bucketStart;
+        this.agentId = agentId;
+        this.operationType = operationType;
+        this.status = status;
+    }
+    
+    // Getters and Setters
+    public Long getId() { return id; }
+    public void setId(Long id) { this.id = id; }
+    
+    public String getGranularity() { return granularity; }
+    public void setGranularity(String granularity) { this.granularity = granularity; }
+    
+    public LocalDateTime getBucketStart() { return bucketStart; }
+    public void setBucketStart(LocalDateTime bucketStart) { this.bucketStart = bucketStart; }
+    
+    public String getAgentId() { return agentId; }
+    public void setAgentId(String agentId) { this.agentId = agentId; }
+    
+    public String getOperationType() { return operationType; }
+    public void setOperationType(String operationType) { this.operationType = operationType; }
+    
+    public String getStatus() { return status; }
+    public void setStatus(String status) { this.status = status; }
+    
+    public long getOperationCount() { return operationCount; }
+    public void setOperationCount(long operationCount) { this.operationCount = operationCount; }
+}
\ No newline at end of file
@@ -0,0 +1,164 @@
+package com.vr.portal.entity;
+
+import jakarta.persistence.*;
+import org.hibernate.annotations.CreationTimestamp;
+import org.hibernate.annotations.UpdateTimestamp;
+
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "rollouts")
+public class Rollout {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(columnDefinition = "integer")
+    private Long id;
+    
+    @Column(nullable = false)
+    private String name;
+    
+    @Column(name = "action_type", nullable = false)
+    private String actionType;
+    
+    @Column(name = "action_params", columnDefinition = "TEXT")
+    private String actionParams;
+    
+    @Column(columnDefinition = "TEXT DEFAULT 'pending'")
+    private String status = "pending";
+    
+    @Column(name = "canary_percent", nullable = false)
+    private double canaryPercent;
+    
+    @Column(name = "growth_factor", nullable = false)
+    private double growthFactor;
+    
+    @Column(name = "max_concurrent_per_network", nullable = false)
+    private int maxConcurrentPerNetwork;
+    
+    @Column(name = "max_failure_rate", nullable = false)
+    private double maxFailureRate;
+    
+    @Column(name = "min_samples", nullable = false)
+    private int minSamples;
+    
+    @Column(name = "wave_delay_seconds", nullable = false)
+    private int waveDelaySeconds;
+    
+    @Column(name = "target_timeout_seconds", nullable = false)
+    private int targetTimeoutSeconds;
+    
+    @Column(name = "current_wave", nullable = false)
+    private int currentWave;
+    
+    @Column(name = "total_waves", nullable = false)
+    private int totalWaves;
+    
+    @Column(name = "next_wave_at")
+    private LocalDateTime nextWaveAt;
+    
+    @Column(name = "pause_reason")
+    private String pauseReason;
+    
+    // Finished targets of the current wave that an earlier pause already judged; reset each wave
+    @Column(name = "wave_baseline_completed", nullable = false)
+    private int waveBaselineCompleted;
+    
+    @Column(name = "wave_baseline_failed", nullable = false)
+    private int waveBaselineFailed;
+    
+    @Column(name = "user_id")
+    private Long userId;
+    
+    // Set when every target is in one network, whose users may then see the rollout
+    @Column(name = "network_id")
+    private String networkId;
+    
+    @CreationTimestamp
+    @Column(name = "created_at")
+    private LocalDateTime createdAt;
+    
+    @UpdateTimestamp
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+    
+    // Guards operator state changes against a concurrent scheduler tick
+    @Version
+    private Long version;
+    
+    // Constructors
+    public Rollout() {}
+    
+    public Rollout(String name, String actionType, String actionParams, Long userId) {
+        this.name = name;
+        this.actionType = actionType;
+        this.actionParams = actionParams;
+        this.userId = userId;
+    }
+    
+    // Getters and Setters
+    public Long getId() { return id; }
+    public void setId(Long id) { this.id = id; }
+    
+    public String getName() { return name; }
+    public void setName(String name) { this.name = name; }
+    
+    public String getActionType() { return actionType; }
+    public void setActionType(String actionType) { this.actionType = actionType; }
+    
+    public String getActionParams() { return actionParams; }
+    public void setActionParams(String actionParams) { this.actionParams = actionParams; }
+    
+    public String getStatus() { return status; }
+    public void setStatus(String status) { this.status = status; }
+    
+    public double getCanaryPercent() { return canaryPercent; }
+    public void setCanaryPercent(double canaryPercent) { this.canaryPercent = canaryPercent; }
+    
+    public double getGrowthFactor() { return growthFactor; }
+    public void setGrowthFactor(double growthFactor) { this.growthFactor = growthFactor; }
+    
+    public int getMaxConcurrentPerNetwork() { return maxConcurrentPerNetwork; }
+    public void setMaxConcurrentPerNetwork(int maxConcurrentPerNetwork) { this.maxConcurrentPerNetwork = maxConcurrentPerNetwork; }
+    
+    public double getMaxFailureRate() { return maxFailureRate; }
+    public void setMaxFailureRate(double maxFailureRate) { this.maxFailureRate = maxFailureRate; }
+    
+    public int getMinSamples() { return minSamples; }
+    public void setMinSamples(int minSamples) { this.minSamples = minSamples; }
+    
+    public int getWaveDelaySeconds() { return waveDelaySeconds; }
+    public void setWaveDelaySeconds(int waveDelaySeconds) { this.waveDelaySeconds = waveDelaySeconds; }
+    
+    public int getTargetTimeoutSeconds() { return targetTimeoutSeconds; }
+    public void setTargetTimeoutSeconds(int targetTimeoutSeconds) { this.targetTimeoutSeconds = targetTimeoutSeconds; }
+    
+    public int getCurrentWave() { return currentWave; }
+    public void setCurrentWave(int currentWave) { this.currentWave = currentWave; }
+    
+    public int getTotalWaves() { return totalWaves; }
+    public void setTotalWaves(int totalWaves) { this.totalWaves = totalWaves; }
+    
+    public LocalDateTime getNextWaveAt() { return nextWaveAt; }
+    public void setNextWaveAt(LocalDateTime nextWaveAt) { this.nextWaveAt = nextWaveAt; }
+    
+    public String getPauseReason() { return pauseReason; }
+    public void setPauseReason(String pauseReason) { this.pauseReason = pauseReason; }
+    
+    public int getWaveBaselineCompleted() { return waveBaselineCompleted; }
+    public void setWaveBaselineCompleted(int waveBaselineCompleted) { this.waveBaselineCompleted = waveBaselineCompleted; }
+    
+    public int getWaveBaselineFailed() { return waveBaselineFailed; }
+    public void setWaveBaselineFailed(int waveBaselineFailed) { this.waveBaselineFailed = waveBaselineFailed; }
+    
+    public Long getUserId() { return userId; }
+    public void setUserId(Long userId) { this.userId = userId; }
+    
+    public String getNetworkId() { return networkId; }
+    public void setNetworkId(String networkId) { this.networkId = networkId; }
+    
+    public LocalDateTime getCreatedAt() { return createdAt; }
+    public void setCreatedAt(LocalDateTime createdAt) { this.createdAt = createdAt; }
+    
+    public LocalDateTime getUpdatedAt() { return updatedAt; }
+    public void setUpdatedAt(LocalDateTime updatedAt) { this.updatedAt = updatedAt; }
+}
\ No newline at end of file
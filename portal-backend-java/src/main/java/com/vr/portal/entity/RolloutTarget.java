@@ -0,0 +1,88 @@
+package com.vr.portal.entity;
+
+import jakarta.persistence.*;
+
+import java.time.LocalDateTime;
+
+@Entity
+@Table(
+        name = "rollout_targets",
+        indexes = {
+                @Index(name = "idx_rollout_targets_wave", columnList = "rollout_id, wave"),
+                @Index(name = "idx_rollout_targets_status", columnList = "rollout_id, status")
+        }
+)
+public class RolloutTarget {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(columnDefinition = "integer")
+    private Long id;
+    
+    @Column(name = "rollout_id", nullable = false)
+    private Long rolloutId;
+    
+    @Column(name = "agent_id", nullable = false)
+    private String agentId;
+    
+    @Column(name = "network_id")
+    private String networkId;
+    
+    @Column(nullable = false)
+    private int wave;
+    
+    @Column(columnDefinition = "TEXT DEFAULT 'queued'")
+    private String status = "queued";
+    
+    @Column(name = "operation_id")
+    private Long operationId;
+    
+    @Column(name = "error_message")
+    private String errorMessage;
+    
+    @Column(name = "dispatched_at")
+    private LocalDateTime dispatchedAt;
+    
+    @Column(name = "completed_at")
+    private LocalDateTime completedAt;
+    
+    // Constructors
+    public RolloutTarget() {}
+    
+    public RolloutTarget(Long rolloutId, String agentId, String networkId, int wave) {
+        this.rolloutId = rolloutId;
+        this.agentId = agentId;
+        this.networkId = networkId;
+        this.wave = wave;
+    }
+    
+    // Getters and Setters
+    public Long getId() { return id; }
+    public void setId(Long id) { this.id = id; }
+    
+    public Long getRolloutId() { return rolloutId; }
+    public void setRolloutId(Long rolloutId) { this.rolloutId = rolloutId; }
+    
+    public String getAgentId() { return agentId; }
+    public void setAgentId(String agentId) { this.agentId = agentId; }
+    
+    public String getNetworkId() { return networkId; }
+    public void setNetworkId(String networkId) { this.networkId = networkId; }
+    
+    public int getWave() { return wave; }
+    public void setWave(int wave) { this.wave = wave; }
+    
+    public String getStatus() { return status; }
+    public void setStatus(String status) { this.status = status; }
+    
+    public Long getOperationId() { return operationId; }
+    public void setOperationId(Long operationId) { this.operationId = operationId; }
+    
+    public String getErrorMessage() { return errorMessage; }
+    public void setErrorMessage(String errorMessage) { this.errorMessage = errorMessage; }
+    
+    public LocalDateTime getDispatchedAt() { return dispatchedAt; }
+    public void setDispatchedAt(LocalDateTime dispatchedAt) { this.dispatchedAt = dispatchedAt; }
+    
+    public LocalDateTime getCompletedAt() { return completedAt; }
+    public void setCompletedAt(LocalDateTime completedAt) { this.completedAt = completedAt; }
+}
\ No newline at end of file
@@ -0,0 +1,168 @@
+package com.vr.portal.entity;
+
+import jakarta.persistence.*;
+import org.hibernate.annotations.CreationTimestamp;
+import org.hibernate.annotations.UpdateTimestamp;
+
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "scheduled_jobs")
+public class ScheduledJob {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(columnDefinition = "integer")
+    private Long id;
+    
+    @Column(nullable = false)
+    private String name;
+    
+    @Column(name = "cron_expression", nullable = false)
+    private String cronExpression;
+    
+    @Column(name = "time_zone", nullable = false)
+    private String timeZone;
+    
+    @Column(name = "action_type", nullable = false)
+    private String actionType;
+    
+    @Column(name = "action_params", columnDefinition = "TEXT")
+    private String actionParams;
+    
+    // Comma-separated; when set, the other target filters are ignored
+    @Column(name = "target_agent_ids", columnDefinition = "TEXT")
+    private String targetAgentIds;
+    
+    @Column(name = "target_network_id")
+    private String targetNetworkId;
+    
+    @Column(name = "target_store_id")
+    private String targetStoreId;
+    
+    @Column(name = "target_platform")
+    private String targetPlatform;
+    
+    @Column(name = "target_status")
+    private String targetStatus;
+    
+    @Column(name = "spread_seconds", nullable = false)
+    private int spreadSeconds;
+    
+    @Column(columnDefinition = "TEXT DEFAULT 'active'")
+    private String status = "active";
+    
+    @Column(name = "next_run_at")
+    private LocalDateTime nextRunAt;
+    
+    @Column(name = "last_run_at")
+    private LocalDateTime lastRunAt;
+    
+    // Spread actually used by the last run, so a restart can resume it
+    @Column(name = "last_run_spread_seconds")
+    private Integer lastRunSpreadSeconds;
+    
+    @Column(name = "last_run_completed_at")
+    private LocalDateTime lastRunCompletedAt;
+    
+    @Column(name = "last_run_targets")
+    private Integer lastRunTargets;
+    
+    @Column(name = "last_run_dispatched")
+    private Integer lastRunDispatched;
+    
+    @Column(name = "last_run_failed")
+    private Integer lastRunFailed;
+    
+    @Column(name = "user_id")
+    private Long userId;
+    
+    @CreationTimestamp
+    @Column(name = "created_at")
+    private LocalDateTime createdAt;
+    
+    @UpdateTimestamp
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+    
+    // Constructors
+    public ScheduledJob() {}
+    
+    public ScheduledJob(String name, String cronExpression, String timeZone, String actionType, String actionParams, Long userId) {
+        this.name = name;
+        this.cronExpression = cronExpression;
+        this.timeZone = timeZone;
+        this.actionType = actionType;
+        this.actionParams = actionParams;
+        this.userId = userId;
+    }
+    
+    // Getters and Setters
+    public Long getId() { return id; }
+    public void setId(Long id) { this.id = id; }
+    
+    public String getName() { return name; }
+    public void setName(String name) { this.name = name; }
+    
+    public String getCronExpression() { return cronExpression; }
+    public void setCronExpression(String cronExpression) { this.cronExpression = cronExpression; }
+    
+    public String getTimeZone() { return timeZone; }
+    public void setTimeZone(String timeZone) { this.timeZone = timeZone; }
+    
+    public String getActionType() { return actionType; }
+    public void setActionType(String actionType) { this.actionType = actionType; }
+    
+    public String getActionParams() { return actionParams; }
+    public void setActionParams(String actionParams) { this.actionParams = actionParams; }
+    
+    public String getTargetAgentIds() { return targetAgentIds; }
+    public void setTargetAgentIds(String targetAgentIds) { this.targetAgentIds = targetAgentIds; }
+    
+    public String getTargetNetworkId() { return targetNetworkId; }
+    public void setTargetNetworkId(String targetNetworkId) { this.targetNetworkId = targetNetworkId; }
+    
+    public String getTargetStoreId() { return targetStoreId; }
+    public void setTargetStoreId(String targetStoreId) { this.targetStoreId = targetStoreId; }
+    
+    public String getTargetPlatform() { return targetPlatform; }
+    public void setTargetPlatform(String targetPlatform) { this.targetPlatform = targetPlatform; }
+    
+    public String getTargetStatus() { return targetStatus; }
+    public void setTargetStatus(String targetStatus) { this.targetStatus = targetStatus; }
+    
+    public int getSpreadSeconds() { return spreadSeconds; }
+    public void setSpreadSeconds(int spreadSeconds) { this.spreadSeconds = spreadSeconds; }
+    
+    public String getStatus() { return status; }
+    public void setStatus(String status) { this.status = status; }
+    
+    public LocalDateTime getNextRunAt() { return nextRunAt; }
+    public void setNextRunAt(LocalDateTime nextRunAt) { this.nextRunAt = nextRunAt; }
+    
+    public LocalDateTime getLastRunAt() { return lastRunAt; }
+    public void setLastRunAt(LocalDateTime lastRunAt) { this.lastRunAt = lastRunAt; }
+    
+    public Integer getLastRunSpreadSeconds() { return lastRunSpreadSeconds; }
+    public void setLastRunSpreadSeconds(Integer lastRunSpreadSeconds) { this.lastRunSpreadSeconds = lastRunSpreadSeconds; }
+    
+    public LocalDateTime getLastRunCompletedAt() { return lastRunCompletedAt; }
+    public void setLastRunCompletedAt(LocalDateTime lastRunCompletedAt) { this.lastRunCompletedAt = lastRunCompletedAt; }
+    
+    public Integer getLastRunTargets() { return lastRunTargets; }
+    public void setLastRunTargets(Integer lastRunTargets) { this.lastRunTargets = lastRunTargets; }
+    
+    public Integer getLastRunDispatched() { return lastRunDispatched; }
+    public void setLastRunDispatched(Integer lastRunDispatched) { this.lastRunDispatched = lastRunDispatched; }
+    
+    public Integer getLastRunFailed() { return lastRunFailed; }
+    public void setLastRunFailed(Integer lastRunFailed) { this.lastRunFailed = lastRunFailed; }
+    
+    public Long getUserId() { return userId; }
+    public void setUserId(Long userId) { this.userId = userId; }
+    
+    public LocalDateTime getCreatedAt() { return createdAt; }
+    public void setCreatedAt(LocalDateTime createdAt) { this.createdAt = createdAt; }
+    
+    public LocalDateTime getUpdatedAt() { return updatedAt; }
+    public void setUpdatedAt(LocalDateTime updatedAt) { this.updatedAt = updatedAt; }
+}
\ No newline at end of file
@@ -11,6 +11,7 @@ import java.time.LocalDateTime;
 public class User {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(columnDefinition = "integer")
     private Long id;
     
     @Column(unique = true, nullable = false)
@@ -25,6 +26,10 @@ public class User {
     @Column(columnDefinition = "TEXT DEFAULT 'user'")
     private String role = "user";
     
+    // Network the user is confined to; null for users who manage every network
+    @Column(name = "network_id")
+    private String networkId;
+    
     @CreationTimestamp
     @Column(name = "created_at")
     private LocalDateTime createdAt;
@@ -59,6 +64,9 @@ public class User {
     public String getRole() { return role; }
     public void setRole(String role) { this.role = role; }
     
+    public String getNetworkId() { return networkId; }
+    public void setNetworkId(String networkId) { this.networkId = networkId; }
+    
     public LocalDateTime getCreatedAt() { return createdAt; }
     public void setCreatedAt(LocalDateTime createdAt) { this.createdAt = createdAt; }
     
@@ -0,0 +1,9 @@
+package com.vr.portal.event;
+
+import com.vr.portal.dto.AgentSummary;
+
+public record AgentChangedEvent(AgentSummary agent, ChangeType changeType, long occurredAt) {
+    public AgentChangedEvent(AgentSummary agent, ChangeType changeType) {
+        this(agent, changeType, System.currentTimeMillis());
+    }
+}
\ No newline at end of file
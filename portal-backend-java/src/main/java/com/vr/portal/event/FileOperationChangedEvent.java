@@ -0,0 +1,18 @@
+package com.vr.portal.event;
+
+import com.vr.portal.dto.OperationSummary;
+
+public record FileOperationChangedEvent(
+        OperationSummary operation,
+        String previousStatus,
+        ChangeType changeType,
+        long occurredAt
+) {
+    public FileOperationChangedEvent(OperationSummary operation, String previousStatus, ChangeType changeType) {
+        this(operation, previousStatus, changeType, System.currentTimeMillis());
+    }
+    
+    public boolean statusChanged() {
+        return previousStatus == null || !previousStatus.equals(operation.status());
+    }
+}
\ No newline at end of file
@@ -0,0 +1,8 @@
+package com.vr.portal.exception;
+
+public class IdempotencyConflictException extends RuntimeException {
+    
+    public IdempotencyConflictException(String message) {
+        super(message);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,21 @@
+package com.vr.portal.exception;
+
+public class PayloadBudgetExceededException extends RuntimeException {
+    
+    private final String payloadType;
+    private final long retryAfterSeconds;
+    
+    public PayloadBudgetExceededException(String payloadType, long retryAfterSeconds, String message) {
+        super(message);
+        this.payloadType = payloadType;
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+    
+    public String getPayloadType() {
+        return payloadType;
+    }
+    
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,8 @@
+package com.vr.portal.exception;
+
+public class TenantAccessDeniedException extends RuntimeException {
+    
+    public TenantAccessDeniedException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,21 @@
+package com.vr.portal.exception;
+
+public class ThrottledException extends RuntimeException {
+    
+    private final String scope;
+    private final long retryAfterSeconds;
+    
+    public ThrottledException(String scope, long retryAfterSeconds, String message) {
+        super(message);
+        this.scope = scope;
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+    
+    public String getScope() {
+        return scope;
+    }
+    
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
\ No newline at end of file
@@ -2,10 +2,13 @@ package com.vr.portal.repository;
 
 import com.vr.portal.entity.Agent;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 
 @Repository
@@ -19,4 +22,10 @@ public interface AgentRepository extends JpaRepository<Agent, String> {
     
     @Query("SELECT a FROM Agent a WHERE a.lastSeen < :threshold")
     List<Agent> findStaleAgents(LocalDateTime threshold);
+    
+    // Bulk update: bypasses the entity listeners, so last-seen refreshes are not agent change events
+    @Modifying
+    @Transactional
+    @Query("UPDATE Agent a SET a.lastSeen = :lastSeen WHERE a.id IN :ids")
+    int updateLastSeen(Collection<String> ids, LocalDateTime lastSeen);
 }
\ No newline at end of file
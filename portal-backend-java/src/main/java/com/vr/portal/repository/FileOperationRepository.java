@@ -1,17 +1,23 @@
 package com.vr.portal.repository;
 
 import com.vr.portal.entity.FileOperation;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
 import java.util.List;
 
 @Repository
 public interface FileOperationRepository extends JpaRepository<FileOperation, Long> {
     List<FileOperation> findByAgentIdOrderByCreatedAtDesc(String agentId);
+    List<FileOperation> findByNetworkIdOrderByCreatedAtDesc(String networkId);
+    List<FileOperation> findByNetworkIdAndAgentIdOrderByCreatedAtDesc(String networkId, String agentId);
     List<FileOperation> findByUserIdOrderByCreatedAtDesc(Long userId);
     List<FileOperation> findByStatusOrderByCreatedAtDesc(String status);
+    List<FileOperation> findByCreatedAtBeforeOrderByIdAsc(LocalDateTime threshold, Pageable pageable);
+    List<FileOperation> findAllByOrderByIdDesc(Pageable pageable);
     
     @Query("SELECT f FROM FileOperation f ORDER BY f.createdAt DESC")
     List<FileOperation> findAllOrderByCreatedAtDesc();
@@ -21,4 +27,11 @@ public interface FileOperationRepository extends JpaRepository<FileOperation, Lo
     
     @Query("SELECT COUNT(f) FROM FileOperation f WHERE f.status = 'failed'")
     long countFailedOperations();
+    
+    @Query("SELECT f.networkId, f.operationType, f.status, COUNT(f) FROM FileOperation f " +
+            "GROUP BY f.networkId, f.operationType, f.status")
+    List<Object[]> countByNetworkTypeAndStatus();
+    
+    @Query("SELECT f.networkId, f.createdAt, f.status FROM FileOperation f WHERE f.createdAt >= :since")
+    List<Object[]> findNetworkCreatedAtAndStatusSince(LocalDateTime since);
 }
\ No newline at end of file
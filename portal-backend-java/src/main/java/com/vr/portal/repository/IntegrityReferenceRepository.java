@@ -0,0 +1,13 @@
+package com.vr.portal.repository;
+
+import com.vr.portal.entity.IntegrityReference;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface IntegrityReferenceRepository extends JpaRepository<IntegrityReference, Long> {
+    boolean existsByName(String name);
+    List<IntegrityReference> findByNetworkIdIsNullOrNetworkId(String networkId);
+}
\ No newline at end of file
@@ -0,0 +1,24 @@
+package com.vr.portal.repository;
+
+import com.vr.portal.entity.MailboxMessage;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface MailboxMessageRepository extends JpaRepository<MailboxMessage, Long> {
+    List<MailboxMessage> findByAgentIdAndCompactionKey(String agentId, String compactionKey);
+    List<MailboxMessage> findByAgentIdOrderByIdAsc(String agentId, Pageable pageable);
+    List<MailboxMessage> findByCreatedAtBefore(LocalDateTime threshold);
+    long countByAgentId(String agentId);
+    
+    @Query("SELECT DISTINCT m.agentId FROM MailboxMessage m")
+    List<String> findAgentIds();
+    
+    @Query("SELECT m.agentId, COUNT(m) FROM MailboxMessage m GROUP BY m.agentId")
+    List<Object[]> countByAgent();
+}
\ No newline at end of file
@@ -0,0 +1,25 @@
+package com.vr.portal.repository;
+
+import com.vr.portal.entity.OperationRollup;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface OperationRollupRepository extends JpaRepository<OperationRollup, Long> {
+    Optional<OperationRollup> findByGranularityAndBucketStartAndAgentIdAndOperationTypeAndStatus(
+            String granularity, LocalDateTime bucketStart, String agentId, String operationType, String status);
+    
+    @Query("SELECT r.agentId, r.operationType, r.status, SUM(r.operationCount) FROM OperationRollup r " +
+            "WHERE r.granularity = 'day' GROUP BY r.agentId, r.operationType, r.status")
+    List<Object[]> sumDailyByAgentTypeAndStatus();
+    
+    @Modifying
+    @Query("DELETE FROM OperationRollup r WHERE r.granularity = :granularity AND r.bucketStart < :threshold")
+    int deleteByGranularityBefore(String granularity, LocalDateTime threshold);
+}
\ No newline at end of file
@@ -0,0 +1,14 @@
+package com.vr.portal.repository;
+
+import com.vr.portal.entity.Rollout;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface RolloutRepository extends JpaRepository<Rollout, Long> {
+    List<Rollout> findByStatus(String status);
+    List<Rollout> findAllByOrderByCreatedAtDesc();
+    List<Rollout> findByNetworkIdOrderByCreatedAtDesc(String networkId);
+}
\ No newline at end of file
@@ -0,0 +1,18 @@
+package com.vr.portal.repository;
+
+import com.vr.portal.entity.RolloutTarget;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface RolloutTargetRepository extends JpaRepository<RolloutTarget, Long> {
+    List<RolloutTarget> findByRolloutIdOrderByWaveAscIdAsc(Long rolloutId);
+    List<RolloutTarget> findByRolloutIdAndStatus(Long rolloutId, String status);
+    List<RolloutTarget> findByRolloutIdAndWaveAndStatusOrderByIdAsc(Long rolloutId, int wave, String status);
+    
+    @Query("SELECT t.wave, t.status, COUNT(t) FROM RolloutTarget t WHERE t.rolloutId = :rolloutId GROUP BY t.wave, t.status")
+    List<Object[]> countByWaveAndStatus(Long rolloutId);
+}
\ No newline at end of file
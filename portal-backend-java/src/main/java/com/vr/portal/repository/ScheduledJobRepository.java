@@ -0,0 +1,37 @@
+package com.vr.portal.repository;
+
+import com.vr.portal.entity.ScheduledJob;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface ScheduledJobRepository extends JpaRepository<ScheduledJob, Long> {
+    List<ScheduledJob> findByStatus(String status);
+    List<ScheduledJob> findAllByOrderByNameAsc();
+    List<ScheduledJob> findByTargetNetworkIdOrderByNameAsc(String targetNetworkId);
+    
+    // Column updates rather than saves, so the scheduler and operator changes never overwrite each other
+    @Modifying
+    @Transactional
+    @Query("UPDATE ScheduledJob j SET j.status = :status, j.nextRunAt = :nextRunAt WHERE j.id = :id")
+    int updateStatus(Long id, String status, LocalDateTime nextRunAt);
+    
+    @Modifying
+    @Transactional
+    @Query("UPDATE ScheduledJob j SET j.lastRunAt = :startedAt, j.lastRunSpreadSeconds = :spreadSeconds, " +
+            "j.lastRunTargets = :targets, j.lastRunDispatched = 0, j.lastRunFailed = 0, " +
+            "j.lastRunCompletedAt = null, j.nextRunAt = :nextRunAt WHERE j.id = :id")
+    int recordRunStarted(Long id, LocalDateTime startedAt, int spreadSeconds, int targets, LocalDateTime nextRunAt);
+    
+    @Modifying
+    @Transactional
+    @Query("UPDATE ScheduledJob j SET j.lastRunDispatched = :dispatched, j.lastRunFailed = :failed, " +
+            "j.lastRunCompletedAt = :completedAt WHERE j.id = :id")
+    int recordRunProgress(Long id, int dispatched, int failed, LocalDateTime completedAt);
+}
\ No newline at end of file
@@ -36,12 +36,16 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
         final String jwt;
         final String username;
         
-        if (authHeader == null || !authHeader.startsWith("Bearer ")) {
+        if (authHeader != null && authHeader.startsWith("Bearer ")) {
+            jwt = authHeader.substring(7);
+        } else if (request.getRequestURI().startsWith("/api/events/") && request.getParameter("access_token") != null) {
+            // EventSource cannot set headers, so event streams may pass the token as a parameter
+            jwt = request.getParameter("access_token");
+        } else {
             filterChain.doFilter(request, response);
             return;
         }
         
-        jwt = authHeader.substring(7);
         username = jwtService.extractUsername(jwt);
         
         if (username != null && SecurityContextHolder.getContext().getAuthentication() == null) {
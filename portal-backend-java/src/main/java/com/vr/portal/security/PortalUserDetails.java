@@ -0,0 +1,45 @@
+package com.vr.portal.security;
+
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.userdetails.User;
+
+import java.util.Collection;
+
+/**
+ * Authenticated portal user, carrying the network the user is confined to.
+ * A null network id means the user may see every network.
+ */
+public class PortalUserDetails extends User {
+    
+    private final Long userId;
+    private final String networkId;
+    
+    public PortalUserDetails(
+            Long userId,
+            String username,
+            String password,
+            String networkId,
+            Collection<? extends GrantedAuthority> authorities
+    ) {
+        super(username, password, authorities);
+        this.userId = userId;
+        this.networkId = networkId;
+    }
+    
+    public Long getUserId() {
+        return userId;
+    }
+    
+    public String getNetworkId() {
+        return networkId;
+    }
+    
+    // Id recorded on operations, rollouts and schedules; null outside a portal user request
+    public static Long userIdOf(Authentication authentication) {
+        if (authentication != null && authentication.getPrincipal() instanceof PortalUserDetails user) {
+            return user.getUserId();
+        }
+        return null;
+    }
+}
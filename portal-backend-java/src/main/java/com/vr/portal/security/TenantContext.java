@@ -0,0 +1,48 @@
+package com.vr.portal.security;
+
+import com.vr.portal.dto.AgentQuery;
+import com.vr.portal.exception.TenantAccessDeniedException;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+/**
+ * Resolves the network the current request is confined to. Users without a network,
+ * and work running outside a request (schedulers, agent messages), are unrestricted.
+ */
+public final class TenantContext {
+    
+    private TenantContext() {}
+    
+    public static String currentNetworkId() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication != null && authentication.getPrincipal() instanceof PortalUserDetails user) {
+            return user.getNetworkId();
+        }
+        return null;
+    }
+    
+    public static boolean canAccess(String networkId) {
+        String tenant = currentNetworkId();
+        return tenant == null || tenant.equals(networkId);
+    }
+    
+    public static void checkAccess(String networkId) {
+        if (!canAccess(networkId)) {
+            throw new TenantAccessDeniedException("Network " + networkId + " is not accessible");
+        }
+    }
+    
+    /**
+     * Pins the query to the caller's network. Asking for another network is an error
+     * rather than an empty result, so a misconfigured portal shows up immediately.
+     */
+    public static AgentQuery scope(AgentQuery query) {
+        String tenant = currentNetworkId();
+        if (tenant == null || tenant.equals(query.networkId())) {
+            return query;
+        }
+        checkAccess(query.networkId() != null ? query.networkId() : tenant);
+        return new AgentQuery(tenant, query.storeId(), query.platform(), query.status(),
+                query.version(), query.versionAtLeast(), query.versionBelow());
+    }
+}
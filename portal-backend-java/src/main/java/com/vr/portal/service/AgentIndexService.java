@@ -0,0 +1,484 @@
+package com.vr.portal.service;
+
+import com.vr.portal.dto.AgentQuery;
+import com.vr.portal.dto.AgentSummary;
+import com.vr.portal.entity.Agent;
+import com.vr.portal.event.AgentChangedEvent;
+import com.vr.portal.event.ChangeType;
+import com.vr.portal.exception.TenantAccessDeniedException;
+import com.vr.portal.repository.AgentRepository;
+import com.vr.portal.security.TenantContext;
+import com.vr.portal.util.Versions;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * In-memory fleet index. Every agent gets a small integer ordinal and each distinct
+ * network, store, platform, version and status value owns a BitSet of ordinals, so
+ * compound filters are a handful of word-wide ANDs regardless of fleet size. Attribute
+ * strings are interned so thousands of agents on the same version share one instance.
+ * <p>
+ * Lookups made for a user confined to a network start from that network's BitSet, so
+ * they never touch another tenant's agents.
+ * <p>
+ * The index is also the read model for the portal's agent endpoints, so listing the
+ * fleet never reads the agents table that heartbeats write to.
+ */
+@Service
+public class AgentIndexService {
+    
+    private final AgentRepository agentRepository;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    
+    private final Map<String, String> internPool = new HashMap<>();
+    private final Map<String, Integer> ordinals = new HashMap<>();
+    private final List<AgentSummary> agents = new ArrayList<>();
+    private final BitSet live = new BitSet();
+    private final Deque<Integer> freeOrdinals = new ArrayDeque<>();
+    
+    private final Map<String, BitSet> byNetwork = new HashMap<>();
+    private final Map<String, BitSet> byStore = new HashMap<>();
+    private final Map<String, BitSet> byPlatform = new HashMap<>();
+    private final Map<String, BitSet> byVersion = new HashMap<>();
+    private final Map<String, BitSet> byStatus = new HashMap<>();
+    
+    // Bumped on every change so derived views can tell whether their cached copy is stale
+    private final Map<String, Long> networkGenerations = new HashMap<>();
+    private long generation;
+    
+    private final AtomicLong appliedChanges = new AtomicLong();
+    private final AtomicLong maxLagMs = new AtomicLong();
+    private volatile long lastLagMs;
+    
+    public AgentIndexService(AgentRepository agentRepository) {
+        this.agentRepository = agentRepository;
+    }
+    
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        List<Agent> all = agentRepository.findAll();
+        
+        lock.writeLock().lock();
+        try {
+            internPool.clear();
+            ordinals.clear();
+            agents.clear();
+            live.clear();
+            freeOrdinals.clear();
+            byNetwork.clear();
+            byStore.clear();
+            byPlatform.clear();
+            byVersion.clear();
+            byStatus.clear();
+            generation++;
+            
+            for (Agent agent : all) {
+                put(AgentSummary.from(agent));
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        
+        System.out.println("Agent index built with " + all.size() + " agents");
+    }
+    
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onAgentChanged(AgentChangedEvent event) {
+        lock.writeLock().lock();
+        try {
+            if (event.changeType() == ChangeType.DELETED) {
+                remove(event.agent().id());
+            } else {
+                put(event.agent());
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        long lag = Math.max(0, System.currentTimeMillis() - event.occurredAt());
+        appliedChanges.incrementAndGet();
+        lastLagMs = lag;
+        maxLagMs.accumulateAndGet(lag, Math::max);
+    }
+    
+    /**
+     * Carries over a bulk last_seen update, which publishes no change events.
+     */
+    public void lastSeenFlushed(Collection<String> agentIds, LocalDateTime lastSeen) {
+        lock.writeLock().lock();
+        try {
+            for (String agentId : agentIds) {
+                Integer ordinal = ordinals.get(agentId);
+                if (ordinal != null) {
+                    AgentSummary agent = agents.get(ordinal);
+                    agents.set(ordinal, new AgentSummary(agent.id(), agent.name(), agent.hostname(), agent.platform(),
+                            agent.version(), agent.status(), lastSeen, agent.ipAddress(), agent.networkId(),
+                            agent.storeId(), agent.createdAt()));
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    public Optional<AgentSummary> get(String agentId) {
+        lock.readLock().lock();
+        try {
+            Integer ordinal = ordinals.get(agentId);
+            if (ordinal == null) {
+                return Optional.empty();
+            }
+            return Optional.of(agents.get(ordinal)).filter(agent -> TenantContext.canAccess(agent.networkId()));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    /**
+     * Refuses agent ids that a user confined to a network may not target. Unknown ids are
+     * refused the same way, so the answer does not reveal which agents exist elsewhere.
+     */
+    public void checkAccess(Collection<String> agentIds) {
+        if (TenantContext.currentNetworkId() == null) {
+            return;
+        }
+        for (String agentId : agentIds) {
+            if (get(agentId).isEmpty()) {
+                throw new TenantAccessDeniedException("Agent " + agentId + " is not accessible");
+            }
+        }
+    }
+    
+    /**
+     * The network all the agents are registered in, or null when they span several
+     * networks or include unknown or unassigned agents. Work whose targets share a
+     * network is visible to that network's users.
+     */
+    public String commonNetwork(Collection<String> agentIds) {
+        lock.readLock().lock();
+        try {
+            String network = null;
+            for (String agentId : agentIds) {
+                Integer ordinal = ordinals.get(agentId);
+                String agentNetwork = ordinal != null ? agents.get(ordinal).networkId() : null;
+                if (agentNetwork == null || (network != null && !network.equals(agentNetwork))) {
+                    return null;
+                }
+                network = agentNetwork;
+            }
+            return network;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("agents", size());
+        stats.put("appliedChanges", appliedChanges.get());
+        stats.put("lastLagMs", lastLagMs);
+        stats.put("maxLagMs", maxLagMs.get());
+        return stats;
+    }
+    
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return ordinals.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    public long generation() {
+        lock.readLock().lock();
+        try {
+            return generation;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    public long networkGeneration(String networkId) {
+        lock.readLock().lock();
+        try {
+            return networkGenerations.getOrDefault(networkId != null ? networkId : "", 0L);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    public Set<String> networks() {
+        String tenant = TenantContext.currentNetworkId();
+        lock.readLock().lock();
+        try {
+            if (tenant != null) {
+                return byNetwork.containsKey(tenant) ? new TreeSet<>(Set.of(tenant)) : new TreeSet<>();
+            }
+            return new TreeSet<>(byNetwork.keySet());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    public Map<String, Integer> versionHistogram(AgentQuery query) {
+        return histogram(byVersion, query);
+    }
+    
+    public Map<String, Integer> platformHistogram(AgentQuery query) {
+        return histogram(byPlatform, query);
+    }
+    
+    public Map<String, Integer> storeHistogram(AgentQuery query) {
+        return histogram(byStore, query);
+    }
+    
+    public int count(AgentQuery query) {
+        lock.readLock().lock();
+        try {
+            return match(query).cardinality();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    // Hands matches to the consumer in batches, holding the read lock only while a batch is copied
+    public void scan(AgentQuery query, int batchSize, Consumer<List<AgentSummary>> consumer) {
+        BitSet matches;
+        lock.readLock().lock();
+        try {
+            matches = match(query);
+        } finally {
+            lock.readLock().unlock();
+        }
+        
+        int next = matches.nextSetBit(0);
+        while (next >= 0) {
+            List<AgentSummary> batch = new ArrayList<>(batchSize);
+            lock.readLock().lock();
+            try {
+                for (; next >= 0 && batch.size() < batchSize; next = matches.nextSetBit(next + 1)) {
+                    AgentSummary agent = next < agents.size() ? agents.get(next) : null;
+                    if (agent != null) {
+                        batch.add(agent);
+                    }
+                }
+            } finally {
+                lock.readLock().unlock();
+            }
+            
+            if (!batch.isEmpty()) {
+                consumer.accept(batch);
+            }
+        }
+    }
+    
+    public Map<String, Object> search(AgentQuery query, int page, int size) {
+        int pageNumber = Math.max(0, page);
+        int pageSize = Math.max(1, Math.min(size, 1000));
+        
+        lock.readLock().lock();
+        try {
+            BitSet matches = match(query);
+            
+            List<AgentSummary> results = new ArrayList<>(pageSize);
+            int skip = pageNumber * pageSize;
+            for (int i = matches.nextSetBit(0); i >= 0 && results.size() < pageSize; i = matches.nextSetBit(i + 1)) {
+                if (skip > 0) {
+                    skip--;
+                } else {
+                    results.add(agents.get(i));
+                }
+            }
+            
+            return Map.of(
+                    "total", matches.cardinality(),
+                    "page", pageNumber,
+                    "size", pageSize,
+                    "agents", results
+            );
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    public List<AgentSummary> findAll(AgentQuery query) {
+        lock.readLock().lock();
+        try {
+            BitSet matches = match(query);
+            List<AgentSummary> results = new ArrayList<>(matches.cardinality());
+            matches.stream().forEach(i -> results.add(agents.get(i)));
+            return results;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    private Map<String, Integer> histogram(Map<String, BitSet> index, AgentQuery query) {
+        lock.readLock().lock();
+        try {
+            BitSet scope = match(query);
+            Map<String, Integer> histogram = new TreeMap<>();
+            index.forEach((key, bits) -> {
+                BitSet overlap = (BitSet) bits.clone();
+                overlap.and(scope);
+                if (!overlap.isEmpty()) {
+                    histogram.put(key, overlap.cardinality());
+                }
+            });
+            return histogram;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    // Caller must hold the read lock
+    private BitSet match(AgentQuery query) {
+        AgentQuery scoped = TenantContext.scope(query);
+        BitSet result;
+        if (scoped.networkId() != null) {
+            BitSet network = byNetwork.get(scoped.networkId());
+            result = network != null ? (BitSet) network.clone() : new BitSet();
+        } else {
+            result = (BitSet) live.clone();
+        }
+        
+        and(result, byStore, scoped.storeId());
+        and(result, byPlatform, scoped.platform());
+        and(result, byStatus, scoped.status());
+        and(result, byVersion, scoped.version());
+        
+        if (scoped.versionAtLeast() != null) {
+            result.and(union(byVersion, v -> Versions.compare(v, scoped.versionAtLeast()) >= 0));
+        }
+        if (scoped.versionBelow() != null) {
+            result.and(union(byVersion, v -> Versions.compare(v, scoped.versionBelow()) < 0));
+        }
+        return result;
+    }
+    
+    // Caller must hold the write lock
+    private void put(AgentSummary agent) {
+        AgentSummary interned = new AgentSummary(
+                agent.id(),
+                agent.name(),
+                agent.hostname(),
+                intern(agent.platform()),
+                intern(agent.version()),
+                intern(agent.status()),
+                agent.lastSeen(),
+                agent.ipAddress(),
+                intern(agent.networkId()),
+                intern(agent.storeId()),
+                agent.createdAt()
+        );
+        
+        Integer ordinal = ordinals.get(agent.id());
+        if (ordinal == null) {
+            ordinal = freeOrdinals.isEmpty() ? agents.size() : freeOrdinals.pop();
+            ordinals.put(agent.id(), ordinal);
+            if (ordinal == agents.size()) {
+                agents.add(interned);
+            } else {
+                agents.set(ordinal, interned);
+            }
+            live.set(ordinal);
+        } else {
+            AgentSummary previous = agents.get(ordinal);
+            unindex(previous, ordinal);
+            agents.set(ordinal, interned);
+            touch(previous.networkId());
+        }
+        
+        index(interned, ordinal);
+        touch(interned.networkId());
+    }
+    
+    // Caller must hold the write lock
+    private void remove(String agentId) {
+        Integer ordinal = ordinals.remove(agentId);
+        if (ordinal == null) {
+            return;
+        }
+        
+        AgentSummary previous = agents.get(ordinal);
+        unindex(previous, ordinal);
+        agents.set(ordinal, null);
+        live.clear(ordinal);
+        freeOrdinals.push(ordinal);
+        touch(previous.networkId());
+    }
+    
+    private void touch(String networkId) {
+        generation++;
+        networkGenerations.merge(networkId != null ? networkId : "", 1L, Long::sum);
+    }
+    
+    private void index(AgentSummary agent, int ordinal) {
+        set(byNetwork, agent.networkId(), ordinal);
+        set(byStore, agent.storeId(), ordinal);
+        set(byPlatform, agent.platform(), ordinal);
+        set(byVersion, agent.version(), ordinal);
+        set(byStatus, agent.status(), ordinal);
+    }
+    
+    private void unindex(AgentSummary agent, int ordinal) {
+        clear(byNetwork, agent.networkId(), ordinal);
+        clear(byStore, agent.storeId(), ordinal);
+        clear(byPlatform, agent.platform(), ordinal);
+        clear(byVersion, agent.version(), ordinal);
+        clear(byStatus, agent.status(), ordinal);
+    }
+    
+    private String intern(String value) {
+        return value != null ? internPool.computeIfAbsent(value, v -> v) : null;
+    }
+    
+    private static void set(Map<String, BitSet> index, String key, int ordinal) {
+        if (key != null) {
+            index.computeIfAbsent(key, k -> new BitSet()).set(ordinal);
+        }
+    }
+    
+    private static void clear(Map<String, BitSet> index, String key, int ordinal) {
+        if (key == null) {
+            return;
+        }
+        BitSet bits = index.get(key);
+        if (bits != null) {
+            bits.clear(ordinal);
+            if (bits.isEmpty()) {
+                index.remove(key);
+            }
+        }
+    }
+    
+    private static void and(BitSet result, Map<String, BitSet> index, String key) {
+        if (key != null) {
+            BitSet bits = index.get(key);
+            if (bits == null) {
+                result.clear();
+            } else {
+                result.and(bits);
+            }
+        }
+    }
+    
+    private static BitSet union(Map<String, BitSet> index, Predicate<String> keyFilter) {
+        BitSet result = new BitSet();
+        index.forEach((key, bits) -> {
+            if (keyFilter.test(key)) {
+                result.or(bits);
+            }
+        });
+        return result;
+    }
+}
\ No newline at end of file
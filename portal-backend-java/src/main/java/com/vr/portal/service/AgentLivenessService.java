@@ -0,0 +1,297 @@
+package com.vr.portal.service;
+
+import com.vr.portal.dto.AgentCommand;
+import com.vr.portal.entity.Agent;
+import com.vr.portal.repository.AgentRepository;
+import com.vr.portal.websocket.WebSocketService;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Agent liveness kept in memory. Pings (HTTP heartbeats and agent_status messages) only
+ * refresh a timestamp; the agents row is written when an agent goes online or offline,
+ * and last_seen is refreshed for all recently seen agents in one bulk update per flush.
+ * Agents with a STOMP session count as alive until the session closes, which the broker's
+ * heart-beats detect, so they need no application pings at all.
+ * <p>
+ * The ping interval handed to agents grows with the fleet, to keep the total ping rate
+ * near target-pings-per-second, and is stretched further while the host is loaded.
+ */
+@Service
+public class AgentLivenessService {
+    
+    private final AgentRepository agentRepository;
+    private final WebSocketService webSocketService;
+    private final AgentIndexService agentIndexService;
+    private final OperatingSystemMXBean operatingSystem = ManagementFactory.getOperatingSystemMXBean();
+    private final Map<String, Liveness> agents = new ConcurrentHashMap<>();
+    // STOMP session id -> agent id
+    private final Map<String, String> sessions = new ConcurrentHashMap<>();
+    private final AtomicLong pings = new AtomicLong();
+    private final AtomicLong transitions = new AtomicLong();
+    private final AtomicLong lastSeenWrites = new AtomicLong();
+    private volatile long intervalMs;
+    private volatile double loadPerCpu;
+    
+    @Value("${app.heartbeat.min-interval-ms:30000}")
+    private long minIntervalMs;
+    
+    @Value("${app.heartbeat.max-interval-ms:300000}")
+    private long maxIntervalMs;
+    
+    @Value("${app.heartbeat.target-pings-per-second:20}")
+    private double targetPingsPerSecond;
+    
+    @Value("${app.heartbeat.high-load:0.75}")
+    private double highLoad;
+    
+    @Value("${app.heartbeat.missed-pings:3}")
+    private int missedPings;
+    
+    @Value("${app.heartbeat.stomp-interval-ms:10000}")
+    private long stompHeartbeatMs;
+    
+    @Value("${app.heartbeat.last-seen-batch-size:500}")
+    private int lastSeenBatchSize;
+    
+    public AgentLivenessService(AgentRepository agentRepository, WebSocketService webSocketService, AgentIndexService agentIndexService) {
+        this.agentRepository = agentRepository;
+        this.webSocketService = webSocketService;
+        this.agentIndexService = agentIndexService;
+    }
+    
+    @PostConstruct
+    public void initialize() {
+        // Agents left online by the previous run may have been told any interval, so they get the longest
+        long now = System.currentTimeMillis();
+        for (Agent agent : agentRepository.findByStatus("online")) {
+            agents.put(agent.getId(), new Liveness(true, now, maxIntervalMs));
+        }
+        recomputeInterval();
+    }
+    
+    /**
+     * Records an HTTP heartbeat and returns the interval the agent should use from now on,
+     * or -1 for an unknown agent.
+     */
+    public long heartbeat(String agentId) {
+        Liveness liveness = track(agentId);
+        if (liveness == null) {
+            return -1;
+        }
+        long interval = intervalMs;
+        ping(agentId, liveness, interval);
+        return interval;
+    }
+    
+    /**
+     * Records an agent_status message; the agent hears about a changed interval over STOMP.
+     */
+    public void statusPing(String agentId) {
+        Liveness liveness = track(agentId);
+        if (liveness == null) {
+            return;
+        }
+        long interval = intervalMs;
+        long told = liveness.toldIntervalMs;
+        ping(agentId, liveness, interval);
+        if (told != interval && webSocketService.isAgentConnected(agentId)) {
+            webSocketService.sendToAgent(agentId, new AgentCommand.HeartbeatConfig(null, interval, stompHeartbeatMs));
+        }
+    }
+    
+    public void connected(String agentId, String sessionId) {
+        Liveness liveness = track(agentId);
+        if (liveness == null) {
+            return;
+        }
+        if (sessionId != null) {
+            sessions.put(sessionId, agentId);
+            liveness.sessionId = sessionId;
+        }
+        ping(agentId, liveness, intervalMs);
+    }
+    
+    public void disconnected(String agentId) {
+        Liveness liveness = agents.get(agentId);
+        if (liveness == null) {
+            return;
+        }
+        if (liveness.sessionId != null) {
+            sessions.remove(liveness.sessionId);
+            liveness.sessionId = null;
+        }
+        transition(agentId, liveness, false);
+    }
+    
+    /**
+     * Keeps the in-memory state in step with a status the caller has already saved.
+     */
+    public void statusSaved(String agentId, String status) {
+        Liveness liveness = agents.computeIfAbsent(agentId, id -> new Liveness(false, 0, intervalMs));
+        synchronized (liveness) {
+            liveness.online = "online".equals(status);
+            liveness.lastSeen = System.currentTimeMillis();
+            liveness.toldIntervalMs = intervalMs;
+        }
+    }
+    
+    public void removed(String agentId) {
+        Liveness liveness = agents.remove(agentId);
+        if (liveness != null && liveness.sessionId != null) {
+            sessions.remove(liveness.sessionId);
+        }
+    }
+    
+    public long getIntervalMs() {
+        return intervalMs;
+    }
+    
+    public long getStompHeartbeatMs() {
+        return stompHeartbeatMs;
+    }
+    
+    @EventListener
+    public void onSessionDisconnect(SessionDisconnectEvent event) {
+        String agentId = sessions.remove(event.getSessionId());
+        if (agentId == null) {
+            return;
+        }
+        Liveness liveness = agents.get(agentId);
+        if (liveness != null && event.getSessionId().equals(liveness.sessionId)) {
+            liveness.sessionId = null;
+            transition(agentId, liveness, false);
+        }
+    }
+    
+    @Scheduled(fixedDelayString = "${app.heartbeat.sweep-interval-ms:5000}")
+    public void sweep() {
+        long now = System.currentTimeMillis();
+        agents.forEach((agentId, liveness) -> {
+            // STOMP sessions are watched by the broker's heart-beats instead
+            if (liveness.online && liveness.sessionId == null
+                    && now - liveness.lastSeen > liveness.toldIntervalMs * missedPings) {
+                transition(agentId, liveness, false);
+            }
+        });
+    }
+    
+    @Scheduled(fixedDelayString = "${app.heartbeat.recompute-interval-ms:10000}")
+    public void recomputeInterval() {
+        double systemLoad = operatingSystem.getSystemLoadAverage();
+        loadPerCpu = systemLoad < 0 ? 0 : systemLoad / operatingSystem.getAvailableProcessors();
+        
+        double interval = Math.max(minIntervalMs, agents.size() * 1000.0 / targetPingsPerSecond);
+        if (loadPerCpu > highLoad) {
+            // Up to twice as long once every core is busy
+            interval *= Math.min(2.0, 1 + (loadPerCpu - highLoad) / Math.max(0.01, 1 - highLoad));
+        }
+        interval = Math.min(maxIntervalMs, interval);
+        intervalMs = Math.max(1000, Math.round(interval / 1000) * 1000);
+    }
+    
+    @Scheduled(fixedDelayString = "${app.heartbeat.last-seen-flush-ms:300000}")
+    public void flushLastSeen() {
+        List<String> seen = new ArrayList<>();
+        agents.forEach((agentId, liveness) -> {
+            if (liveness.lastSeenDirty) {
+                liveness.lastSeenDirty = false;
+                seen.add(agentId);
+            }
+        });
+        LocalDateTime now = LocalDateTime.now();
+        for (int from = 0; from < seen.size(); from += lastSeenBatchSize) {
+            List<String> batch = seen.subList(from, Math.min(seen.size(), from + lastSeenBatchSize));
+            lastSeenWrites.addAndGet(agentRepository.updateLastSeen(batch, now));
+        }
+        agentIndexService.lastSeenFlushed(seen, now);
+    }
+    
+    public Map<String, Object> getStats() {
+        long online = agents.values().stream().filter(liveness -> liveness.online).count();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("intervalMs", intervalMs);
+        stats.put("stompHeartbeatMs", stompHeartbeatMs);
+        stats.put("loadPerCpu", Math.round(loadPerCpu * 100) / 100.0);
+        stats.put("tracked", agents.size());
+        stats.put("online", online);
+        stats.put("stompSessions", sessions.size());
+        stats.put("pings", pings.get());
+        stats.put("transitions", transitions.get());
+        stats.put("lastSeenWrites", lastSeenWrites.get());
+        return stats;
+    }
+    
+    private Liveness track(String agentId) {
+        Liveness liveness = agents.get(agentId);
+        if (liveness != null) {
+            return liveness;
+        }
+        // First ping since startup from an agent that was offline: one read to learn it exists
+        return agentRepository.findById(agentId)
+                .map(agent -> agents.computeIfAbsent(agentId,
+                        id -> new Liveness("online".equals(agent.getStatus()), System.currentTimeMillis(), intervalMs)))
+                .orElse(null);
+    }
+    
+    private void ping(String agentId, Liveness liveness, long interval) {
+        pings.incrementAndGet();
+        synchronized (liveness) {
+            liveness.lastSeen = System.currentTimeMillis();
+            liveness.lastSeenDirty = true;
+            liveness.toldIntervalMs = interval;
+        }
+        transition(agentId, liveness, true);
+    }
+    
+    private void transition(String agentId, Liveness liveness, boolean online) {
+        synchronized (liveness) {
+            if (liveness.online == online) {
+                return;
+            }
+            liveness.online = online;
+        }
+        transitions.incrementAndGet();
+        String status = online ? "online" : "offline";
+        
+        agentRepository.findById(agentId).ifPresent(agent -> {
+            agent.setStatus(status);
+            agent.setLastSeen(LocalDateTime.now());
+            agentRepository.save(agent);
+        });
+        
+        webSocketService.broadcastToPortal(Map.of(
+                "type", "agent_status_change",
+                "agentId", agentId,
+                "status", status
+        ));
+    }
+    
+    private static final class Liveness {
+        volatile boolean online;
+        volatile long lastSeen;
+        volatile boolean lastSeenDirty;
+        volatile long toldIntervalMs;
+        volatile String sessionId;
+        
+        Liveness(boolean online, long lastSeen, long toldIntervalMs) {
+            this.online = online;
+            this.lastSeen = lastSeen;
+            this.toldIntervalMs = toldIntervalMs;
+        }
+    }
+}
@@ -0,0 +1,216 @@
+package com.vr.portal.service;
+
+import com.vr.portal.dto.AgentCommand;
+import com.vr.portal.entity.FileOperation;
+import com.vr.portal.entity.MailboxMessage;
+import com.vr.portal.repository.FileOperationRepository;
+import com.vr.portal.repository.MailboxMessageRepository;
+import com.vr.portal.websocket.AgentMessageCodec;
+import com.vr.portal.websocket.WebSocketService;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * Durable per-agent mailbox for messages dispatched while the agent is not connected.
+ * Queued messages are compacted on write: a newer upload to the same path, or another
+ * system_info, file_list of the same directory or restart, replaces the older one,
+ * whose operation is failed as superseded. When the agent reconnects the mailbox is
+ * drained oldest-first at a bounded rate. Anything older than max-age is expired.
+ */
+@Service
+public class AgentMailboxService {
+    
+    private final MailboxMessageRepository mailboxRepository;
+    private final FileOperationRepository fileOperationRepository;
+    private final WebSocketService webSocketService;
+    private final TransactionTemplate transactionTemplate;
+    private final AgentMessageCodec agentMessageCodec;
+    private final Set<String> draining = ConcurrentHashMap.newKeySet();
+    
+    @Value("${app.mailbox.enabled:true}")
+    private boolean enabled;
+    
+    @Value("${app.mailbox.max-messages-per-agent:100}")
+    private int maxMessagesPerAgent;
+    
+    @Value("${app.mailbox.max-age-hours:24}")
+    private long maxAgeHours;
+    
+    @Value("${app.mailbox.drain-batch-per-agent:5}")
+    private int drainBatchPerAgent;
+    
+    @Value("${app.mailbox.drain-max-per-tick:100}")
+    private int drainMaxPerTick;
+    
+    public AgentMailboxService(
+            MailboxMessageRepository mailboxRepository,
+            FileOperationRepository fileOperationRepository,
+            WebSocketService webSocketService,
+            TransactionTemplate transactionTemplate,
+            AgentMessageCodec agentMessageCodec
+    ) {
+        this.mailboxRepository = mailboxRepository;
+        this.fileOperationRepository = fileOperationRepository;
+        this.webSocketService = webSocketService;
+        this.transactionTemplate = transactionTemplate;
+        this.agentMessageCodec = agentMessageCodec;
+    }
+    
+    /**
+     * Whether a message for this agent has to go through the mailbox: the agent is
+     * offline, or older messages are still being drained and must stay in order.
+     */
+    public boolean shouldQueue(String agentId) {
+        return enabled && (!webSocketService.isAgentConnected(agentId) || draining.contains(agentId));
+    }
+    
+    public void enqueue(String agentId, AgentCommand command) {
+        // Stored as JSON whatever the agent's encoding, which may change by the time it reconnects
+        String payload = agentMessageCodec.toJson(command);
+        Long operationId = command.operationId();
+        String compactionKey = command.compactionKey();
+        transactionTemplate.executeWithoutResult(status -> {
+            if (compactionKey != null) {
+                List<MailboxMessage> superseded = mailboxRepository.findByAgentIdAndCompactionKey(agentId, compactionKey);
+                mailboxRepository.deleteAllInBatch(superseded);
+                failOperations(superseded, "Superseded by operation " + operationId);
+            }
+            
+            mailboxRepository.save(new MailboxMessage(agentId, operationId, compactionKey, payload));
+            
+            long overflow = mailboxRepository.countByAgentId(agentId) - maxMessagesPerAgent;
+            if (overflow > 0) {
+                List<MailboxMessage> dropped = mailboxRepository.findByAgentIdOrderByIdAsc(agentId, PageRequest.of(0, (int) overflow));
+                mailboxRepository.deleteAllInBatch(dropped);
+                failOperations(dropped, "Dropped from a full mailbox");
+            }
+        });
+        
+        // The agent may have connected while this was being written
+        if (webSocketService.isAgentConnected(agentId)) {
+            draining.add(agentId);
+        }
+    }
+    
+    public void onAgentConnected(String agentId) {
+        if (enabled) {
+            draining.add(agentId);
+        }
+    }
+    
+    @Scheduled(fixedDelayString = "${app.mailbox.drain-interval-ms:1000}")
+    public void drain() {
+        int budget = drainMaxPerTick;
+        for (String agentId : draining) {
+            if (budget <= 0) {
+                break;
+            }
+            if (!webSocketService.isAgentConnected(agentId)) {
+                draining.remove(agentId);
+                continue;
+            }
+            
+            List<MailboxMessage> batch = mailboxRepository.findByAgentIdOrderByIdAsc(
+                    agentId, PageRequest.of(0, Math.min(drainBatchPerAgent, budget)));
+            if (batch.isEmpty()) {
+                draining.remove(agentId);
+                // Re-check in case a message was queued after the read
+                if (mailboxRepository.countByAgentId(agentId) > 0) {
+                    draining.add(agentId);
+                }
+                continue;
+            }
+            
+            Set<Long> pending = pendingOperations(batch);
+            List<MailboxMessage> unreadable = new ArrayList<>();
+            for (MailboxMessage queued : batch) {
+                if (queued.getOperationId() != null && !pending.contains(queued.getOperationId())) {
+                    continue;
+                }
+                AgentCommand command;
+                try {
+                    command = readPayload(queued);
+                } catch (IllegalStateException e) {
+                    // A corrupt row must not hold up the rest of the mailbox
+                    System.err.println(e.getMessage() + ": " + e.getCause().getMessage());
+                    unreadable.add(queued);
+                    continue;
+                }
+                webSocketService.sendToAgent(agentId, command);
+            }
+            mailboxRepository.deleteAllInBatch(batch);
+            failOperations(unreadable, "Queued command could not be read");
+            budget -= batch.size();
+        }
+    }
+    
+    @Scheduled(fixedDelayString = "${app.mailbox.cleanup-interval-ms:300000}")
+    public void expire() {
+        List<MailboxMessage> expired = mailboxRepository.findByCreatedAtBefore(LocalDateTime.now().minusHours(maxAgeHours));
+        if (expired.isEmpty()) {
+            return;
+        }
+        
+        transactionTemplate.executeWithoutResult(status -> {
+            mailboxRepository.deleteAllInBatch(expired);
+            failOperations(expired, "Expired in mailbox before the agent reconnected");
+        });
+    }
+    
+    public Map<String, Object> getStats() {
+        Map<String, Long> byAgent = new TreeMap<>();
+        for (Object[] row : mailboxRepository.countByAgent()) {
+            byAgent.put((String) row[0], ((Number) row[1]).longValue());
+        }
+        
+        return Map.of(
+                "queuedMessages", byAgent.values().stream().mapToLong(Long::longValue).sum(),
+                "agents", byAgent.size(),
+                "draining", draining.size(),
+                "byAgent", byAgent
+        );
+    }
+    
+    private Set<Long> pendingOperations(List<MailboxMessage> messages) {
+        List<Long> operationIds = messages.stream().map(MailboxMessage::getOperationId).filter(Objects::nonNull).toList();
+        // Operations that already timed out or were completed elsewhere are not re-sent
+        return fileOperationRepository.findAllById(operationIds).stream()
+                .filter(operation -> "pending".equals(operation.getStatus()))
+                .map(FileOperation::getId)
+                .collect(Collectors.toSet());
+    }
+    
+    private void failOperations(List<MailboxMessage> messages, String reason) {
+        List<Long> operationIds = messages.stream().map(MailboxMessage::getOperationId).filter(Objects::nonNull).toList();
+        if (operationIds.isEmpty()) {
+            return;
+        }
+        
+        List<FileOperation> operations = fileOperationRepository.findAllById(operationIds);
+        for (FileOperation operation : operations) {
+            if ("pending".equals(operation.getStatus())) {
+                operation.setStatus("failed");
+                operation.setErrorMessage(reason);
+                operation.setCompletedAt(LocalDateTime.now());
+            }
+        }
+        fileOperationRepository.saveAll(operations);
+    }
+    
+    private AgentCommand readPayload(MailboxMessage message) {
+        try {
+            return agentMessageCodec.fromJson(message.getPayload());
+        } catch (IOException e) {
+            throw new IllegalStateException("Unreadable mailbox message " + message.getId(), e);
+        }
+    }
+}
\ No newline at end of file
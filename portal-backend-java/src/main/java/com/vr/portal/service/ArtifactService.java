@@ -0,0 +1,254 @@
+package com.vr.portal.service;
+
+import com.vr.portal.security.TenantContext;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.FileTime;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.*;
+import java.util.stream.Stream;
+
+/**
+ * Content-addressed store for files pushed to agents. Uploads are hashed while they
+ * are written to disk and stored under their SHA-256, so the agent message only needs
+ * a signed URL and the digest. Recently served artifacts stay memory-mapped in an LRU
+ * bounded by total mapped bytes.
+ * <p>
+ * Uploads by users confined to a network are recorded in a sidecar file next to the
+ * artifact, and such users can only look up artifacts their network uploaded, so a
+ * digest seen elsewhere cannot be turned into a download URL for another network's file.
+ */
+@Service
+public class ArtifactService {
+    
+    private static final String HMAC = "HmacSHA256";
+    private static final String NETWORKS_SUFFIX = ".networks";
+    
+    @Value("${app.artifacts.dir:data/artifacts}")
+    private String artifactsDir;
+    
+    @Value("${app.artifacts.base-url:http://localhost:${server.port:3000}}")
+    private String baseUrl;
+    
+    @Value("${app.artifacts.url-ttl-seconds:86400}")
+    private long urlTtlSeconds;
+    
+    @Value("${app.artifacts.retention-days:7}")
+    private long retentionDays;
+    
+    @Value("${app.artifacts.mmap-cache-bytes:268435456}")
+    private long mmapCacheBytes;
+    
+    @Value("${app.artifacts.mmap-max-file-bytes:16777216}")
+    private long mmapMaxFileBytes;
+    
+    @Value("${app.jwt.secret}")
+    private String secret;
+    
+    private final LinkedHashMap<String, MappedByteBuffer> mapped = new LinkedHashMap<>(16, 0.75f, true);
+    private long mappedBytes;
+    
+    public record Artifact(String digest, long size, String fileName, String url) {}
+    
+    public Artifact store(MultipartFile file) throws IOException {
+        Path directory = Paths.get(artifactsDir);
+        Files.createDirectories(directory);
+        Path temp = Files.createTempFile(directory, "upload-", ".tmp");
+        
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            long size;
+            try (InputStream in = file.getInputStream(); OutputStream out = Files.newOutputStream(temp)) {
+                byte[] buffer = new byte[64 * 1024];
+                int read;
+                size = 0;
+                while ((read = in.read(buffer)) != -1) {
+                    digest.update(buffer, 0, read);
+                    out.write(buffer, 0, read);
+                    size += read;
+                }
+            }
+            
+            String hex = HexFormat.of().formatHex(digest.digest());
+            Path target = directory.resolve(hex);
+            if (Files.exists(target)) {
+                // Same content was uploaded before; keep the existing copy warm for retention
+                Files.setLastModifiedTime(target, FileTime.fromMillis(System.currentTimeMillis()));
+            } else {
+                Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+            }
+            grantToCurrentNetwork(hex);
+            return new Artifact("sha256:" + hex, size, file.getOriginalFilename(), signedUrl(hex));
+            
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+    
+    /**
+     * Looks up a stored artifact by digest and signs a fresh URL for it. The lookup also
+     * restarts the artifact's retention, so files pushed on a schedule are not removed.
+     */
+    public Optional<Artifact> find(String digest, String fileName) {
+        String hex = digest != null && digest.startsWith("sha256:") ? digest.substring(7) : digest;
+        if (hex == null || !visibleToCurrentNetwork(hex)) {
+            return Optional.empty();
+        }
+        return resolve(hex).map(path -> {
+            try {
+                Files.setLastModifiedTime(path, FileTime.fromMillis(System.currentTimeMillis()));
+                return new Artifact("sha256:" + hex, Files.size(path), fileName, signedUrl(hex));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+    
+    public Optional<Path> resolve(String hex) {
+        if (!hex.matches("[0-9a-f]{64}")) {
+            return Optional.empty();
+        }
+        Path path = Paths.get(artifactsDir).resolve(hex);
+        return Files.isRegularFile(path) ? Optional.of(path) : Optional.empty();
+    }
+    
+    public boolean verify(String hex, long expires, String signature) {
+        if (signature == null || expires < System.currentTimeMillis() / 1000) {
+            return false;
+        }
+        return MessageDigest.isEqual(
+                sign(hex, expires).getBytes(StandardCharsets.UTF_8),
+                signature.getBytes(StandardCharsets.UTF_8)
+        );
+    }
+    
+    /**
+     * Returns a read-only mapping of the artifact when it is small enough to cache,
+     * evicting the least recently served mappings to stay within the cache budget.
+     */
+    public synchronized Optional<MappedByteBuffer> mapped(String hex, Path path, long size) throws IOException {
+        if (size == 0 || size > mmapMaxFileBytes || size > mmapCacheBytes) {
+            return Optional.empty();
+        }
+        
+        MappedByteBuffer buffer = mapped.get(hex);
+        if (buffer == null) {
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            }
+            mapped.put(hex, buffer);
+            mappedBytes += size;
+            
+            Iterator<Map.Entry<String, MappedByteBuffer>> eldest = mapped.entrySet().iterator();
+            while (mappedBytes > mmapCacheBytes && eldest.hasNext()) {
+                Map.Entry<String, MappedByteBuffer> entry = eldest.next();
+                if (!entry.getKey().equals(hex)) {
+                    mappedBytes -= entry.getValue().capacity();
+                    eldest.remove();
+                }
+            }
+        }
+        return Optional.of(buffer);
+    }
+    
+    @Scheduled(cron = "${app.artifacts.cleanup-cron:0 30 3 * * *}")
+    public void removeExpired() {
+        Path directory = Paths.get(artifactsDir);
+        if (!Files.isDirectory(directory)) {
+            return;
+        }
+        
+        long cutoff = System.currentTimeMillis() - retentionDays * 86_400_000L;
+        try (Stream<Path> files = Files.list(directory)) {
+            // Network sidecars go with their artifact rather than by their own age
+            files.filter(path -> !path.getFileName().toString().endsWith(NETWORKS_SUFFIX) && isOlderThan(path, cutoff)).forEach(path -> {
+                try {
+                    synchronized (this) {
+                        MappedByteBuffer buffer = mapped.remove(path.getFileName().toString());
+                        if (buffer != null) {
+                            mappedBytes -= buffer.capacity();
+                        }
+                    }
+                    Files.deleteIfExists(path);
+                    Files.deleteIfExists(networksFile(path.getFileName().toString()));
+                } catch (IOException e) {
+                    System.err.println("Failed to remove artifact " + path + ": " + e.getMessage());
+                }
+            });
+        } catch (IOException e) {
+            System.err.println("Failed to clean up artifacts: " + e.getMessage());
+        }
+    }
+    
+    private synchronized void grantToCurrentNetwork(String hex) throws IOException {
+        String tenant = TenantContext.currentNetworkId();
+        if (tenant == null) {
+            return;
+        }
+        Path file = networksFile(hex);
+        List<String> networks = Files.exists(file) ? Files.readAllLines(file, StandardCharsets.UTF_8) : List.of();
+        if (!networks.contains(tenant)) {
+            Files.writeString(file, tenant + "\n", StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        }
+    }
+    
+    private synchronized boolean visibleToCurrentNetwork(String hex) {
+        String tenant = TenantContext.currentNetworkId();
+        if (tenant == null) {
+            return true;
+        }
+        if (!hex.matches("[0-9a-f]{64}")) {
+            return false;
+        }
+        try {
+            Path file = networksFile(hex);
+            return Files.exists(file) && Files.readAllLines(file, StandardCharsets.UTF_8).contains(tenant);
+        } catch (IOException e) {
+            return false;
+        }
+    }
+    
+    private Path networksFile(String hex) {
+        return Paths.get(artifactsDir).resolve(hex + NETWORKS_SUFFIX);
+    }
+    
+    private boolean isOlderThan(Path path, long cutoff) {
+        try {
+            return Files.getLastModifiedTime(path).toMillis() < cutoff;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+    
+    private String signedUrl(String hex) {
+        long expires = System.currentTimeMillis() / 1000 + urlTtlSeconds;
+        return baseUrl + "/api/artifacts/" + hex + "?expires=" + expires + "&sig=" + sign(hex, expires);
+    }
+    
+    private String sign(String hex, long expires) {
+        try {
+            Mac mac = Mac.getInstance(HMAC);
+            mac.init(new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), HMAC));
+            byte[] signature = mac.doFinal((hex + ":" + expires).getBytes(StandardCharsets.UTF_8));
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(signature);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,367 @@
+package com.vr.portal.service;
+
+import com.vr.portal.dto.AgentSummary;
+import com.vr.portal.dto.OperationSummary;
+import com.vr.portal.entity.Agent;
+import com.vr.portal.event.AgentChangedEvent;
+import com.vr.portal.event.ChangeType;
+import com.vr.portal.event.FileOperationChangedEvent;
+import com.vr.portal.repository.AgentRepository;
+import com.vr.portal.repository.FileOperationRepository;
+import com.vr.portal.repository.OperationRollupRepository;
+import com.vr.portal.security.TenantContext;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * Dashboard counters kept in memory and updated from entity change events, so the
+ * portal never triggers full-table COUNTs. A periodic reconciliation rebuilds the
+ * counters from the database (raw rows plus retention rollups) to correct drift.
+ * Every counter is also kept per network, and users confined to a network only ever
+ * see their own network's figures.
+ */
+@Service
+public class DashboardStatsService {
+    
+    private static final String UNASSIGNED = "unassigned";
+    
+    private final AgentRepository agentRepository;
+    private final FileOperationRepository fileOperationRepository;
+    private final OperationRollupRepository rollupRepository;
+    
+    private final Object lock = new Object();
+    private StatsState state = new StatsState();
+    private volatile Map<String, Object> cachedSnapshot;
+    private final Map<String, Map<String, Object>> cachedNetworkSnapshots = new ConcurrentHashMap<>();
+    private volatile LocalDateTime lastReconciledAt;
+    private volatile long lastReconcileDrift;
+    // Changes seen while a reconciliation reads the database, replayed onto its result
+    private List<Consumer<StatsState>> pendingDeltas;
+    
+    @Value("${app.stats.bucket-hours:48}")
+    private int bucketHours;
+    
+    public DashboardStatsService(
+            AgentRepository agentRepository,
+            FileOperationRepository fileOperationRepository,
+            OperationRollupRepository rollupRepository
+    ) {
+        this.agentRepository = agentRepository;
+        this.fileOperationRepository = fileOperationRepository;
+        this.rollupRepository = rollupRepository;
+    }
+    
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onAgentChanged(AgentChangedEvent event) {
+        AgentSummary agent = event.agent();
+        AgentKey key = event.changeType() == ChangeType.DELETED ? null : AgentKey.of(agent);
+        
+        synchronized (lock) {
+            if (pendingDeltas != null) {
+                pendingDeltas.add(target -> applyAgent(target, agent.id(), key));
+            }
+            if (applyAgent(state, agent.id(), key)) {
+                invalidate();
+            }
+        }
+    }
+    
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onOperationChanged(FileOperationChangedEvent event) {
+        if (event.changeType() == ChangeType.UPDATED && !event.statusChanged()) {
+            return;
+        }
+        
+        synchronized (lock) {
+            if (pendingDeltas != null) {
+                pendingDeltas.add(target -> applyOperation(target, event));
+            }
+            applyOperation(state, event);
+            invalidate();
+        }
+    }
+    
+    public Map<String, Object> getAgentStats() {
+        String tenant = TenantContext.currentNetworkId();
+        synchronized (lock) {
+            StatsState scope = tenant != null ? state.networks.getOrDefault(tenant, new StatsState()) : state;
+            long total = scope.agentCount();
+            long online = scope.agentsByStatus.getOrDefault("online", 0L);
+            return Map.of(
+                    "total", total,
+                    "online", online,
+                    "offline", total - online
+            );
+        }
+    }
+    
+    public Map<String, Object> getDashboardStats() {
+        String tenant = TenantContext.currentNetworkId();
+        if (tenant != null) {
+            return getNetworkStats(tenant);
+        }
+        
+        Map<String, Object> snapshot = cachedSnapshot;
+        if (snapshot != null) {
+            return snapshot;
+        }
+        
+        synchronized (lock) {
+            if (cachedSnapshot == null) {
+                cachedSnapshot = buildSnapshot(state);
+            }
+            return cachedSnapshot;
+        }
+    }
+    
+    public Map<String, Object> getNetworkStats(String networkId) {
+        Map<String, Object> snapshot = cachedNetworkSnapshots.get(networkId);
+        if (snapshot != null) {
+            return snapshot;
+        }
+        
+        synchronized (lock) {
+            return cachedNetworkSnapshots.computeIfAbsent(networkId,
+                    key -> buildSnapshot(state.networks.getOrDefault(key, new StatsState())));
+        }
+    }
+    
+    @EventListener(ApplicationReadyEvent.class)
+    public void initialize() {
+        reconcile();
+    }
+    
+    @Scheduled(
+            fixedDelayString = "${app.stats.reconcile-interval-ms:300000}",
+            initialDelayString = "${app.stats.reconcile-interval-ms:300000}"
+    )
+    public synchronized void reconcile() {
+        synchronized (lock) {
+            pendingDeltas = new ArrayList<>();
+        }
+        
+        try {
+            StatsState rebuilt = rebuild();
+            
+            synchronized (lock) {
+                // Changes committed while the database was read; one that committed just
+                // before the read may count twice until the next reconciliation
+                pendingDeltas.forEach(delta -> delta.accept(rebuilt));
+                lastReconcileDrift = Math.abs(state.operationsTotal - rebuilt.operationsTotal)
+                        + Math.abs(state.agents.size() - rebuilt.agents.size());
+                state = rebuilt;
+                lastReconciledAt = LocalDateTime.now();
+                invalidate();
+            }
+        } finally {
+            synchronized (lock) {
+                pendingDeltas = null;
+            }
+        }
+        
+        if (lastReconcileDrift > 0) {
+            System.out.println("Dashboard statistics reconciled with drift of " + lastReconcileDrift);
+        }
+    }
+    
+    private StatsState rebuild() {
+        StatsState rebuilt = new StatsState();
+        
+        for (Agent agent : agentRepository.findAll()) {
+            AgentKey key = AgentKey.of(AgentSummary.from(agent));
+            rebuilt.agents.put(agent.getId(), key);
+            countAgent(rebuilt, key, 1);
+        }
+        
+        for (Object[] row : fileOperationRepository.countByNetworkTypeAndStatus()) {
+            countTotals(rebuilt, (String) row[0], (String) row[1], statusOf((String) row[2]), ((Number) row[3]).longValue());
+        }
+        // Retention removes raw rows but keeps their counts in the daily rollups, which are
+        // per agent; operations of agents removed since then count as unassigned
+        for (Object[] row : rollupRepository.sumDailyByAgentTypeAndStatus()) {
+            AgentKey agent = rebuilt.agents.get((String) row[0]);
+            countTotals(rebuilt, agent != null ? agent.networkId() : null,
+                    (String) row[1], statusOf((String) row[2]), ((Number) row[3]).longValue());
+        }
+        
+        for (Object[] row : fileOperationRepository.findNetworkCreatedAtAndStatusSince(bucketCutoff())) {
+            LocalDateTime hour = hourOf((LocalDateTime) row[1]);
+            String status = statusOf((String) row[2]);
+            rebuilt.countBucket(hour, status, 1);
+            rebuilt.network((String) row[0]).countBucket(hour, status, 1);
+        }
+        return rebuilt;
+    }
+    
+    // Returns whether the counters changed
+    private static boolean applyAgent(StatsState target, String agentId, AgentKey key) {
+        AgentKey previous = key == null ? target.agents.remove(agentId) : target.agents.put(agentId, key);
+        if (key != null && key.equals(previous)) {
+            return false;
+        }
+        if (previous != null) {
+            countAgent(target, previous, -1);
+        }
+        if (key != null) {
+            countAgent(target, key, 1);
+        }
+        return previous != null || key != null;
+    }
+    
+    private void applyOperation(StatsState target, FileOperationChangedEvent event) {
+        OperationSummary operation = event.operation();
+        String status = statusOf(operation.status());
+        LocalDateTime hour = hourOf(operation.createdAt());
+        
+        for (StatsState scope : List.of(target, target.network(operation.networkId()))) {
+            switch (event.changeType()) {
+                case CREATED -> scope.countOperation(operation.operationType(), status, hour, 1);
+                case UPDATED -> {
+                    String previous = statusOf(event.previousStatus());
+                    increment(scope.operationsByStatus, previous, -1);
+                    increment(scope.operationsByStatus, status, 1);
+                    scope.countBucket(hour, previous, -1);
+                    scope.countBucket(hour, status, 1);
+                }
+                case DELETED -> scope.countOperation(operation.operationType(), statusOf(event.previousStatus()), hour, -1);
+            }
+            scope.trimBuckets(bucketCutoff());
+        }
+    }
+    
+    // Caller must hold the lock
+    private void invalidate() {
+        cachedSnapshot = null;
+        cachedNetworkSnapshots.clear();
+    }
+    
+    private static void countAgent(StatsState target, AgentKey key, long delta) {
+        target.countAgent(key, delta);
+        target.network(key.networkId()).countAgent(key, delta);
+    }
+    
+    private static void countTotals(StatsState target, String networkId, String type, String status, long delta) {
+        target.countTotals(type, status, delta);
+        target.network(networkId).countTotals(type, status, delta);
+    }
+    
+    private Map<String, Object> buildSnapshot(StatsState source) {
+        long totalAgents = source.agentCount();
+        long onlineAgents = source.agentsByStatus.getOrDefault("online", 0L);
+        
+        Map<String, Object> agents = new LinkedHashMap<>();
+        agents.put("total", totalAgents);
+        agents.put("online", onlineAgents);
+        agents.put("offline", totalAgents - onlineAgents);
+        agents.put("byStatus", Map.copyOf(source.agentsByStatus));
+        agents.put("byNetwork", Map.copyOf(source.agentsByNetwork));
+        agents.put("byStore", Map.copyOf(source.agentsByStore));
+        
+        List<Map<String, Object>> hourly = new ArrayList<>();
+        source.buckets.forEach((hour, counts) -> hourly.add(Map.of(
+                "hour", hour,
+                "byStatus", Map.copyOf(counts)
+        )));
+        
+        Map<String, Object> operations = new LinkedHashMap<>();
+        operations.put("total", source.operationsTotal);
+        operations.put("successful", source.operationsByStatus.getOrDefault("completed", 0L));
+        operations.put("failed", source.operationsByStatus.getOrDefault("failed", 0L));
+        operations.put("byType", Map.copyOf(source.operationsByType));
+        operations.put("byStatus", Map.copyOf(source.operationsByStatus));
+        operations.put("hourly", List.copyOf(hourly));
+        
+        Map<String, Object> snapshot = new LinkedHashMap<>();
+        snapshot.put("agents", agents);
+        snapshot.put("operations", operations);
+        snapshot.put("generatedAt", LocalDateTime.now());
+        if (lastReconciledAt != null) {
+            snapshot.put("reconciledAt", lastReconciledAt);
+        }
+        snapshot.put("reconcileDrift", lastReconcileDrift);
+        return snapshot;
+    }
+    
+    private LocalDateTime bucketCutoff() {
+        return LocalDateTime.now().truncatedTo(ChronoUnit.HOURS).minusHours(bucketHours - 1L);
+    }
+    
+    private static LocalDateTime hourOf(LocalDateTime timestamp) {
+        return (timestamp != null ? timestamp : LocalDateTime.now()).truncatedTo(ChronoUnit.HOURS);
+    }
+    
+    private static String statusOf(String status) {
+        return status != null ? status : "pending";
+    }
+    
+    private static void increment(Map<String, Long> counters, String key, long delta) {
+        counters.merge(key != null ? key : UNASSIGNED, delta, (a, b) -> a + b == 0 ? null : a + b);
+    }
+    
+    private record AgentKey(String status, String networkId, String storeId) {
+        static AgentKey of(AgentSummary agent) {
+            return new AgentKey(agent.status(), agent.networkId(), agent.storeId());
+        }
+    }
+    
+    private static class StatsState {
+        final Map<String, AgentKey> agents = new HashMap<>();
+        final Map<String, Long> agentsByStatus = new HashMap<>();
+        final Map<String, Long> agentsByNetwork = new HashMap<>();
+        final Map<String, Long> agentsByStore = new HashMap<>();
+        final Map<String, Long> operationsByType = new HashMap<>();
+        final Map<String, Long> operationsByStatus = new HashMap<>();
+        final TreeMap<LocalDateTime, Map<String, Long>> buckets = new TreeMap<>();
+        // Per-network counters; only filled on the top-level state
+        final Map<String, StatsState> networks = new HashMap<>();
+        long operationsTotal;
+        
+        StatsState network(String networkId) {
+            return networks.computeIfAbsent(networkId != null ? networkId : UNASSIGNED, key -> new StatsState());
+        }
+        
+        long agentCount() {
+            return agentsByStatus.values().stream().mapToLong(Long::longValue).sum();
+        }
+        
+        void countAgent(AgentKey key, long delta) {
+            increment(agentsByStatus, key.status(), delta);
+            increment(agentsByNetwork, key.networkId(), delta);
+            increment(agentsByStore, key.storeId(), delta);
+        }
+        
+        void countOperation(String type, String status, LocalDateTime hour, long delta) {
+            countTotals(type, status, delta);
+            countBucket(hour, status, delta);
+        }
+        
+        void countTotals(String type, String status, long delta) {
+            operationsTotal += delta;
+            increment(operationsByType, type, delta);
+            increment(operationsByStatus, status, delta);
+        }
+        
+        void countBucket(LocalDateTime hour, String status, long delta) {
+            increment(buckets.computeIfAbsent(hour, h -> new HashMap<>()), status, delta);
+        }
+        
+        void trimBuckets(LocalDateTime cutoff) {
+            buckets.headMap(cutoff).clear();
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,610 @@
+package com.vr.portal.service;
+
+import com.vr.portal.dto.AgentCommand;
+import com.vr.portal.dto.AgentEvent;
+import com.vr.portal.dto.AgentQuery;
+import com.vr.portal.dto.AgentSummary;
+import com.vr.portal.event.AgentChangedEvent;
+import com.vr.portal.event.ChangeType;
+import com.vr.portal.security.TenantContext;
+import com.vr.portal.util.PathTrie;
+import com.vr.portal.websocket.WebSocketService;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Fleet-wide index of the files in agents' watched directories, kept from listings the
+ * agents push on /app/agent/files. Paths are interned in a segment trie and hashes in a
+ * dictionary that also holds the size, so an agent's listing is three int columns (path
+ * node, hash id, mtime) sorted by path node. Each file node maps every hash seen for it
+ * to a BitSet of agent ordinals, which answers "who has this path", "who has it with
+ * another hash" and "who is missing it" with a few BitSet operations and no agent round
+ * trip.
+ * <p>
+ * Listings are incremental: each one names the version it applies on top of, and an
+ * agent whose base does not match what the index holds is asked for a full listing. The
+ * index lives in memory only, so after a restart every agent is asked for a full listing
+ * as it reconnects.
+ * <p>
+ * Paths and hashes are interned for good, so removed files leave dead trie nodes and
+ * dictionary entries behind. Once either has doubled since the last compaction, both
+ * are rebuilt from the live listings, which keeps the cost amortized per change.
+ */
+@Service
+public class FileIndexService {
+    
+    private static final int MIN_COMPACT_ENTRIES = 4096;
+    
+    private final WebSocketService webSocketService;
+    private final AgentIndexService agentIndexService;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final boolean caseInsensitive;
+    
+    // Guarded by lock
+    private PathTrie paths;
+    private Map<String, Integer> hashIds = new HashMap<>();
+    private List<String> hashes = new ArrayList<>();
+    private List<Long> hashSizes = new ArrayList<>();
+    private final Map<Integer, Map<Integer, BitSet>> holders = new HashMap<>();
+    private final Map<String, Integer> ordinals = new HashMap<>();
+    private final List<AgentFiles> agents = new ArrayList<>();
+    private final BitSet reporting = new BitSet();
+    private final Deque<Integer> freeOrdinals = new ArrayDeque<>();
+    private long files;
+    private int compactedPathNodes;
+    private int compactedHashes;
+    
+    private final AtomicLong compactions = new AtomicLong();
+    private final AtomicLong listingsApplied = new AtomicLong();
+    private final AtomicLong fullListings = new AtomicLong();
+    private final AtomicLong resyncsRequested = new AtomicLong();
+    private final AtomicLong entriesRejected = new AtomicLong();
+    
+    @Value("${app.file-index.enabled:true}")
+    private boolean enabled;
+    
+    @Value("${app.file-index.watched-paths:}")
+    private List<String> watchedPaths;
+    
+    @Value("${app.file-index.report-interval-ms:900000}")
+    private long reportIntervalMs;
+    
+    @Value("${app.file-index.max-files-per-agent:5000}")
+    private int maxFilesPerAgent;
+    
+    public FileIndexService(
+            WebSocketService webSocketService,
+            AgentIndexService agentIndexService,
+            @Value("${app.file-index.case-insensitive:true}") boolean caseInsensitive
+    ) {
+        this.webSocketService = webSocketService;
+        this.agentIndexService = agentIndexService;
+        this.caseInsensitive = caseInsensitive;
+        this.paths = new PathTrie(caseInsensitive);
+    }
+    
+    /**
+     * Tells a newly connected agent what to watch, asking for a full listing when the
+     * index holds none for it.
+     */
+    public void onAgentConnected(String agentId) {
+        if (!enabled || watchedPaths.isEmpty()) {
+            return;
+        }
+        boolean known;
+        lock.readLock().lock();
+        try {
+            known = ordinals.containsKey(agentId);
+        } finally {
+            lock.readLock().unlock();
+        }
+        webSocketService.sendToAgent(agentId, new AgentCommand.FileIndexConfig(null, watchedPaths, reportIntervalMs, known ? null : true));
+    }
+    
+    public void apply(AgentEvent.FileListing listing) {
+        if (!enabled || listing.agentId() == null || listing.version() == null) {
+            return;
+        }
+        // Unknown agents are not indexed; the id must belong to a registered agent
+        if (agentIndexService.get(listing.agentId()).isEmpty()) {
+            return;
+        }
+        
+        boolean resync;
+        lock.writeLock().lock();
+        try {
+            resync = !merge(listing);
+            compactIfWasteful();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        
+        if (resync) {
+            resyncsRequested.incrementAndGet();
+            if (webSocketService.isAgentConnected(listing.agentId())) {
+                webSocketService.sendToAgent(listing.agentId(),
+                        new AgentCommand.FileIndexConfig(null, watchedPaths, reportIntervalMs, true));
+            }
+            return;
+        }
+        listingsApplied.incrementAndGet();
+        if (listing.full()) {
+            fullListings.incrementAndGet();
+        }
+    }
+    
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onAgentChanged(AgentChangedEvent event) {
+        if (event.changeType() != ChangeType.DELETED) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            Integer ordinal = ordinals.remove(event.agent().id());
+            if (ordinal != null) {
+                clear(ordinal, agents.get(ordinal));
+                agents.set(ordinal, null);
+                reporting.clear(ordinal);
+                freeOrdinals.push(ordinal);
+                compactIfWasteful();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    /**
+     * Agents that have the file, optionally only those whose copy has (or does not have)
+     * the given hash, or with missing set, the reporting agents that do not have it.
+     */
+    public Map<String, Object> findAgents(String path, String hash, String hashNot, boolean missing, AgentQuery query, int limit) {
+        String wanted = normalizeHash(hash);
+        String unwanted = normalizeHash(hashNot);
+        BitSet scope = scope(query);
+        
+        lock.readLock().lock();
+        try {
+            int node = paths.find(path);
+            Map<Integer, BitSet> byHash = node >= 0 ? holders.getOrDefault(node, Map.of()) : Map.of();
+            List<Map<String, Object>> results = new ArrayList<>();
+            int matches;
+            
+            if (missing) {
+                BitSet lacking = (BitSet) reporting.clone();
+                byHash.values().forEach(lacking::andNot);
+                lacking.and(scope);
+                matches = lacking.cardinality();
+                lacking.stream().limit(limit).forEach(ordinal -> results.add(Map.of("agentId", agents.get(ordinal).agentId)));
+            } else {
+                BitSet found = new BitSet();
+                byHash.forEach((hashId, bits) -> {
+                    String value = hashes.get(hashId);
+                    if ((wanted == null || wanted.equals(value)) && (unwanted == null || !unwanted.equals(value))) {
+                        found.or(bits);
+                    }
+                });
+                found.and(scope);
+                matches = found.cardinality();
+                found.stream().limit(limit).forEach(ordinal -> results.add(entry(agents.get(ordinal), node)));
+            }
+            
+            Map<String, Object> response = new LinkedHashMap<>();
+            response.put("path", node >= 0 ? paths.path(node) : path);
+            response.put("matches", matches);
+            response.put("agents", results);
+            return response;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    /**
+     * How many agents hold each version of the file, most common first.
+     */
+    public List<Map<String, Object>> versions(String path, AgentQuery query) {
+        BitSet scope = scope(query);
+        lock.readLock().lock();
+        try {
+            int node = paths.find(path);
+            List<Map<String, Object>> versions = new ArrayList<>();
+            if (node < 0) {
+                return versions;
+            }
+            holders.getOrDefault(node, Map.of()).forEach((hashId, bits) -> {
+                BitSet inScope = (BitSet) bits.clone();
+                inScope.and(scope);
+                if (!inScope.isEmpty()) {
+                    Map<String, Object> version = new LinkedHashMap<>();
+                    version.put("hash", hashes.get(hashId));
+                    version.put("size", hashSizes.get(hashId));
+                    version.put("agents", inScope.cardinality());
+                    versions.add(version);
+                }
+            });
+            versions.sort(Comparator.comparing(version -> -(int) version.get("agents")));
+            return versions;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    /**
+     * Files under a directory prefix with the number of agents and distinct hashes each.
+     */
+    public List<Map<String, Object>> search(String prefix, AgentQuery query, int limit) {
+        BitSet scope = scope(query);
+        lock.readLock().lock();
+        try {
+            int root = paths.find(prefix);
+            List<Map<String, Object>> results = new ArrayList<>();
+            if (root < 0) {
+                return results;
+            }
+            paths.subtree(root, node -> {
+                Map<Integer, BitSet> byHash = holders.get(node);
+                if (byHash == null) {
+                    return;
+                }
+                int agentCount = 0;
+                int hashCount = 0;
+                for (BitSet bits : byHash.values()) {
+                    BitSet inScope = (BitSet) bits.clone();
+                    inScope.and(scope);
+                    if (!inScope.isEmpty()) {
+                        agentCount += inScope.cardinality();
+                        hashCount++;
+                    }
+                }
+                if (agentCount > 0) {
+                    results.add(Map.of("path", paths.path(node), "agents", agentCount, "hashes", hashCount));
+                }
+            });
+            // The walk is in no particular order, so the limit applies after sorting
+            results.sort(Comparator.comparing(result -> (String) result.get("path")));
+            return results.size() > limit ? List.copyOf(results.subList(0, limit)) : results;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    /**
+     * One agent's indexed files, optionally under a prefix.
+     */
+    public Optional<Map<String, Object>> agentFiles(String agentId, String prefix) {
+        if (agentIndexService.get(agentId).isEmpty()) {
+            return Optional.empty();
+        }
+        lock.readLock().lock();
+        try {
+            Integer ordinal = ordinals.get(agentId);
+            if (ordinal == null) {
+                return Optional.empty();
+            }
+            AgentFiles listing = agents.get(ordinal);
+            BitSet under = null;
+            if (prefix != null && !prefix.isBlank()) {
+                under = new BitSet();
+                int root = paths.find(prefix);
+                if (root >= 0) {
+                    paths.subtree(root, under::set);
+                }
+            }
+            List<Map<String, Object>> entries = new ArrayList<>();
+            for (int i = 0; i < listing.nodes.length; i++) {
+                if (under == null || under.get(listing.nodes[i])) {
+                    entries.add(entry(listing, listing.nodes[i]));
+                }
+            }
+            Map<String, Object> response = new LinkedHashMap<>();
+            response.put("agentId", agentId);
+            response.put("version", listing.version);
+            response.put("reportedAt", listing.reportedAt);
+            response.put("files", entries);
+            return Optional.of(response);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        lock.readLock().lock();
+        try {
+            stats.put("agents", ordinals.size());
+            stats.put("files", files);
+            stats.put("pathNodes", paths.size());
+            stats.put("distinctHashes", hashes.size());
+        } finally {
+            lock.readLock().unlock();
+        }
+        stats.put("compactions", compactions.get());
+        stats.put("listingsApplied", listingsApplied.get());
+        stats.put("fullListings", fullListings.get());
+        stats.put("resyncsRequested", resyncsRequested.get());
+        stats.put("entriesRejected", entriesRejected.get());
+        return stats;
+    }
+    
+    // Caller must hold the write lock; false when the listing does not apply to what is held
+    private boolean merge(AgentEvent.FileListing listing) {
+        Integer ordinal = ordinals.get(listing.agentId());
+        AgentFiles current = ordinal != null ? agents.get(ordinal) : null;
+        if (!listing.full() && (current == null || !Objects.equals(listing.baseVersion(), current.version))) {
+            return false;
+        }
+        
+        if (ordinal == null) {
+            ordinal = freeOrdinals.isEmpty() ? agents.size() : freeOrdinals.pop();
+            current = new AgentFiles(listing.agentId());
+            ordinals.put(listing.agentId(), ordinal);
+            if (ordinal == agents.size()) {
+                agents.add(current);
+            } else {
+                agents.set(ordinal, current);
+            }
+            reporting.set(ordinal);
+        } else if (listing.full()) {
+            clear(ordinal, current);
+            current.nodes = new int[0];
+            current.hashes = new int[0];
+            current.mtimes = new int[0];
+        }
+        
+        // Later entries for the same path win; removals apply after changes
+        TreeMap<Integer, long[]> changes = new TreeMap<>();
+        for (AgentEvent.FileEntry file : listing.changed() != null ? listing.changed() : List.<AgentEvent.FileEntry>of()) {
+            String hash = normalizeHash(file.hash());
+            if (file.path() == null || file.path().isBlank() || hash == null) {
+                entriesRejected.incrementAndGet();
+                continue;
+            }
+            changes.put(paths.intern(file.path()), new long[]{hashId(hash, file.size()), file.mtime()});
+        }
+        for (String removed : listing.removed() != null ? listing.removed() : List.<String>of()) {
+            int node = paths.find(removed);
+            if (node >= 0) {
+                changes.put(node, null);
+            }
+        }
+        
+        int[] nodes = current.nodes;
+        int capacity = nodes.length + changes.size();
+        int[] mergedNodes = new int[capacity];
+        int[] mergedHashes = new int[capacity];
+        int[] mergedMtimes = new int[capacity];
+        int count = 0;
+        int i = 0;
+        Iterator<Map.Entry<Integer, long[]>> pending = changes.entrySet().iterator();
+        Map.Entry<Integer, long[]> change = pending.hasNext() ? pending.next() : null;
+        
+        while (i < nodes.length || change != null) {
+            if (change == null || (i < nodes.length && nodes[i] < change.getKey())) {
+                // Unchanged entry
+                mergedNodes[count] = nodes[i];
+                mergedHashes[count] = current.hashes[i];
+                mergedMtimes[count] = current.mtimes[i];
+                count++;
+                i++;
+                continue;
+            }
+            
+            int node = change.getKey();
+            long[] value = change.getValue();
+            boolean existing = i < nodes.length && nodes[i] == node;
+            int previousHash = existing ? current.hashes[i] : -1;
+            if (existing) {
+                i++;
+            }
+            change = pending.hasNext() ? pending.next() : null;
+            
+            if (value == null) {
+                if (existing) {
+                    unpost(node, previousHash, ordinal);
+                    files--;
+                }
+                continue;
+            }
+            if (!existing && count >= maxFilesPerAgent) {
+                entriesRejected.incrementAndGet();
+                continue;
+            }
+            int hashId = (int) value[0];
+            if (previousHash != hashId) {
+                if (existing) {
+                    unpost(node, previousHash, ordinal);
+                } else {
+                    files++;
+                }
+                post(node, hashId, ordinal);
+            }
+            mergedNodes[count] = node;
+            mergedHashes[count] = hashId;
+            mergedMtimes[count] = (int) value[1];
+            count++;
+        }
+        
+        current.nodes = Arrays.copyOf(mergedNodes, count);
+        current.hashes = Arrays.copyOf(mergedHashes, count);
+        current.mtimes = Arrays.copyOf(mergedMtimes, count);
+        current.version = listing.version();
+        current.reportedAt = System.currentTimeMillis();
+        return true;
+    }
+    
+    // Caller must hold the write lock
+    private void clear(int ordinal, AgentFiles listing) {
+        for (int i = 0; i < listing.nodes.length; i++) {
+            unpost(listing.nodes[i], listing.hashes[i], ordinal);
+        }
+        files -= listing.nodes.length;
+    }
+    
+    private void post(int node, int hashId, int ordinal) {
+        holders.computeIfAbsent(node, key -> new HashMap<>(2))
+                .computeIfAbsent(hashId, key -> new BitSet())
+                .set(ordinal);
+    }
+    
+    private void unpost(int node, int hashId, int ordinal) {
+        Map<Integer, BitSet> byHash = holders.get(node);
+        BitSet bits = byHash != null ? byHash.get(hashId) : null;
+        if (bits == null) {
+            return;
+        }
+        bits.clear(ordinal);
+        if (bits.isEmpty()) {
+            byHash.remove(hashId);
+            if (byHash.isEmpty()) {
+                holders.remove(node);
+            }
+        }
+    }
+    
+    private int hashId(String hash, long size) {
+        Integer id = hashIds.get(hash);
+        if (id == null) {
+            id = hashes.size();
+            hashIds.put(hash, id);
+            hashes.add(hash);
+            hashSizes.add(size);
+        }
+        return id;
+    }
+    
+    // Caller must hold the write lock
+    private void compactIfWasteful() {
+        if (paths.size() > 2 * Math.max(compactedPathNodes, MIN_COMPACT_ENTRIES)
+                || hashes.size() > 2 * Math.max(compactedHashes, MIN_COMPACT_ENTRIES)) {
+            compact();
+        }
+    }
+    
+    /**
+     * Re-interns the paths and hashes of every live listing into a fresh trie and
+     * dictionary, renumbering each listing (re-sorted by its new path nodes) and the
+     * holder bitmaps. Caller must hold the write lock.
+     */
+    private void compact() {
+        PathTrie compactedPaths = new PathTrie(caseInsensitive);
+        Map<String, Integer> compactedHashIds = new HashMap<>();
+        List<String> compactedHashList = new ArrayList<>();
+        List<Long> compactedSizes = new ArrayList<>();
+        Map<Integer, Integer> nodeMap = new HashMap<>();
+        Map<Integer, Integer> hashMap = new HashMap<>();
+        holders.clear();
+        
+        for (int ordinal = 0; ordinal < agents.size(); ordinal++) {
+            AgentFiles listing = agents.get(ordinal);
+            if (listing == null) {
+                continue;
+            }
+            int count = listing.nodes.length;
+            // New node in the high half, old position in the low half, so one sort reorders all columns
+            long[] order = new long[count];
+            for (int i = 0; i < count; i++) {
+                int node = nodeMap.computeIfAbsent(listing.nodes[i], old -> compactedPaths.intern(paths.path(old)));
+                order[i] = ((long) node << 32) | i;
+            }
+            Arrays.sort(order);
+            
+            int[] nodes = new int[count];
+            int[] hashColumn = new int[count];
+            int[] mtimes = new int[count];
+            for (int i = 0; i < count; i++) {
+                int position = (int) order[i];
+                int hashId = hashMap.computeIfAbsent(listing.hashes[position], old -> {
+                    compactedHashIds.put(hashes.get(old), compactedHashList.size());
+                    compactedHashList.add(hashes.get(old));
+                    compactedSizes.add(hashSizes.get(old));
+                    return compactedHashList.size() - 1;
+                });
+                nodes[i] = (int) (order[i] >>> 32);
+                hashColumn[i] = hashId;
+                mtimes[i] = listing.mtimes[position];
+                post(nodes[i], hashId, ordinal);
+            }
+            listing.nodes = nodes;
+            listing.hashes = hashColumn;
+            listing.mtimes = mtimes;
+        }
+        
+        paths = compactedPaths;
+        hashIds = compactedHashIds;
+        hashes = compactedHashList;
+        hashSizes = compactedSizes;
+        compactedPathNodes = paths.size();
+        compactedHashes = hashes.size();
+        compactions.incrementAndGet();
+    }
+    
+    // Caller must hold the read lock
+    private Map<String, Object> entry(AgentFiles listing, int node) {
+        int index = Arrays.binarySearch(listing.nodes, node);
+        int hashId = listing.hashes[index];
+        Map<String, Object> entry = new LinkedHashMap<>();
+        entry.put("agentId", listing.agentId);
+        entry.put("path", paths.path(node));
+        entry.put("hash", hashes.get(hashId));
+        entry.put("size", hashSizes.get(hashId));
+        entry.put("mtime", Integer.toUnsignedLong(listing.mtimes[index]));
+        return entry;
+    }
+    
+    /**
+     * Ordinals of the agents the query and the caller's network allow.
+     */
+    private BitSet scope(AgentQuery query) {
+        boolean filtered = TenantContext.currentNetworkId() != null
+                || !query.equals(new AgentQuery(null, null, null, null, null, null, null));
+        Set<String> allowed = null;
+        if (filtered) {
+            allowed = new HashSet<>();
+            for (AgentSummary agent : agentIndexService.findAll(query)) {
+                allowed.add(agent.id());
+            }
+        }
+        
+        lock.readLock().lock();
+        try {
+            if (allowed == null) {
+                return (BitSet) reporting.clone();
+            }
+            BitSet scope = new BitSet();
+            for (String agentId : allowed) {
+                Integer ordinal = ordinals.get(agentId);
+                if (ordinal != null) {
+                    scope.set(ordinal);
+                }
+            }
+            return scope;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    private static String normalizeHash(String hash) {
+        if (hash == null || hash.isBlank()) {
+            return null;
+        }
+        return hash.trim().toLowerCase(Locale.ROOT);
+    }
+    
+    private static final class AgentFiles {
+        final String agentId;
+        // Sorted by path node; hash ids and mtimes (epoch seconds, unsigned) line up with it
+        int[] nodes = new int[0];
+        int[] hashes = new int[0];
+        int[] mtimes = new int[0];
+        long version;
+        long reportedAt;
+        
+        AgentFiles(String agentId) {
+            this.agentId = agentId;
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,145 @@
+package com.vr.portal.service;
+
+import com.vr.portal.dto.AgentCommand;
+import com.vr.portal.entity.FileOperation;
+import com.vr.portal.dto.AgentSummary;
+import com.vr.portal.repository.FileOperationRepository;
+import com.vr.portal.security.TenantContext;
+import com.vr.portal.websocket.WebSocketService;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+@Service
+public class FileOperationService {
+    
+    private final FileOperationRepository fileOperationRepository;
+    private final WebSocketService webSocketService;
+    private final RequestThrottleService requestThrottleService;
+    private final IdempotencyService idempotencyService;
+    private final AgentMailboxService agentMailboxService;
+    private final OperationCoalescingService operationCoalescingService;
+    private final AgentIndexService agentIndexService;
+    
+    public FileOperationService(
+            FileOperationRepository fileOperationRepository,
+            WebSocketService webSocketService,
+            RequestThrottleService requestThrottleService,
+            IdempotencyService idempotencyService,
+            AgentMailboxService agentMailboxService,
+            OperationCoalescingService operationCoalescingService,
+            AgentIndexService agentIndexService
+    ) {
+        this.fileOperationRepository = fileOperationRepository;
+        this.webSocketService = webSocketService;
+        this.requestThrottleService = requestThrottleService;
+        this.idempotencyService = idempotencyService;
+        this.agentMailboxService = agentMailboxService;
+        this.operationCoalescingService = operationCoalescingService;
+        this.agentIndexService = agentIndexService;
+    }
+    
+    /**
+     * Entry point for operator requests. A retry carrying an idempotency key that was
+     * already used gets the original operation id back without a new record or agent
+     * message, and read-only requests join an identical one already in flight. Otherwise
+     * the per-agent rate limit applies before dispatching. Internal schedulers (rollouts,
+     * fleet executions) bound their own concurrency and call dispatch directly.
+     */
+    public Long submit(
+            String idempotencyKey,
+            String agentId,
+            String operationType,
+            String filePath,
+            Long userId,
+            AgentCommand command
+    ) {
+        // Checked before the idempotency lookup too, so a replayed key cannot reach another network's agent
+        agentIndexService.checkAccess(List.of(agentId));
+        String fingerprint = command.type() + "|" + agentId + "|" + filePath;
+        return idempotencyService.execute(idempotencyKey, userId, fingerprint, () ->
+                operationCoalescingService.execute(agentId, command.type(), filePath, register -> {
+                    requestThrottleService.checkAgent(agentId);
+                    return dispatch(agentId, operationType, filePath, userId, command,
+                            operation -> register.accept(operation.getId())).getId();
+                })
+        );
+    }
+    
+    public FileOperation dispatch(
+            String agentId,
+            String operationType,
+            String filePath,
+            Long userId,
+            AgentCommand command
+    ) {
+        return dispatch(agentId, operationType, filePath, userId, command, operation -> {});
+    }
+    
+    /**
+     * Variant of dispatch with a hook that runs after the record is saved but before the
+     * agent sees the message, so callers can register the operation id before a
+     * result can possibly arrive. Users confined to a network can only target agents
+     * registered in it; schedulers dispatching outside a request are not restricted.
+     */
+    public FileOperation dispatch(
+            String agentId,
+            String operationType,
+            String filePath,
+            Long userId,
+            AgentCommand command,
+            Consumer<FileOperation> beforeSend
+    ) {
+        agentIndexService.checkAccess(List.of(agentId));
+        
+        // Create file operation record
+        FileOperation operation = new FileOperation(agentId, operationType, filePath, userId);
+        operation.setNetworkId(agentIndexService.get(agentId).map(AgentSummary::networkId).orElse(null));
+        operation = fileOperationRepository.save(operation);
+        
+        beforeSend.accept(operation);
+        // Send to agent via WebSocket
+        send(agentId, command.withOperationId(operation.getId()));
+        return operation;
+    }
+    
+    /**
+     * Sends a further message for an operation that already exists, for exchanges
+     * that take more than one round trip with the agent.
+     */
+    public void send(String agentId, AgentCommand command) {
+        if (agentMailboxService.shouldQueue(agentId)) {
+            // Offline or still draining older messages; delivered in order on reconnect
+            agentMailboxService.enqueue(agentId, command);
+        } else {
+            webSocketService.sendToAgent(agentId, command);
+        }
+    }
+    
+    /**
+     * Whether the caller may see or change the operation. Users confined to a network
+     * only reach operations dispatched to agents in it.
+     */
+    public boolean canAccess(Long operationId) {
+        String tenant = TenantContext.currentNetworkId();
+        return tenant == null || fileOperationRepository.findById(operationId)
+                .map(operation -> tenant.equals(operation.getNetworkId()))
+                .orElse(false);
+    }
+    
+    public Optional<FileOperation> complete(Long operationId, String status, String errorMessage) {
+        return fileOperationRepository.findById(operationId).map(operation -> {
+            operation.setStatus(status);
+            operation.setCompletedAt(LocalDateTime.now());
+            
+            if (errorMessage != null) {
+                operation.setErrorMessage(errorMessage);
+            }
+            
+            return fileOperationRepository.save(operation);
+        });
+    }
+}
\ No newline at end of file
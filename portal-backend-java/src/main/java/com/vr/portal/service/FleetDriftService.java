@@ -0,0 +1,162 @@
+package com.vr.portal.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.vr.portal.dto.AgentQuery;
+import com.vr.portal.dto.AgentSummary;
+import com.vr.portal.security.TenantContext;
+import com.vr.portal.util.Versions;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Version and platform drift across the fleet, computed from the agent index. Each
+ * network's section is cached together with the network's index generation, so an
+ * agent registering or upgrading only invalidates the section of its own network.
+ * For a user confined to a network the fleet section is that network's, and it is
+ * cached under the network rather than shared with other callers.
+ */
+@Service
+public class FleetDriftService {
+    
+    private static final int MAX_CACHED_SECTIONS = 10_000;
+    private static final int SCAN_BATCH_SIZE = 500;
+    
+    private final AgentIndexService agentIndexService;
+    private final ObjectMapper objectMapper;
+    private final Map<SectionKey, CachedSection> sections = new ConcurrentHashMap<>();
+    
+    public FleetDriftService(AgentIndexService agentIndexService, ObjectMapper objectMapper) {
+        this.agentIndexService = agentIndexService;
+        this.objectMapper = objectMapper;
+    }
+    
+    public String latestVersion() {
+        return agentIndexService.versionHistogram(all()).keySet().stream()
+                .max(Versions.COMPARATOR)
+                .orElse(null);
+    }
+    
+    public void writeReport(String targetVersion, OutputStream out) throws IOException {
+        String target = targetVersion != null ? targetVersion : latestVersion();
+        
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(out)) {
+            generator.writeStartObject();
+            generator.writeStringField("targetVersion", target);
+            generator.writeObjectField("generatedAt", LocalDateTime.now());
+            generator.writeObjectField("fleet", fleetSection(target));
+            
+            generator.writeArrayFieldStart("networks");
+            for (String networkId : agentIndexService.networks()) {
+                generator.writeObject(networkSection(target, networkId));
+                generator.flush();
+            }
+            generator.writeEndArray();
+            generator.writeEndObject();
+        }
+    }
+    
+    public void writeOutdatedAgents(String targetVersion, String networkId, String storeId, OutputStream out)
+            throws IOException {
+        String target = targetVersion != null ? targetVersion : latestVersion();
+        if (target == null) {
+            return;
+        }
+        
+        AgentQuery query = new AgentQuery(networkId, storeId, null, null, null, null, target);
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(out)) {
+            generator.setRootValueSeparator(null);
+            agentIndexService.scan(query, SCAN_BATCH_SIZE, batch -> writeLines(generator, batch));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+    
+    private Map<String, Object> fleetSection(String target) {
+        // A user confined to a network sees only that network as the fleet, cached apart from everyone else's
+        String tenant = TenantContext.currentNetworkId();
+        long generation = tenant != null ? agentIndexService.networkGeneration(tenant) : agentIndexService.generation();
+        return cached(new SectionKey(target, tenant, true), generation, () -> {
+            AgentQuery scope = all();
+            
+            Map<String, Object> fleet = new LinkedHashMap<>();
+            fleet.put("total", agentIndexService.count(scope));
+            fleet.put("outdated", target != null ? agentIndexService.count(outdated(null, target)) : 0);
+            fleet.put("versions", agentIndexService.versionHistogram(scope));
+            fleet.put("platforms", agentIndexService.platformHistogram(scope));
+            return fleet;
+        });
+    }
+    
+    private Map<String, Object> networkSection(String target, String networkId) {
+        return cached(new SectionKey(target, networkId, false), agentIndexService.networkGeneration(networkId), () -> {
+            AgentQuery scope = new AgentQuery(networkId, null, null, null, null, null, null);
+            Map<String, Integer> storeTotals = agentIndexService.storeHistogram(scope);
+            Map<String, Integer> storeOutdated = target != null
+                    ? agentIndexService.storeHistogram(outdated(networkId, target))
+                    : Map.of();
+            
+            List<Map<String, Object>> stores = new ArrayList<>(storeTotals.size());
+            storeTotals.forEach((storeId, total) -> stores.add(Map.of(
+                    "storeId", storeId,
+                    "total", total,
+                    "outdated", storeOutdated.getOrDefault(storeId, 0)
+            )));
+            
+            Map<String, Object> section = new LinkedHashMap<>();
+            section.put("networkId", networkId);
+            section.put("total", agentIndexService.count(scope));
+            section.put("outdated", storeOutdated.values().stream().mapToInt(Integer::intValue).sum());
+            section.put("versions", agentIndexService.versionHistogram(scope));
+            section.put("platforms", agentIndexService.platformHistogram(scope));
+            section.put("stores", stores);
+            return section;
+        });
+    }
+    
+    private Map<String, Object> cached(SectionKey key, long generation, Supplier<Map<String, Object>> builder) {
+        CachedSection section = sections.get(key);
+        if (section != null && section.generation() == generation) {
+            return section.data();
+        }
+        
+        if (sections.size() > MAX_CACHED_SECTIONS) {
+            sections.clear();
+        }
+        
+        Map<String, Object> data = builder.get();
+        sections.put(key, new CachedSection(generation, data));
+        return data;
+    }
+    
+    private void writeLines(JsonGenerator generator, List<AgentSummary> batch) {
+        try {
+            for (AgentSummary agent : batch) {
+                generator.writeObject(agent);
+                generator.writeRaw('\n');
+            }
+            generator.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+    
+    private static AgentQuery all() {
+        return new AgentQuery(null, null, null, null, null, null, null);
+    }
+    
+    private static AgentQuery outdated(String networkId, String target) {
+        return new AgentQuery(networkId, null, null, null, null, null, target);
+    }
+    
+    private record SectionKey(String targetVersion, String networkId, boolean fleet) {}
+    
+    private record CachedSection(long generation, Map<String, Object> data) {}
+}
\ No newline at end of file
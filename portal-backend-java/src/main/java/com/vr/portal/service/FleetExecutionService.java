@@ -0,0 +1,422 @@
+package com.vr.portal.service;
+
+import com.vr.portal.dto.AgentCommand;
+import com.vr.portal.dto.AgentQuery;
+import com.vr.portal.dto.AgentSummary;
+import com.vr.portal.dto.FleetExecuteRequest;
+import com.vr.portal.security.TenantContext;
+import com.vr.portal.websocket.WebSocketService;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs one command on many agents with a bounded number in flight. Results are
+ * grouped by a hash of status and output, so each distinct output is stored once
+ * with the agents that produced it, and progress goes out as periodic summaries on
+ * /topic/fleet-executions/{id} instead of one portal message per agent.
+ */
+@Service
+public class FleetExecutionService {
+    
+    private static final int SAMPLE_AGENTS = 10;
+    
+    private final FileOperationService fileOperationService;
+    private final AgentIndexService agentIndexService;
+    private final WebSocketService webSocketService;
+    private final AtomicLong executionIds = new AtomicLong();
+    private final Map<Long, Execution> executions = new ConcurrentHashMap<>();
+    private final Map<Long, Execution> executionsByOperation = new ConcurrentHashMap<>();
+    
+    @Value("${app.fleet-execute.max-concurrency:50}")
+    private int defaultMaxConcurrency;
+    
+    @Value("${app.fleet-execute.timeout-seconds:120}")
+    private int defaultTimeoutSeconds;
+    
+    @Value("${app.fleet-execute.max-output-bytes:10000}")
+    private int maxOutputBytes;
+    
+    @Value("${app.fleet-execute.retention-minutes:60}")
+    private long retentionMinutes;
+    
+    public FleetExecutionService(
+            FileOperationService fileOperationService,
+            AgentIndexService agentIndexService,
+            WebSocketService webSocketService
+    ) {
+        this.fileOperationService = fileOperationService;
+        this.agentIndexService = agentIndexService;
+        this.webSocketService = webSocketService;
+    }
+    
+    public Map<String, Object> start(FleetExecuteRequest request, Long userId) {
+        String command = request.getCommand();
+        if (command == null || command.isBlank()) {
+            throw new IllegalArgumentException("command is required");
+        }
+        
+        List<String> agentIds = resolveTargets(request);
+        if (agentIds.isEmpty()) {
+            throw new IllegalArgumentException("Fleet execution has no target agents");
+        }
+        
+        int maxConcurrency = Math.max(1, request.getMaxConcurrency() != null ? request.getMaxConcurrency() : defaultMaxConcurrency);
+        int timeoutSeconds = Math.max(1, request.getTimeoutSeconds() != null ? request.getTimeoutSeconds() : defaultTimeoutSeconds);
+        
+        Execution execution = new Execution(executionIds.incrementAndGet(), command, userId, agentIndexService.commonNetwork(agentIds),
+                agentIds, maxConcurrency, timeoutSeconds * 1000L);
+        executions.put(execution.id, execution);
+        
+        webSocketService.broadcastToPortal(Map.of(
+                "type", "fleet_execution_status",
+                "executionId", execution.id,
+                "status", "running",
+                "total", agentIds.size()
+        ));
+        
+        pump(execution);
+        return execution.summary(false);
+    }
+    
+    public List<Map<String, Object>> getExecutions() {
+        return executions.values().stream()
+                .filter(execution -> TenantContext.canAccess(execution.networkId))
+                .sorted(Comparator.comparingLong((Execution execution) -> execution.id).reversed())
+                .map(execution -> execution.summary(false))
+                .toList();
+    }
+    
+    public Optional<Map<String, Object>> getExecution(Long executionId) {
+        return find(executionId).map(execution -> execution.summary(true));
+    }
+    
+    public Optional<List<String>> getGroupAgents(Long executionId, String hash) {
+        return find(executionId).flatMap(execution -> execution.groupAgents(hash));
+    }
+    
+    /**
+     * Folds an agent result into its fleet execution. Returns false when the
+     * operation is not part of one, so the caller forwards it as usual.
+     */
+    public boolean recordResult(Map<String, Object> result) {
+        if (!(result.get("operationId") instanceof Number operationId)) {
+            return false;
+        }
+        
+        Execution execution = executionsByOperation.get(operationId.longValue());
+        if (execution == null) {
+            return false;
+        }
+        
+        Object status = result.get("status");
+        if (!"completed".equals(status) && !"failed".equals(status)) {
+            // Intermediate updates for fleet operations are not forwarded either
+            return true;
+        }
+        
+        Object output = "failed".equals(status) ? result.get("error") : result.get("output");
+        if (execution.record(operationId.longValue(), (String) status, output != null ? output.toString() : "")) {
+            executionsByOperation.remove(operationId.longValue());
+            pump(execution);
+        }
+        return true;
+    }
+    
+    @Scheduled(fixedDelayString = "${app.fleet-execute.progress-interval-ms:1000}")
+    public void publishProgress() {
+        long now = System.currentTimeMillis();
+        long retentionCutoff = now - retentionMinutes * 60_000;
+        
+        for (Execution execution : executions.values()) {
+            for (Long operationId : execution.expire(now)) {
+                executionsByOperation.remove(operationId);
+                fileOperationService.complete(operationId, "failed", "Timed out waiting for agent result");
+            }
+            pump(execution);
+            
+            Map<String, Object> progress = execution.drainProgress();
+            if (progress != null) {
+                webSocketService.sendToPortal("fleet-executions/" + execution.id, progress);
+                if ("completed".equals(progress.get("status"))) {
+                    webSocketService.broadcastToPortal(Map.of(
+                            "type", "fleet_execution_status",
+                            "executionId", execution.id,
+                            "status", "completed",
+                            "total", progress.get("total"),
+                            "distinctResults", progress.get("distinctResults")
+                    ));
+                }
+            }
+            
+            if (execution.finishedBefore(retentionCutoff)) {
+                executions.remove(execution.id);
+            }
+        }
+    }
+    
+    private void pump(Execution execution) {
+        String agentId;
+        while ((agentId = execution.reserveNext()) != null) {
+            String target = agentId;
+            try {
+                fileOperationService.dispatch(
+                        target,
+                        "system_command",
+                        execution.command,
+                        execution.userId,
+                        new AgentCommand.SystemCommand(null, execution.command, null),
+                        operation -> {
+                            executionsByOperation.put(operation.getId(), execution);
+                            execution.dispatched(operation.getId(), target);
+                        }
+                );
+            } catch (Exception e) {
+                execution.dispatchFailed(target, e.getMessage());
+            }
+        }
+    }
+    
+    // Executions spanning other networks do not exist for users confined to a network
+    private Optional<Execution> find(Long executionId) {
+        return Optional.ofNullable(executions.get(executionId)).filter(execution -> TenantContext.canAccess(execution.networkId));
+    }
+    
+    private List<String> resolveTargets(FleetExecuteRequest request) {
+        if (request.getAgentIds() != null && !request.getAgentIds().isEmpty()) {
+            agentIndexService.checkAccess(request.getAgentIds());
+            return request.getAgentIds().stream().distinct().toList();
+        }
+        
+        // Offline agents would only run into the timeout, so target online ones unless asked otherwise
+        AgentQuery query = new AgentQuery(
+                request.getNetworkId(),
+                request.getStoreId(),
+                request.getPlatform(),
+                request.getStatus() != null ? request.getStatus() : "online",
+                request.getVersion(),
+                null,
+                null
+        );
+        return agentIndexService.findAll(query).stream().map(AgentSummary::id).toList();
+    }
+    
+    private String truncate(String output) {
+        byte[] bytes = output.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length <= maxOutputBytes) {
+            return output;
+        }
+        // Back up over continuation bytes so the cut never splits a character
+        int end = maxOutputBytes;
+        while (end > 0 && (bytes[end] & 0xC0) == 0x80) {
+            end--;
+        }
+        return new String(bytes, 0, end, StandardCharsets.UTF_8);
+    }
+    
+    private static String hash(String status, String output) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(status.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(output.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest.digest(), 0, 16);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+    
+    private record Dispatched(String agentId, long startedAt) {}
+    
+    private static class ResultGroup {
+        private final String hash;
+        private final String status;
+        private final String output;
+        private final List<String> agents = new ArrayList<>();
+        private boolean announced;
+        private boolean changed;
+        
+        ResultGroup(String hash, String status, String output) {
+            this.hash = hash;
+            this.status = status;
+            this.output = output;
+        }
+        
+        Map<String, Object> toMap(boolean includeOutput) {
+            Map<String, Object> map = new LinkedHashMap<>();
+            map.put("hash", hash);
+            map.put("status", status);
+            map.put("count", agents.size());
+            map.put("sampleAgents", List.copyOf(agents.subList(0, Math.min(SAMPLE_AGENTS, agents.size()))));
+            if (includeOutput) {
+                map.put("output", output);
+            }
+            return map;
+        }
+    }
+    
+    private class Execution {
+        private final long id;
+        private final String command;
+        private final Long userId;
+        // Set when every target is in one network, whose users may then see the execution
+        private final String networkId;
+        private final int total;
+        private final int maxConcurrency;
+        private final long timeoutMillis;
+        private final LocalDateTime createdAt = LocalDateTime.now();
+        private final ArrayDeque<String> queue;
+        private final Map<Long, Dispatched> inFlight = new HashMap<>();
+        private final Map<String, ResultGroup> groups = new LinkedHashMap<>();
+        private int reserved;
+        private int completed;
+        private int failed;
+        private int timedOut;
+        private boolean dirty = true;
+        private LocalDateTime completedAt;
+        private long finishedAt;
+        
+        Execution(long id, String command, Long userId, String networkId, List<String> agentIds, int maxConcurrency, long timeoutMillis) {
+            this.id = id;
+            this.command = command;
+            this.userId = userId;
+            this.networkId = networkId;
+            this.total = agentIds.size();
+            this.maxConcurrency = maxConcurrency;
+            this.timeoutMillis = timeoutMillis;
+            this.queue = new ArrayDeque<>(agentIds);
+        }
+        
+        synchronized String reserveNext() {
+            if (queue.isEmpty() || inFlight.size() + reserved >= maxConcurrency) {
+                return null;
+            }
+            reserved++;
+            return queue.poll();
+        }
+        
+        synchronized void dispatched(Long operationId, String agentId) {
+            reserved--;
+            inFlight.put(operationId, new Dispatched(agentId, System.currentTimeMillis()));
+            dirty = true;
+        }
+        
+        synchronized void dispatchFailed(String agentId, String error) {
+            reserved--;
+            addResult(agentId, "failed", "Dispatch failed: " + error);
+            failed++;
+            checkFinished();
+        }
+        
+        synchronized boolean record(long operationId, String status, String output) {
+            Dispatched dispatched = inFlight.remove(operationId);
+            if (dispatched == null) {
+                return false;
+            }
+            
+            addResult(dispatched.agentId(), status, output);
+            if ("completed".equals(status)) {
+                completed++;
+            } else {
+                failed++;
+            }
+            checkFinished();
+            return true;
+        }
+        
+        synchronized List<Long> expire(long now) {
+            List<Long> expired = new ArrayList<>();
+            Iterator<Map.Entry<Long, Dispatched>> entries = inFlight.entrySet().iterator();
+            while (entries.hasNext()) {
+                Map.Entry<Long, Dispatched> entry = entries.next();
+                if (now - entry.getValue().startedAt() >= timeoutMillis) {
+                    entries.remove();
+                    addResult(entry.getValue().agentId(), "timeout", "");
+                    timedOut++;
+                    expired.add(entry.getKey());
+                }
+            }
+            checkFinished();
+            return expired;
+        }
+        
+        private void addResult(String agentId, String status, String output) {
+            String text = truncate(output.strip());
+            ResultGroup group = groups.computeIfAbsent(hash(status, text), hash -> new ResultGroup(hash, status, text));
+            group.agents.add(agentId);
+            group.changed = true;
+            dirty = true;
+        }
+        
+        private void checkFinished() {
+            if (completedAt == null && queue.isEmpty() && inFlight.isEmpty() && reserved == 0) {
+                completedAt = LocalDateTime.now();
+                finishedAt = System.currentTimeMillis();
+                dirty = true;
+            }
+        }
+        
+        /**
+         * Summary for the progress topic, or null when nothing changed. Only groups
+         * that gained agents since the last update are included, and outputs only the
+         * first time a distinct result shows up.
+         */
+        synchronized Map<String, Object> drainProgress() {
+            if (!dirty) {
+                return null;
+            }
+            dirty = false;
+            
+            Map<String, Object> progress = counters();
+            progress.put("type", "fleet_execution_progress");
+            progress.put("groups", groups.values().stream().filter(group -> group.changed).map(group -> {
+                Map<String, Object> map = group.toMap(!group.announced);
+                group.announced = true;
+                group.changed = false;
+                return map;
+            }).toList());
+            return progress;
+        }
+        
+        synchronized Map<String, Object> summary(boolean includeOutputs) {
+            Map<String, Object> summary = counters();
+            summary.put("command", command);
+            summary.put("userId", userId);
+            summary.put("createdAt", createdAt);
+            summary.put("completedAt", completedAt);
+            summary.put("groups", groups.values().stream().map(group -> group.toMap(includeOutputs)).toList());
+            return summary;
+        }
+        
+        synchronized Optional<List<String>> groupAgents(String hash) {
+            return Optional.ofNullable(groups.get(hash)).map(group -> List.copyOf(group.agents));
+        }
+        
+        synchronized boolean finishedBefore(long cutoff) {
+            return completedAt != null && finishedAt < cutoff;
+        }
+        
+        private Map<String, Object> counters() {
+            Map<String, Object> counters = new LinkedHashMap<>();
+            counters.put("executionId", id);
+            counters.put("networkId", networkId);
+            counters.put("status", completedAt != null ? "completed" : "running");
+            counters.put("total", total);
+            counters.put("pending", queue.size() + reserved);
+            counters.put("inFlight", inFlight.size());
+            counters.put("completed", completed);
+            counters.put("failed", failed);
+            counters.put("timedOut", timedOut);
+            counters.put("distinctResults", groups.size());
+            return counters;
+        }
+    }
+}
\ No newline at end of file
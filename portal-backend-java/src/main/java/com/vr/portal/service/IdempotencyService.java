@@ -0,0 +1,170 @@
+package com.vr.portal.service;
+
+import com.vr.portal.entity.IdempotencyRecord;
+import com.vr.portal.exception.IdempotencyConflictException;
+import com.vr.portal.repository.IdempotencyRecordRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * Deduplicates operation submissions that carry an Idempotency-Key. The first request
+ * with a key runs and records its operation id. Retries with the same key get that id
+ * back, and a retry that arrives while the first is still running waits for it. Keys
+ * live in a bounded in-memory table for ttl-seconds. With persistence enabled they are
+ * also written to idempotency_keys so that retries survive a restart.
+ */
+@Service
+public class IdempotencyService {
+    
+    private final IdempotencyRecordRepository recordRepository;
+    
+    // Insertion ordered, so the eldest entries are the first to expire or be evicted
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>();
+    
+    @Value("${app.idempotency.ttl-seconds:86400}")
+    private long ttlSeconds;
+    
+    @Value("${app.idempotency.max-entries:100000}")
+    private int maxEntries;
+    
+    @Value("${app.idempotency.max-key-length:128}")
+    private int maxKeyLength;
+    
+    @Value("${app.idempotency.wait-ms:10000}")
+    private long waitMs;
+    
+    @Value("${app.idempotency.persist:false}")
+    private boolean persist;
+    
+    public IdempotencyService(IdempotencyRecordRepository recordRepository) {
+        this.recordRepository = recordRepository;
+    }
+    
+    public Long execute(String key, Long userId, String fingerprint, Supplier<Long> submission) {
+        if (key == null || key.isBlank()) {
+            return submission.get();
+        }
+        if (key.length() > maxKeyLength) {
+            throw new IdempotencyConflictException("Idempotency-Key is longer than " + maxKeyLength + " characters");
+        }
+        
+        String scopedKey = userId + ":" + key;
+        Entry entry = new Entry(fingerprint, new CompletableFuture<>(), System.currentTimeMillis());
+        Entry existing;
+        synchronized (entries) {
+            existing = entries.get(scopedKey);
+            if (existing != null && existing.isExpired(expiryCutoff())) {
+                entries.remove(scopedKey);
+                existing = null;
+            }
+            if (existing == null) {
+                entries.put(scopedKey, entry);
+                evictOverflow();
+            }
+        }
+        
+        if (existing != null) {
+            return awaitExisting(existing, fingerprint);
+        }
+        
+        try {
+            Long operationId = findPersisted(scopedKey, fingerprint).orElseGet(() -> {
+                Long created = submission.get();
+                if (persist) {
+                    recordRepository.save(new IdempotencyRecord(scopedKey, fingerprint, created));
+                }
+                return created;
+            });
+            entry.operationId().complete(operationId);
+            return operationId;
+            
+        } catch (RuntimeException e) {
+            // A failed attempt does not claim the key; the client may retry it
+            synchronized (entries) {
+                entries.remove(scopedKey, entry);
+            }
+            entry.operationId().completeExceptionally(e);
+            throw e;
+        }
+    }
+    
+    @Scheduled(fixedDelayString = "${app.idempotency.cleanup-interval-ms:60000}")
+    public void removeExpired() {
+        long cutoff = expiryCutoff();
+        synchronized (entries) {
+            Iterator<Entry> iterator = entries.values().iterator();
+            while (iterator.hasNext() && iterator.next().isExpired(cutoff)) {
+                iterator.remove();
+            }
+        }
+        if (persist) {
+            recordRepository.deleteCreatedBefore(LocalDateTime.now().minusSeconds(ttlSeconds));
+        }
+    }
+    
+    private Long awaitExisting(Entry existing, String fingerprint) {
+        if (!existing.fingerprint().equals(fingerprint)) {
+            throw new IdempotencyConflictException("Idempotency-Key was already used for a different request");
+        }
+        
+        try {
+            return existing.operationId().get(waitMs, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new IllegalStateException(e.getCause());
+        } catch (TimeoutException e) {
+            throw new IdempotencyConflictException("A request with this Idempotency-Key is still in progress");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IdempotencyConflictException("Interrupted while waiting for the original request");
+        }
+    }
+    
+    private Optional<Long> findPersisted(String scopedKey, String fingerprint) {
+        if (!persist) {
+            return Optional.empty();
+        }
+        
+        return recordRepository.findById(scopedKey)
+                .filter(record -> record.getCreatedAt() == null
+                        || record.getCreatedAt().isAfter(LocalDateTime.now().minusSeconds(ttlSeconds)))
+                .map(record -> {
+                    if (!record.getFingerprint().equals(fingerprint)) {
+                        throw new IdempotencyConflictException("Idempotency-Key was already used for a different request");
+                    }
+                    return record.getOperationId();
+                });
+    }
+    
+    private void evictOverflow() {
+        Iterator<Entry> iterator = entries.values().iterator();
+        while (entries.size() > maxEntries && iterator.hasNext()) {
+            iterator.next();
+            iterator.remove();
+        }
+    }
+    
+    private long expiryCutoff() {
+        return System.currentTimeMillis() - ttlSeconds * 1000;
+    }
+    
+    private record Entry(String fingerprint, CompletableFuture<Long> operationId, long createdAt) {
+        boolean isExpired(long cutoff) {
+            return createdAt < cutoff && operationId.isDone();
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,644 @@
+package com.vr.portal.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.vr.portal.dto.AgentCommand;
+import com.vr.portal.dto.AgentQuery;
+import com.vr.portal.dto.AgentSummary;
+import com.vr.portal.dto.IntegrityCheckRequest;
+import com.vr.portal.entity.IntegrityReference;
+import com.vr.portal.exception.TenantAccessDeniedException;
+import com.vr.portal.repository.IntegrityReferenceRepository;
+import com.vr.portal.security.TenantContext;
+import com.vr.portal.util.MerkleTree;
+import com.vr.portal.websocket.WebSocketService;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Compares agents' install directories against a stored reference manifest using
+ * Merkle trees. The agent first reports only its root hash; when that differs, the
+ * backend asks for the child hashes of the differing directories, one level per
+ * round, and never descends into a subtree whose hash matches. The outcome per agent
+ * is the minimal set of files to re-upload plus the unexpected extra paths, so a
+ * clean store costs one hash and a drifted one only the hashes along the changed paths.
+ * <p>
+ * References captured from an agent belong to its network, and those uploaded by a
+ * user confined to a network to that network; other uploads are shared by every
+ * network. Checks are visible to a network's users when all their targets are in it.
+ */
+@Service
+public class IntegrityManifestService {
+    
+    private final FileOperationService fileOperationService;
+    private final IntegrityReferenceRepository integrityReferenceRepository;
+    private final AgentIndexService agentIndexService;
+    private final WebSocketService webSocketService;
+    private final ObjectMapper objectMapper;
+    private final AtomicLong checkIds = new AtomicLong();
+    private final Map<Long, MerkleTree> trees = new ConcurrentHashMap<>();
+    private final Map<Long, Check> checks = new ConcurrentHashMap<>();
+    private final Map<Long, AgentCheck> checksByOperation = new ConcurrentHashMap<>();
+    private final Map<Long, Capture> captures = new ConcurrentHashMap<>();
+    
+    @Value("${app.integrity.max-nodes-per-round:256}")
+    private int maxNodesPerRound;
+    
+    @Value("${app.integrity.round-timeout-seconds:120}")
+    private long roundTimeoutSeconds;
+    
+    @Value("${app.integrity.max-reported-paths:1000}")
+    private int maxReportedPaths;
+    
+    @Value("${app.integrity.retention-minutes:120}")
+    private long retentionMinutes;
+    
+    public IntegrityManifestService(
+            FileOperationService fileOperationService,
+            IntegrityReferenceRepository integrityReferenceRepository,
+            AgentIndexService agentIndexService,
+            WebSocketService webSocketService,
+            ObjectMapper objectMapper
+    ) {
+        this.fileOperationService = fileOperationService;
+        this.integrityReferenceRepository = integrityReferenceRepository;
+        this.agentIndexService = agentIndexService;
+        this.webSocketService = webSocketService;
+        this.objectMapper = objectMapper;
+    }
+    
+    public IntegrityReference createReference(String name, String rootPath, List<MerkleTree.Entry> files, String sourceAgentId) {
+        if (name == null || name.isBlank() || rootPath == null || rootPath.isBlank()) {
+            throw new IllegalArgumentException("name and rootPath are required");
+        }
+        if (files == null || files.isEmpty()) {
+            throw new IllegalArgumentException("A reference needs at least one file");
+        }
+        if (integrityReferenceRepository.existsByName(name)) {
+            throw new IllegalArgumentException("Reference " + name + " already exists");
+        }
+        
+        MerkleTree tree = MerkleTree.build(files);
+        IntegrityReference reference = new IntegrityReference(name, rootPath, tree.rootHash(), toJson(tree.filesUnder("")));
+        reference.setFileCount(tree.fileCount());
+        reference.setTotalBytes(tree.totalBytes());
+        reference.setSourceAgentId(sourceAgentId);
+        reference.setNetworkId(sourceAgentId != null
+                ? agentIndexService.commonNetwork(List.of(sourceAgentId))
+                : TenantContext.currentNetworkId());
+        reference = integrityReferenceRepository.save(reference);
+        trees.put(reference.getId(), tree);
+        return reference;
+    }
+    
+    /**
+     * Asks a known-good agent for its full manifest and stores it as a reference once
+     * it arrives. Returns the operation id of the request.
+     */
+    public Long captureReference(String name, String agentId, String rootPath, Long userId) {
+        if (name == null || name.isBlank() || agentId == null || rootPath == null || rootPath.isBlank()) {
+            throw new IllegalArgumentException("name, agentId and rootPath are required");
+        }
+        if (integrityReferenceRepository.existsByName(name)) {
+            throw new IllegalArgumentException("Reference " + name + " already exists");
+        }
+        
+        return fileOperationService.dispatch(
+                agentId,
+                "integrity_capture",
+                rootPath,
+                userId,
+                new AgentCommand.ManifestRequest(null, null, rootPath, null, null, true),
+                operation -> captures.put(operation.getId(), new Capture(name, agentId, rootPath, System.currentTimeMillis()))
+        ).getId();
+    }
+    
+    public List<IntegrityReference> getReferences() {
+        String tenant = TenantContext.currentNetworkId();
+        return tenant != null
+                ? integrityReferenceRepository.findByNetworkIdIsNullOrNetworkId(tenant)
+                : integrityReferenceRepository.findAll();
+    }
+    
+    public Optional<IntegrityReference> getReference(Long referenceId) {
+        return integrityReferenceRepository.findById(referenceId)
+                .filter(reference -> reference.getNetworkId() == null || TenantContext.canAccess(reference.getNetworkId()));
+    }
+    
+    /**
+     * Removes a reference. Shared references can only be removed by users who are not
+     * confined to a network.
+     */
+    public boolean deleteReference(Long referenceId) {
+        Optional<IntegrityReference> reference = getReference(referenceId);
+        if (reference.isEmpty()) {
+            return false;
+        }
+        if (reference.get().getNetworkId() == null && TenantContext.currentNetworkId() != null) {
+            throw new TenantAccessDeniedException("Shared reference " + referenceId + " cannot be removed from a network");
+        }
+        integrityReferenceRepository.deleteById(referenceId);
+        trees.remove(referenceId);
+        return true;
+    }
+    
+    public Map<String, Object> startCheck(IntegrityCheckRequest request, Long userId) {
+        if (request.getReferenceId() == null) {
+            throw new IllegalArgumentException("referenceId is required");
+        }
+        IntegrityReference reference = getReference(request.getReferenceId())
+                .orElseThrow(() -> new IllegalArgumentException("Reference " + request.getReferenceId() + " not found"));
+        MerkleTree tree = treeOf(reference);
+        
+        List<String> agentIds = resolveTargets(request);
+        if (agentIds.isEmpty()) {
+            throw new IllegalArgumentException("Integrity check has no target agents");
+        }
+        
+        String rootPath = request.getRootPath() != null ? request.getRootPath() : reference.getRootPath();
+        Check check = new Check(checkIds.incrementAndGet(), reference, tree, rootPath, agentIndexService.commonNetwork(agentIds));
+        checks.put(check.id, check);
+        
+        for (String agentId : agentIds) {
+            try {
+                fileOperationService.dispatch(
+                        agentId,
+                        "integrity_check",
+                        rootPath,
+                        userId,
+                        check.request(0, List.of()),
+                        operation -> {
+                            AgentCheck agentCheck = check.add(agentId, operation.getId());
+                            checksByOperation.put(operation.getId(), agentCheck);
+                        }
+                );
+            } catch (Exception e) {
+                check.add(agentId, null).finish("failed", "Dispatch failed: " + e.getMessage());
+            }
+        }
+        
+        webSocketService.broadcastToPortal(Map.of(
+                "type", "integrity_check_status",
+                "checkId", check.id,
+                "status", "running",
+                "total", agentIds.size()
+        ));
+        check.dispatched();
+        checkFinished(check);
+        return check.summary(false);
+    }
+    
+    public List<Map<String, Object>> getChecks() {
+        return checks.values().stream()
+                .filter(check -> TenantContext.canAccess(check.networkId))
+                .sorted(Comparator.comparingLong((Check check) -> check.id).reversed())
+                .map(check -> check.summary(false))
+                .toList();
+    }
+    
+    public Optional<Map<String, Object>> getCheck(Long checkId) {
+        return findCheck(checkId).map(check -> check.summary(true));
+    }
+    
+    public Optional<Map<String, Object>> getAgentResult(Long checkId, String agentId) {
+        return findCheck(checkId).flatMap(check -> check.agentDetail(agentId));
+    }
+    
+    /**
+     * Consumes manifest responses. Returns false when the operation is not a manifest
+     * exchange, so the caller handles the result as usual.
+     */
+    public boolean recordResult(Map<String, Object> result) {
+        if (!(result.get("operationId") instanceof Number number)) {
+            return false;
+        }
+        long operationId = number.longValue();
+        
+        Capture capture = captures.remove(operationId);
+        if (capture != null) {
+            completeCapture(operationId, capture, result);
+            return true;
+        }
+        
+        AgentCheck agentCheck = checksByOperation.get(operationId);
+        if (agentCheck == null) {
+            return false;
+        }
+        
+        Object status = result.get("status");
+        if ("failed".equals(status)) {
+            Object error = result.get("error");
+            finish(agentCheck, "failed", error != null ? error.toString() : "Agent reported failure");
+        } else if ("completed".equals(status)) {
+            AgentCommand.ManifestRequest next = agentCheck.absorb(result);
+            if (next != null) {
+                fileOperationService.send(agentCheck.agentId, next.withOperationId(operationId));
+            } else {
+                finish(agentCheck, agentCheck.outcome(), null);
+            }
+        }
+        return true;
+    }
+    
+    @Scheduled(fixedDelayString = "${app.integrity.sweep-interval-ms:5000}")
+    public void expire() {
+        long now = System.currentTimeMillis();
+        long timeoutMillis = roundTimeoutSeconds * 1000;
+        
+        for (AgentCheck agentCheck : checksByOperation.values()) {
+            if (now - agentCheck.lastActivity() >= timeoutMillis) {
+                finish(agentCheck, "timeout", "Timed out waiting for manifest");
+            }
+        }
+        
+        captures.entrySet().removeIf(entry -> {
+            if (now - entry.getValue().startedAt() < timeoutMillis) {
+                return false;
+            }
+            fileOperationService.complete(entry.getKey(), "failed", "Timed out waiting for manifest");
+            return true;
+        });
+        
+        long retentionCutoff = now - retentionMinutes * 60_000;
+        checks.values().removeIf(check -> check.finishedBefore(retentionCutoff));
+    }
+    
+    private void completeCapture(long operationId, Capture capture, Map<String, Object> result) {
+        try {
+            if (!"completed".equals(result.get("status"))) {
+                Object error = result.get("error");
+                throw new IllegalArgumentException(error != null ? error.toString() : "Agent reported failure");
+            }
+            
+            List<MerkleTree.Entry> files = new ArrayList<>();
+            if (result.get("files") instanceof List<?> entries) {
+                for (Object entry : entries) {
+                    if (entry instanceof Map<?, ?> file) {
+                        files.add(new MerkleTree.Entry(
+                                (String) file.get("path"),
+                                (String) file.get("hash"),
+                                file.get("size") instanceof Number size ? size.longValue() : 0
+                        ));
+                    }
+                }
+            }
+            
+            IntegrityReference reference = createReference(capture.name(), capture.rootPath(), files, capture.agentId());
+            fileOperationService.complete(operationId, "completed", null);
+            webSocketService.broadcastToPortal(Map.of(
+                    "type", "integrity_reference_captured",
+                    "referenceId", reference.getId(),
+                    "name", reference.getName(),
+                    "rootHash", reference.getRootHash(),
+                    "fileCount", reference.getFileCount()
+            ));
+        } catch (Exception e) {
+            System.err.println("Failed to capture integrity reference " + capture.name() + ": " + e.getMessage());
+            fileOperationService.complete(operationId, "failed", e.getMessage());
+        }
+    }
+    
+    private void finish(AgentCheck agentCheck, String outcome, String error) {
+        if (checksByOperation.remove(agentCheck.operationId) == null) {
+            return;
+        }
+        agentCheck.finish(outcome, error);
+        fileOperationService.complete(
+                agentCheck.operationId,
+                "failed".equals(outcome) || "timeout".equals(outcome) ? "failed" : "completed",
+                error
+        );
+        checkFinished(agentCheck.check);
+    }
+    
+    private void checkFinished(Check check) {
+        Map<String, Object> summary = check.markFinished();
+        if (summary != null) {
+            webSocketService.broadcastToPortal(Map.of(
+                    "type", "integrity_check_status",
+                    "checkId", check.id,
+                    "status", "completed",
+                    "total", summary.get("total"),
+                    "drifted", summary.get("drifted"),
+                    "failed", summary.get("failed")
+            ));
+        }
+    }
+    
+    private MerkleTree treeOf(IntegrityReference reference) {
+        return trees.computeIfAbsent(reference.getId(), id -> {
+            try {
+                List<MerkleTree.Entry> files = objectMapper.readValue(reference.getManifest(), new TypeReference<>() {});
+                return MerkleTree.build(files);
+            } catch (JsonProcessingException e) {
+                throw new IllegalStateException("Stored manifest of reference " + id + " is unreadable", e);
+            }
+        });
+    }
+    
+    private String toJson(List<MerkleTree.Entry> files) {
+        try {
+            return objectMapper.writeValueAsString(files);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+    
+    private Optional<Check> findCheck(Long checkId) {
+        return Optional.ofNullable(checks.get(checkId)).filter(check -> TenantContext.canAccess(check.networkId));
+    }
+    
+    private List<String> resolveTargets(IntegrityCheckRequest request) {
+        if (request.getAgentIds() != null && !request.getAgentIds().isEmpty()) {
+            agentIndexService.checkAccess(request.getAgentIds());
+            return request.getAgentIds().stream().distinct().toList();
+        }
+        
+        AgentQuery query = new AgentQuery(
+                request.getNetworkId(),
+                request.getStoreId(),
+                request.getPlatform(),
+                request.getStatus() != null ? request.getStatus() : "online",
+                request.getVersion(),
+                null,
+                null
+        );
+        return agentIndexService.findAll(query).stream().map(AgentSummary::id).toList();
+    }
+    
+    private record Capture(String name, String agentId, String rootPath, long startedAt) {}
+    
+    private record Difference(String path, String hash, long size, String reason) {
+        Map<String, Object> toMap() {
+            Map<String, Object> map = new LinkedHashMap<>();
+            map.put("path", path);
+            map.put("hash", hash);
+            map.put("size", size);
+            map.put("reason", reason);
+            return map;
+        }
+    }
+    
+    private class Check {
+        private final long id;
+        private final IntegrityReference reference;
+        private final MerkleTree tree;
+        private final String rootPath;
+        private final String networkId;
+        private final LocalDateTime createdAt = LocalDateTime.now();
+        private final Map<String, AgentCheck> agents = new LinkedHashMap<>();
+        private boolean dispatching = true;
+        private LocalDateTime completedAt;
+        private long finishedAt;
+        
+        Check(long id, IntegrityReference reference, MerkleTree tree, String rootPath, String networkId) {
+            this.id = id;
+            this.reference = reference;
+            this.tree = tree;
+            this.rootPath = rootPath;
+            this.networkId = networkId;
+        }
+        
+        AgentCommand.ManifestRequest request(int round, List<String> expand) {
+            return new AgentCommand.ManifestRequest(null, id, rootPath, round, expand, null);
+        }
+        
+        synchronized AgentCheck add(String agentId, Long operationId) {
+            AgentCheck agentCheck = new AgentCheck(this, agentId, operationId);
+            agents.put(agentId, agentCheck);
+            return agentCheck;
+        }
+        
+        synchronized void dispatched() {
+            dispatching = false;
+        }
+        
+        /**
+         * Marks the check finished once every agent has an outcome. Returns the
+         * summary only on that transition.
+         */
+        synchronized Map<String, Object> markFinished() {
+            // Fast agents can answer before the remaining ones have even been added
+            if (dispatching || completedAt != null || agents.values().stream().anyMatch(agent -> agent.outcome == null)) {
+                return null;
+            }
+            completedAt = LocalDateTime.now();
+            finishedAt = System.currentTimeMillis();
+            return counters();
+        }
+        
+        synchronized boolean finishedBefore(long cutoff) {
+            return completedAt != null && finishedAt < cutoff;
+        }
+        
+        synchronized Map<String, Object> summary(boolean includeAgents) {
+            Map<String, Object> summary = counters();
+            summary.put("referenceId", reference.getId());
+            summary.put("referenceName", reference.getName());
+            summary.put("referenceRootHash", reference.getRootHash());
+            summary.put("rootPath", rootPath);
+            summary.put("createdAt", createdAt);
+            summary.put("completedAt", completedAt);
+            if (includeAgents) {
+                summary.put("agents", agents.values().stream().map(AgentCheck::summary).toList());
+            }
+            return summary;
+        }
+        
+        synchronized Optional<Map<String, Object>> agentDetail(String agentId) {
+            return Optional.ofNullable(agents.get(agentId)).map(AgentCheck::detail);
+        }
+        
+        private Map<String, Object> counters() {
+            Map<String, Integer> outcomes = new HashMap<>();
+            long hashesCompared = 0;
+            long filesToReupload = 0;
+            long bytesToReupload = 0;
+            for (AgentCheck agent : agents.values()) {
+                outcomes.merge(agent.outcome != null ? agent.outcome : "running", 1, Integer::sum);
+                hashesCompared += agent.hashesCompared;
+                filesToReupload += agent.reuploadCount;
+                bytesToReupload += agent.reuploadBytes;
+            }
+            
+            Map<String, Object> counters = new LinkedHashMap<>();
+            counters.put("checkId", id);
+            counters.put("status", completedAt != null ? "completed" : "running");
+            counters.put("total", agents.size());
+            counters.put("running", outcomes.getOrDefault("running", 0));
+            counters.put("matching", outcomes.getOrDefault("match", 0));
+            counters.put("drifted", outcomes.getOrDefault("drift", 0));
+            counters.put("failed", outcomes.getOrDefault("failed", 0));
+            counters.put("timedOut", outcomes.getOrDefault("timeout", 0));
+            counters.put("hashesCompared", hashesCompared);
+            counters.put("filesToReupload", filesToReupload);
+            counters.put("bytesToReupload", bytesToReupload);
+            return counters;
+        }
+    }
+    
+    private class AgentCheck {
+        private final Check check;
+        private final String agentId;
+        private final Long operationId;
+        private final ArrayDeque<String> pendingDirectories = new ArrayDeque<>();
+        private final List<Difference> reupload = new ArrayList<>();
+        private final List<String> extra = new ArrayList<>();
+        private Set<String> expanding = Set.of();
+        private int round;
+        private int responses;
+        private long hashesCompared;
+        private int reuploadCount;
+        private long reuploadBytes;
+        private int extraCount;
+        private long lastActivity = System.currentTimeMillis();
+        private String outcome;
+        private String error;
+        
+        AgentCheck(Check check, String agentId, Long operationId) {
+            this.check = check;
+            this.agentId = agentId;
+            this.operationId = operationId;
+        }
+        
+        /**
+         * Folds one round's response into the comparison and returns the message for
+         * the next round, or null when no differing directory is left to expand.
+         */
+        AgentCommand.ManifestRequest absorb(Map<String, Object> result) {
+            synchronized (check) {
+                lastActivity = System.currentTimeMillis();
+                responses++;
+                MerkleTree tree = check.tree;
+                
+                if (round == 0) {
+                    hashesCompared++;
+                    if (!tree.rootHash().equals(String.valueOf(result.get("rootHash")).toLowerCase(Locale.ROOT))) {
+                        pendingDirectories.add("");
+                    }
+                } else {
+                    Map<?, ?> nodes = result.get("nodes") instanceof Map<?, ?> map ? map : Map.of();
+                    for (String directory : expanding) {
+                        Object children = nodes.get(directory);
+                        if (children instanceof List<?> list) {
+                            compare(tree, directory, list);
+                        } else {
+                            // Directory is gone on the agent since the previous round
+                            tree.filesUnder(directory).forEach(file -> addReupload(file, "missing"));
+                        }
+                    }
+                }
+                
+                if (pendingDirectories.isEmpty()) {
+                    return null;
+                }
+                
+                List<String> next = new ArrayList<>();
+                while (!pendingDirectories.isEmpty() && next.size() < maxNodesPerRound) {
+                    next.add(pendingDirectories.poll());
+                }
+                expanding = new LinkedHashSet<>(next);
+                round++;
+                return check.request(round, next);
+            }
+        }
+        
+        private void compare(MerkleTree tree, String directory, List<?> agentChildren) {
+            Map<String, MerkleTree.Child> expected = new HashMap<>();
+            for (MerkleTree.Child child : tree.children(directory)) {
+                expected.put(child.name(), child);
+            }
+            
+            for (Object item : agentChildren) {
+                if (!(item instanceof Map<?, ?> child) || !(child.get("name") instanceof String name)) {
+                    continue;
+                }
+                hashesCompared++;
+                String path = MerkleTree.join(directory, name);
+                boolean directoryOnAgent = "dir".equals(child.get("type"));
+                MerkleTree.Child reference = expected.remove(name);
+                
+                if (reference == null) {
+                    addExtra(directoryOnAgent ? path + "/" : path);
+                } else if (reference.directory() != directoryOnAgent) {
+                    addExtra(directoryOnAgent ? path + "/" : path);
+                    tree.filesUnder(path).forEach(file -> addReupload(file, "missing"));
+                } else if (!reference.hash().equals(String.valueOf(child.get("hash")).toLowerCase(Locale.ROOT))) {
+                    if (reference.directory()) {
+                        pendingDirectories.add(path);
+                    } else {
+                        addReupload(new MerkleTree.Entry(path, reference.hash(), reference.size()), "modified");
+                    }
+                }
+            }
+            
+            for (MerkleTree.Child missing : expected.values()) {
+                tree.filesUnder(MerkleTree.join(directory, missing.name())).forEach(file -> addReupload(file, "missing"));
+            }
+        }
+        
+        private void addReupload(MerkleTree.Entry file, String reason) {
+            reuploadCount++;
+            reuploadBytes += file.size();
+            if (reupload.size() < maxReportedPaths) {
+                reupload.add(new Difference(file.path(), file.hash(), file.size(), reason));
+            }
+        }
+        
+        private void addExtra(String path) {
+            extraCount++;
+            if (extra.size() < maxReportedPaths) {
+                extra.add(path);
+            }
+        }
+        
+        String outcome() {
+            synchronized (check) {
+                return reuploadCount > 0 || extraCount > 0 || round > 0 ? "drift" : "match";
+            }
+        }
+        
+        long lastActivity() {
+            synchronized (check) {
+                return lastActivity;
+            }
+        }
+        
+        void finish(String outcome, String error) {
+            synchronized (check) {
+                this.outcome = outcome;
+                this.error = error;
+                pendingDirectories.clear();
+            }
+        }
+        
+        Map<String, Object> summary() {
+            Map<String, Object> summary = new LinkedHashMap<>();
+            summary.put("agentId", agentId);
+            summary.put("operationId", operationId);
+            summary.put("status", outcome != null ? outcome : "running");
+            summary.put("rounds", responses);
+            summary.put("hashesCompared", hashesCompared);
+            summary.put("filesToReupload", reuploadCount);
+            summary.put("bytesToReupload", reuploadBytes);
+            summary.put("extraPaths", extraCount);
+            summary.put("error", error);
+            return summary;
+        }
+        
+        Map<String, Object> detail() {
+            Map<String, Object> detail = summary();
+            detail.put("reupload", reupload.stream().map(Difference::toMap).toList());
+            detail.put("extra", List.copyOf(extra));
+            detail.put("truncated", reuploadCount > reupload.size() || extraCount > extra.size());
+            return detail;
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,191 @@
+package com.vr.portal.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Single-flight for read-only agent requests (system_info, file_list). Concurrent
+ * callers asking the same agent the same question share one operation, and a result
+ * that arrived less than result-ttl-ms ago is reused without another round-trip. The
+ * agent's result is kept per operation so that every caller can fetch it, not only
+ * those subscribed when it was broadcast.
+ */
+@Service
+public class OperationCoalescingService {
+    
+    private static final Set<String> COALESCED_TYPES = Set.of("system_info", "file_list");
+    
+    private final Map<String, Flight> flights = new ConcurrentHashMap<>();
+    private final Map<Long, String> keysByOperation = new ConcurrentHashMap<>();
+    private final Map<Long, StoredResult> results = new ConcurrentHashMap<>();
+    
+    @Value("${app.coalescing.enabled:true}")
+    private boolean enabled;
+    
+    @Value("${app.coalescing.result-ttl-ms:5000}")
+    private long resultTtlMs;
+    
+    @Value("${app.coalescing.max-in-flight-ms:30000}")
+    private long maxInFlightMs;
+    
+    @Value("${app.coalescing.result-retention-ms:60000}")
+    private long resultRetentionMs;
+    
+    /**
+     * Runs the dispatch unless an equivalent request can be shared. The dispatch gets a
+     * callback to register its operation id before the agent is messaged, so a quick
+     * answer is never missed.
+     */
+    public Long execute(String agentId, String messageType, String target, Function<Consumer<Long>, Long> dispatch) {
+        if (!enabled || !COALESCED_TYPES.contains(messageType)) {
+            return dispatch.apply(operationId -> {});
+        }
+        
+        String key = agentId + "|" + messageType + "|" + target;
+        long now = System.currentTimeMillis();
+        Flight flight = new Flight(new CompletableFuture<>(), now);
+        Flight existing = flights.compute(key, (k, current) -> {
+            if (current != null && current.isReusable(now)) {
+                return current;
+            }
+            if (current != null) {
+                // The replaced operation no longer feeds this key, even if it answers late
+                current.forget();
+            }
+            return flight;
+        });
+        
+        if (existing != flight) {
+            return join(existing);
+        }
+        
+        try {
+            Long operationId = dispatch.apply(id -> {
+                flight.register(id);
+                keysByOperation.put(id, key);
+            });
+            flight.operationId().complete(operationId);
+            return operationId;
+        } catch (RuntimeException e) {
+            flights.remove(key, flight);
+            flight.forget();
+            flight.operationId().completeExceptionally(e);
+            throw e;
+        }
+    }
+    
+    /**
+     * Records an agent result. Successful results stay shareable for result-ttl-ms;
+     * a failure ends the flight so the next caller asks the agent again. Only the flight
+     * that dispatched the operation is touched; a newer flight for the same key is not.
+     */
+    public void complete(Long operationId, String status, Map<String, Object> result) {
+        String key = keysByOperation.remove(operationId);
+        if (key == null) {
+            return;
+        }
+        
+        results.put(operationId, new StoredResult(status, result, System.currentTimeMillis()));
+        boolean completed = "completed".equals(status);
+        flights.computeIfPresent(key, (k, flight) -> {
+            if (!flight.owns(operationId)) {
+                return flight;
+            }
+            return completed ? flight.completedAt(System.currentTimeMillis()) : null;
+        });
+    }
+    
+    public Optional<Map<String, Object>> getResult(Long operationId) {
+        StoredResult stored = results.get(operationId);
+        if (stored == null) {
+            return Optional.empty();
+        }
+        return Optional.of(Map.of(
+                "operationId", operationId,
+                "status", stored.status(),
+                "result", stored.result()
+        ));
+    }
+    
+    @Scheduled(fixedDelayString = "${app.coalescing.cleanup-interval-ms:30000}")
+    public void removeExpired() {
+        long now = System.currentTimeMillis();
+        flights.values().removeIf(flight -> !flight.isReusable(now));
+        results.values().removeIf(result -> now - result.storedAt() > resultRetentionMs);
+        keysByOperation.entrySet().removeIf(entry -> {
+            Flight flight = flights.get(entry.getValue());
+            return flight == null || !flight.owns(entry.getKey());
+        });
+    }
+    
+    private Long join(Flight flight) {
+        try {
+            return flight.operationId().get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new IllegalStateException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for a shared request", e);
+        }
+    }
+    
+    private record StoredResult(String status, Map<String, Object> result, long storedAt) {}
+    
+    private class Flight {
+        private final CompletableFuture<Long> operationId;
+        private final long startedAt;
+        // Known as soon as the record is saved, before the future completes
+        private volatile Long registeredId;
+        private volatile long completedAt;
+        
+        Flight(CompletableFuture<Long> operationId, long startedAt) {
+            this.operationId = operationId;
+            this.startedAt = startedAt;
+        }
+        
+        CompletableFuture<Long> operationId() {
+            return operationId;
+        }
+        
+        void register(Long operationId) {
+            this.registeredId = operationId;
+        }
+        
+        boolean owns(Long operationId) {
+            return operationId.equals(registeredId);
+        }
+        
+        void forget() {
+            Long id = registeredId;
+            if (id != null) {
+                keysByOperation.remove(id);
+            }
+        }
+        
+        Flight completedAt(long completedAt) {
+            this.completedAt = completedAt;
+            return this;
+        }
+        
+        boolean isReusable(long now) {
+            if (operationId.isCompletedExceptionally()) {
+                return false;
+            }
+            // In flight until the agent answers (or gives up), then cached for the TTL
+            return completedAt == 0 ? now - startedAt < maxInFlightMs : now - completedAt < resultTtlMs;
+        }
+    }
+}
\ No newline at end of file
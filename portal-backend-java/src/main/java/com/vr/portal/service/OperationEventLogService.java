@@ -0,0 +1,579 @@
+package com.vr.portal.service;
+
+import com.vr.portal.dto.OperationSummary;
+import com.vr.portal.entity.FileOperation;
+import com.vr.portal.event.ChangeType;
+import com.vr.portal.event.FileOperationChangedEvent;
+import com.vr.portal.security.TenantContext;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.*;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only history of every file operation change. Each change event becomes a
+ * length-prefixed, CRC-checked record in a memory-mapped segment file under
+ * app.audit.dir, and dirty pages are forced to disk in batches rather than per record.
+ * A sparse in-memory index keeps one entry per block of records with its time range,
+ * the agents it contains and its range of operation ids, so history queries by time,
+ * agent or operation read only the matching blocks sequentially. FileOperation views can be rebuilt from the log for
+ * operations the retention job has long since removed from file_operations. Users
+ * confined to a network only see the events of agents currently registered in it.
+ */
+@Service
+public class OperationEventLogService {
+    
+    private static final String SEGMENT_SUFFIX = ".seg";
+    private static final int RECORD_HEADER_BYTES = 8;
+    private static final int MAX_STRING_BYTES = 8192;
+    
+    private final List<Segment> segments = new ArrayList<>();
+    private final List<Block> blocks = new ArrayList<>();
+    private final AgentIndexService agentIndexService;
+    
+    @Value("${app.audit.enabled:true}")
+    private boolean enabled;
+    
+    @Value("${app.audit.dir:data/audit}")
+    private String auditDir;
+    
+    @Value("${app.audit.segment-bytes:67108864}")
+    private int segmentBytes;
+    
+    @Value("${app.audit.index-interval:128}")
+    private int indexInterval;
+    
+    @Value("${app.audit.fsync-bytes:1048576}")
+    private int fsyncBytes;
+    
+    @Value("${app.audit.retention-days:365}")
+    private long retentionDays;
+    
+    @Value("${app.audit.max-scan-events:10000}")
+    private int maxScanEvents;
+    
+    private Segment active;
+    private Block openBlock;
+    private long sequence;
+    private long lastTimestamp;
+    private long appendedRecords;
+    private long syncs;
+    
+    public OperationEventLogService(AgentIndexService agentIndexService) {
+        this.agentIndexService = agentIndexService;
+    }
+    
+    @PostConstruct
+    public void open() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            Path dir = Paths.get(auditDir);
+            Files.createDirectories(dir);
+            
+            List<Path> files;
+            try (Stream<Path> listing = Files.list(dir)) {
+                files = listing.filter(path -> path.getFileName().toString().endsWith(SEGMENT_SUFFIX))
+                        .sorted()
+                        .toList();
+            }
+            for (Path file : files) {
+                recover(file);
+            }
+            
+            if (segments.isEmpty()) {
+                roll();
+            } else {
+                active = segments.get(segments.size() - 1);
+                active.clearTail();
+            }
+            System.out.println("Operation event log opened: " + segments.size() + " segment(s), last event " + sequence);
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to open operation event log in " + auditDir, e);
+        }
+    }
+    
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onOperationChanged(FileOperationChangedEvent event) {
+        if (!enabled) {
+            return;
+        }
+        try {
+            append(event);
+        } catch (IOException e) {
+            System.err.println("Failed to append operation event: " + e.getMessage());
+        }
+    }
+    
+    /**
+     * Events in [from, to] (epoch millis, either end optional), oldest first,
+     * optionally restricted to one agent and/or operation.
+     */
+    public List<AuditEvent> events(String agentId, Long operationId, Long from, Long to, int limit) {
+        int max = Math.min(Math.max(limit, 1), maxScanEvents);
+        List<AuditEvent> events = new ArrayList<>();
+        boolean confined = TenantContext.currentNetworkId() != null;
+        Map<String, Boolean> visibleAgents = new HashMap<>();
+        
+        for (Block block : candidateBlocks(agentId, operationId, from, to)) {
+            ByteBuffer buffer = block.segment.reader();
+            int position = block.offset;
+            int end = block.end();
+            while (position < end) {
+                int length = buffer.getInt(position);
+                AuditEvent event = decode(buffer.slice(position + RECORD_HEADER_BYTES, length));
+                position += RECORD_HEADER_BYTES + length;
+                
+                if ((from != null && event.timestamp() < from) || (to != null && event.timestamp() > to)) {
+                    continue;
+                }
+                if ((agentId != null && !agentId.equals(event.agentId()))
+                        || (operationId != null && !operationId.equals(event.operationId()))) {
+                    continue;
+                }
+                if (confined && !visibleAgents.computeIfAbsent(event.agentId(), id -> agentIndexService.get(id).isPresent())) {
+                    continue;
+                }
+                events.add(event);
+                if (events.size() >= max) {
+                    return events;
+                }
+            }
+        }
+        return events;
+    }
+    
+    /**
+     * Operation views as of the latest event in range, rebuilt by folding each
+     * operation's events in log order. Deleted operations are left out.
+     */
+    public List<FileOperation> rebuildViews(String agentId, Long from, Long to) {
+        Map<Long, FileOperation> views = new LinkedHashMap<>();
+        for (AuditEvent event : events(agentId, null, from, to, maxScanEvents)) {
+            if (event.changeType() == ChangeType.DELETED) {
+                views.remove(event.operationId());
+            } else {
+                views.put(event.operationId(), event.toFileOperation());
+            }
+        }
+        return new ArrayList<>(views.values());
+    }
+    
+    public Optional<FileOperation> rebuildView(Long operationId) {
+        FileOperation view = null;
+        for (AuditEvent event : events(null, operationId, null, null, maxScanEvents)) {
+            view = event.changeType() == ChangeType.DELETED ? null : event.toFileOperation();
+        }
+        return Optional.ofNullable(view);
+    }
+    
+    @Scheduled(fixedDelayString = "${app.audit.fsync-interval-ms:200}")
+    public void flush() {
+        if (!enabled) {
+            return;
+        }
+        synchronized (this) {
+            force();
+        }
+    }
+    
+    @Scheduled(cron = "${app.audit.cleanup-cron:0 45 3 * * *}")
+    public void cleanup() {
+        if (!enabled || retentionDays <= 0) {
+            return;
+        }
+        long threshold = System.currentTimeMillis() - retentionDays * 24 * 60 * 60 * 1000;
+        List<Segment> expired = new ArrayList<>();
+        
+        synchronized (this) {
+            // Whole segments only, and never the one being written
+            for (Segment segment : segments) {
+                if (segment == active || segment.lastTimestamp >= threshold) {
+                    break;
+                }
+                expired.add(segment);
+            }
+            segments.removeAll(expired);
+            blocks.removeIf(block -> expired.contains(block.segment));
+        }
+        
+        for (Segment segment : expired) {
+            try {
+                segment.close();
+                Files.deleteIfExists(segment.path);
+            } catch (IOException e) {
+                System.err.println("Failed to delete audit segment " + segment.path + ": " + e.getMessage());
+            }
+        }
+        if (!expired.isEmpty()) {
+            System.out.println("Removed " + expired.size() + " expired audit segment(s)");
+        }
+    }
+    
+    public synchronized Map<String, Object> getStats() {
+        long bytes = segments.stream().mapToLong(segment -> segment.end).sum();
+        return Map.of(
+                "enabled", enabled,
+                "segments", segments.size(),
+                "bytes", bytes,
+                "lastEventId", sequence,
+                "indexBlocks", blocks.size(),
+                "appended", appendedRecords,
+                "syncs", syncs
+        );
+    }
+    
+    @PreDestroy
+    public synchronized void close() {
+        force();
+        for (Segment segment : segments) {
+            try {
+                segment.close();
+            } catch (IOException e) {
+                System.err.println("Failed to close audit segment " + segment.path + ": " + e.getMessage());
+            }
+        }
+    }
+    
+    private synchronized void append(FileOperationChangedEvent event) throws IOException {
+        long timestamp = Math.max(event.occurredAt(), lastTimestamp);
+        byte[] payload = encode(sequence + 1, timestamp, event);
+        int size = RECORD_HEADER_BYTES + payload.length;
+        if (size > segmentBytes) {
+            throw new IOException("Record of " + size + " bytes does not fit in a segment");
+        }
+        if (active.end + size > segmentBytes) {
+            force();
+            roll();
+        }
+        
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        int position = active.end;
+        active.buffer.putInt(position, payload.length);
+        active.buffer.putInt(position + 4, (int) crc.getValue());
+        active.buffer.put(position + RECORD_HEADER_BYTES, payload);
+        
+        sequence++;
+        lastTimestamp = timestamp;
+        appendedRecords++;
+        index(active, position, size, timestamp, event.operation().agentId(), event.operation().id());
+        active.lastTimestamp = timestamp;
+        // Readers only look below end, so the record becomes visible once complete
+        active.end = position + size;
+        
+        if (active.end - active.syncedTo >= fsyncBytes) {
+            force();
+        }
+    }
+    
+    private void force() {
+        if (active != null && active.end > active.syncedTo) {
+            active.buffer.force(active.syncedTo, active.end - active.syncedTo);
+            active.syncedTo = active.end;
+            syncs++;
+        }
+    }
+    
+    private void roll() throws IOException {
+        Path file = Paths.get(auditDir, String.format("%020d", sequence + 1) + SEGMENT_SUFFIX);
+        Segment segment = new Segment(file, segmentBytes);
+        segments.add(segment);
+        active = segment;
+        openBlock = null;
+    }
+    
+    private void index(Segment segment, int position, int size, long timestamp, String agentId, Long operationId) {
+        if (openBlock == null || openBlock.segment != segment || openBlock.records >= indexInterval) {
+            openBlock = new Block(segment, position, timestamp);
+            blocks.add(openBlock);
+        }
+        openBlock.records++;
+        openBlock.length += size;
+        openBlock.lastTimestamp = timestamp;
+        openBlock.agents.add(agentId);
+        if (operationId != null) {
+            openBlock.minOperationId = Math.min(openBlock.minOperationId, operationId);
+            openBlock.maxOperationId = Math.max(openBlock.maxOperationId, operationId);
+        }
+    }
+    
+    private synchronized List<Block> candidateBlocks(String agentId, Long operationId, Long from, Long to) {
+        // Blocks are in timestamp order, so the first candidate is found by binary search
+        int low = 0;
+        int high = blocks.size();
+        if (from != null) {
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (blocks.get(mid).lastTimestamp < from) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+        }
+        
+        List<Block> candidates = new ArrayList<>();
+        for (int i = low; i < blocks.size(); i++) {
+            Block block = blocks.get(i);
+            if (to != null && block.firstTimestamp > to) {
+                break;
+            }
+            if (agentId != null && !block.agents.contains(agentId)) {
+                continue;
+            }
+            // Ids are assigned in order, so a block only spans the operations active while it was written
+            if (operationId != null && (operationId < block.minOperationId || operationId > block.maxOperationId)) {
+                continue;
+            }
+            candidates.add(block.snapshot());
+        }
+        return candidates;
+    }
+    
+    /**
+     * Maps an existing segment and indexes its valid records. The scan stops at the
+     * first empty or corrupt record.
+     */
+    private void recover(Path file) throws IOException {
+        Segment segment = new Segment(file, Math.max(segmentBytes, (int) Files.size(file)));
+        segments.add(segment);
+        openBlock = null;
+        
+        MappedByteBuffer buffer = segment.buffer;
+        int position = 0;
+        while (position + RECORD_HEADER_BYTES <= segment.capacity) {
+            int length = buffer.getInt(position);
+            if (length <= 0 || position + RECORD_HEADER_BYTES + length > segment.capacity) {
+                break;
+            }
+            byte[] payload = new byte[length];
+            buffer.get(position + RECORD_HEADER_BYTES, payload);
+            CRC32 crc = new CRC32();
+            crc.update(payload);
+            if ((int) crc.getValue() != buffer.getInt(position + 4)) {
+                System.err.println("Audit segment " + file + " has a corrupt record at " + position + "; truncating");
+                break;
+            }
+            
+            AuditEvent event = decode(ByteBuffer.wrap(payload));
+            int size = RECORD_HEADER_BYTES + length;
+            index(segment, position, size, event.timestamp(), event.agentId(), event.operationId());
+            sequence = event.sequence();
+            lastTimestamp = Math.max(lastTimestamp, event.timestamp());
+            segment.lastTimestamp = event.timestamp();
+            position += size;
+        }
+        
+        segment.end = position;
+        segment.syncedTo = position;
+    }
+    
+    private static byte[] encode(long sequence, long timestamp, FileOperationChangedEvent event) {
+        OperationSummary operation = event.operation();
+        byte[][] strings = {
+                utf8(operation.agentId()),
+                utf8(operation.operationType()),
+                utf8(operation.filePath()),
+                utf8(operation.status()),
+                utf8(event.previousStatus()),
+                utf8(operation.errorMessage())
+        };
+        int size = 8 + 8 + 1 + 8 + 8 + 8 + 8;
+        for (byte[] string : strings) {
+            size += 4 + (string != null ? string.length : 0);
+        }
+        
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        buffer.putLong(sequence);
+        buffer.putLong(timestamp);
+        buffer.put((byte) event.changeType().ordinal());
+        buffer.putLong(operation.id() != null ? operation.id() : -1);
+        for (byte[] string : strings) {
+            if (string == null) {
+                buffer.putInt(-1);
+            } else {
+                buffer.putInt(string.length);
+                buffer.put(string);
+            }
+        }
+        buffer.putLong(operation.userId() != null ? operation.userId() : -1);
+        buffer.putLong(toMillis(operation.createdAt()));
+        buffer.putLong(toMillis(operation.completedAt()));
+        return buffer.array();
+    }
+    
+    private static AuditEvent decode(ByteBuffer buffer) {
+        long sequence = buffer.getLong();
+        long timestamp = buffer.getLong();
+        ChangeType changeType = ChangeType.values()[buffer.get()];
+        long operationId = buffer.getLong();
+        String agentId = getString(buffer);
+        String operationType = getString(buffer);
+        String filePath = getString(buffer);
+        String status = getString(buffer);
+        String previousStatus = getString(buffer);
+        String errorMessage = getString(buffer);
+        long userId = buffer.getLong();
+        long createdAt = buffer.getLong();
+        long completedAt = buffer.getLong();
+        return new AuditEvent(
+                sequence,
+                timestamp,
+                changeType,
+                operationId,
+                agentId,
+                operationType,
+                filePath,
+                status,
+                previousStatus,
+                errorMessage,
+                userId >= 0 ? userId : null,
+                fromMillis(createdAt),
+                fromMillis(completedAt)
+        );
+    }
+    
+    private static byte[] utf8(String value) {
+        if (value == null) {
+            return null;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        // Oversized paths and error messages are cut at a byte limit; a split character decodes as U+FFFD
+        return bytes.length > MAX_STRING_BYTES ? Arrays.copyOf(bytes, MAX_STRING_BYTES) : bytes;
+    }
+    
+    private static String getString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+    
+    private static long toMillis(LocalDateTime time) {
+        return time != null ? time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli() : -1;
+    }
+    
+    private static LocalDateTime fromMillis(long millis) {
+        return millis >= 0 ? LocalDateTime.ofInstant(Instant.ofEpochMilli(millis), ZoneId.systemDefault()) : null;
+    }
+    
+    public record AuditEvent(
+            long sequence,
+            long timestamp,
+            ChangeType changeType,
+            Long operationId,
+            String agentId,
+            String operationType,
+            String filePath,
+            String status,
+            String previousStatus,
+            String errorMessage,
+            Long userId,
+            LocalDateTime createdAt,
+            LocalDateTime completedAt
+    ) {
+        public FileOperation toFileOperation() {
+            FileOperation operation = new FileOperation(agentId, operationType, filePath, userId);
+            operation.setId(operationId);
+            operation.setStatus(status);
+            operation.setErrorMessage(errorMessage);
+            operation.setCreatedAt(createdAt);
+            operation.setCompletedAt(completedAt);
+            return operation;
+        }
+    }
+    
+    private static class Segment {
+        private final Path path;
+        private final FileChannel channel;
+        private final MappedByteBuffer buffer;
+        private final int capacity;
+        private volatile int end;
+        private int syncedTo;
+        private long lastTimestamp;
+        
+        Segment(Path path, int capacity) throws IOException {
+            this.path = path;
+            this.capacity = capacity;
+            this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            // Mapping past the end of the file extends it; the new region reads as zeros
+            this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+        }
+        
+        void clearTail() {
+            // Anything past the last valid record is a torn write; zero it so later
+            // appends never end up followed by a stale record that looks valid
+            for (int i = end; i < capacity; i++) {
+                if (buffer.get(i) != 0) {
+                    buffer.put(i, (byte) 0);
+                }
+            }
+        }
+        
+        ByteBuffer reader() {
+            // Independent position per reader; absolute reads below end never race the writer
+            return buffer.duplicate();
+        }
+        
+        void close() throws IOException {
+            channel.close();
+        }
+    }
+    
+    /**
+     * Sparse index entry for a run of consecutive records in one segment.
+     */
+    private static class Block {
+        private final Segment segment;
+        private final int offset;
+        private final long firstTimestamp;
+        private final Set<String> agents = new HashSet<>();
+        private long minOperationId = Long.MAX_VALUE;
+        private long maxOperationId = Long.MIN_VALUE;
+        private int records;
+        private int length;
+        private long lastTimestamp;
+        
+        Block(Segment segment, int offset, long firstTimestamp) {
+            this.segment = segment;
+            this.offset = offset;
+            this.firstTimestamp = firstTimestamp;
+            this.lastTimestamp = firstTimestamp;
+        }
+        
+        int end() {
+            return offset + length;
+        }
+        
+        Block snapshot() {
+            // The open block keeps growing; scans work on its extent at query time
+            Block copy = new Block(segment, offset, firstTimestamp);
+            copy.length = length;
+            copy.lastTimestamp = lastTimestamp;
+            return copy;
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,334 @@
+package com.vr.portal.service;
+
+import com.vr.portal.websocket.WebSocketService;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Incremental stdout/stderr for long-running agent commands. Agents send numbered
+ * chunks; each operation keeps its most recent output in a bounded in-memory window
+ * and spills older chunks to a file, indexed by byte offset. Every accepted chunk is
+ * published on /topic/operations/{id}/output, and clients that join late read the
+ * backlog over HTTP from an offset before following the topic.
+ */
+@Service
+public class OperationOutputService {
+    
+    private final WebSocketService webSocketService;
+    private final Map<Long, OutputBuffer> buffers = new ConcurrentHashMap<>();
+    
+    @Value("${app.output.memory-bytes-per-operation:262144}")
+    private int memoryBytesPerOperation;
+    
+    @Value("${app.output.max-chunk-bytes:65536}")
+    private int maxChunkBytes;
+    
+    @Value("${app.output.max-out-of-order-chunks:256}")
+    private int maxOutOfOrderChunks;
+    
+    @Value("${app.output.max-operations:1000}")
+    private int maxOperations;
+    
+    @Value("${app.output.retention-minutes:60}")
+    private long retentionMinutes;
+    
+    @Value("${app.output.spill-dir:data/output}")
+    private String spillDir;
+    
+    public OperationOutputService(WebSocketService webSocketService) {
+        this.webSocketService = webSocketService;
+    }
+    
+    public void append(Long operationId, long sequence, String stream, String data, boolean eof) {
+        if (buffers.size() >= maxOperations && !buffers.containsKey(operationId)) {
+            evictOldest();
+        }
+        
+        OutputBuffer buffer = buffers.computeIfAbsent(operationId, OutputBuffer::new);
+        String text = data != null ? truncate(data) : "";
+        List<OutputChunk> accepted = buffer.accept(sequence, new PendingChunk("stderr".equals(stream), text, eof));
+        
+        for (OutputChunk chunk : accepted) {
+            Map<String, Object> message = new LinkedHashMap<>();
+            message.put("type", "operation_output");
+            message.put("operationId", operationId);
+            message.put("offset", chunk.offset());
+            message.put("nextOffset", chunk.offset() + chunk.length());
+            message.put("stream", chunk.stream());
+            message.put("data", chunk.data());
+            message.put("eof", chunk.eof());
+            webSocketService.sendToPortal("operations/" + operationId + "/output", message);
+        }
+    }
+    
+    public void finish(Long operationId) {
+        OutputBuffer buffer = buffers.get(operationId);
+        if (buffer != null) {
+            buffer.markFinished();
+        }
+    }
+    
+    public Optional<Map<String, Object>> read(Long operationId, long offset, int limitBytes) {
+        OutputBuffer buffer = buffers.get(operationId);
+        if (buffer == null) {
+            return Optional.empty();
+        }
+        
+        OutputSlice slice = buffer.read(Math.max(0, offset), Math.max(1, limitBytes));
+        List<Map<String, Object>> chunks = slice.chunks().stream()
+                .map(chunk -> Map.<String, Object>of(
+                        "offset", chunk.offset(),
+                        "stream", chunk.stream(),
+                        "data", chunk.data()
+                ))
+                .toList();
+        
+        return Optional.of(Map.of(
+                "operationId", operationId,
+                "offset", offset,
+                "nextOffset", slice.nextOffset(),
+                "endOffset", slice.endOffset(),
+                "complete", slice.complete(),
+                "chunks", chunks
+        ));
+    }
+    
+    @Scheduled(fixedDelayString = "${app.output.cleanup-interval-ms:60000}")
+    public void evictExpired() {
+        long cutoff = System.currentTimeMillis() - retentionMinutes * 60_000;
+        buffers.values().removeIf(buffer -> {
+            if (buffer.finishedBefore(cutoff)) {
+                buffer.release();
+                return true;
+            }
+            return false;
+        });
+    }
+    
+    private void evictOldest() {
+        buffers.values().stream()
+                .min(Comparator.comparingLong(OutputBuffer::lastActivity))
+                .ifPresent(oldest -> {
+                    buffers.remove(oldest.operationId);
+                    oldest.release();
+                });
+    }
+    
+    private String truncate(String data) {
+        byte[] bytes = data.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length <= maxChunkBytes) {
+            return data;
+        }
+        // Back up over continuation bytes so the cut never splits a character
+        int end = maxChunkBytes;
+        while (end > 0 && (bytes[end] & 0xC0) == 0x80) {
+            end--;
+        }
+        return new String(bytes, 0, end, StandardCharsets.UTF_8);
+    }
+    
+    private record PendingChunk(boolean stderr, String data, boolean eof) {}
+    
+    private record OutputChunk(long offset, boolean stderr, String data, int length, boolean eof) {
+        String stream() {
+            return stderr ? "stderr" : "stdout";
+        }
+    }
+    
+    private record OutputSlice(List<OutputChunk> chunks, long nextOffset, long endOffset, boolean complete) {}
+    
+    private class OutputBuffer {
+        private final Long operationId;
+        private final ArrayDeque<OutputChunk> memory = new ArrayDeque<>();
+        private final TreeMap<Long, PendingChunk> outOfOrder = new TreeMap<>();
+        // Offset of each spilled chunk mapped to its position in the spill file
+        private final TreeMap<Long, Long> spillIndex = new TreeMap<>();
+        private FileChannel spillChannel;
+        private long nextSequence;
+        private long memoryStart;
+        private long memoryBytes;
+        private long endOffset;
+        private boolean eof;
+        private long lastActivity = System.currentTimeMillis();
+        private long finishedAt;
+        
+        OutputBuffer(Long operationId) {
+            this.operationId = operationId;
+        }
+        
+        synchronized List<OutputChunk> accept(long sequence, PendingChunk chunk) {
+            lastActivity = System.currentTimeMillis();
+            if (sequence < nextSequence || outOfOrder.containsKey(sequence)) {
+                return List.of();
+            }
+            
+            if (sequence > nextSequence) {
+                if (outOfOrder.size() < maxOutOfOrderChunks) {
+                    outOfOrder.put(sequence, chunk);
+                }
+                return List.of();
+            }
+            
+            List<OutputChunk> accepted = new ArrayList<>();
+            accepted.add(store(chunk));
+            nextSequence++;
+            
+            PendingChunk next;
+            while ((next = outOfOrder.remove(nextSequence)) != null) {
+                accepted.add(store(next));
+                nextSequence++;
+            }
+            return accepted;
+        }
+        
+        private OutputChunk store(PendingChunk pending) {
+            int length = pending.data().getBytes(StandardCharsets.UTF_8).length;
+            OutputChunk chunk = new OutputChunk(endOffset, pending.stderr(), pending.data(), length, pending.eof());
+            
+            memory.addLast(chunk);
+            memoryBytes += length;
+            endOffset += length;
+            if (pending.eof()) {
+                markFinished();
+            }
+            
+            while (memoryBytes > memoryBytesPerOperation && memory.size() > 1) {
+                spill(memory.pollFirst());
+            }
+            return chunk;
+        }
+        
+        private void spill(OutputChunk chunk) {
+            memoryBytes -= chunk.length();
+            memoryStart = chunk.offset() + chunk.length();
+            
+            try {
+                if (spillChannel == null) {
+                    Path directory = Paths.get(spillDir);
+                    Files.createDirectories(directory);
+                    spillChannel = FileChannel.open(spillFile(),
+                            StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE,
+                            StandardOpenOption.TRUNCATE_EXISTING);
+                }
+                
+                byte[] data = chunk.data().getBytes(StandardCharsets.UTF_8);
+                ByteBuffer record = ByteBuffer.allocate(Long.BYTES + 1 + Integer.BYTES + data.length);
+                record.putLong(chunk.offset()).put((byte) (chunk.stderr() ? 1 : 0)).putInt(data.length).put(data).flip();
+                
+                long position = spillChannel.size();
+                while (record.hasRemaining()) {
+                    spillChannel.write(record, position + record.position());
+                }
+                spillIndex.put(chunk.offset(), position);
+                
+            } catch (IOException e) {
+                // Without the spill file the oldest output is simply dropped
+                System.err.println("Failed to spill output for operation " + operationId + ": " + e.getMessage());
+            }
+        }
+        
+        synchronized OutputSlice read(long offset, int limitBytes) {
+            List<OutputChunk> chunks = new ArrayList<>();
+            long next = offset;
+            int bytes = 0;
+            
+            if (offset < memoryStart && spillChannel != null) {
+                Map.Entry<Long, Long> start = spillIndex.floorEntry(offset);
+                Iterator<Long> positions = (start != null ? spillIndex.tailMap(start.getKey(), true) : spillIndex)
+                        .values().iterator();
+                
+                while (positions.hasNext() && bytes < limitBytes) {
+                    OutputChunk chunk = readSpilled(positions.next());
+                    if (chunk == null) {
+                        break;
+                    }
+                    chunks.add(chunk);
+                    bytes += chunk.length();
+                    next = chunk.offset() + chunk.length();
+                }
+            }
+            
+            for (OutputChunk chunk : memory) {
+                if (bytes >= limitBytes) {
+                    break;
+                }
+                if (chunk.offset() + chunk.length() <= next || chunk.offset() + chunk.length() <= offset) {
+                    continue;
+                }
+                chunks.add(chunk);
+                bytes += chunk.length();
+                next = chunk.offset() + chunk.length();
+            }
+            
+            if (chunks.isEmpty()) {
+                next = Math.max(offset, Math.min(endOffset, Math.max(offset, memoryStart)));
+            }
+            return new OutputSlice(chunks, next, endOffset, eof && next >= endOffset);
+        }
+        
+        private OutputChunk readSpilled(long position) {
+            try {
+                ByteBuffer header = ByteBuffer.allocate(Long.BYTES + 1 + Integer.BYTES);
+                spillChannel.read(header, position);
+                header.flip();
+                long offset = header.getLong();
+                boolean stderr = header.get() == 1;
+                int length = header.getInt();
+                
+                ByteBuffer data = ByteBuffer.allocate(length);
+                spillChannel.read(data, position + header.capacity());
+                return new OutputChunk(offset, stderr, new String(data.array(), StandardCharsets.UTF_8), length, false);
+                
+            } catch (IOException e) {
+                System.err.println("Failed to read spilled output for operation " + operationId + ": " + e.getMessage());
+                return null;
+            }
+        }
+        
+        synchronized void markFinished() {
+            if (!eof) {
+                eof = true;
+                finishedAt = System.currentTimeMillis();
+            }
+        }
+        
+        synchronized boolean finishedBefore(long cutoff) {
+            return eof ? finishedAt < cutoff : lastActivity < cutoff;
+        }
+        
+        synchronized long lastActivity() {
+            return lastActivity;
+        }
+        
+        synchronized void release() {
+            memory.clear();
+            outOfOrder.clear();
+            spillIndex.clear();
+            if (spillChannel != null) {
+                try {
+                    spillChannel.close();
+                    Files.deleteIfExists(spillFile());
+                } catch (IOException e) {
+                    System.err.println("Failed to remove spilled output for operation " + operationId + ": " + e.getMessage());
+                }
+                spillChannel = null;
+            }
+        }
+        
+        private Path spillFile() {
+            return Paths.get(spillDir, operationId + ".out");
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,236 @@
+package com.vr.portal.service;
+
+import com.vr.portal.dto.OperationSummary;
+import com.vr.portal.event.ChangeType;
+import com.vr.portal.event.FileOperationChangedEvent;
+import com.vr.portal.repository.FileOperationRepository;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.*;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Read model for the portal's operation lists. Committed file operation changes are
+ * queued and applied by a single projector thread to an in-memory copy of the newest
+ * max-operations operations, indexed by agent and network, so portal reads never touch
+ * file_operations and never wait on the transactions that write it. The copy trails
+ * the table by the time an event spends in the queue, which is reported as lag.
+ */
+@Service
+public class OperationReadModelService {
+    
+    private final FileOperationRepository fileOperationRepository;
+    private final BlockingQueue<FileOperationChangedEvent> pending = new LinkedBlockingQueue<>();
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    
+    // Guarded by lock
+    private final TreeMap<Long, OperationSummary> operations = new TreeMap<>();
+    private final Map<String, TreeSet<Long>> byAgent = new HashMap<>();
+    private final Map<String, TreeSet<Long>> byNetwork = new HashMap<>();
+    
+    private final AtomicLong applied = new AtomicLong();
+    private final AtomicLong totalLagMs = new AtomicLong();
+    private final AtomicLong maxLagMs = new AtomicLong();
+    private volatile long lastLagMs;
+    private volatile long watermark;
+    private volatile Thread projector;
+    
+    @Value("${app.read-model.max-operations:100000}")
+    private int maxOperations;
+    
+    public OperationReadModelService(FileOperationRepository fileOperationRepository) {
+        this.fileOperationRepository = fileOperationRepository;
+    }
+    
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        // Events committed meanwhile are already queued and are applied on top
+        List<OperationSummary> newest = fileOperationRepository.findAllByOrderByIdDesc(PageRequest.of(0, Math.max(1, maxOperations)))
+                .stream().map(OperationSummary::from).toList();
+        lock.writeLock().lock();
+        try {
+            newest.forEach(this::put);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        System.out.println("Operation read model loaded with " + newest.size() + " operations");
+        
+        Thread thread = new Thread(this::project, "operation-read-model");
+        thread.setDaemon(true);
+        projector = thread;
+        thread.start();
+    }
+    
+    @PreDestroy
+    public void stop() {
+        Thread current = projector;
+        if (current != null) {
+            current.interrupt();
+        }
+    }
+    
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onOperationChanged(FileOperationChangedEvent event) {
+        pending.add(event);
+    }
+    
+    /**
+     * Forgets operations the retention job has removed; bulk deletes publish no events.
+     */
+    public void removed(Collection<Long> operationIds) {
+        lock.writeLock().lock();
+        try {
+            operationIds.forEach(this::remove);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    /**
+     * Newest first, optionally limited to one network.
+     */
+    public List<OperationSummary> recent(String networkId) {
+        lock.readLock().lock();
+        try {
+            if (networkId == null) {
+                return new ArrayList<>(operations.descendingMap().values());
+            }
+            return collect(byNetwork.get(networkId), null);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    /**
+     * Newest first for one agent, optionally limited to one network.
+     */
+    public List<OperationSummary> recentForAgent(String networkId, String agentId) {
+        lock.readLock().lock();
+        try {
+            return collect(byAgent.get(agentId), networkId);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    public Map<String, Object> getStats() {
+        long count = applied.get();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        lock.readLock().lock();
+        try {
+            stats.put("operations", operations.size());
+        } finally {
+            lock.readLock().unlock();
+        }
+        stats.put("pendingEvents", pending.size());
+        stats.put("appliedEvents", count);
+        stats.put("lastLagMs", lastLagMs);
+        stats.put("averageLagMs", count > 0 ? totalLagMs.get() / count : 0);
+        stats.put("maxLagMs", maxLagMs.get());
+        // Changes committed up to this time are visible to portal reads
+        stats.put("watermark", watermark);
+        return stats;
+    }
+    
+    private void project() {
+        List<FileOperationChangedEvent> batch = new ArrayList<>();
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                batch.add(pending.take());
+            } catch (InterruptedException e) {
+                return;
+            }
+            pending.drainTo(batch, 1000);
+            
+            lock.writeLock().lock();
+            try {
+                for (FileOperationChangedEvent event : batch) {
+                    if (event.changeType() == ChangeType.DELETED) {
+                        remove(event.operation().id());
+                    } else {
+                        put(event.operation());
+                    }
+                }
+            } catch (RuntimeException e) {
+                System.err.println("Failed to apply operation changes to read model: " + e.getMessage());
+            } finally {
+                lock.writeLock().unlock();
+            }
+            
+            long now = System.currentTimeMillis();
+            for (FileOperationChangedEvent event : batch) {
+                long lag = Math.max(0, now - event.occurredAt());
+                totalLagMs.addAndGet(lag);
+                maxLagMs.accumulateAndGet(lag, Math::max);
+                lastLagMs = lag;
+                watermark = Math.max(watermark, event.occurredAt());
+            }
+            applied.addAndGet(batch.size());
+            batch.clear();
+        }
+    }
+    
+    // Caller must hold the read lock
+    private List<OperationSummary> collect(TreeSet<Long> ids, String networkId) {
+        if (ids == null) {
+            return List.of();
+        }
+        List<OperationSummary> results = new ArrayList<>(ids.size());
+        for (Long id : ids.descendingSet()) {
+            OperationSummary operation = operations.get(id);
+            if (networkId == null || networkId.equals(operation.networkId())) {
+                results.add(operation);
+            }
+        }
+        return results;
+    }
+    
+    // Caller must hold the write lock
+    private void put(OperationSummary operation) {
+        if (operation.id() == null) {
+            return;
+        }
+        OperationSummary previous = operations.put(operation.id(), operation);
+        if (previous != null && !Objects.equals(previous.networkId(), operation.networkId())) {
+            unindex(byNetwork, previous.networkId(), previous.id());
+        }
+        index(byAgent, operation.agentId(), operation.id());
+        index(byNetwork, operation.networkId(), operation.id());
+        
+        // Oldest operations fall out first; they are still in file_operations
+        while (operations.size() > Math.max(1, maxOperations)) {
+            remove(operations.firstKey());
+        }
+    }
+    
+    // Caller must hold the write lock
+    private void remove(Long operationId) {
+        OperationSummary operation = operations.remove(operationId);
+        if (operation != null) {
+            unindex(byAgent, operation.agentId(), operationId);
+            unindex(byNetwork, operation.networkId(), operationId);
+        }
+    }
+    
+    private static void index(Map<String, TreeSet<Long>> index, String key, Long operationId) {
+        if (key != null) {
+            index.computeIfAbsent(key, k -> new TreeSet<>()).add(operationId);
+        }
+    }
+    
+    private static void unindex(Map<String, TreeSet<Long>> index, String key, Long operationId) {
+        TreeSet<Long> ids = key != null ? index.get(key) : null;
+        if (ids != null && ids.remove(operationId) && ids.isEmpty()) {
+            index.remove(key);
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,230 @@
+package com.vr.portal.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.vr.portal.entity.FileOperation;
+import com.vr.portal.entity.OperationRollup;
+import com.vr.portal.repository.FileOperationRepository;
+import com.vr.portal.repository.OperationRollupRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Keeps the file_operations table bounded. Operations older than the retention
+ * window are archived to gzipped NDJSON files, folded into hourly and daily
+ * rollups and then deleted in small batches, so live writes are only ever
+ * blocked for the duration of a single batch.
+ */
+@Service
+public class OperationRetentionService {
+    
+    private static final DateTimeFormatter ARCHIVE_DATE = DateTimeFormatter.ofPattern("yyyyMMdd");
+    
+    private final FileOperationRepository fileOperationRepository;
+    private final OperationRollupRepository rollupRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper objectMapper;
+    private final OperationReadModelService operationReadModelService;
+    private final AtomicBoolean running = new AtomicBoolean(false);
+    
+    @Value("${app.retention.enabled:true}")
+    private boolean enabled;
+    
+    @Value("${app.retention.days:30}")
+    private int retentionDays;
+    
+    @Value("${app.retention.hourly-rollup-days:90}")
+    private int hourlyRollupDays;
+    
+    @Value("${app.retention.batch-size:500}")
+    private int batchSize;
+    
+    @Value("${app.retention.max-batches-per-run:20}")
+    private int maxBatchesPerRun;
+    
+    @Value("${app.retention.batch-pause-ms:250}")
+    private long batchPauseMs;
+    
+    @Value("${app.retention.archive-dir:data/archive}")
+    private String archiveDir;
+    
+    public OperationRetentionService(
+            FileOperationRepository fileOperationRepository,
+            OperationRollupRepository rollupRepository,
+            TransactionTemplate transactionTemplate,
+            ObjectMapper objectMapper,
+            OperationReadModelService operationReadModelService
+    ) {
+        this.fileOperationRepository = fileOperationRepository;
+        this.rollupRepository = rollupRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.objectMapper = objectMapper;
+        this.operationReadModelService = operationReadModelService;
+    }
+    
+    // Runs every few minutes inside the off-peak window configured by the cron expression
+    @Scheduled(cron = "${app.retention.cron:0 */10 1-5 * * *}")
+    public void runScheduledRetention() {
+        if (enabled) {
+            purgeExpiredOperations();
+        }
+    }
+    
+    public int purgeExpiredOperations() {
+        if (!running.compareAndSet(false, true)) {
+            return 0;
+        }
+        
+        try {
+            LocalDateTime threshold = LocalDateTime.now().minusDays(retentionDays);
+            int total = 0;
+            
+            for (int batch = 0; batch < maxBatchesPerRun; batch++) {
+                int processed = processBatch(threshold);
+                total += processed;
+                
+                if (processed < batchSize) {
+                    break;
+                }
+                
+                // Give live writers a chance to grab the SQLite lock between batches
+                Thread.sleep(batchPauseMs);
+            }
+            
+            purgeHourlyRollups();
+            
+            if (total > 0) {
+                System.out.println("Retention archived " + total + " file operations older than " + threshold);
+            }
+            return total;
+            
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return 0;
+        } finally {
+            running.set(false);
+        }
+    }
+    
+    private int processBatch(LocalDateTime threshold) {
+        List<FileOperation> operations = fileOperationRepository.findByCreatedAtBeforeOrderByIdAsc(
+                threshold,
+                PageRequest.of(0, batchSize)
+        );
+        
+        if (operations.isEmpty()) {
+            return 0;
+        }
+        
+        Path archive;
+        try {
+            archive = writeArchive(operations);
+        } catch (IOException e) {
+            System.err.println("Failed to archive file operations: " + e.getMessage());
+            return 0;
+        }
+        
+        try {
+            List<Long> ids = operations.stream().map(FileOperation::getId).toList();
+            transactionTemplate.executeWithoutResult(status -> {
+                rollUp(operations);
+                fileOperationRepository.deleteAllByIdInBatch(ids);
+            });
+            operationReadModelService.removed(ids);
+            return operations.size();
+            
+        } catch (RuntimeException e) {
+            // The rows are still in the table, so drop the archive to avoid duplicating them next run
+            try {
+                Files.deleteIfExists(archive);
+            } catch (IOException ignored) {
+                // Best effort
+            }
+            System.err.println("Failed to roll up file operations: " + e.getMessage());
+            return 0;
+        }
+    }
+    
+    private Path writeArchive(List<FileOperation> operations) throws IOException {
+        Path directory = Paths.get(archiveDir);
+        Files.createDirectories(directory);
+        
+        String fileName = String.format(
+                "file_operations-%s-%d-%d.ndjson.gz",
+                LocalDate.now().format(ARCHIVE_DATE),
+                operations.get(0).getId(),
+                operations.get(operations.size() - 1).getId()
+        );
+        Path target = directory.resolve(fileName);
+        Path temp = directory.resolve(fileName + ".tmp");
+        
+        try (FileOutputStream fileOut = new FileOutputStream(temp.toFile());
+             GZIPOutputStream out = new GZIPOutputStream(fileOut, 64 * 1024)) {
+            for (FileOperation operation : operations) {
+                out.write(objectMapper.writeValueAsBytes(operation));
+                out.write('\n');
+            }
+            out.finish();
+            fileOut.getFD().sync();
+        }
+        
+        return Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+    
+    private void rollUp(List<FileOperation> operations) {
+        Map<RollupKey, Long> counts = new LinkedHashMap<>();
+        
+        for (FileOperation operation : operations) {
+            LocalDateTime createdAt = operation.getCreatedAt() != null ? operation.getCreatedAt() : LocalDateTime.now();
+            String status = operation.getStatus() != null ? operation.getStatus() : "pending";
+            
+            counts.merge(new RollupKey(OperationRollup.HOURLY, createdAt.truncatedTo(ChronoUnit.HOURS),
+                    operation.getAgentId(), operation.getOperationType(), status), 1L, Long::sum);
+            counts.merge(new RollupKey(OperationRollup.DAILY, createdAt.truncatedTo(ChronoUnit.DAYS),
+                    operation.getAgentId(), operation.getOperationType(), status), 1L, Long::sum);
+        }
+        
+        counts.forEach((key, count) -> {
+            OperationRollup rollup = rollupRepository
+                    .findByGranularityAndBucketStartAndAgentIdAndOperationTypeAndStatus(
+                            key.granularity(), key.bucketStart(), key.agentId(), key.operationType(), key.status())
+                    .orElseGet(() -> new OperationRollup(
+                            key.granularity(), key.bucketStart(), key.agentId(), key.operationType(), key.status()));
+            rollup.setOperationCount(rollup.getOperationCount() + count);
+            rollupRepository.save(rollup);
+        });
+    }
+    
+    private void purgeHourlyRollups() {
+        LocalDateTime threshold = LocalDateTime.now().minusDays(hourlyRollupDays);
+        transactionTemplate.executeWithoutResult(status ->
+                rollupRepository.deleteByGranularityBefore(OperationRollup.HOURLY, threshold)
+        );
+    }
+    
+    private record RollupKey(
+            String granularity,
+            LocalDateTime bucketStart,
+            String agentId,
+            String operationType,
+            String status
+    ) {}
+}
\ No newline at end of file
@@ -0,0 +1,208 @@
+package com.vr.portal.service;
+
+import com.vr.portal.exception.PayloadBudgetExceededException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Accounts for payload bytes held in memory while they are in flight: uploads being
+ * received, agent messages being handled, portal broadcasts being fanned out and frames
+ * queued for STOMP sessions. Everything counts against max-in-flight-bytes, and each
+ * payload type also against its own limit. New work waits up to max-wait-ms for room
+ * and is then rejected, so a burst of large transfers slows down instead of exhausting
+ * the heap.
+ * <p>
+ * Portal broadcasts and outbound frames are only accounted, never refused: they are
+ * already encoded by the time they are seen, and dropping them would lose portal events
+ * without freeing anything. They still count against the total, which is what makes new
+ * uploads and agent messages wait while the portal fan-out drains.
+ */
+@Service
+public class PayloadBudgetService {
+    
+    public enum PayloadType {
+        UPLOAD, AGENT_MESSAGE, BROADCAST, OUTBOUND;
+        
+        public String key() {
+            return name().toLowerCase(Locale.ROOT);
+        }
+    }
+    
+    private final Map<PayloadType, Gauge> gauges = new EnumMap<>(PayloadType.class);
+    
+    // Guarded by this
+    private long inFlight;
+    private long peak;
+    
+    @Value("${app.memory.enabled:true}")
+    private boolean enabled;
+    
+    @Value("${app.memory.max-in-flight-bytes:134217728}")
+    private long maxInFlightBytes;
+    
+    @Value("${app.memory.max-wait-ms:2000}")
+    private long maxWaitMs;
+    
+    public PayloadBudgetService(
+            @Value("${app.memory.upload.max-bytes:67108864}") long uploadMaxBytes,
+            @Value("${app.memory.agent-message.max-bytes:33554432}") long agentMessageMaxBytes
+    ) {
+        gauges.put(PayloadType.UPLOAD, new Gauge(uploadMaxBytes));
+        gauges.put(PayloadType.AGENT_MESSAGE, new Gauge(agentMessageMaxBytes));
+        gauges.put(PayloadType.BROADCAST, new Gauge(Long.MAX_VALUE));
+        gauges.put(PayloadType.OUTBOUND, new Gauge(Long.MAX_VALUE));
+    }
+    
+    /**
+     * Reserves bytes for a payload, waiting up to max-wait-ms for room. A payload larger
+     * than a limit on its own is admitted once nothing else of its type is in flight, so
+     * it is slowed down rather than refused forever. The reservation must be closed when
+     * the payload has been handled.
+     */
+    public Reservation reserve(PayloadType type, long bytes) {
+        if (!enabled || bytes <= 0) {
+            return Reservation.NONE;
+        }
+        Gauge gauge = gauges.get(type);
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(maxWaitMs);
+        boolean waited = false;
+        synchronized (this) {
+            while (!fits(gauge, bytes)) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    gauge.rejected.increment();
+                    throw new PayloadBudgetExceededException(type.key(), Math.max(1, TimeUnit.MILLISECONDS.toSeconds(maxWaitMs)),
+                            "Server is busy with other transfers (" + type.key() + ")");
+                }
+                waited = true;
+                try {
+                    TimeUnit.NANOSECONDS.timedWait(this, remaining);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    gauge.rejected.increment();
+                    throw new PayloadBudgetExceededException(type.key(), 1, "Interrupted while waiting for memory budget");
+                }
+            }
+            add(gauge, bytes);
+        }
+        if (waited) {
+            gauge.waited.increment();
+        }
+        return new Reservation(this, type, bytes);
+    }
+    
+    /**
+     * Counts bytes that are already in memory and cannot be refused.
+     */
+    public Reservation account(PayloadType type, long bytes) {
+        if (!enabled || bytes <= 0) {
+            return Reservation.NONE;
+        }
+        synchronized (this) {
+            add(gauges.get(type), bytes);
+        }
+        return new Reservation(this, type, bytes);
+    }
+    
+    public Map<String, Object> getStats() {
+        Map<String, Object> byType = new LinkedHashMap<>();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        synchronized (this) {
+            gauges.forEach((type, gauge) -> {
+                Map<String, Object> entry = new LinkedHashMap<>();
+                entry.put("inFlightBytes", gauge.inFlight);
+                entry.put("peakBytes", gauge.peak);
+                entry.put("limitBytes", gauge.limit == Long.MAX_VALUE ? null : gauge.limit);
+                entry.put("inFlight", gauge.count.get());
+                entry.put("admitted", gauge.admitted.sum());
+                entry.put("admittedBytes", gauge.admittedBytes.sum());
+                entry.put("waited", gauge.waited.sum());
+                entry.put("rejected", gauge.rejected.sum());
+                byType.put(type.key(), entry);
+            });
+            stats.put("enabled", enabled);
+            stats.put("inFlightBytes", inFlight);
+            stats.put("peakBytes", peak);
+            stats.put("limitBytes", maxInFlightBytes);
+        }
+        stats.put("byType", byType);
+        return stats;
+    }
+    
+    private boolean fits(Gauge gauge, long bytes) {
+        // Alone, a payload always fits; otherwise it would never be admitted
+        boolean typeFits = gauge.inFlight == 0 || gauge.inFlight + bytes <= gauge.limit;
+        boolean totalFits = inFlight == gauge.inFlight || inFlight + bytes <= maxInFlightBytes;
+        return typeFits && totalFits;
+    }
+    
+    private void add(Gauge gauge, long bytes) {
+        inFlight += bytes;
+        gauge.inFlight += bytes;
+        gauge.peak = Math.max(gauge.peak, gauge.inFlight);
+        gauge.count.incrementAndGet();
+        gauge.admitted.increment();
+        gauge.admittedBytes.add(bytes);
+        peak = Math.max(peak, inFlight);
+    }
+    
+    private synchronized void release(PayloadType type, long bytes) {
+        Gauge gauge = gauges.get(type);
+        inFlight -= bytes;
+        gauge.inFlight -= bytes;
+        gauge.count.decrementAndGet();
+        notifyAll();
+    }
+    
+    private static final class Gauge {
+        final long limit;
+        final AtomicInteger count = new AtomicInteger();
+        final LongAdder admitted = new LongAdder();
+        final LongAdder admittedBytes = new LongAdder();
+        final LongAdder waited = new LongAdder();
+        final LongAdder rejected = new LongAdder();
+        // Guarded by the service
+        long inFlight;
+        long peak;
+        
+        Gauge(long limit) {
+            this.limit = limit;
+        }
+    }
+    
+    /**
+     * Bytes held for one payload. Closing is idempotent and may happen on another thread
+     * than the one that reserved.
+     */
+    public static final class Reservation implements AutoCloseable {
+        
+        public static final Reservation NONE = new Reservation(null, null, 0);
+        
+        private final PayloadBudgetService owner;
+        private final PayloadType type;
+        private final long bytes;
+        private final AtomicBoolean released = new AtomicBoolean();
+        
+        private Reservation(PayloadBudgetService owner, PayloadType type, long bytes) {
+            this.owner = owner;
+            this.type = type;
+            this.bytes = bytes;
+        }
+        
+        @Override
+        public void close() {
+            if (owner != null && released.compareAndSet(false, true)) {
+                owner.release(type, bytes);
+            }
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,401 @@
+package com.vr.portal.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.vr.portal.security.TenantContext;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Read-only portal event streams over Server-Sent Events and long-polling, for
+ * clients that cannot keep a SockJS/STOMP session. Every message published to a
+ * portal topic is serialized once into a bounded in-memory log with a sequential
+ * id, which is what Last-Event-ID resumes from. Connections are async, so no
+ * request thread is held per client. Each client gets a small outbound queue
+ * drained by a shared sender pool. A client that falls too far behind is
+ * disconnected and resumes from the log when it reconnects.
+ * <p>
+ * Events are tagged with the network of the agent they concern. Users confined to a
+ * network only receive their network's events; events that concern no agent, or an
+ * agent outside it, are left out of their streams.
+ */
+@Service
+public class PortalEventStreamService {
+    
+    private static final String PORTAL_TOPIC = "portal";
+    
+    private final ObjectMapper objectMapper;
+    private final AgentIndexService agentIndexService;
+    private final AtomicLong sequence = new AtomicLong();
+    private final ArrayDeque<PortalEvent> log = new ArrayDeque<>();
+    private final Set<Client> clients = ConcurrentHashMap.newKeySet();
+    private final Set<Waiter> waiters = ConcurrentHashMap.newKeySet();
+    private final ExecutorService sender;
+    
+    @Value("${app.sse.log-size:10000}")
+    private int logSize;
+    
+    @Value("${app.sse.timeout-ms:1800000}")
+    private long emitterTimeoutMs;
+    
+    @Value("${app.sse.max-pending-per-client:1000}")
+    private int maxPendingPerClient;
+    
+    @Value("${app.sse.max-poll-events:500}")
+    private int maxPollEvents;
+    
+    public PortalEventStreamService(
+            ObjectMapper objectMapper,
+            AgentIndexService agentIndexService,
+            @Value("${app.sse.sender-threads:2}") int senderThreads
+    ) {
+        this.objectMapper = objectMapper;
+        this.agentIndexService = agentIndexService;
+        this.sender = Executors.newFixedThreadPool(Math.max(1, senderThreads), runnable -> {
+            Thread thread = new Thread(runnable, "portal-sse-sender");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+    
+    public record Filter(Set<String> types, String agentId, List<String> topics, String networkId) {
+        
+        /**
+         * Filter for the current request; the caller's network is captured here because
+         * events are matched later on publishing and sender threads.
+         */
+        public static Filter of(String types, String agentId, String topics) {
+            return new Filter(
+                    types == null || types.isBlank() ? Set.of() : Set.of(types.split(",")),
+                    agentId == null || agentId.isBlank() ? null : agentId,
+                    topics == null || topics.isBlank() ? List.of(PORTAL_TOPIC) : List.of(topics.split(",")),
+                    TenantContext.currentNetworkId()
+            );
+        }
+        
+        boolean matches(PortalEvent event) {
+            if (networkId != null && !networkId.equals(event.networkId())) {
+                return false;
+            }
+            if (!types.isEmpty() && !types.contains(event.type())) {
+                return false;
+            }
+            if (agentId != null && !agentId.equals(event.agentId())) {
+                return false;
+            }
+            // Topic patterns may end in "*", e.g. "fleet-executions/*"
+            return topics.stream().anyMatch(topic -> topic.endsWith("*")
+                    ? event.topic().startsWith(topic.substring(0, topic.length() - 1))
+                    : event.topic().equals(topic));
+        }
+    }
+    
+    private record PortalEvent(long id, String topic, String type, String agentId, String networkId, String json) {}
+    
+    /**
+     * Publishes a message that has already been encoded for the STOMP topic; the same
+     * bytes become the event data instead of serializing the message again.
+     */
+    public void publish(String topic, Object message, byte[] json) {
+        if (clients.isEmpty() && waiters.isEmpty() && logSize <= 0) {
+            return;
+        }
+        publish(topic, message, new String(json, StandardCharsets.UTF_8));
+    }
+    
+    public void publish(String topic, Object message) {
+        if (clients.isEmpty() && waiters.isEmpty() && logSize <= 0) {
+            return;
+        }
+        
+        String json;
+        try {
+            json = objectMapper.writeValueAsString(message);
+        } catch (JsonProcessingException e) {
+            System.err.println("Failed to serialize portal event: " + e.getMessage());
+            return;
+        }
+        publish(topic, message, json);
+    }
+    
+    private void publish(String topic, Object message, String json) {
+        String agentId = agentIdOf(message);
+        String networkId = field(message, "networkId");
+        if (networkId == null && agentId != null) {
+            networkId = agentIndexService.commonNetwork(List.of(agentId));
+        }
+        
+        PortalEvent event;
+        synchronized (log) {
+            event = new PortalEvent(sequence.incrementAndGet(), topic, field(message, "type"), agentId, networkId, json);
+            log.addLast(event);
+            while (log.size() > logSize) {
+                log.removeFirst();
+            }
+            
+            // Enqueued under the lock so every client sees events in id order
+            for (Client client : clients) {
+                if (client.filter.matches(event)) {
+                    client.enqueue(event);
+                }
+            }
+        }
+        
+        for (Waiter waiter : waiters) {
+            if (waiter.filter().matches(event) && waiters.remove(waiter)) {
+                waiter.result().setResult(pollResponse(eventsAfter(waiter.filter(), waiter.after()), waiter.after()));
+            }
+        }
+    }
+    
+    public SseEmitter subscribe(Filter filter, Long lastEventId) {
+        SseEmitter emitter = new SseEmitter(emitterTimeoutMs);
+        Client client = new Client(emitter, filter);
+        emitter.onCompletion(() -> clients.remove(client));
+        emitter.onTimeout(() -> clients.remove(client));
+        emitter.onError(error -> clients.remove(client));
+        
+        synchronized (log) {
+            // Replay and registration happen together, so the client neither misses nor repeats events
+            clients.add(client);
+            if (lastEventId == null) {
+                client.skipTo(sequence.get());
+                client.enqueueControl("ready", "{\"lastEventId\":" + sequence.get() + "}");
+            } else {
+                List<PortalEvent> missed = eventsAfter(filter, lastEventId);
+                if (missed == null) {
+                    client.skipTo(sequence.get());
+                    client.enqueueControl("reset", "{\"lastEventId\":" + sequence.get() + "}");
+                } else {
+                    missed.forEach(client::enqueue);
+                }
+            }
+        }
+        return emitter;
+    }
+    
+    public DeferredResult<ResponseEntity<?>> poll(Filter filter, long after, long timeoutMs) {
+        DeferredResult<ResponseEntity<?>> result = new DeferredResult<>(timeoutMs);
+        List<PortalEvent> events = eventsAfter(filter, after);
+        if (events == null || !events.isEmpty()) {
+            result.setResult(pollResponse(events, after));
+            return result;
+        }
+        
+        Waiter waiter = new Waiter(filter, after, result);
+        waiters.add(waiter);
+        result.onTimeout(() -> {
+            if (waiters.remove(waiter)) {
+                result.setResult(pollResponse(List.of(), after));
+            }
+        });
+        result.onCompletion(() -> waiters.remove(waiter));
+        
+        // An event may have been published between the check and registering the waiter
+        List<PortalEvent> raced = eventsAfter(filter, after);
+        if ((raced == null || !raced.isEmpty()) && waiters.remove(waiter)) {
+            result.setResult(pollResponse(raced, after));
+        }
+        return result;
+    }
+    
+    @Scheduled(fixedRateString = "${app.sse.heartbeat-ms:15000}")
+    public void heartbeat() {
+        // Comment lines keep proxies from closing idle connections
+        clients.forEach(Client::enqueueHeartbeat);
+    }
+    
+    public Map<String, Object> getStats() {
+        synchronized (log) {
+            return Map.of(
+                    "clients", clients.size(),
+                    "pollers", waiters.size(),
+                    "lastEventId", sequence.get(),
+                    "loggedEvents", log.size(),
+                    "oldestEventId", log.isEmpty() ? 0 : log.peekFirst().id()
+            );
+        }
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        clients.forEach(client -> client.emitter.complete());
+        sender.shutdownNow();
+    }
+    
+    /**
+     * Matching events with an id above after, or null when the log no longer reaches
+     * back that far and the client has to reload its state.
+     */
+    private List<PortalEvent> eventsAfter(Filter filter, long after) {
+        synchronized (log) {
+            long last = sequence.get();
+            // Either the log no longer reaches back that far, or the id is from before a restart
+            if (after > last || (after < last && (log.isEmpty() || log.peekFirst().id() > after + 1))) {
+                return null;
+            }
+            
+            List<PortalEvent> events = new ArrayList<>();
+            Iterator<PortalEvent> iterator = log.descendingIterator();
+            while (iterator.hasNext()) {
+                PortalEvent event = iterator.next();
+                if (event.id() <= after) {
+                    break;
+                }
+                if (filter.matches(event)) {
+                    events.add(event);
+                }
+            }
+            Collections.reverse(events);
+            return events.size() > maxPollEvents ? new ArrayList<>(events.subList(0, maxPollEvents)) : events;
+        }
+    }
+    
+    private ResponseEntity<?> pollResponse(List<PortalEvent> events, long after) {
+        // Assembled from the already serialized events rather than re-encoding them
+        StringBuilder body = new StringBuilder();
+        if (events == null) {
+            body.append("{\"reset\":true,\"lastEventId\":").append(sequence.get()).append(",\"events\":[]}");
+        } else {
+            long lastEventId = events.isEmpty() ? Math.max(after, 0) : events.get(events.size() - 1).id();
+            body.append("{\"reset\":false,\"lastEventId\":").append(lastEventId).append(",\"events\":[");
+            for (int i = 0; i < events.size(); i++) {
+                PortalEvent event = events.get(i);
+                body.append(i > 0 ? "," : "")
+                        .append("{\"id\":").append(event.id())
+                        .append(",\"topic\":").append(quote(event.topic()))
+                        .append(",\"data\":").append(event.json()).append('}');
+            }
+            body.append("]}");
+        }
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(body.toString());
+    }
+    
+    private String quote(String value) {
+        try {
+            return objectMapper.writeValueAsString(value);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+    
+    @SuppressWarnings("unchecked")
+    private static String agentIdOf(Object message) {
+        if (!(message instanceof Map<?, ?> map)) {
+            return null;
+        }
+        String agentId = field(map, "agentId");
+        if (agentId != null) {
+            return agentId;
+        }
+        // Agent responses are wrapped as {type, data: {..., payload: {...}}}
+        for (String nested : List.of("data", "payload")) {
+            if (map.get(nested) instanceof Map<?, ?> inner) {
+                String found = agentIdOf(inner);
+                if (found != null) {
+                    return found;
+                }
+            }
+        }
+        return null;
+    }
+    
+    private static String field(Object message, String name) {
+        if (message instanceof Map<?, ?> map && map.get(name) != null) {
+            return map.get(name).toString();
+        }
+        return null;
+    }
+    
+    private record Waiter(Filter filter, long after, DeferredResult<ResponseEntity<?>> result) {}
+    
+    private class Client {
+        private final SseEmitter emitter;
+        private final Filter filter;
+        private final Queue<SseEmitter.SseEventBuilder> pending = new ConcurrentLinkedQueue<>();
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+        private volatile long lastSentId;
+        private volatile boolean closed;
+        
+        Client(SseEmitter emitter, Filter filter) {
+            this.emitter = emitter;
+            this.filter = filter;
+        }
+        
+        void skipTo(long eventId) {
+            lastSentId = eventId;
+        }
+        
+        void enqueue(PortalEvent event) {
+            if (event.id() <= lastSentId) {
+                return;
+            }
+            lastSentId = event.id();
+            
+            SseEmitter.SseEventBuilder builder = SseEmitter.event().id(String.valueOf(event.id())).data(event.json());
+            if (!PORTAL_TOPIC.equals(event.topic())) {
+                builder.name(event.topic());
+            }
+            offer(builder);
+        }
+        
+        void enqueueControl(String name, String json) {
+            offer(SseEmitter.event().name(name).data(json));
+        }
+        
+        void enqueueHeartbeat() {
+            offer(SseEmitter.event().comment(""));
+        }
+        
+        private void offer(SseEmitter.SseEventBuilder builder) {
+            if (closed) {
+                return;
+            }
+            if (pending.size() >= maxPendingPerClient) {
+                // Too slow to keep up; it reconnects with Last-Event-ID and catches up from the log
+                close();
+                return;
+            }
+            pending.add(builder);
+            if (scheduled.compareAndSet(false, true)) {
+                sender.execute(this::flush);
+            }
+        }
+        
+        private void flush() {
+            try {
+                SseEmitter.SseEventBuilder builder;
+                while (!closed && (builder = pending.poll()) != null) {
+                    emitter.send(builder);
+                }
+            } catch (IOException | IllegalStateException e) {
+                close();
+            } finally {
+                scheduled.set(false);
+                if (!closed && !pending.isEmpty() && scheduled.compareAndSet(false, true)) {
+                    sender.execute(this::flush);
+                }
+            }
+        }
+        
+        private void close() {
+            closed = true;
+            pending.clear();
+            clients.remove(this);
+            emitter.complete();
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,318 @@
+package com.vr.portal.service;
+
+import com.vr.portal.exception.ThrottledException;
+import com.vr.portal.security.TenantContext;
+import com.vr.portal.util.TokenBucket;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Admission control for operator requests. Each request must take a token from the
+ * user's bucket and from the global bucket, and dispatches additionally from the
+ * target agent's bucket. Admitted requests then need one of max-concurrent execution
+ * slots. When all slots are busy they queue, and slots are handed out by weighted
+ * fair queuing on a per-user virtual finish time. A user with many queued requests
+ * therefore waits behind the others rather than in front of them.
+ * <p>
+ * Users confined to a network also draw from that network's bucket and may hold at
+ * most network.max-concurrent slots between them, so one busy network cannot take
+ * every slot from the others.
+ */
+@Service
+public class RequestThrottleService {
+    
+    private final Map<String, TokenBucket> userBuckets = new ConcurrentHashMap<>();
+    private final Map<String, TokenBucket> agentBuckets = new ConcurrentHashMap<>();
+    private final Map<String, TokenBucket> networkBuckets = new ConcurrentHashMap<>();
+    private final Map<String, Semaphore> networkSlots = new ConcurrentHashMap<>();
+    private final Map<String, LongAdder> throttledByScope = new ConcurrentHashMap<>();
+    private final Map<String, LongAdder> throttledByUser = new ConcurrentHashMap<>();
+    private final AtomicLong admitted = new AtomicLong();
+    private final AtomicLong queuedTotal = new AtomicLong();
+    private final AtomicLong queueWaitNanos = new AtomicLong();
+    private final AtomicLong maxQueueWaitNanos = new AtomicLong();
+    
+    // Fair queue state, guarded by this
+    private final PriorityQueue<Ticket> queue = new PriorityQueue<>(
+            Comparator.comparingDouble(Ticket::finishTag).thenComparingLong(Ticket::sequence));
+    private final Map<String, Double> lastFinishTag = new HashMap<>();
+    private final Map<String, Integer> queuedByUser = new HashMap<>();
+    private double virtualTime;
+    private long ticketSequence;
+    private int availableSlots;
+    
+    private final TokenBucket globalBucket;
+    private final Map<String, Double> weights;
+    
+    @Value("${app.throttle.enabled:true}")
+    private boolean enabled;
+    
+    @Value("${app.throttle.user.capacity:20}")
+    private double userCapacity;
+    
+    @Value("${app.throttle.user.refill-per-second:5}")
+    private double userRefillPerSecond;
+    
+    @Value("${app.throttle.agent.capacity:10}")
+    private double agentCapacity;
+    
+    @Value("${app.throttle.agent.refill-per-second:2}")
+    private double agentRefillPerSecond;
+    
+    @Value("${app.throttle.network.capacity:60}")
+    private double networkCapacity;
+    
+    @Value("${app.throttle.network.refill-per-second:15}")
+    private double networkRefillPerSecond;
+    
+    @Value("${app.throttle.network.max-concurrent:6}")
+    private int networkMaxConcurrent;
+    
+    @Value("${app.throttle.max-queue-wait-ms:2000}")
+    private long maxQueueWaitMs;
+    
+    @Value("${app.throttle.max-queued-per-user:20}")
+    private int maxQueuedPerUser;
+    
+    public RequestThrottleService(
+            @Value("${app.throttle.global.capacity:200}") double globalCapacity,
+            @Value("${app.throttle.global.refill-per-second:50}") double globalRefillPerSecond,
+            @Value("${app.throttle.max-concurrent:16}") int maxConcurrent,
+            @Value("${app.throttle.weights:}") String weights
+    ) {
+        this.globalBucket = new TokenBucket(globalCapacity, globalRefillPerSecond);
+        this.availableSlots = Math.max(1, maxConcurrent);
+        this.weights = parseWeights(weights);
+    }
+    
+    /**
+     * Admits a request for the given user, blocking for up to max-queue-wait-ms while
+     * execution slots are busy. The returned permit must be released when the request
+     * completes.
+     */
+    public Permit admit(String user) {
+        if (!enabled) {
+            return Permit.NONE;
+        }
+        
+        String network = TenantContext.currentNetworkId();
+        take(userBuckets.computeIfAbsent(user, key -> new TokenBucket(userCapacity, userRefillPerSecond)), "user", user);
+        if (network != null) {
+            take(networkBuckets.computeIfAbsent(network, key -> new TokenBucket(networkCapacity, networkRefillPerSecond)), "network", user);
+        }
+        take(globalBucket, "global", user);
+        
+        Semaphore networkSlot = network != null ? acquireNetworkSlot(network, user) : null;
+        try {
+            acquireSlot(user);
+        } catch (RuntimeException e) {
+            if (networkSlot != null) {
+                networkSlot.release();
+            }
+            throw e;
+        }
+        admitted.incrementAndGet();
+        return new Permit(this, networkSlot);
+    }
+    
+    /**
+     * Per-agent limit for operator-initiated dispatches, so a script looping over one
+     * PDV cannot flood it even while staying under its user limit.
+     */
+    public void checkAgent(String agentId) {
+        if (!enabled || agentId == null) {
+            return;
+        }
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        String user = authentication != null ? authentication.getName() : "anonymous";
+        take(agentBuckets.computeIfAbsent(agentId, key -> new TokenBucket(agentCapacity, agentRefillPerSecond)), "agent", user);
+    }
+    
+    public Map<String, Object> getMetrics() {
+        Map<String, Long> byScope = new TreeMap<>();
+        throttledByScope.forEach((scope, count) -> byScope.put(scope, count.sum()));
+        
+        Map<String, Long> byUser = new TreeMap<>();
+        throttledByUser.forEach((user, count) -> byUser.put(user, count.sum()));
+        
+        Map<String, Integer> networkSlotsInUse = new TreeMap<>();
+        networkSlots.forEach((network, slots) -> {
+            int inUse = Math.max(1, networkMaxConcurrent) - slots.availablePermits();
+            if (inUse > 0) {
+                networkSlotsInUse.put(network, inUse);
+            }
+        });
+        
+        long queued = queuedTotal.get();
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("enabled", enabled);
+        metrics.put("admitted", admitted.get());
+        metrics.put("throttled", byScope.values().stream().mapToLong(Long::longValue).sum());
+        metrics.put("throttledByScope", byScope);
+        metrics.put("throttledByUser", byUser);
+        metrics.put("queued", queued);
+        metrics.put("averageQueueWaitMs", queued > 0 ? TimeUnit.NANOSECONDS.toMillis(queueWaitNanos.get() / queued) : 0);
+        metrics.put("maxQueueWaitMs", TimeUnit.NANOSECONDS.toMillis(maxQueueWaitNanos.get()));
+        synchronized (this) {
+            metrics.put("waiting", queue.size());
+            metrics.put("availableSlots", availableSlots);
+        }
+        metrics.put("networkSlotsInUse", networkSlotsInUse);
+        return metrics;
+    }
+    
+    @Scheduled(fixedDelayString = "${app.throttle.cleanup-interval-ms:60000}")
+    public void removeIdleBuckets() {
+        // A full bucket behaves exactly like a new one, so it can be dropped
+        userBuckets.values().removeIf(TokenBucket::isFull);
+        agentBuckets.values().removeIf(TokenBucket::isFull);
+        networkBuckets.values().removeIf(TokenBucket::isFull);
+        synchronized (this) {
+            lastFinishTag.values().removeIf(tag -> tag <= virtualTime);
+            queuedByUser.values().removeIf(count -> count <= 0);
+        }
+    }
+    
+    private Semaphore acquireNetworkSlot(String network, String user) {
+        Semaphore slots = networkSlots.computeIfAbsent(network, key -> new Semaphore(Math.max(1, networkMaxConcurrent), true));
+        boolean acquired;
+        try {
+            acquired = slots.tryAcquire(maxQueueWaitMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            acquired = false;
+        }
+        if (!acquired) {
+            throw reject("network", user, retryAfter(TimeUnit.MILLISECONDS.toNanos(maxQueueWaitMs)),
+                    "Too many concurrent requests for network " + network);
+        }
+        return slots;
+    }
+    
+    private void acquireSlot(String user) {
+        Ticket ticket;
+        synchronized (this) {
+            if (availableSlots > 0 && queue.isEmpty()) {
+                availableSlots--;
+                return;
+            }
+            
+            int queued = queuedByUser.getOrDefault(user, 0);
+            if (queued >= maxQueuedPerUser) {
+                throw reject("queue", user, retryAfter(TimeUnit.MILLISECONDS.toNanos(maxQueueWaitMs)),
+                        "Too many queued requests");
+            }
+            
+            double start = Math.max(virtualTime, lastFinishTag.getOrDefault(user, 0.0));
+            double finishTag = start + 1.0 / weights.getOrDefault(user, 1.0);
+            lastFinishTag.put(user, finishTag);
+            queuedByUser.put(user, queued + 1);
+            
+            ticket = new Ticket(user, finishTag, ticketSequence++, new CountDownLatch(1));
+            queue.add(ticket);
+        }
+        
+        queuedTotal.incrementAndGet();
+        long started = System.nanoTime();
+        boolean granted;
+        try {
+            granted = ticket.granted().await(maxQueueWaitMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            granted = false;
+        }
+        
+        synchronized (this) {
+            // The slot may have been handed over between the timeout and taking the lock
+            if (!granted && ticket.granted().getCount() > 0) {
+                queue.remove(ticket);
+                queuedByUser.merge(user, -1, Integer::sum);
+                throw reject("queue", user, retryAfter(TimeUnit.MILLISECONDS.toNanos(maxQueueWaitMs)),
+                        "Request waited too long for an execution slot");
+            }
+        }
+        
+        long waited = System.nanoTime() - started;
+        queueWaitNanos.addAndGet(waited);
+        maxQueueWaitNanos.accumulateAndGet(waited, Math::max);
+    }
+    
+    private synchronized void release() {
+        Ticket next = queue.poll();
+        if (next == null) {
+            availableSlots++;
+            return;
+        }
+        
+        virtualTime = next.finishTag();
+        queuedByUser.merge(next.user(), -1, Integer::sum);
+        next.granted().countDown();
+    }
+    
+    private void take(TokenBucket bucket, String scope, String user) {
+        long waitNanos = bucket.tryAcquire();
+        if (waitNanos > 0) {
+            throw reject(scope, user, retryAfter(waitNanos), "Rate limit exceeded (" + scope + ")");
+        }
+    }
+    
+    private ThrottledException reject(String scope, String user, long retryAfterSeconds, String message) {
+        throttledByScope.computeIfAbsent(scope, key -> new LongAdder()).increment();
+        throttledByUser.computeIfAbsent(user, key -> new LongAdder()).increment();
+        return new ThrottledException(scope, retryAfterSeconds, message);
+    }
+    
+    private static long retryAfter(long waitNanos) {
+        return Math.max(1, (long) Math.ceil(Math.min(waitNanos, TimeUnit.HOURS.toNanos(1)) / 1_000_000_000.0));
+    }
+    
+    private static Map<String, Double> parseWeights(String weights) {
+        // "admin:2,ops:1.5"
+        Map<String, Double> parsed = new HashMap<>();
+        for (String entry : weights.split(",")) {
+            String[] parts = entry.trim().split(":");
+            if (parts.length == 2) {
+                parsed.put(parts[0].trim(), Math.max(0.1, Double.parseDouble(parts[1].trim())));
+            }
+        }
+        return parsed;
+    }
+    
+    private record Ticket(String user, double finishTag, long sequence, CountDownLatch granted) {}
+    
+    public static final class Permit implements AutoCloseable {
+        
+        static final Permit NONE = new Permit(null, null);
+        
+        private final RequestThrottleService owner;
+        private final Semaphore networkSlot;
+        private boolean released;
+        
+        private Permit(RequestThrottleService owner, Semaphore networkSlot) {
+            this.owner = owner;
+            this.networkSlot = networkSlot;
+        }
+        
+        @Override
+        public void close() {
+            if (owner != null && !released) {
+                released = true;
+                owner.release();
+                if (networkSlot != null) {
+                    networkSlot.release();
+                }
+            }
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,482 @@
+package com.vr.portal.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.vr.portal.dto.AgentCommand;
+import com.vr.portal.dto.RolloutRequest;
+import com.vr.portal.entity.Agent;
+import com.vr.portal.entity.FileOperation;
+import com.vr.portal.entity.Rollout;
+import com.vr.portal.entity.RolloutTarget;
+import com.vr.portal.repository.AgentRepository;
+import com.vr.portal.repository.FileOperationRepository;
+import com.vr.portal.repository.RolloutRepository;
+import com.vr.portal.repository.RolloutTargetRepository;
+import com.vr.portal.security.TenantContext;
+import com.vr.portal.websocket.WebSocketService;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Executes an install or command against a set of agents in waves: a canary wave
+ * sized by canaryPercent, then batches growing by growthFactor. Each tick dispatches
+ * queued targets of the current wave up to the per-network concurrency cap, collects
+ * results from the FileOperation records and pauses the rollout once the failure
+ * rate crosses its threshold. All state lives in the database, so a restarted
+ * backend simply picks up running rollouts on the next tick.
+ */
+@Service
+public class RolloutService {
+    
+    private static final Set<String> ACTIONS = Set.of("install_package", "system_command");
+    private static final String UNASSIGNED_NETWORK = "";
+    
+    private final RolloutRepository rolloutRepository;
+    private final RolloutTargetRepository targetRepository;
+    private final AgentRepository agentRepository;
+    private final AgentIndexService agentIndexService;
+    private final FileOperationRepository fileOperationRepository;
+    private final FileOperationService fileOperationService;
+    private final WebSocketService webSocketService;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper objectMapper;
+    
+    @Value("${app.rollout.canary-percent:5}")
+    private double defaultCanaryPercent;
+    
+    @Value("${app.rollout.growth-factor:2.0}")
+    private double defaultGrowthFactor;
+    
+    @Value("${app.rollout.max-concurrent-per-network:10}")
+    private int defaultMaxConcurrentPerNetwork;
+    
+    @Value("${app.rollout.max-failure-rate:0.1}")
+    private double defaultMaxFailureRate;
+    
+    @Value("${app.rollout.min-samples:5}")
+    private int defaultMinSamples;
+    
+    @Value("${app.rollout.wave-delay-seconds:60}")
+    private int defaultWaveDelaySeconds;
+    
+    @Value("${app.rollout.target-timeout-seconds:600}")
+    private int defaultTargetTimeoutSeconds;
+    
+    public RolloutService(
+            RolloutRepository rolloutRepository,
+            RolloutTargetRepository targetRepository,
+            AgentRepository agentRepository,
+            AgentIndexService agentIndexService,
+            FileOperationRepository fileOperationRepository,
+            FileOperationService fileOperationService,
+            WebSocketService webSocketService,
+            TransactionTemplate transactionTemplate,
+            ObjectMapper objectMapper
+    ) {
+        this.rolloutRepository = rolloutRepository;
+        this.targetRepository = targetRepository;
+        this.agentRepository = agentRepository;
+        this.agentIndexService = agentIndexService;
+        this.fileOperationRepository = fileOperationRepository;
+        this.fileOperationService = fileOperationService;
+        this.webSocketService = webSocketService;
+        this.transactionTemplate = transactionTemplate;
+        this.objectMapper = objectMapper;
+    }
+    
+    public Rollout createRollout(RolloutRequest request, Long userId) {
+        String action = request.getAction();
+        Map<String, String> params = request.getParams() != null ? request.getParams() : Map.of();
+        validateAction(action, params);
+        
+        List<Agent> agents = resolveAgents(request);
+        if (agents.isEmpty()) {
+            throw new IllegalArgumentException("Rollout has no target agents");
+        }
+        
+        Rollout rollout = new Rollout(
+                request.getName() != null ? request.getName() : action + " rollout",
+                action,
+                writeParams(params),
+                userId
+        );
+        rollout.setNetworkId(agentIndexService.commonNetwork(agents.stream().map(Agent::getId).toList()));
+        rollout.setCanaryPercent(valueOr(request.getCanaryPercent(), defaultCanaryPercent));
+        rollout.setGrowthFactor(Math.max(1.0, valueOr(request.getGrowthFactor(), defaultGrowthFactor)));
+        rollout.setMaxConcurrentPerNetwork(Math.max(1, valueOr(request.getMaxConcurrentPerNetwork(), defaultMaxConcurrentPerNetwork)));
+        rollout.setMaxFailureRate(valueOr(request.getMaxFailureRate(), defaultMaxFailureRate));
+        rollout.setMinSamples(Math.max(1, valueOr(request.getMinSamples(), defaultMinSamples)));
+        rollout.setWaveDelaySeconds(Math.max(0, valueOr(request.getWaveDelaySeconds(), defaultWaveDelaySeconds)));
+        rollout.setTargetTimeoutSeconds(Math.max(1, valueOr(request.getTargetTimeoutSeconds(), defaultTargetTimeoutSeconds)));
+        
+        return transactionTemplate.execute(status -> {
+            Rollout saved = rolloutRepository.save(rollout);
+            List<RolloutTarget> targets = planWaves(saved, interleaveByNetwork(agents));
+            targetRepository.saveAll(targets);
+            
+            saved.setTotalWaves(targets.get(targets.size() - 1).getWave() + 1);
+            return rolloutRepository.save(saved);
+        });
+    }
+    
+    public List<Rollout> getRollouts() {
+        String tenant = TenantContext.currentNetworkId();
+        return tenant != null
+                ? rolloutRepository.findByNetworkIdOrderByCreatedAtDesc(tenant)
+                : rolloutRepository.findAllByOrderByCreatedAtDesc();
+    }
+    
+    public Optional<Map<String, Object>> getRolloutDetails(Long rolloutId) {
+        return find(rolloutId).map(rollout -> {
+            Map<Integer, Map<String, Long>> waves = new TreeMap<>();
+            for (Object[] row : targetRepository.countByWaveAndStatus(rolloutId)) {
+                waves.computeIfAbsent((Integer) row[0], w -> new TreeMap<>())
+                        .put((String) row[1], ((Number) row[2]).longValue());
+            }
+            
+            List<Map<String, Object>> waveSummaries = new ArrayList<>();
+            waves.forEach((wave, counts) -> waveSummaries.add(Map.of(
+                    "wave", wave,
+                    "total", counts.values().stream().mapToLong(Long::longValue).sum(),
+                    "byStatus", counts
+            )));
+            
+            return Map.of(
+                    "rollout", rollout,
+                    "waves", waveSummaries
+            );
+        });
+    }
+    
+    public Optional<List<RolloutTarget>> getTargets(Long rolloutId) {
+        return find(rolloutId).map(rollout -> targetRepository.findByRolloutIdOrderByWaveAscIdAsc(rolloutId));
+    }
+    
+    public Rollout start(Long rolloutId) {
+        return transition(rolloutId, Set.of("pending"), "running", null);
+    }
+    
+    public Rollout pause(Long rolloutId) {
+        return transition(rolloutId, Set.of("running"), "paused", "Paused by operator");
+    }
+    
+    public Rollout resume(Long rolloutId) {
+        return transition(rolloutId, Set.of("paused"), "running", null);
+    }
+    
+    public Rollout cancel(Long rolloutId) {
+        Rollout rollout = transition(rolloutId, Set.of("pending", "running", "paused"), "cancelled", "Cancelled by operator");
+        
+        List<RolloutTarget> queued = targetRepository.findByRolloutIdAndStatus(rolloutId, "queued");
+        queued.forEach(target -> target.setStatus("skipped"));
+        targetRepository.saveAll(queued);
+        
+        return rollout;
+    }
+    
+    @Scheduled(fixedDelayString = "${app.rollout.tick-ms:5000}")
+    public void advanceRollouts() {
+        for (Rollout rollout : rolloutRepository.findByStatus("running")) {
+            try {
+                advance(rollout);
+            } catch (RuntimeException e) {
+                System.err.println("Failed to advance rollout " + rollout.getId() + ": " + e.getMessage());
+            }
+        }
+    }
+    
+    private void advance(Rollout rollout) {
+        List<RolloutTarget> inFlight = refreshInFlight(rollout);
+        WaveProgress progress = currentWaveProgress(rollout);
+        
+        // Only the current wave counts, and only targets finished since the last resume
+        long completed = progress.completed() - rollout.getWaveBaselineCompleted();
+        long failed = progress.failed() - rollout.getWaveBaselineFailed();
+        long finished = completed + failed;
+        if (finished >= rollout.getMinSamples() && failed > rollout.getMaxFailureRate() * finished) {
+            rollout.setStatus("paused");
+            rollout.setPauseReason(String.format(
+                    "Failure rate %d/%d exceeded %.0f%% in wave %d",
+                    failed, finished, rollout.getMaxFailureRate() * 100, rollout.getCurrentWave()
+            ));
+            saveAndBroadcast(rollout);
+            return;
+        }
+        
+        long remainingInWave = progress.remaining();
+        if (remainingInWave == 0) {
+            if (rollout.getCurrentWave() + 1 >= rollout.getTotalWaves()) {
+                rollout.setStatus("completed");
+            } else {
+                rollout.setCurrentWave(rollout.getCurrentWave() + 1);
+                rollout.setWaveBaselineCompleted(0);
+                rollout.setWaveBaselineFailed(0);
+                rollout.setNextWaveAt(LocalDateTime.now().plusSeconds(rollout.getWaveDelaySeconds()));
+            }
+            saveAndBroadcast(rollout);
+            return;
+        }
+        
+        if (rollout.getNextWaveAt() == null || !LocalDateTime.now().isBefore(rollout.getNextWaveAt())) {
+            dispatchQueued(rollout, inFlight);
+        }
+    }
+    
+    private record WaveProgress(long completed, long failed, long remaining) {}
+    
+    private WaveProgress currentWaveProgress(Rollout rollout) {
+        long completed = 0;
+        long failed = 0;
+        long remaining = 0;
+        for (Object[] row : targetRepository.countByWaveAndStatus(rollout.getId())) {
+            if ((Integer) row[0] != rollout.getCurrentWave()) {
+                continue;
+            }
+            String status = (String) row[1];
+            long count = ((Number) row[2]).longValue();
+            
+            if ("completed".equals(status)) {
+                completed += count;
+            } else if ("failed".equals(status)) {
+                failed += count;
+            } else if ("queued".equals(status) || "dispatched".equals(status)) {
+                remaining += count;
+            }
+        }
+        return new WaveProgress(completed, failed, remaining);
+    }
+    
+    private List<RolloutTarget> refreshInFlight(Rollout rollout) {
+        List<RolloutTarget> inFlight = targetRepository.findByRolloutIdAndStatus(rollout.getId(), "dispatched");
+        if (inFlight.isEmpty()) {
+            return inFlight;
+        }
+        
+        Map<Long, FileOperation> operations = fileOperationRepository.findAllById(
+                inFlight.stream().map(RolloutTarget::getOperationId).filter(Objects::nonNull).toList()
+        ).stream().collect(Collectors.toMap(FileOperation::getId, Function.identity()));
+        
+        LocalDateTime timeout = LocalDateTime.now().minusSeconds(rollout.getTargetTimeoutSeconds());
+        List<RolloutTarget> changed = new ArrayList<>();
+        List<RolloutTarget> stillInFlight = new ArrayList<>();
+        
+        for (RolloutTarget target : inFlight) {
+            FileOperation operation = operations.get(target.getOperationId());
+            String status = operation != null ? operation.getStatus() : null;
+            
+            if ("completed".equals(status) || "failed".equals(status)) {
+                target.setStatus(status);
+                target.setErrorMessage(operation.getErrorMessage());
+                target.setCompletedAt(operation.getCompletedAt() != null ? operation.getCompletedAt() : LocalDateTime.now());
+                changed.add(target);
+            } else if (target.getDispatchedAt() != null && target.getDispatchedAt().isBefore(timeout)) {
+                target.setStatus("failed");
+                target.setErrorMessage("Timed out waiting for agent");
+                target.setCompletedAt(LocalDateTime.now());
+                changed.add(target);
+            } else {
+                stillInFlight.add(target);
+            }
+        }
+        
+        targetRepository.saveAll(changed);
+        return stillInFlight;
+    }
+    
+    private void dispatchQueued(Rollout rollout, List<RolloutTarget> inFlight) {
+        Map<String, Integer> inFlightByNetwork = new HashMap<>();
+        for (RolloutTarget target : inFlight) {
+            inFlightByNetwork.merge(networkKey(target.getNetworkId()), 1, Integer::sum);
+        }
+        
+        Map<String, String> params = readParams(rollout);
+        List<RolloutTarget> queued = targetRepository.findByRolloutIdAndWaveAndStatusOrderByIdAsc(
+                rollout.getId(), rollout.getCurrentWave(), "queued");
+        
+        for (RolloutTarget target : queued) {
+            String network = networkKey(target.getNetworkId());
+            if (inFlightByNetwork.getOrDefault(network, 0) >= rollout.getMaxConcurrentPerNetwork()) {
+                continue;
+            }
+            
+            try {
+                FileOperation operation = dispatchAction(rollout, params, target.getAgentId());
+                target.setStatus("dispatched");
+                target.setOperationId(operation.getId());
+                target.setDispatchedAt(LocalDateTime.now());
+                inFlightByNetwork.merge(network, 1, Integer::sum);
+            } catch (RuntimeException e) {
+                target.setStatus("failed");
+                target.setErrorMessage("Dispatch failed: " + e.getMessage());
+                target.setCompletedAt(LocalDateTime.now());
+            }
+            targetRepository.save(target);
+        }
+    }
+    
+    private FileOperation dispatchAction(Rollout rollout, Map<String, String> params, String agentId) {
+        if ("install_package".equals(rollout.getActionType())) {
+            return fileOperationService.dispatch(
+                    agentId,
+                    "install_package",
+                    params.get("packageName"),
+                    rollout.getUserId(),
+                    new AgentCommand.InstallPackage(null, params.get("packageName"), params.get("installCommand"))
+            );
+        }
+        
+        return fileOperationService.dispatch(
+                agentId,
+                "system_command",
+                params.get("command"),
+                rollout.getUserId(),
+                new AgentCommand.SystemCommand(null, params.get("command"), null)
+        );
+    }
+    
+    // Rollouts spanning other networks do not exist for users confined to a network
+    private Optional<Rollout> find(Long rolloutId) {
+        return rolloutRepository.findById(rolloutId).filter(rollout -> TenantContext.canAccess(rollout.getNetworkId()));
+    }
+    
+    private Rollout transition(Long rolloutId, Set<String> from, String to, String reason) {
+        Rollout rollout = find(rolloutId)
+                .orElseThrow(() -> new NoSuchElementException("Rollout not found"));
+        
+        if (!from.contains(rollout.getStatus())) {
+            throw new IllegalStateException("Rollout is " + rollout.getStatus() + ", cannot change to " + to);
+        }
+        
+        if ("paused".equals(rollout.getStatus()) && "running".equals(to)) {
+            // The operator accepted the failures so far, so the current wave is judged afresh
+            WaveProgress progress = currentWaveProgress(rollout);
+            rollout.setWaveBaselineCompleted((int) progress.completed());
+            rollout.setWaveBaselineFailed((int) progress.failed());
+        }
+        
+        rollout.setStatus(to);
+        rollout.setPauseReason(reason);
+        if ("running".equals(to) && rollout.getNextWaveAt() == null) {
+            rollout.setNextWaveAt(LocalDateTime.now());
+        }
+        return saveAndBroadcast(rollout);
+    }
+    
+    private Rollout saveAndBroadcast(Rollout rollout) {
+        Rollout saved = rolloutRepository.save(rollout);
+        
+        Map<String, Object> message = new LinkedHashMap<>();
+        message.put("type", "rollout_status");
+        message.put("rolloutId", saved.getId());
+        message.put("status", saved.getStatus());
+        message.put("currentWave", saved.getCurrentWave());
+        message.put("totalWaves", saved.getTotalWaves());
+        if (saved.getPauseReason() != null) {
+            message.put("reason", saved.getPauseReason());
+        }
+        webSocketService.broadcastToPortal(message);
+        
+        return saved;
+    }
+    
+    private List<Agent> resolveAgents(RolloutRequest request) {
+        if (request.getAgentIds() != null && !request.getAgentIds().isEmpty()) {
+            agentIndexService.checkAccess(request.getAgentIds());
+            return agentRepository.findAllById(request.getAgentIds());
+        }
+        if (request.getStoreId() != null) {
+            // Store ids are not unique across networks; a confined user only gets their own network's
+            return agentRepository.findByStoreId(request.getStoreId()).stream()
+                    .filter(agent -> TenantContext.canAccess(agent.getNetworkId()))
+                    .toList();
+        }
+        if (request.getNetworkId() != null) {
+            TenantContext.checkAccess(request.getNetworkId());
+            return agentRepository.findByNetworkId(request.getNetworkId());
+        }
+        throw new IllegalArgumentException("Rollout requires agentIds, storeId or networkId");
+    }
+    
+    // Round-robin over networks so the canary wave touches as many networks as possible
+    private List<Agent> interleaveByNetwork(List<Agent> agents) {
+        Map<String, Deque<Agent>> byNetwork = new TreeMap<>();
+        agents.stream()
+                .sorted(Comparator.comparing(Agent::getId))
+                .forEach(agent -> byNetwork
+                        .computeIfAbsent(networkKey(agent.getNetworkId()), n -> new ArrayDeque<>())
+                        .add(agent));
+        
+        List<Agent> ordered = new ArrayList<>(agents.size());
+        while (ordered.size() < agents.size()) {
+            for (Deque<Agent> queue : byNetwork.values()) {
+                Agent agent = queue.poll();
+                if (agent != null) {
+                    ordered.add(agent);
+                }
+            }
+        }
+        return ordered;
+    }
+    
+    private List<RolloutTarget> planWaves(Rollout rollout, List<Agent> agents) {
+        List<RolloutTarget> targets = new ArrayList<>(agents.size());
+        int waveSize = Math.max(1, (int) Math.ceil(agents.size() * rollout.getCanaryPercent() / 100.0));
+        int wave = 0;
+        int index = 0;
+        
+        while (index < agents.size()) {
+            int end = Math.min(agents.size(), index + waveSize);
+            for (; index < end; index++) {
+                Agent agent = agents.get(index);
+                targets.add(new RolloutTarget(rollout.getId(), agent.getId(), agent.getNetworkId(), wave));
+            }
+            wave++;
+            waveSize = Math.max(waveSize + 1, (int) Math.ceil(waveSize * rollout.getGrowthFactor()));
+        }
+        return targets;
+    }
+    
+    private void validateAction(String action, Map<String, String> params) {
+        if (action == null || !ACTIONS.contains(action)) {
+            throw new IllegalArgumentException("Unsupported rollout action: " + action);
+        }
+        if ("install_package".equals(action) && (params.get("packageName") == null || params.get("installCommand") == null)) {
+            throw new IllegalArgumentException("install_package requires packageName and installCommand");
+        }
+        if ("system_command".equals(action) && params.get("command") == null) {
+            throw new IllegalArgumentException("system_command requires command");
+        }
+    }
+    
+    private String writeParams(Map<String, String> params) {
+        try {
+            return objectMapper.writeValueAsString(params);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Invalid rollout parameters", e);
+        }
+    }
+    
+    private Map<String, String> readParams(Rollout rollout) {
+        try {
+            return objectMapper.readValue(rollout.getActionParams(), new TypeReference<Map<String, String>>() {});
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Corrupt rollout parameters", e);
+        }
+    }
+    
+    private static String networkKey(String networkId) {
+        return networkId != null ? networkId : UNASSIGNED_NETWORK;
+    }
+    
+    private static <T> T valueOr(T value, T fallback) {
+        return value != null ? value : fallback;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,600 @@
+package com.vr.portal.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.vr.portal.dto.AgentCommand;
+import com.vr.portal.dto.AgentQuery;
+import com.vr.portal.dto.AgentSummary;
+import com.vr.portal.dto.ScheduleRequest;
+import com.vr.portal.entity.ScheduledJob;
+import com.vr.portal.repository.ScheduledJobRepository;
+import com.vr.portal.security.TenantContext;
+import com.vr.portal.util.TimingWheel;
+import com.vr.portal.websocket.WebSocketService;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.support.CronExpression;
+import org.springframework.stereotype.Service;
+
+import java.time.DateTimeException;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Recurring operations against agent groups. The next cron fire time of every active
+ * schedule sits in a hierarchical timing wheel that ticks once a second. When a schedule
+ * fires, its targets are resolved from the agent index. Each agent then gets its own
+ * dispatch slot inside the spread window, taken from a hash of schedule and agent id, so
+ * an agent keeps the same slot run after run and schedules that share a start time do
+ * not hit the fleet together. The window is widened when needed to stay under
+ * max-dispatches-per-second.
+ * <p>
+ * Schedules, next fire times and last-run counters live in scheduled_jobs. After a
+ * restart, a fire time missed by less than misfire-grace-seconds runs once. A run that
+ * was still spreading resumes with the agents whose slots had not come round yet.
+ */
+@Service
+public class ScheduledJobService {
+    
+    private static final Set<String> ACTIONS = Set.of("system_info", "system_command", "install_package", "file_upload");
+    private static final long TICK_MILLIS = 1000;
+    
+    private final ScheduledJobRepository jobRepository;
+    private final AgentIndexService agentIndexService;
+    private final FileOperationService fileOperationService;
+    private final ArtifactService artifactService;
+    private final WebSocketService webSocketService;
+    private final ObjectMapper objectMapper;
+    
+    // Wheel and runs, guarded by lock; dispatching happens outside it on the tick thread
+    private final Object lock = new Object();
+    private final TimingWheel<Task> wheel = new TimingWheel<>(TICK_MILLIS, 6, 4, System.currentTimeMillis());
+    private final Map<Long, Run> runs = new HashMap<>();
+    
+    private final AtomicLong runsStarted = new AtomicLong();
+    private final AtomicLong dispatched = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong misfires = new AtomicLong();
+    private final AtomicLong deferred = new AtomicLong();
+    
+    @Value("${app.schedules.default-spread-seconds:900}")
+    private int defaultSpreadSeconds;
+    
+    @Value("${app.schedules.max-dispatches-per-second:20}")
+    private double maxDispatchesPerSecond;
+    
+    @Value("${app.schedules.max-dispatches-per-tick:100}")
+    private int maxDispatchesPerTick;
+    
+    @Value("${app.schedules.misfire-grace-seconds:3600}")
+    private long misfireGraceSeconds;
+    
+    @Value("${app.schedules.time-zone:}")
+    private String defaultTimeZone;
+    
+    public ScheduledJobService(
+            ScheduledJobRepository jobRepository,
+            AgentIndexService agentIndexService,
+            FileOperationService fileOperationService,
+            ArtifactService artifactService,
+            WebSocketService webSocketService,
+            ObjectMapper objectMapper
+    ) {
+        this.jobRepository = jobRepository;
+        this.agentIndexService = agentIndexService;
+        this.fileOperationService = fileOperationService;
+        this.artifactService = artifactService;
+        this.webSocketService = webSocketService;
+        this.objectMapper = objectMapper;
+    }
+    
+    @EventListener(ApplicationReadyEvent.class)
+    public void restore() {
+        long now = System.currentTimeMillis();
+        List<ScheduledJob> active = jobRepository.findByStatus("active");
+        for (ScheduledJob job : active) {
+            try {
+                restoreJob(job, now);
+            } catch (RuntimeException e) {
+                System.err.println("Failed to restore schedule " + job.getId() + ": " + e.getMessage());
+            }
+        }
+        System.out.println("Restored " + active.size() + " active schedules");
+    }
+    
+    public ScheduledJob create(ScheduleRequest request, Long userId) {
+        Map<String, String> params = request.getParams() != null ? request.getParams() : Map.of();
+        validateAction(request.getAction(), params);
+        ZoneId zone = zoneOrDefault(request.getTimeZone());
+        CronExpression cron = parseCron(request.getCron());
+        
+        ScheduledJob job = new ScheduledJob(
+                request.getName() != null ? request.getName() : request.getAction() + " schedule",
+                request.getCron(),
+                zone.getId(),
+                request.getAction(),
+                writeParams(params),
+                userId
+        );
+        applyTargets(job, request);
+        job.setSpreadSeconds(Math.max(0, request.getSpreadSeconds() != null ? request.getSpreadSeconds() : defaultSpreadSeconds));
+        ZonedDateTime next = cron.next(ZonedDateTime.now(zone));
+        job.setNextRunAt(next != null ? toLocal(next.toInstant().toEpochMilli()) : null);
+        
+        ScheduledJob saved = jobRepository.save(job);
+        if (next != null) {
+            synchronized (lock) {
+                wheel.schedule(next.toInstant().toEpochMilli(), Task.fire(saved.getId(), next.toInstant().toEpochMilli()));
+            }
+        }
+        return saved;
+    }
+    
+    public List<ScheduledJob> getSchedules() {
+        String tenant = TenantContext.currentNetworkId();
+        return tenant != null ? jobRepository.findByTargetNetworkIdOrderByNameAsc(tenant) : jobRepository.findAllByOrderByNameAsc();
+    }
+    
+    public Optional<ScheduledJob> getSchedule(Long jobId) {
+        return jobRepository.findById(jobId).filter(job -> TenantContext.canAccess(job.getTargetNetworkId()));
+    }
+    
+    public ScheduledJob pause(Long jobId) {
+        ScheduledJob job = require(jobId);
+        if (!"active".equals(job.getStatus())) {
+            throw new IllegalStateException("Schedule is " + job.getStatus());
+        }
+        Run interrupted = unschedule(jobId);
+        if (interrupted != null) {
+            recordProgress(interrupted, true);
+        }
+        jobRepository.updateStatus(jobId, "paused", null);
+        job.setStatus("paused");
+        job.setNextRunAt(null);
+        return job;
+    }
+    
+    public ScheduledJob resume(Long jobId) {
+        ScheduledJob job = require(jobId);
+        if (!"paused".equals(job.getStatus())) {
+            throw new IllegalStateException("Schedule is " + job.getStatus());
+        }
+        long next = nextFireMillis(job, System.currentTimeMillis());
+        LocalDateTime nextRunAt = next > 0 ? toLocal(next) : null;
+        jobRepository.updateStatus(jobId, "active", nextRunAt);
+        if (next > 0) {
+            synchronized (lock) {
+                wheel.schedule(next, Task.fire(jobId, next));
+            }
+        }
+        job.setStatus("active");
+        job.setNextRunAt(nextRunAt);
+        return job;
+    }
+    
+    /**
+     * Starts an extra run right away, spread like a scheduled one; the cron timetable is
+     * left as it is.
+     */
+    public ScheduledJob runNow(Long jobId) {
+        ScheduledJob job = require(jobId);
+        long now = System.currentTimeMillis();
+        synchronized (lock) {
+            wheel.schedule(now, Task.manual(jobId, now));
+        }
+        return job;
+    }
+    
+    public void delete(Long jobId) {
+        require(jobId);
+        unschedule(jobId);
+        jobRepository.deleteById(jobId);
+    }
+    
+    @Scheduled(fixedDelayString = "${app.schedules.tick-ms:1000}")
+    public void tick() {
+        long now = System.currentTimeMillis();
+        List<Task> fires = new ArrayList<>();
+        List<Task> dispatches = new ArrayList<>();
+        
+        synchronized (lock) {
+            wheel.advance(now, task -> (task.agentId() == null ? fires : dispatches).add(task));
+            // Anything over the per-tick budget moves to the next tick instead of bursting
+            if (dispatches.size() > maxDispatchesPerTick) {
+                List<Task> later = dispatches.subList(maxDispatchesPerTick, dispatches.size());
+                later.forEach(task -> wheel.schedule(now + TICK_MILLIS, task));
+                deferred.addAndGet(later.size());
+                later.clear();
+            }
+        }
+        
+        for (Task task : fires) {
+            try {
+                fire(task, now);
+            } catch (RuntimeException e) {
+                System.err.println("Failed to start run of schedule " + task.jobId() + ": " + e.getMessage());
+            }
+        }
+        
+        Set<Run> touched = new LinkedHashSet<>();
+        for (Task task : dispatches) {
+            Run run;
+            synchronized (lock) {
+                run = runs.get(task.jobId());
+            }
+            // A task from a run that was replaced, paused or deleted
+            if (run == null || run.startedAt != task.at()) {
+                continue;
+            }
+            dispatch(run, task.agentId());
+            touched.add(run);
+        }
+        
+        for (Run run : touched) {
+            boolean current;
+            boolean finished;
+            synchronized (lock) {
+                current = runs.get(run.job.getId()) == run;
+                finished = current && run.remaining == 0;
+                if (finished) {
+                    runs.remove(run.job.getId());
+                }
+            }
+            if (current) {
+                recordProgress(run, finished);
+            }
+        }
+    }
+    
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        synchronized (lock) {
+            stats.put("pendingTimers", wheel.size());
+            stats.put("overflowTimers", wheel.overflowSize());
+            stats.put("activeRuns", runs.size());
+        }
+        stats.put("runsStarted", runsStarted.get());
+        stats.put("dispatched", dispatched.get());
+        stats.put("failed", failed.get());
+        stats.put("deferred", deferred.get());
+        stats.put("misfires", misfires.get());
+        return stats;
+    }
+    
+    private void restoreJob(ScheduledJob job, long now) {
+        long next = job.getNextRunAt() != null ? toMillis(job.getNextRunAt()) : 0;
+        if (next <= 0 || next < now - misfireGraceSeconds * 1000) {
+            if (next > 0) {
+                misfires.incrementAndGet();
+                System.out.println("Skipping run of schedule " + job.getId() + " missed at " + job.getNextRunAt());
+            }
+            next = nextFireMillis(job, now);
+            jobRepository.updateStatus(job.getId(), "active", next > 0 ? toLocal(next) : null);
+        }
+        if (next > 0) {
+            synchronized (lock) {
+                wheel.schedule(next, Task.fire(job.getId(), next));
+            }
+        }
+        
+        if (job.getLastRunAt() != null && job.getLastRunCompletedAt() == null && job.getLastRunSpreadSeconds() != null) {
+            long startedAt = toMillis(job.getLastRunAt());
+            Run run = new Run(job, startedAt, prepare(job));
+            run.dispatched = valueOr(job.getLastRunDispatched());
+            run.failed = valueOr(job.getLastRunFailed());
+            
+            // Slots that already came round before the restart count as handled
+            List<String> pending = new ArrayList<>();
+            for (AgentSummary agent : resolveTargets(job)) {
+                long slot = startedAt + slotOffset(job.getId(), agent.id(), job.getLastRunSpreadSeconds());
+                if (slot > now) {
+                    pending.add(agent.id());
+                }
+            }
+            if (pending.isEmpty()) {
+                recordProgress(run, true);
+            } else {
+                start(run, pending, job.getLastRunSpreadSeconds());
+                System.out.println("Resumed run of schedule " + job.getId() + " with " + pending.size() + " agents left");
+            }
+        }
+    }
+    
+    private void fire(Task task, long now) {
+        ScheduledJob job = jobRepository.findById(task.jobId()).orElse(null);
+        if (job == null || (!task.manual() && !"active".equals(job.getStatus()))) {
+            return;
+        }
+        
+        // The next fire goes in first, so a run that fails to start never ends the schedule
+        long next = "active".equals(job.getStatus()) ? nextFireMillis(job, Math.max(task.at(), now)) : 0;
+        if (!task.manual() && next > 0) {
+            synchronized (lock) {
+                wheel.schedule(next, Task.fire(job.getId(), next));
+            }
+        }
+        
+        List<String> targets = resolveTargets(job).stream().map(AgentSummary::id).toList();
+        int spreadSeconds = spreadFor(job, targets.size(), next > 0 ? next - task.at() : Long.MAX_VALUE);
+        jobRepository.recordRunStarted(
+                job.getId(),
+                toLocal(task.at()),
+                spreadSeconds,
+                targets.size(),
+                task.manual() ? job.getNextRunAt() : (next > 0 ? toLocal(next) : null)
+        );
+        
+        Run run = new Run(job, task.at(), prepare(job));
+        runsStarted.incrementAndGet();
+        broadcast(run, "started", targets.size());
+        if (targets.isEmpty()) {
+            recordProgress(run, true);
+            return;
+        }
+        start(run, targets, spreadSeconds);
+    }
+    
+    private void start(Run run, List<String> agentIds, int spreadSeconds) {
+        Run replaced;
+        synchronized (lock) {
+            replaced = runs.put(run.job.getId(), run);
+            if (replaced != null) {
+                wheel.removeIf(task -> task.jobId() == run.job.getId() && task.agentId() != null && task.at() == replaced.startedAt);
+            }
+            run.remaining = agentIds.size();
+            for (String agentId : agentIds) {
+                long slot = run.startedAt + slotOffset(run.job.getId(), agentId, spreadSeconds);
+                wheel.schedule(slot, Task.dispatch(run.job.getId(), run.startedAt, agentId));
+            }
+        }
+        if (replaced != null) {
+            System.err.println("Run of schedule " + run.job.getId() + " started before the previous one finished spreading");
+        }
+    }
+    
+    private void dispatch(Run run, String agentId) {
+        try {
+            fileOperationService.dispatch(agentId, run.action.operationType(), run.action.filePath(),
+                    run.job.getUserId(), run.action.command());
+            run.dispatched++;
+            dispatched.incrementAndGet();
+        } catch (RuntimeException e) {
+            run.failed++;
+            failed.incrementAndGet();
+            System.err.println("Schedule " + run.job.getId() + " failed to dispatch to " + agentId + ": " + e.getMessage());
+        }
+        synchronized (lock) {
+            run.remaining--;
+        }
+    }
+    
+    // Removes the schedule's timers and its run in progress, returning that run
+    private Run unschedule(Long jobId) {
+        synchronized (lock) {
+            wheel.removeIf(task -> task.jobId() == jobId);
+            return runs.remove(jobId);
+        }
+    }
+    
+    private void recordProgress(Run run, boolean finished) {
+        jobRepository.recordRunProgress(run.job.getId(), run.dispatched, run.failed, finished ? LocalDateTime.now() : null);
+        if (finished) {
+            broadcast(run, "completed", run.dispatched + run.failed);
+        }
+    }
+    
+    private void broadcast(Run run, String status, int targets) {
+        Map<String, Object> message = new LinkedHashMap<>();
+        message.put("type", "schedule_run");
+        message.put("scheduleId", run.job.getId());
+        message.put("name", run.job.getName());
+        message.put("status", status);
+        message.put("targets", targets);
+        message.put("dispatched", run.dispatched);
+        message.put("failed", run.failed);
+        webSocketService.broadcastToPortal(message);
+    }
+    
+    private List<AgentSummary> resolveTargets(ScheduledJob job) {
+        if (job.getTargetAgentIds() != null && !job.getTargetAgentIds().isBlank()) {
+            List<AgentSummary> agents = new ArrayList<>();
+            for (String agentId : job.getTargetAgentIds().split(",")) {
+                agentIndexService.get(agentId.trim())
+                        .filter(agent -> job.getTargetNetworkId() == null || job.getTargetNetworkId().equals(agent.networkId()))
+                        .filter(agent -> job.getTargetStatus() == null || job.getTargetStatus().equals(agent.status()))
+                        .ifPresent(agents::add);
+            }
+            return agents;
+        }
+        return agentIndexService.findAll(new AgentQuery(job.getTargetNetworkId(), job.getTargetStoreId(),
+                job.getTargetPlatform(), job.getTargetStatus(), null, null, null));
+    }
+    
+    /**
+     * The configured spread, widened so the run stays under max-dispatches-per-second but
+     * never past the next fire time.
+     */
+    private int spreadFor(ScheduledJob job, int targets, long intervalMillis) {
+        int needed = (int) Math.ceil(targets / Math.max(0.1, maxDispatchesPerSecond));
+        int spread = Math.max(job.getSpreadSeconds(), needed);
+        long interval = intervalMillis / 1000 - 1;
+        if (spread > interval) {
+            System.err.println("Schedule " + job.getId() + " fires every " + (interval + 1) + " s, too often to spread "
+                    + targets + " agents at " + maxDispatchesPerSecond + "/s");
+            spread = (int) Math.max(0, interval);
+        }
+        return spread;
+    }
+    
+    private static long slotOffset(long jobId, String agentId, int spreadSeconds) {
+        if (spreadSeconds <= 0) {
+            return 0;
+        }
+        // SplitMix64 finalizer, so neighbouring agent ids land far apart
+        long hash = jobId * 0x9E3779B97F4A7C15L + agentId.hashCode();
+        hash = (hash ^ (hash >>> 30)) * 0xBF58476D1CE4E5B9L;
+        hash = (hash ^ (hash >>> 27)) * 0x94D049BB133111EBL;
+        hash ^= hash >>> 31;
+        return Math.floorMod(hash, spreadSeconds * 1000L);
+    }
+    
+    private Action prepare(ScheduledJob job) {
+        Map<String, String> params = readParams(job);
+        return switch (job.getActionType()) {
+            case "system_info" -> new Action("system_info", "system_info", new AgentCommand.SystemInfo(null));
+            case "system_command" -> new Action("system_command", params.get("command"),
+                    new AgentCommand.SystemCommand(null, params.get("command"), null));
+            case "install_package" -> new Action("install_package", params.get("packageName"),
+                    new AgentCommand.InstallPackage(null, params.get("packageName"), params.get("installCommand")));
+            case "file_upload" -> {
+                // A fresh signed URL per run; looking the artifact up also keeps it from expiring
+                ArtifactService.Artifact artifact = artifactService.find(params.get("digest"), params.get("fileName"))
+                        .orElseThrow(() -> new IllegalStateException("Artifact " + params.get("digest") + " is no longer stored"));
+                yield new Action("upload", params.get("targetPath") + "/" + params.get("fileName"),
+                        new AgentCommand.FileUpload(null, params.get("targetPath"), params.get("fileName"),
+                                artifact.url(), artifact.digest(), artifact.size()));
+            }
+            default -> throw new IllegalStateException("Unsupported schedule action: " + job.getActionType());
+        };
+    }
+    
+    private void applyTargets(ScheduledJob job, ScheduleRequest request) {
+        String tenant = TenantContext.currentNetworkId();
+        if (request.getAgentIds() != null && !request.getAgentIds().isEmpty()) {
+            for (String agentId : request.getAgentIds()) {
+                if (agentIndexService.get(agentId).isEmpty()) {
+                    throw new IllegalArgumentException("Unknown agent: " + agentId);
+                }
+            }
+            job.setTargetAgentIds(String.join(",", request.getAgentIds()));
+            job.setTargetNetworkId(tenant);
+            job.setTargetStatus(request.getStatus());
+            return;
+        }
+        if (request.getNetworkId() == null && request.getStoreId() == null && request.getPlatform() == null && tenant == null) {
+            throw new IllegalArgumentException("Schedule requires agentIds, networkId, storeId or platform");
+        }
+        
+        AgentQuery query = TenantContext.scope(new AgentQuery(request.getNetworkId(), request.getStoreId(),
+                request.getPlatform(), request.getStatus(), null, null, null));
+        job.setTargetNetworkId(query.networkId());
+        job.setTargetStoreId(query.storeId());
+        job.setTargetPlatform(query.platform());
+        job.setTargetStatus(query.status());
+    }
+    
+    private void validateAction(String action, Map<String, String> params) {
+        if (action == null || !ACTIONS.contains(action)) {
+            throw new IllegalArgumentException("Unsupported schedule action: " + action);
+        }
+        if ("install_package".equals(action) && (params.get("packageName") == null || params.get("installCommand") == null)) {
+            throw new IllegalArgumentException("install_package requires packageName and installCommand");
+        }
+        if ("system_command".equals(action) && params.get("command") == null) {
+            throw new IllegalArgumentException("system_command requires command");
+        }
+        if ("file_upload".equals(action)) {
+            if (params.get("digest") == null || params.get("targetPath") == null || params.get("fileName") == null) {
+                throw new IllegalArgumentException("file_upload requires digest, targetPath and fileName");
+            }
+            if (artifactService.find(params.get("digest"), params.get("fileName")).isEmpty()) {
+                throw new IllegalArgumentException("Unknown artifact: " + params.get("digest"));
+            }
+        }
+    }
+    
+    private long nextFireMillis(ScheduledJob job, long afterMillis) {
+        ZonedDateTime after = Instant.ofEpochMilli(afterMillis).atZone(zoneOrDefault(job.getTimeZone()));
+        ZonedDateTime next = parseCron(job.getCronExpression()).next(after);
+        return next != null ? next.toInstant().toEpochMilli() : 0;
+    }
+    
+    private ScheduledJob require(Long jobId) {
+        return getSchedule(jobId).orElseThrow(() -> new NoSuchElementException("Schedule not found"));
+    }
+    
+    private ZoneId zoneOrDefault(String timeZone) {
+        String id = timeZone != null && !timeZone.isBlank() ? timeZone : defaultTimeZone;
+        try {
+            return id != null && !id.isBlank() ? ZoneId.of(id) : ZoneId.systemDefault();
+        } catch (DateTimeException e) {
+            throw new IllegalArgumentException("Invalid time zone: " + id);
+        }
+    }
+    
+    private static CronExpression parseCron(String cron) {
+        try {
+            return CronExpression.parse(cron);
+        } catch (IllegalArgumentException | NullPointerException e) {
+            throw new IllegalArgumentException("Invalid cron expression: " + cron);
+        }
+    }
+    
+    private String writeParams(Map<String, String> params) {
+        try {
+            return objectMapper.writeValueAsString(params);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Invalid schedule parameters", e);
+        }
+    }
+    
+    private Map<String, String> readParams(ScheduledJob job) {
+        try {
+            return objectMapper.readValue(job.getActionParams(), new TypeReference<Map<String, String>>() {});
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Corrupt schedule parameters", e);
+        }
+    }
+    
+    private static LocalDateTime toLocal(long epochMillis) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(epochMillis), ZoneId.systemDefault());
+    }
+    
+    private static long toMillis(LocalDateTime time) {
+        return time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+    
+    private static int valueOr(Integer value) {
+        return value != null ? value : 0;
+    }
+    
+    // agentId null means the schedule itself fires
+    private record Task(long jobId, long at, String agentId, boolean manual) {
+        static Task fire(long jobId, long at) {
+            return new Task(jobId, at, null, false);
+        }
+        
+        static Task manual(long jobId, long at) {
+            return new Task(jobId, at, null, true);
+        }
+        
+        static Task dispatch(long jobId, long runStartedAt, String agentId) {
+            return new Task(jobId, runStartedAt, agentId, false);
+        }
+    }
+    
+    private record Action(String operationType, String filePath, AgentCommand command) {}
+    
+    // Counters are only changed on the tick thread; remaining is read under lock
+    private static final class Run {
+        final ScheduledJob job;
+        final long startedAt;
+        final Action action;
+        int remaining;
+        int dispatched;
+        int failed;
+        
+        Run(ScheduledJob job, long startedAt, Action action) {
+            this.job = job;
+            this.startedAt = startedAt;
+            this.action = action;
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,175 @@
+package com.vr.portal.util;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+
+/**
+ * Directory-shaped hash tree over a file manifest. A file's hash is the SHA-256 of its
+ * content as reported by the agent; a directory's hash is the SHA-256 of its children
+ * sorted by name, each contributing "name\0type\0hash\n" (type "d" or "f"). Agents
+ * compute the same directory hashes, so two trees can be compared top-down and
+ * identical subtrees skipped after a single hash.
+ */
+public final class MerkleTree {
+    
+    private final Node root;
+    
+    private MerkleTree(Node root) {
+        this.root = root;
+    }
+    
+    public static MerkleTree build(Collection<Entry> files) {
+        Node root = new Node("", true);
+        for (Entry file : files) {
+            String path = normalize(file.path());
+            if (path.isEmpty() || file.hash() == null) {
+                throw new IllegalArgumentException("Manifest entry needs a path and a hash");
+            }
+            String[] parts = path.split("/");
+            Node parent = root;
+            for (int i = 0; i < parts.length - 1; i++) {
+                parent = parent.children.computeIfAbsent(parts[i], name -> new Node(name, true));
+                if (!parent.directory) {
+                    throw new IllegalArgumentException("Manifest path " + path + " runs through a file");
+                }
+            }
+            Node leaf = new Node(parts[parts.length - 1], false);
+            leaf.hash = file.hash().toLowerCase(Locale.ROOT);
+            leaf.size = file.size();
+            parent.children.put(leaf.name, leaf);
+        }
+        root.seal();
+        return new MerkleTree(root);
+    }
+    
+    /**
+     * Hash of a directory from its children, matching how agents compute it.
+     */
+    public static String directoryHash(Collection<Child> children) {
+        List<Child> sorted = new ArrayList<>(children);
+        sorted.sort(Comparator.comparing(Child::name));
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            for (Child child : sorted) {
+                digest.update((child.name() + "\0" + (child.directory() ? "d" : "f") + "\0" + child.hash() + "\n")
+                        .getBytes(StandardCharsets.UTF_8));
+            }
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+    
+    public static String normalize(String path) {
+        String normalized = path.replace('\\', '/');
+        while (normalized.startsWith("/")) {
+            normalized = normalized.substring(1);
+        }
+        while (normalized.endsWith("/")) {
+            normalized = normalized.substring(0, normalized.length() - 1);
+        }
+        return normalized;
+    }
+    
+    public static String join(String directory, String name) {
+        return directory.isEmpty() ? name : directory + "/" + name;
+    }
+    
+    public String rootHash() {
+        return root.hash;
+    }
+    
+    public int fileCount() {
+        return root.files;
+    }
+    
+    public long totalBytes() {
+        return root.size;
+    }
+    
+    /**
+     * Children of the directory at path, or null when it is not a directory in this tree.
+     */
+    public List<Child> children(String path) {
+        Node node = find(path);
+        if (node == null || !node.directory) {
+            return null;
+        }
+        return node.children.values().stream().map(Node::toChild).toList();
+    }
+    
+    /**
+     * Every file at or below path, with paths relative to the tree root.
+     */
+    public List<Entry> filesUnder(String path) {
+        List<Entry> files = new ArrayList<>();
+        Node node = find(path);
+        if (node != null) {
+            collect(node, normalize(path), files);
+        }
+        return files;
+    }
+    
+    private Node find(String path) {
+        String normalized = normalize(path);
+        Node node = root;
+        if (normalized.isEmpty()) {
+            return node;
+        }
+        for (String part : normalized.split("/")) {
+            node = node.directory ? node.children.get(part) : null;
+            if (node == null) {
+                return null;
+            }
+        }
+        return node;
+    }
+    
+    private static void collect(Node node, String path, List<Entry> files) {
+        if (!node.directory) {
+            files.add(new Entry(path, node.hash, node.size));
+            return;
+        }
+        for (Node child : node.children.values()) {
+            collect(child, join(path, child.name), files);
+        }
+    }
+    
+    public record Entry(String path, String hash, long size) {}
+    
+    public record Child(String name, boolean directory, String hash, long size) {}
+    
+    private static class Node {
+        private final String name;
+        private final boolean directory;
+        private final SortedMap<String, Node> children;
+        private String hash;
+        private long size;
+        private int files;
+        
+        Node(String name, boolean directory) {
+            this.name = name;
+            this.directory = directory;
+            this.children = directory ? new TreeMap<>() : null;
+        }
+        
+        void seal() {
+            if (!directory) {
+                files = 1;
+                return;
+            }
+            for (Node child : children.values()) {
+                child.seal();
+                size += child.size;
+                files += child.files;
+            }
+            hash = directoryHash(children.values().stream().map(Node::toChild).toList());
+        }
+        
+        Child toChild() {
+            return new Child(name, directory, hash, size);
+        }
+    }
+}
\ No newline at end of file
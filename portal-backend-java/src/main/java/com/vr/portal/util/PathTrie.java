@@ -0,0 +1,127 @@
+package com.vr.portal.util;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.IntConsumer;
+
+/**
+ * Interns file paths as small integer node ids in a trie of path segments, so every
+ * distinct directory and file name is stored once however many agents report it, and
+ * everything under a prefix is one subtree walk away. Separators are normalized to "/"
+ * and, when case-insensitive, segments are matched lower-cased while the first spelling
+ * seen is kept for display.
+ * <p>
+ * Not thread-safe; callers synchronize.
+ */
+public final class PathTrie {
+    
+    public static final int ROOT = 0;
+    
+    private final boolean caseInsensitive;
+    private final List<String> names = new ArrayList<>();
+    private final List<Integer> parents = new ArrayList<>();
+    private final List<Map<String, Integer>> children = new ArrayList<>();
+    
+    public PathTrie(boolean caseInsensitive) {
+        this.caseInsensitive = caseInsensitive;
+        addNode("", -1);
+    }
+    
+    /**
+     * Node id for the path, adding any missing segments.
+     */
+    public int intern(String path) {
+        int node = ROOT;
+        for (String segment : segments(path)) {
+            Map<String, Integer> next = children.get(node);
+            if (next == null) {
+                next = new HashMap<>();
+                children.set(node, next);
+            }
+            Integer child = next.get(key(segment));
+            if (child == null) {
+                child = addNode(segment, node);
+                next.put(key(segment), child);
+            }
+            node = child;
+        }
+        return node;
+    }
+    
+    /**
+     * Node id for the path, or -1 when no reported path starts with it.
+     */
+    public int find(String path) {
+        int node = ROOT;
+        for (String segment : segments(path)) {
+            Map<String, Integer> next = children.get(node);
+            Integer child = next != null ? next.get(key(segment)) : null;
+            if (child == null) {
+                return -1;
+            }
+            node = child;
+        }
+        return node;
+    }
+    
+    public String path(int node) {
+        List<String> parts = new ArrayList<>();
+        for (int current = node; current != ROOT; current = parents.get(current)) {
+            parts.add(names.get(current));
+        }
+        StringBuilder path = new StringBuilder();
+        for (int i = parts.size() - 1; i >= 0; i--) {
+            path.append(parts.get(i));
+            if (i > 0) {
+                path.append('/');
+            }
+        }
+        return path.toString();
+    }
+    
+    /**
+     * Visits the node and every node below it, depth first.
+     */
+    public void subtree(int node, IntConsumer visitor) {
+        List<Integer> stack = new ArrayList<>();
+        stack.add(node);
+        while (!stack.isEmpty()) {
+            int current = stack.remove(stack.size() - 1);
+            visitor.accept(current);
+            Map<String, Integer> next = children.get(current);
+            if (next != null) {
+                stack.addAll(next.values());
+            }
+        }
+    }
+    
+    public int size() {
+        return names.size();
+    }
+    
+    private int addNode(String name, int parent) {
+        names.add(name);
+        parents.add(parent);
+        children.add(null);
+        return names.size() - 1;
+    }
+    
+    private String key(String segment) {
+        return caseInsensitive ? segment.toLowerCase(Locale.ROOT) : segment;
+    }
+    
+    private static List<String> segments(String path) {
+        // "C:\VR\bin\" and "C:/VR//bin" are the same directory; a leading "/" stays as an empty first segment
+        String[] parts = path.replace('\\', '/').split("/");
+        List<String> segments = new ArrayList<>(parts.length);
+        for (int i = 0; i < parts.length; i++) {
+            if (!parts[i].isEmpty() || (i == 0 && parts.length > 1)) {
+                segments.add(parts[i]);
+            }
+        }
+        return segments;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,143 @@
+package com.vr.portal.util;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * Hierarchical timing wheel. Level 0 has one slot per tick; each level above covers a
+ * whole revolution of the level below per slot. An entry sits in the lowest level whose
+ * current revolution contains its deadline and moves down one level each time its slot
+ * comes round, so scheduling and expiring are O(1) however many entries are pending.
+ * Deadlines past the top level wait in an overflow list until the top wheel turns over.
+ * <p>
+ * Not thread-safe; callers synchronize.
+ */
+public final class TimingWheel<T> {
+    
+    private final long tickMillis;
+    private final int bits;
+    private final int mask;
+    // Slots are created on first use, so empty ones stay null
+    private final List<List<ArrayDeque<Entry<T>>>> levels;
+    private final List<Entry<T>> overflow = new ArrayList<>();
+    private final ArrayDeque<Entry<T>> due = new ArrayDeque<>();
+    private long currentTick;
+    private int size;
+    
+    public TimingWheel(long tickMillis, int slotBits, int levelCount, long startMillis) {
+        this.tickMillis = Math.max(1, tickMillis);
+        this.bits = slotBits;
+        this.mask = (1 << slotBits) - 1;
+        this.levels = new ArrayList<>(levelCount);
+        for (int level = 0; level < levelCount; level++) {
+            levels.add(new ArrayList<>(Collections.nCopies(1 << slotBits, null)));
+        }
+        this.currentTick = startMillis / this.tickMillis;
+    }
+    
+    public void schedule(long deadlineMillis, T item) {
+        place(new Entry<>(Math.max(0, deadlineMillis / tickMillis), item));
+        size++;
+    }
+    
+    /**
+     * Moves the wheel up to now and hands every entry whose deadline has passed to the
+     * consumer, in deadline order to within one tick.
+     */
+    public void advance(long nowMillis, Consumer<T> expired) {
+        long target = nowMillis / tickMillis;
+        drain(expired);
+        while (currentTick < target) {
+            currentTick++;
+            if ((currentTick & ((1L << (bits * levels.size())) - 1)) == 0 && !overflow.isEmpty()) {
+                List<Entry<T>> waiting = new ArrayList<>(overflow);
+                overflow.clear();
+                waiting.forEach(this::place);
+            }
+            for (int level = levels.size() - 1; level > 0; level--) {
+                if ((currentTick & ((1L << (bits * level)) - 1)) == 0) {
+                    cascade(level, (int) (currentTick >>> (bits * level)) & mask);
+                }
+            }
+            ArrayDeque<Entry<T>> slot = levels.get(0).get((int) currentTick & mask);
+            if (slot != null) {
+                due.addAll(slot);
+                slot.clear();
+            }
+            drain(expired);
+        }
+    }
+    
+    public int removeIf(Predicate<T> filter) {
+        int removed = 0;
+        for (List<ArrayDeque<Entry<T>>> level : levels) {
+            for (ArrayDeque<Entry<T>> slot : level) {
+                if (slot != null) {
+                    int before = slot.size();
+                    slot.removeIf(entry -> filter.test(entry.item()));
+                    removed += before - slot.size();
+                }
+            }
+        }
+        int before = overflow.size() + due.size();
+        overflow.removeIf(entry -> filter.test(entry.item()));
+        due.removeIf(entry -> filter.test(entry.item()));
+        removed += before - overflow.size() - due.size();
+        size -= removed;
+        return removed;
+    }
+    
+    public int size() {
+        return size;
+    }
+    
+    public int overflowSize() {
+        return overflow.size();
+    }
+    
+    private void place(Entry<T> entry) {
+        if (entry.tick() <= currentTick) {
+            due.add(entry);
+            return;
+        }
+        for (int level = 0; level < levels.size(); level++) {
+            int shift = bits * (level + 1);
+            // Same revolution of the next level up, so this level's slot comes round first
+            if ((entry.tick() >>> shift) == (currentTick >>> shift)) {
+                int index = (int) (entry.tick() >>> (bits * level)) & mask;
+                ArrayDeque<Entry<T>> slot = levels.get(level).get(index);
+                if (slot == null) {
+                    slot = new ArrayDeque<>();
+                    levels.get(level).set(index, slot);
+                }
+                slot.add(entry);
+                return;
+            }
+        }
+        overflow.add(entry);
+    }
+    
+    private void cascade(int level, int index) {
+        ArrayDeque<Entry<T>> slot = levels.get(level).get(index);
+        if (slot == null || slot.isEmpty()) {
+            return;
+        }
+        List<Entry<T>> moving = new ArrayList<>(slot);
+        slot.clear();
+        moving.forEach(this::place);
+    }
+    
+    private void drain(Consumer<T> expired) {
+        Entry<T> entry;
+        while ((entry = due.poll()) != null) {
+            size--;
+            expired.accept(entry.item());
+        }
+    }
+    
+    private record Entry<T>(long tick, T item) {}
+}
\ No newline at end of file
@@ -0,0 +1,40 @@
+package com.vr.portal.util;
+
+public final class TokenBucket {
+    
+    private final double capacity;
+    private final double refillPerNanos;
+    private double tokens;
+    private long lastRefill;
+    
+    public TokenBucket(double capacity, double refillPerSecond) {
+        this.capacity = Math.max(1, capacity);
+        this.refillPerNanos = refillPerSecond / 1_000_000_000.0;
+        this.tokens = this.capacity;
+        this.lastRefill = System.nanoTime();
+    }
+    
+    /**
+     * Takes one token if available. Returns 0 on success, otherwise the nanoseconds
+     * until a token will be available.
+     */
+    public synchronized long tryAcquire() {
+        refill();
+        if (tokens >= 1) {
+            tokens -= 1;
+            return 0;
+        }
+        return refillPerNanos > 0 ? (long) Math.ceil((1 - tokens) / refillPerNanos) : Long.MAX_VALUE;
+    }
+    
+    public synchronized boolean isFull() {
+        refill();
+        return tokens >= capacity;
+    }
+    
+    private void refill() {
+        long now = System.nanoTime();
+        tokens = Math.min(capacity, tokens + (now - lastRefill) * refillPerNanos);
+        lastRefill = now;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,50 @@
+package com.vr.portal.util;
+
+import java.util.Comparator;
+
+public final class Versions {
+    
+    // Compares dotted versions segment by segment, numerically where both segments are numbers ("1.10" > "1.9")
+    public static final Comparator<String> COMPARATOR = Versions::compare;
+    
+    private Versions() {}
+    
+    public static int compare(String left, String right) {
+        if (left == null || right == null) {
+            return left == null ? (right == null ? 0 : -1) : 1;
+        }
+        
+        String[] leftParts = left.trim().split("[.\\-+_]");
+        String[] rightParts = right.trim().split("[.\\-+_]");
+        int length = Math.max(leftParts.length, rightParts.length);
+        
+        for (int i = 0; i < length; i++) {
+            String a = i < leftParts.length ? leftParts[i] : "0";
+            String b = i < rightParts.length ? rightParts[i] : "0";
+            
+            int result;
+            if (isNumeric(a) && isNumeric(b)) {
+                result = Long.compare(Long.parseLong(a), Long.parseLong(b));
+            } else {
+                result = a.compareTo(b);
+            }
+            
+            if (result != 0) {
+                return result;
+            }
+        }
+        return 0;
+    }
+    
+    private static boolean isNumeric(String value) {
+        if (value.isEmpty() || value.length() > 18) {
+            return false;
+        }
+        for (int i = 0; i < value.length(); i++) {
+            if (!Character.isDigit(value.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,103 @@
+package com.vr.portal.websocket;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.vr.portal.dto.AgentCommand;
+import org.springframework.messaging.converter.MappingJackson2MessageConverter;
+import org.springframework.messaging.converter.MessageConverter;
+import org.springframework.stereotype.Component;
+import org.springframework.util.MimeType;
+
+import java.io.IOException;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Encodes agent commands once per send with writers resolved at startup, in the
+ * encoding each agent asked for when it connected. JSON uses the application
+ * ObjectMapper; CBOR and Smile are binary copies of it with the same modules, so
+ * the typed records look the same in every encoding.
+ */
+@Component
+public class AgentMessageCodec {
+    
+    public enum Encoding {
+        JSON(new MimeType("application", "json")),
+        CBOR(new MimeType("application", "cbor")),
+        SMILE(new MimeType("application", "x-jackson-smile"));
+        
+        private final MimeType mimeType;
+        
+        Encoding(MimeType mimeType) {
+            this.mimeType = mimeType;
+        }
+        
+        public MimeType mimeType() {
+            return mimeType;
+        }
+        
+        public boolean binary() {
+            return this != JSON;
+        }
+        
+        public static Encoding of(String name) {
+            if (name == null || name.isBlank()) {
+                return JSON;
+            }
+            try {
+                return valueOf(name.trim().toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                return JSON;
+            }
+        }
+    }
+    
+    private final Map<Encoding, ObjectMapper> mappers = new EnumMap<>(Encoding.class);
+    private final Map<Encoding, ObjectWriter> commandWriters = new EnumMap<>(Encoding.class);
+    private final ObjectReader commandReader;
+    
+    public AgentMessageCodec(ObjectMapper objectMapper) {
+        mappers.put(Encoding.JSON, objectMapper);
+        mappers.put(Encoding.CBOR, objectMapper.copyWith(new CBORFactory()));
+        mappers.put(Encoding.SMILE, objectMapper.copyWith(new SmileFactory()));
+        // Writers bound to the base type resolve the polymorphic serializers once, not per message
+        mappers.forEach((encoding, mapper) -> commandWriters.put(encoding, mapper.writerFor(AgentCommand.class)));
+        this.commandReader = objectMapper.readerFor(AgentCommand.class);
+    }
+    
+    public byte[] encode(AgentCommand command, Encoding encoding) {
+        try {
+            return commandWriters.get(encoding).writeValueAsBytes(command);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Cannot encode " + command.type() + ": " + e.getMessage(), e);
+        }
+    }
+    
+    public String toJson(AgentCommand command) {
+        try {
+            return commandWriters.get(Encoding.JSON).writeValueAsString(command);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Cannot encode " + command.type() + ": " + e.getMessage(), e);
+        }
+    }
+    
+    public AgentCommand fromJson(String json) throws IOException {
+        return commandReader.readValue(json);
+    }
+    
+    /**
+     * Converter for agent frames sent with the encoding's content-type. Strict matching
+     * keeps it from claiming frames that have no content-type or a different one.
+     */
+    public MessageConverter messageConverter(Encoding encoding) {
+        MappingJackson2MessageConverter converter = new MappingJackson2MessageConverter(encoding.mimeType());
+        converter.setObjectMapper(mappers.get(encoding));
+        converter.setStrictContentTypeMatch(true);
+        return converter;
+    }
+}
\ No newline at end of file
@@ -1,51 +1,81 @@
 package com.vr.portal.websocket;
 
-import com.vr.portal.entity.Agent;
-import com.vr.portal.repository.AgentRepository;
+import com.vr.portal.dto.AgentEvent;
+import com.vr.portal.service.AgentLivenessService;
+import com.vr.portal.service.AgentMailboxService;
+import com.vr.portal.service.FileIndexService;
+import com.vr.portal.service.FileOperationService;
+import com.vr.portal.service.FleetExecutionService;
+import com.vr.portal.service.IntegrityManifestService;
+import com.vr.portal.service.OperationCoalescingService;
+import com.vr.portal.service.OperationOutputService;
+import org.springframework.messaging.handler.annotation.Header;
 import org.springframework.messaging.handler.annotation.MessageMapping;
 import org.springframework.messaging.handler.annotation.Payload;
 import org.springframework.messaging.simp.annotation.SendToUser;
 import org.springframework.stereotype.Controller;
 
-import java.time.LocalDateTime;
 import java.util.Map;
 
 @Controller
 public class WebSocketController {
     
     private final WebSocketService webSocketService;
-    private final AgentRepository agentRepository;
+    private final AgentLivenessService agentLivenessService;
+    private final FileOperationService fileOperationService;
+    private final OperationOutputService operationOutputService;
+    private final FleetExecutionService fleetExecutionService;
+    private final AgentMailboxService agentMailboxService;
+    private final OperationCoalescingService operationCoalescingService;
+    private final IntegrityManifestService integrityManifestService;
+    private final FileIndexService fileIndexService;
     
-    public WebSocketController(WebSocketService webSocketService, AgentRepository agentRepository) {
+    public WebSocketController(
+            WebSocketService webSocketService,
+            AgentLivenessService agentLivenessService,
+            FileOperationService fileOperationService,
+            OperationOutputService operationOutputService,
+            FleetExecutionService fleetExecutionService,
+            AgentMailboxService agentMailboxService,
+            OperationCoalescingService operationCoalescingService,
+            IntegrityManifestService integrityManifestService,
+            FileIndexService fileIndexService
+    ) {
         this.webSocketService = webSocketService;
-        this.agentRepository = agentRepository;
+        this.agentLivenessService = agentLivenessService;
+        this.fileOperationService = fileOperationService;
+        this.operationOutputService = operationOutputService;
+        this.fleetExecutionService = fleetExecutionService;
+        this.agentMailboxService = agentMailboxService;
+        this.operationCoalescingService = operationCoalescingService;
+        this.integrityManifestService = integrityManifestService;
+        this.fileIndexService = fileIndexService;
     }
     
     @MessageMapping("/agent/connect")
     @SendToUser("/queue/reply")
-    public Map<String, Object> handleAgentConnect(@Payload Map<String, Object> message) {
+    public Map<String, Object> handleAgentConnect(
+            @Payload AgentEvent.Connect message,
+            @Header(name = "simpSessionId", required = false) String stompSessionId
+    ) {
         try {
-            String agentId = (String) message.get("agentId");
-            String sessionId = (String) message.get("sessionId");
+            String agentId = message.agentId();
+            String sessionId = stompSessionId != null ? stompSessionId : message.sessionId();
             
             // Register agent session
-            webSocketService.registerAgent(agentId, sessionId);
+            webSocketService.registerAgent(agentId, sessionId, AgentMessageCodec.Encoding.of(message.encoding()));
+            agentMailboxService.onAgentConnected(agentId);
             
-            // Update agent status
-            agentRepository.findById(agentId).ifPresent(agent -> {
-                agent.setStatus("online");
-                agent.setLastSeen(LocalDateTime.now());
-                agentRepository.save(agent);
-            });
+            // Saves and broadcasts the status only if the agent was offline
+            agentLivenessService.connected(agentId, sessionId);
+            fileIndexService.onAgentConnected(agentId);
             
-            // Broadcast agent status change
-            webSocketService.broadcastToPortal(Map.of(
-                    "type", "agent_status_change",
-                    "agentId", agentId,
-                    "status", "online"
-            ));
-            
-            return Map.of("status", "connected", "message", "Agent registered successfully");
+            return Map.of(
+                    "status", "connected",
+                    "message", "Agent registered successfully",
+                    "heartbeatIntervalMs", agentLivenessService.getIntervalMs(),
+                    "stompHeartbeatMs", agentLivenessService.getStompHeartbeatMs()
+            );
             
         } catch (Exception e) {
             return Map.of("status", "error", "message", e.getMessage());
@@ -53,26 +83,13 @@ public class WebSocketController {
     }
     
     @MessageMapping("/agent/disconnect")
-    public void handleAgentDisconnect(@Payload Map<String, Object> message) {
+    public void handleAgentDisconnect(@Payload AgentEvent.Disconnect message) {
         try {
-            String agentId = (String) message.get("agentId");
+            String agentId = message.agentId();
             
             // Unregister agent session
             webSocketService.unregisterAgent(agentId);
-            
-            // Update agent status
-            agentRepository.findById(agentId).ifPresent(agent -> {
-                agent.setStatus("offline");
-                agent.setLastSeen(LocalDateTime.now());
-                agentRepository.save(agent);
-            });
-            
-            // Broadcast agent status change
-            webSocketService.broadcastToPortal(Map.of(
-                    "type", "agent_status_change",
-                    "agentId", agentId,
-                    "status", "offline"
-            ));
+            agentLivenessService.disconnected(agentId);
             
         } catch (Exception e) {
             System.err.println("Error handling agent disconnect: " + e.getMessage());
@@ -82,6 +99,26 @@ public class WebSocketController {
     @MessageMapping("/agent/response")
     public void handleAgentResponse(@Payload Map<String, Object> response) {
         try {
+            // Status pings only refresh liveness; transitions are broadcast by the liveness service
+            if ("agent_status".equals(response.get("type")) && response.get("agentId") instanceof String agentId) {
+                agentLivenessService.statusPing(agentId);
+                return;
+            }
+            
+            Map<String, Object> result = resultOf(response);
+            
+            // Manifest exchanges span several responses and complete their operation themselves
+            if (integrityManifestService.recordResult(result)) {
+                return;
+            }
+            
+            recordOperationResult(result);
+            
+            // Fleet executions publish aggregated progress instead of every response
+            if (fleetExecutionService.recordResult(result)) {
+                return;
+            }
+            
             // Forward agent response to portal
             webSocketService.broadcastToPortal(Map.of(
                     "type", "agent_response",
@@ -92,4 +129,59 @@ public class WebSocketController {
             System.err.println("Error handling agent response: " + e.getMessage());
         }
     }
+    
+    @MessageMapping("/agent/output")
+    public void handleAgentOutput(@Payload AgentEvent.OutputChunk chunk) {
+        try {
+            // {operationId, seq, stream: "stdout"|"stderr", data, eof}
+            if (chunk.operationId() == null || chunk.seq() == null) {
+                return;
+            }
+            
+            operationOutputService.append(
+                    chunk.operationId(),
+                    chunk.seq(),
+                    chunk.stream(),
+                    chunk.data(),
+                    chunk.eof()
+            );
+            
+        } catch (Exception e) {
+            System.err.println("Error handling agent output: " + e.getMessage());
+        }
+    }
+    
+    @MessageMapping("/agent/files")
+    public void handleFileListing(@Payload AgentEvent.FileListing listing) {
+        try {
+            fileIndexService.apply(listing);
+        } catch (Exception e) {
+            System.err.println("Error handling file listing: " + e.getMessage());
+        }
+    }
+    
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> resultOf(Map<String, Object> response) {
+        // Results arrive either flat or wrapped as {type: "file_operation_result", payload: {...}}
+        return response.get("payload") instanceof Map<?, ?> payload
+                ? (Map<String, Object>) payload
+                : response;
+    }
+    
+    private void recordOperationResult(Map<String, Object> result) {
+        Object operationId = result.get("operationId");
+        Object status = result.get("status");
+        if (!(operationId instanceof Number) || !("completed".equals(status) || "failed".equals(status))) {
+            return;
+        }
+        
+        Object error = result.get("error");
+        fileOperationService.complete(
+                ((Number) operationId).longValue(),
+                (String) status,
+                error != null ? error.toString() : null
+        );
+        operationOutputService.finish(((Number) operationId).longValue());
+        operationCoalescingService.complete(((Number) operationId).longValue(), (String) status, result);
+    }
 }
\ No newline at end of file
@@ -1,31 +1,80 @@
 package com.vr.portal.websocket;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.vr.portal.dto.AgentCommand;
+import com.vr.portal.service.PayloadBudgetService;
+import com.vr.portal.service.PortalEventStreamService;
+import org.springframework.context.event.EventListener;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
 import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.util.MimeTypeUtils;
 import org.springframework.stereotype.Service;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
 
+import java.util.LinkedHashMap;
+import java.util.Locale;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
 
+/**
+ * Sends to agents and portal topics. Every payload is encoded once into a byte array
+ * that is then shared, read-only, by the broker for all subscribers of the topic and
+ * by the portal event stream, so the cost of a broadcast does not grow with the number
+ * of portal sessions. Commands without an operation id (heartbeat and file index
+ * configuration) are identical for many agents and their encoded bytes are kept per
+ * encoding, so a fleet-wide change is encoded once rather than once per agent.
+ */
 @Service
 public class WebSocketService {
     
+    private static final int MAX_SHARED_PAYLOADS = 64;
+    
     private final SimpMessagingTemplate messagingTemplate;
     private final ObjectMapper objectMapper;
+    private final PortalEventStreamService portalEventStreamService;
+    private final AgentMessageCodec agentMessageCodec;
+    private final PayloadBudgetService payloadBudgetService;
     private final Map<String, String> agentSessions = new ConcurrentHashMap<>();
+    private final Map<String, AgentMessageCodec.Encoding> agentEncodings = new ConcurrentHashMap<>();
+    private final Map<SharedCommand, byte[]> sharedPayloads = new ConcurrentHashMap<>();
+    
+    private final LongAdder topicMessages = new LongAdder();
+    private final LongAdder topicBytes = new LongAdder();
+    private final LongAdder agentMessages = new LongAdder();
+    private final LongAdder agentEncodes = new LongAdder();
+    private final LongAdder sharedPayloadHits = new LongAdder();
+    
+    private record SharedCommand(AgentCommand command, AgentMessageCodec.Encoding encoding) {}
     
-    public WebSocketService(SimpMessagingTemplate messagingTemplate) {
+    public WebSocketService(
+            SimpMessagingTemplate messagingTemplate,
+            ObjectMapper objectMapper,
+            PortalEventStreamService portalEventStreamService,
+            AgentMessageCodec agentMessageCodec,
+            PayloadBudgetService payloadBudgetService
+    ) {
         this.messagingTemplate = messagingTemplate;
-        this.objectMapper = new ObjectMapper();
+        this.portalEventStreamService = portalEventStreamService;
+        this.agentMessageCodec = agentMessageCodec;
+        this.payloadBudgetService = payloadBudgetService;
+        this.objectMapper = objectMapper;
     }
     
     public void registerAgent(String agentId, String sessionId) {
+        registerAgent(agentId, sessionId, AgentMessageCodec.Encoding.JSON);
+    }
+    
+    public void registerAgent(String agentId, String sessionId, AgentMessageCodec.Encoding encoding) {
         agentSessions.put(agentId, sessionId);
-        System.out.println("Agent registered: " + agentId + " with session: " + sessionId);
+        agentEncodings.put(agentId, encoding);
+        System.out.println("Agent registered: " + agentId + " with session: " + sessionId + " (" + encoding + ")");
     }
     
     public void unregisterAgent(String agentId) {
         agentSessions.remove(agentId);
+        agentEncodings.remove(agentId);
         System.out.println("Agent unregistered: " + agentId);
     }
     
@@ -33,11 +82,40 @@ public class WebSocketService {
         return agentSessions.containsKey(agentId);
     }
     
-    public void sendToAgent(String agentId, Object message) {
+    @EventListener
+    public void onSessionDisconnect(SessionDisconnectEvent event) {
+        // Agents that drop without sending /agent/disconnect must not count as connected
+        String sessionId = event.getSessionId();
+        agentSessions.entrySet().removeIf(entry -> {
+            if (entry.getValue().equals(sessionId)) {
+                agentEncodings.remove(entry.getKey());
+                System.out.println("Agent session closed: " + entry.getKey());
+                return true;
+            }
+            return false;
+        });
+    }
+    
+    public void sendToAgent(String agentId, AgentCommand command) {
         try {
-            String destination = "/queue/agent/" + agentId;
-            messagingTemplate.convertAndSend(destination, message);
-            System.out.println("Message sent to agent " + agentId + ": " + objectMapper.writeValueAsString(message));
+            AgentMessageCodec.Encoding encoding = agentEncodings.getOrDefault(agentId, AgentMessageCodec.Encoding.JSON);
+            byte[] payload = encode(command, encoding);
+            
+            // Already encoded, so the frame goes out as is instead of through the message converters
+            SimpMessageHeaderAccessor headers = SimpMessageHeaderAccessor.create();
+            if (encoding.binary()) {
+                // STOMP over WebSocket only uses binary frames for application/octet-stream
+                headers.setContentType(MimeTypeUtils.APPLICATION_OCTET_STREAM);
+                headers.setNativeHeader("encoding", encoding.name().toLowerCase(Locale.ROOT));
+            } else {
+                headers.setContentType(MimeTypeUtils.APPLICATION_JSON);
+            }
+            headers.setLeaveMutable(true);
+            messagingTemplate.send("/queue/agent/" + agentId, MessageBuilder.createMessage(payload, headers.getMessageHeaders()));
+            agentMessages.increment();
+            
+            System.out.println("Message sent to agent " + agentId + ": "
+                    + command.type() + " #" + command.operationId() + " (" + payload.length + " bytes " + encoding + ")");
         } catch (Exception e) {
             System.err.println("Failed to send message to agent " + agentId + ": " + e.getMessage());
         }
@@ -45,8 +123,8 @@ public class WebSocketService {
     
     public void broadcastToPortal(Object message) {
         try {
-            messagingTemplate.convertAndSend("/topic/portal", message);
-            System.out.println("Broadcast to portal: " + objectMapper.writeValueAsString(message));
+            int bytes = sendToTopic("portal", message);
+            System.out.println("Broadcast to portal: " + bytes + " bytes");
         } catch (Exception e) {
             System.err.println("Failed to broadcast to portal: " + e.getMessage());
         }
@@ -54,10 +132,62 @@ public class WebSocketService {
     
     public void sendToPortal(String topic, Object message) {
         try {
-            messagingTemplate.convertAndSend("/topic/" + topic, message);
-            System.out.println("Message sent to portal topic " + topic + ": " + objectMapper.writeValueAsString(message));
+            int bytes = sendToTopic(topic, message);
+            System.out.println("Message sent to portal topic " + topic + ": " + bytes + " bytes");
         } catch (Exception e) {
             System.err.println("Failed to send message to portal topic " + topic + ": " + e.getMessage());
         }
     }
+    
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("topicMessages", topicMessages.sum());
+        stats.put("topicBytes", topicBytes.sum());
+        stats.put("agentMessages", agentMessages.sum());
+        stats.put("agentEncodes", agentEncodes.sum());
+        stats.put("sharedPayloadHits", sharedPayloadHits.sum());
+        stats.put("sharedPayloads", sharedPayloads.size());
+        return stats;
+    }
+    
+    private int sendToTopic(String topic, Object message) throws Exception {
+        // Jackson recycles its scratch buffers per thread; the result is the one copy every subscriber shares
+        byte[] payload = objectMapper.writeValueAsBytes(message);
+        // Held while the message is fanned out; the queued frames are then accounted as outbound.
+        // Accounted rather than reserved, so a busy server delays uploads instead of losing events
+        PayloadBudgetService.Reservation reservation = payloadBudgetService.account(PayloadBudgetService.PayloadType.BROADCAST, payload.length);
+        try {
+            SimpMessageHeaderAccessor headers = SimpMessageHeaderAccessor.create();
+            headers.setContentType(MimeTypeUtils.APPLICATION_JSON);
+            headers.setLeaveMutable(true);
+            messagingTemplate.send("/topic/" + topic, MessageBuilder.createMessage(payload, headers.getMessageHeaders()));
+            portalEventStreamService.publish(topic, message, payload);
+        } finally {
+            reservation.close();
+        }
+        topicMessages.increment();
+        topicBytes.add(payload.length);
+        return payload.length;
+    }
+    
+    private byte[] encode(AgentCommand command, AgentMessageCodec.Encoding encoding) {
+        if (command.operationId() != null) {
+            agentEncodes.increment();
+            return agentMessageCodec.encode(command, encoding);
+        }
+        SharedCommand key = new SharedCommand(command, encoding);
+        byte[] payload = sharedPayloads.get(key);
+        if (payload != null) {
+            sharedPayloadHits.increment();
+            return payload;
+        }
+        payload = agentMessageCodec.encode(command, encoding);
+        agentEncodes.increment();
+        // Only a handful of distinct configurations exist at a time; stale ones are dropped wholesale
+        if (sharedPayloads.size() >= MAX_SHARED_PAYLOADS) {
+            sharedPayloads.clear();
+        }
+        sharedPayloads.put(key, payload);
+        return payload;
+    }
 }
\ No newline at end of file
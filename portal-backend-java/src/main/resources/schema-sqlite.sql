@@ -0,0 +1,161 @@
+-- Schema for the prod profile, which validates the JPA mapping instead of generating it.
+-- Column types follow what Hibernate's SQLiteDialect generates, so ddl-auto=validate accepts them.
+-- Every statement is idempotent; it runs on each startup before the EntityManagerFactory.
+-- A column added to an existing table must also be listed in SchemaMigrationConfig.
+
+CREATE TABLE IF NOT EXISTS users (
+    id integer PRIMARY KEY,
+    username varchar(255) NOT NULL UNIQUE,
+    password_hash varchar(255) NOT NULL,
+    email varchar(255) UNIQUE,
+    role TEXT DEFAULT 'user',
+    network_id varchar(255),
+    created_at timestamp,
+    updated_at timestamp
+);
+
+CREATE TABLE IF NOT EXISTS agents (
+    id varchar(255) PRIMARY KEY,
+    name varchar(255) NOT NULL,
+    hostname varchar(255) NOT NULL,
+    platform varchar(255) NOT NULL,
+    version varchar(255) NOT NULL,
+    status TEXT DEFAULT 'offline',
+    last_seen timestamp,
+    ip_address varchar(255),
+    network_id varchar(255),
+    store_id varchar(255),
+    created_at timestamp
+);
+CREATE INDEX IF NOT EXISTS idx_agents_network ON agents (network_id);
+CREATE INDEX IF NOT EXISTS idx_agents_store ON agents (store_id);
+CREATE INDEX IF NOT EXISTS idx_agents_status ON agents (status);
+
+CREATE TABLE IF NOT EXISTS file_operations (
+    id integer PRIMARY KEY,
+    agent_id varchar(255) NOT NULL,
+    operation_type varchar(255) NOT NULL,
+    file_path varchar(255) NOT NULL,
+    status TEXT DEFAULT 'pending',
+    error_message varchar(255),
+    user_id bigint,
+    network_id varchar(255),
+    created_at timestamp,
+    completed_at timestamp
+);
+CREATE INDEX IF NOT EXISTS idx_file_operations_agent_created ON file_operations (agent_id, created_at);
+CREATE INDEX IF NOT EXISTS idx_file_operations_created ON file_operations (created_at);
+CREATE INDEX IF NOT EXISTS idx_file_operations_network_created ON file_operations (network_id, created_at);
+CREATE INDEX IF NOT EXISTS idx_file_operations_network_agent_created ON file_operations (network_id, agent_id, created_at);
+
+CREATE TABLE IF NOT EXISTS file_operation_rollups (
+    id integer PRIMARY KEY,
+    granularity varchar(255) NOT NULL,
+    bucket_start timestamp NOT NULL,
+    agent_id varchar(255) NOT NULL,
+    operation_type varchar(255) NOT NULL,
+    status varchar(255) NOT NULL,
+    operation_count bigint NOT NULL,
+    CONSTRAINT uk_rollup_bucket UNIQUE (granularity, bucket_start, agent_id, operation_type, status)
+);
+CREATE INDEX IF NOT EXISTS idx_rollup_granularity_bucket ON file_operation_rollups (granularity, bucket_start);
+
+CREATE TABLE IF NOT EXISTS rollouts (
+    id integer PRIMARY KEY,
+    name varchar(255) NOT NULL,
+    action_type varchar(255) NOT NULL,
+    action_params TEXT,
+    status TEXT DEFAULT 'pending',
+    canary_percent float NOT NULL,
+    growth_factor float NOT NULL,
+    max_concurrent_per_network integer NOT NULL,
+    max_failure_rate float NOT NULL,
+    min_samples integer NOT NULL,
+    wave_delay_seconds integer NOT NULL,
+    target_timeout_seconds integer NOT NULL,
+    current_wave integer NOT NULL,
+    total_waves integer NOT NULL,
+    next_wave_at timestamp,
+    pause_reason varchar(255),
+    wave_baseline_completed integer NOT NULL DEFAULT 0,
+    wave_baseline_failed integer NOT NULL DEFAULT 0,
+    user_id bigint,
+    network_id varchar(255),
+    created_at timestamp,
+    updated_at timestamp,
+    version bigint
+);
+
+CREATE TABLE IF NOT EXISTS rollout_targets (
+    id integer PRIMARY KEY,
+    rollout_id bigint NOT NULL,
+    agent_id varchar(255) NOT NULL,
+    network_id varchar(255),
+    wave integer NOT NULL,
+    status TEXT DEFAULT 'queued',
+    operation_id bigint,
+    error_message varchar(255),
+    dispatched_at timestamp,
+    completed_at timestamp
+);
+CREATE INDEX IF NOT EXISTS idx_rollout_targets_wave ON rollout_targets (rollout_id, wave);
+CREATE INDEX IF NOT EXISTS idx_rollout_targets_status ON rollout_targets (rollout_id, status);
+
+CREATE TABLE IF NOT EXISTS scheduled_jobs (
+    id integer PRIMARY KEY,
+    name varchar(255) NOT NULL,
+    cron_expression varchar(255) NOT NULL,
+    time_zone varchar(255) NOT NULL,
+    action_type varchar(255) NOT NULL,
+    action_params TEXT,
+    target_agent_ids TEXT,
+    target_network_id varchar(255),
+    target_store_id varchar(255),
+    target_platform varchar(255),
+    target_status varchar(255),
+    spread_seconds integer NOT NULL,
+    status TEXT DEFAULT 'active',
+    next_run_at timestamp,
+    last_run_at timestamp,
+    last_run_spread_seconds integer,
+    last_run_completed_at timestamp,
+    last_run_targets integer,
+    last_run_dispatched integer,
+    last_run_failed integer,
+    user_id bigint,
+    created_at timestamp,
+    updated_at timestamp
+);
+
+CREATE TABLE IF NOT EXISTS idempotency_keys (
+    scoped_key varchar(255) PRIMARY KEY,
+    fingerprint varchar(255) NOT NULL,
+    operation_id bigint NOT NULL,
+    created_at timestamp
+);
+CREATE INDEX IF NOT EXISTS idx_idempotency_keys_created ON idempotency_keys (created_at);
+
+CREATE TABLE IF NOT EXISTS agent_mailbox (
+    id integer PRIMARY KEY,
+    agent_id varchar(255) NOT NULL,
+    operation_id bigint,
+    compaction_key varchar(255),
+    payload TEXT NOT NULL,
+    created_at timestamp
+);
+CREATE INDEX IF NOT EXISTS idx_agent_mailbox_agent ON agent_mailbox (agent_id, id);
+CREATE INDEX IF NOT EXISTS idx_agent_mailbox_compaction ON agent_mailbox (agent_id, compaction_key);
+CREATE INDEX IF NOT EXISTS idx_agent_mailbox_created ON agent_mailbox (created_at);
+
+CREATE TABLE IF NOT EXISTS integrity_references (
+    id integer PRIMARY KEY,
+    name varchar(255) NOT NULL UNIQUE,
+    root_path varchar(255) NOT NULL,
+    root_hash varchar(255) NOT NULL,
+    file_count integer,
+    total_bytes bigint,
+    manifest TEXT NOT NULL,
+    source_agent_id varchar(255),
+    network_id varchar(255),
+    created_at timestamp
+);
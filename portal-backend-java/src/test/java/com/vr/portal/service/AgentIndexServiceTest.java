@@ -0,0 +1,152 @@
+package com.vr.portal.service;
+
+import com.vr.portal.dto.AgentQuery;
+import com.vr.portal.dto.AgentSummary;
+import com.vr.portal.entity.Agent;
+import com.vr.portal.event.AgentChangedEvent;
+import com.vr.portal.event.ChangeType;
+import com.vr.portal.exception.TenantAccessDeniedException;
+import com.vr.portal.repository.AgentRepository;
+import com.vr.portal.security.PortalUserDetails;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class AgentIndexServiceTest {
+    
+    private static final AgentQuery ALL = query(null, null, null, null);
+    
+    private final AgentRepository agentRepository = mock(AgentRepository.class);
+    private AgentIndexService index;
+    
+    @BeforeEach
+    void setUp() {
+        when(agentRepository.findAll()).thenReturn(List.of(
+                agent("pdv-1", "north", "s1", "linux", "1.9.0", "online"),
+                agent("pdv-2", "north", "s1", "windows", "1.10.0", "online"),
+                agent("pdv-3", "north", "s2", "linux", "1.10.0", "offline"),
+                agent("pdv-4", "south", "s3", "linux", "1.10.0", "online"),
+                agent("pdv-5", "south", "s3", "linux", "2.0.0", "online")));
+        index = new AgentIndexService(agentRepository);
+        index.rebuild();
+    }
+    
+    @AfterEach
+    void clearUser() {
+        SecurityContextHolder.clearContext();
+    }
+    
+    @Test
+    void intersectsEveryGivenAttribute() {
+        assertThat(ids(query("north", null, "linux", "online"))).containsExactly("pdv-1");
+        assertThat(ids(query(null, null, "linux", "online"))).containsExactly("pdv-1", "pdv-4", "pdv-5");
+        assertThat(ids(query("north", "s2", null, null))).containsExactly("pdv-3");
+        assertThat(ids(query("east", null, null, null))).isEmpty();
+        assertThat(index.count(ALL)).isEqualTo(5);
+    }
+    
+    @Test
+    void comparesVersionsNumerically() {
+        AgentQuery atLeast = new AgentQuery(null, null, null, null, null, "1.10.0", null);
+        AgentQuery below = new AgentQuery(null, null, null, null, null, null, "1.10.0");
+        
+        assertThat(ids(atLeast)).containsExactly("pdv-2", "pdv-3", "pdv-4", "pdv-5");
+        assertThat(ids(below)).containsExactly("pdv-1");
+        assertThat(index.versionHistogram(query("south", null, null, null)))
+                .isEqualTo(Map.of("1.10.0", 1, "2.0.0", 1));
+    }
+    
+    @Test
+    void updatesMoveAgentsBetweenBitmapsAndDeletesFreeTheirSlot() {
+        index.onAgentChanged(new AgentChangedEvent(
+                AgentSummary.from(agent("pdv-1", "north", "s1", "linux", "1.9.0", "offline")), ChangeType.UPDATED));
+        index.onAgentChanged(new AgentChangedEvent(
+                AgentSummary.from(agent("pdv-4", "south", "s3", "linux", "1.10.0", "online")), ChangeType.DELETED));
+        index.onAgentChanged(new AgentChangedEvent(
+                AgentSummary.from(agent("pdv-6", "south", "s4", "linux", "2.0.0", "online")), ChangeType.CREATED));
+        
+        assertThat(ids(query(null, null, null, "offline"))).containsExactlyInAnyOrder("pdv-1", "pdv-3");
+        // pdv-6 takes the ordinal pdv-4 gave up, so it comes first
+        assertThat(ids(query("south", null, null, null))).containsExactly("pdv-6", "pdv-5");
+        assertThat(index.get("pdv-4")).isEmpty();
+        assertThat(index.size()).isEqualTo(5);
+    }
+    
+    @Test
+    void pagesThroughMatchesInOrdinalOrder() {
+        Map<String, Object> second = index.search(ALL, 1, 2);
+        
+        assertThat(second).containsEntry("total", 5);
+        assertThat((List<?>) second.get("agents"))
+                .extracting(agent -> ((AgentSummary) agent).id())
+                .containsExactly("pdv-3", "pdv-4");
+    }
+    
+    @Test
+    void confinedUserOnlySeesTheirNetwork() {
+        signInTo("south");
+        
+        assertThat(ids(ALL)).containsExactly("pdv-4", "pdv-5");
+        assertThat(ids(query(null, null, "linux", "online"))).containsExactly("pdv-4", "pdv-5");
+        assertThat(index.count(ALL)).isEqualTo(2);
+        assertThat(index.networks()).containsExactly("south");
+        assertThat(index.platformHistogram(ALL)).isEqualTo(Map.of("linux", 2));
+        assertThat(index.get("pdv-1")).isEmpty();
+        assertThat(index.get("pdv-4")).isPresent();
+    }
+    
+    @Test
+    void confinedUserCannotAskForOrTargetAnotherNetwork() {
+        signInTo("south");
+        
+        assertThatThrownBy(() -> index.findAll(query("north", null, null, null)))
+                .isInstanceOf(TenantAccessDeniedException.class);
+        assertThatThrownBy(() -> index.checkAccess(List.of("pdv-4", "pdv-1")))
+                .isInstanceOf(TenantAccessDeniedException.class);
+        // Unknown agents are refused the same way as other networks' agents
+        assertThatThrownBy(() -> index.checkAccess(List.of("pdv-9")))
+                .isInstanceOf(TenantAccessDeniedException.class);
+        index.checkAccess(List.of("pdv-4", "pdv-5"));
+    }
+    
+    @Test
+    void unconfinedUserSeesEveryNetwork() {
+        signInTo(null);
+        
+        assertThat(index.networks()).containsExactly("north", "south");
+        assertThat(ids(query("north", null, null, "online"))).containsExactly("pdv-1", "pdv-2");
+        index.checkAccess(List.of("pdv-1", "pdv-9"));
+    }
+    
+    private static void signInTo(String networkId) {
+        PortalUserDetails user = new PortalUserDetails(1L, "operator", "", networkId, List.of());
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken(user, null, user.getAuthorities()));
+    }
+    
+    private List<String> ids(AgentQuery query) {
+        return index.findAll(query).stream().map(AgentSummary::id).toList();
+    }
+    
+    private static AgentQuery query(String networkId, String storeId, String platform, String status) {
+        return new AgentQuery(networkId, storeId, platform, status, null, null, null);
+    }
+    
+    private static Agent agent(String id, String networkId, String storeId, String platform, String version, String status) {
+        Agent agent = new Agent(id, id, id + ".local", platform, version);
+        agent.setNetworkId(networkId);
+        agent.setStoreId(storeId);
+        agent.setStatus(status);
+        return agent;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,150 @@
+package com.vr.portal.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.vr.portal.dto.AgentCommand;
+import com.vr.portal.entity.FileOperation;
+import com.vr.portal.entity.MailboxMessage;
+import com.vr.portal.repository.FileOperationRepository;
+import com.vr.portal.repository.MailboxMessageRepository;
+import com.vr.portal.websocket.AgentMessageCodec;
+import com.vr.portal.websocket.WebSocketService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Comparator;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@TestPropertySource(properties = "spring.datasource.url=jdbc:sqlite:target/mailbox-test.sqlite")
+class AgentMailboxServiceTest {
+    
+    private static final String AGENT = "agent-1";
+    
+    @Autowired
+    private MailboxMessageRepository mailboxRepository;
+    
+    @Autowired
+    private FileOperationRepository fileOperationRepository;
+    
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+    
+    private final WebSocketService webSocketService = mock(WebSocketService.class);
+    private AgentMailboxService service;
+    
+    @BeforeEach
+    void setUp() {
+        service = new AgentMailboxService(mailboxRepository, fileOperationRepository, webSocketService,
+                new TransactionTemplate(transactionManager), new AgentMessageCodec(new ObjectMapper()));
+        ReflectionTestUtils.setField(service, "enabled", true);
+        ReflectionTestUtils.setField(service, "maxMessagesPerAgent", 100);
+        ReflectionTestUtils.setField(service, "maxAgeHours", 24L);
+        ReflectionTestUtils.setField(service, "drainBatchPerAgent", 2);
+        ReflectionTestUtils.setField(service, "drainMaxPerTick", 100);
+    }
+    
+    @Test
+    void newerMessageForTheSameTargetReplacesTheQueuedOne() {
+        Long firstList = operation();
+        Long secondList = operation();
+        Long firstDelete = operation();
+        Long secondDelete = operation();
+        
+        service.enqueue(AGENT, new AgentCommand.FileList(firstList, "/opt/app"));
+        service.enqueue(AGENT, new AgentCommand.FileDelete(firstDelete, "/opt/app/a.log"));
+        service.enqueue(AGENT, new AgentCommand.FileList(secondList, "/opt/app"));
+        service.enqueue(AGENT, new AgentCommand.FileDelete(secondDelete, "/opt/app/a.log"));
+        
+        assertThat(queuedOperations()).containsExactly(firstDelete, secondList, secondDelete);
+        FileOperation superseded = fileOperationRepository.findById(firstList).orElseThrow();
+        assertThat(superseded.getStatus()).isEqualTo("failed");
+        assertThat(superseded.getErrorMessage()).isEqualTo("Superseded by operation " + secondList);
+    }
+    
+    @Test
+    void fullMailboxDropsTheOldestMessage() {
+        ReflectionTestUtils.setField(service, "maxMessagesPerAgent", 2);
+        Long oldest = operation();
+        Long middle = operation();
+        Long newest = operation();
+        
+        service.enqueue(AGENT, new AgentCommand.FileDelete(oldest, "/a"));
+        service.enqueue(AGENT, new AgentCommand.FileDelete(middle, "/b"));
+        service.enqueue(AGENT, new AgentCommand.FileDelete(newest, "/c"));
+        
+        assertThat(queuedOperations()).containsExactly(middle, newest);
+        assertThat(fileOperationRepository.findById(oldest).orElseThrow().getErrorMessage())
+                .isEqualTo("Dropped from a full mailbox");
+    }
+    
+    @Test
+    void drainsOldestFirstInBatchesAndSkipsSettledOperations() {
+        Long first = operation();
+        Long settled = operation();
+        Long third = operation();
+        Long fourth = operation();
+        for (Long operationId : List.of(first, settled, third, fourth)) {
+            service.enqueue(AGENT, new AgentCommand.FileDelete(operationId, "/file-" + operationId));
+        }
+        FileOperation timedOut = fileOperationRepository.findById(settled).orElseThrow();
+        timedOut.setStatus("failed");
+        fileOperationRepository.save(timedOut);
+        
+        when(webSocketService.isAgentConnected(AGENT)).thenReturn(true);
+        service.onAgentConnected(AGENT);
+        // New messages keep queuing behind the backlog
+        assertThat(service.shouldQueue(AGENT)).isTrue();
+        
+        service.drain();
+        assertThat(sentOperations()).containsExactly(first);
+        assertThat(queuedOperations()).containsExactly(third, fourth);
+        
+        service.drain();
+        service.drain();
+        assertThat(sentOperations()).containsExactly(first, third, fourth);
+        assertThat(queuedOperations()).isEmpty();
+        assertThat(service.shouldQueue(AGENT)).isFalse();
+    }
+    
+    @Test
+    void offlineAgentStopsDraining() {
+        service.enqueue(AGENT, new AgentCommand.FileDelete(operation(), "/a"));
+        service.onAgentConnected(AGENT);
+        
+        service.drain();
+        
+        verify(webSocketService, never()).sendToAgent(eq(AGENT), any());
+        assertThat(queuedOperations()).hasSize(1);
+        assertThat(service.shouldQueue(AGENT)).isTrue();
+    }
+    
+    private Long operation() {
+        return fileOperationRepository.save(new FileOperation(AGENT, "file_delete", "/", 1L)).getId();
+    }
+    
+    private List<Long> queuedOperations() {
+        return mailboxRepository.findAll().stream()
+                .sorted(Comparator.comparing(MailboxMessage::getId))
+                .map(MailboxMessage::getOperationId)
+                .toList();
+    }
+    
+    private List<Long> sentOperations() {
+        ArgumentCaptor<AgentCommand> sent = ArgumentCaptor.forClass(AgentCommand.class);
+        verify(webSocketService, atLeast(0)).sendToAgent(eq(AGENT), sent.capture());
+        return sent.getAllValues().stream().map(AgentCommand::operationId).toList();
+    }
+}
\ No newline at end of file
@@ -0,0 +1,118 @@
+package com.vr.portal.service;
+
+import com.vr.portal.entity.IdempotencyRecord;
+import com.vr.portal.exception.IdempotencyConflictException;
+import com.vr.portal.repository.IdempotencyRecordRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class IdempotencyServiceTest {
+    
+    private final IdempotencyRecordRepository recordRepository = mock(IdempotencyRecordRepository.class);
+    private final AtomicLong operationIds = new AtomicLong();
+    private IdempotencyService service;
+    
+    @BeforeEach
+    void setUp() {
+        service = new IdempotencyService(recordRepository);
+        ReflectionTestUtils.setField(service, "ttlSeconds", 3600L);
+        ReflectionTestUtils.setField(service, "maxEntries", 100);
+        ReflectionTestUtils.setField(service, "maxKeyLength", 16);
+        ReflectionTestUtils.setField(service, "waitMs", 5000L);
+    }
+    
+    @Test
+    void retryWithTheSameKeyReturnsTheFirstOperation() {
+        Long first = service.execute("key-1", 7L, "upload|agent-1|/a", this::submit);
+        Long retry = service.execute("key-1", 7L, "upload|agent-1|/a", this::submit);
+        
+        assertThat(retry).isEqualTo(first);
+        assertThat(operationIds.get()).isEqualTo(1);
+    }
+    
+    @Test
+    void keysAreScopedToTheUser() {
+        Long mine = service.execute("key-1", 7L, "upload|agent-1|/a", this::submit);
+        Long theirs = service.execute("key-1", 8L, "upload|agent-1|/a", this::submit);
+        
+        assertThat(theirs).isNotEqualTo(mine);
+        assertThat(operationIds.get()).isEqualTo(2);
+    }
+    
+    @Test
+    void reusingAKeyForADifferentRequestIsAConflict() {
+        service.execute("key-1", 7L, "upload|agent-1|/a", this::submit);
+        
+        assertThatThrownBy(() -> service.execute("key-1", 7L, "upload|agent-2|/a", this::submit))
+                .isInstanceOf(IdempotencyConflictException.class);
+        assertThatThrownBy(() -> service.execute("a-key-that-is-too-long", 7L, "upload|agent-1|/a", this::submit))
+                .isInstanceOf(IdempotencyConflictException.class);
+    }
+    
+    @Test
+    void failedSubmissionDoesNotClaimTheKey() {
+        assertThatThrownBy(() -> service.execute("key-1", 7L, "upload|agent-1|/a", () -> {
+            throw new IllegalStateException("agent offline");
+        })).isInstanceOf(IllegalStateException.class);
+        
+        assertThat(service.execute("key-1", 7L, "upload|agent-1|/a", this::submit)).isEqualTo(1L);
+    }
+    
+    @Test
+    void concurrentRetryWaitsForTheFirstRequest() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<Long> first = CompletableFuture.supplyAsync(() ->
+                service.execute("key-1", 7L, "upload|agent-1|/a", () -> {
+                    started.countDown();
+                    await(release);
+                    return submit();
+                }));
+        assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+        
+        CompletableFuture<Long> retry = CompletableFuture.supplyAsync(() ->
+                service.execute("key-1", 7L, "upload|agent-1|/a", this::submit));
+        release.countDown();
+        
+        assertThat(retry.get(5, TimeUnit.SECONDS)).isEqualTo(first.get(5, TimeUnit.SECONDS));
+        assertThat(operationIds.get()).isEqualTo(1);
+    }
+    
+    @Test
+    void persistedKeysAreLookedUpUnderTheUsersScope() {
+        ReflectionTestUtils.setField(service, "persist", true);
+        when(recordRepository.findById("7:key-1"))
+                .thenReturn(Optional.of(new IdempotencyRecord("7:key-1", "upload|agent-1|/a", 41L)));
+        when(recordRepository.findById("8:key-1")).thenReturn(Optional.empty());
+        
+        assertThat(service.execute("key-1", 7L, "upload|agent-1|/a", this::submit)).isEqualTo(41L);
+        assertThat(service.execute("key-1", 8L, "upload|agent-1|/a", this::submit)).isEqualTo(1L);
+        verify(recordRepository).save(argThat(record -> record.getScopedKey().equals("8:key-1")));
+        verify(recordRepository, never()).save(argThat(record -> record.getScopedKey().equals("7:key-1")));
+        verify(recordRepository, times(1)).save(any());
+    }
+    
+    private Long submit() {
+        return operationIds.incrementAndGet();
+    }
+    
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,168 @@
+package com.vr.portal.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.vr.portal.dto.AgentCommand;
+import com.vr.portal.dto.IntegrityCheckRequest;
+import com.vr.portal.entity.FileOperation;
+import com.vr.portal.entity.IntegrityReference;
+import com.vr.portal.repository.IntegrityReferenceRepository;
+import com.vr.portal.util.MerkleTree;
+import com.vr.portal.websocket.WebSocketService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.*;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class IntegrityManifestServiceTest {
+    
+    private static final String AGENT = "agent-1";
+    private static final long OPERATION_ID = 42L;
+    
+    private static final List<MerkleTree.Entry> REFERENCE = List.of(
+            new MerkleTree.Entry("bin/agent", "a1", 100),
+            new MerkleTree.Entry("bin/lib/core.so", "a2", 200),
+            new MerkleTree.Entry("bin/lib/net.so", "a3", 300),
+            new MerkleTree.Entry("conf/app.yml", "a4", 10),
+            new MerkleTree.Entry("docs/guide.md", "a5", 50),
+            new MerkleTree.Entry("docs/api/index.html", "a6", 60));
+    
+    private final FileOperationService fileOperationService = mock(FileOperationService.class);
+    private final IntegrityReferenceRepository integrityReferenceRepository = mock(IntegrityReferenceRepository.class);
+    private final AgentIndexService agentIndexService = mock(AgentIndexService.class);
+    private IntegrityManifestService service;
+    private Long referenceId;
+    
+    @BeforeEach
+    void setUp() {
+        service = new IntegrityManifestService(fileOperationService, integrityReferenceRepository,
+                agentIndexService, mock(WebSocketService.class), new ObjectMapper());
+        ReflectionTestUtils.setField(service, "maxNodesPerRound", 256);
+        ReflectionTestUtils.setField(service, "maxReportedPaths", 1000);
+        
+        when(integrityReferenceRepository.save(any())).thenAnswer(invocation -> {
+            IntegrityReference reference = invocation.getArgument(0);
+            reference.setId(1L);
+            when(integrityReferenceRepository.findById(1L)).thenReturn(Optional.of(reference));
+            return reference;
+        });
+        when(fileOperationService.dispatch(eq(AGENT), eq("integrity_check"), any(), any(), any(), any()))
+                .thenAnswer(invocation -> {
+                    FileOperation operation = new FileOperation();
+                    operation.setId(OPERATION_ID);
+                    invocation.<Consumer<FileOperation>>getArgument(5).accept(operation);
+                    return operation;
+                });
+        referenceId = service.createReference("release", "/opt/app", REFERENCE, null).getId();
+    }
+    
+    @Test
+    void identicalTreeMatchesOnTheRootHash() {
+        List<List<String>> expanded = runCheck(MerkleTree.build(REFERENCE));
+        Map<String, Object> result = agentResult();
+        
+        assertThat(expanded).isEmpty();
+        assertThat(result).containsEntry("status", "match")
+                .containsEntry("rounds", 1)
+                .containsEntry("hashesCompared", 1L);
+    }
+    
+    @Test
+    void driftReportsOnlyChangedPathsAndSkipsMatchingSubtrees() {
+        List<MerkleTree.Entry> agentFiles = new ArrayList<>(REFERENCE);
+        agentFiles.set(2, new MerkleTree.Entry("bin/lib/net.so", "ff", 300));
+        agentFiles.remove(3);
+        agentFiles.add(new MerkleTree.Entry("tmp.log", "b1", 1));
+        
+        List<List<String>> expanded = runCheck(MerkleTree.build(agentFiles));
+        Map<String, Object> result = agentResult();
+        
+        assertThat(expanded).containsExactly(List.of(""), List.of("bin"), List.of("bin/lib"));
+        assertThat(result).containsEntry("status", "drift")
+                .containsEntry("filesToReupload", 2)
+                .containsEntry("bytesToReupload", 310L)
+                .containsEntry("extra", List.of("tmp.log"));
+        assertThat(reupload(result)).containsExactlyInAnyOrder(
+                "bin/lib/net.so:modified",
+                "conf/app.yml:missing");
+    }
+    
+    @Test
+    void directoryReplacedByAFileReportsEveryReferenceFileBelowIt() {
+        List<MerkleTree.Entry> agentFiles = new ArrayList<>(REFERENCE.subList(0, 4));
+        agentFiles.add(new MerkleTree.Entry("docs", "b2", 1));
+        
+        runCheck(MerkleTree.build(agentFiles));
+        Map<String, Object> result = agentResult();
+        
+        assertThat(result).containsEntry("status", "drift")
+                .containsEntry("extra", List.of("docs"));
+        assertThat(reupload(result)).containsExactlyInAnyOrder(
+                "docs/guide.md:missing",
+                "docs/api/index.html:missing");
+    }
+    
+    /**
+     * Plays the agent side of the exchange from its own tree and returns the
+     * directories the service asked to expand, one list per round.
+     */
+    private List<List<String>> runCheck(MerkleTree agentTree) {
+        IntegrityCheckRequest request = new IntegrityCheckRequest();
+        request.setReferenceId(referenceId);
+        request.setAgentIds(List.of(AGENT));
+        service.startCheck(request, 7L);
+        
+        Map<String, Object> response = new HashMap<>();
+        response.put("operationId", OPERATION_ID);
+        response.put("status", "completed");
+        response.put("rootHash", agentTree.rootHash());
+        
+        List<List<String>> expanded = new ArrayList<>();
+        while (true) {
+            clearInvocations(fileOperationService);
+            assertThat(service.recordResult(response)).isTrue();
+            
+            ArgumentCaptor<AgentCommand> sent = ArgumentCaptor.forClass(AgentCommand.class);
+            verify(fileOperationService, atMost(1)).send(eq(AGENT), sent.capture());
+            if (sent.getAllValues().isEmpty()) {
+                return expanded;
+            }
+            
+            List<String> expand = ((AgentCommand.ManifestRequest) sent.getValue()).expand();
+            expanded.add(expand);
+            Map<String, Object> nodes = new HashMap<>();
+            for (String directory : expand) {
+                List<MerkleTree.Child> children = agentTree.children(directory);
+                if (children != null) {
+                    nodes.put(directory, children.stream().map(child -> Map.of(
+                            "name", child.name(),
+                            "type", child.directory() ? "dir" : "file",
+                            "hash", child.hash())).toList());
+                }
+            }
+            response = new HashMap<>();
+            response.put("operationId", OPERATION_ID);
+            response.put("status", "completed");
+            response.put("nodes", nodes);
+        }
+    }
+    
+    private Map<String, Object> agentResult() {
+        Long checkId = (Long) service.getChecks().get(0).get("checkId");
+        return service.getAgentResult(checkId, AGENT).orElseThrow();
+    }
+    
+    @SuppressWarnings("unchecked")
+    private static List<String> reupload(Map<String, Object> result) {
+        return ((List<Map<String, Object>>) result.get("reupload")).stream()
+                .map(file -> file.get("path") + ":" + file.get("reason"))
+                .toList();
+    }
+}
\ No newline at end of file
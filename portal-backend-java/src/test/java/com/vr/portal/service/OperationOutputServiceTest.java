@@ -0,0 +1,119 @@
+package com.vr.portal.service;
+
+import com.vr.portal.websocket.WebSocketService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class OperationOutputServiceTest {
+    
+    private static final long OPERATION_ID = 5L;
+    
+    @TempDir
+    Path spillDir;
+    
+    private final WebSocketService webSocketService = mock(WebSocketService.class);
+    private OperationOutputService service;
+    
+    @BeforeEach
+    void setUp() {
+        service = new OperationOutputService(webSocketService);
+        ReflectionTestUtils.setField(service, "memoryBytesPerOperation", 8);
+        ReflectionTestUtils.setField(service, "maxChunkBytes", 64);
+        ReflectionTestUtils.setField(service, "maxOutOfOrderChunks", 16);
+        ReflectionTestUtils.setField(service, "maxOperations", 10);
+        ReflectionTestUtils.setField(service, "retentionMinutes", 60L);
+        ReflectionTestUtils.setField(service, "spillDir", spillDir.toString());
+    }
+    
+    @Test
+    void holdsEarlyChunksUntilTheGapIsFilled() {
+        service.append(OPERATION_ID, 1, "stdout", "b", false);
+        service.append(OPERATION_ID, 2, "stderr", "c", false);
+        assertThat(published()).isEmpty();
+        
+        service.append(OPERATION_ID, 0, "stdout", "a", false);
+        // A resent chunk is dropped
+        service.append(OPERATION_ID, 1, "stdout", "b", false);
+        
+        List<Map<String, Object>> messages = published();
+        assertThat(messages).extracting(message -> message.get("data")).containsExactly("a", "b", "c");
+        assertThat(messages).extracting(message -> message.get("offset")).containsExactly(0L, 1L, 2L);
+        assertThat(messages).extracting(message -> message.get("stream")).containsExactly("stdout", "stdout", "stderr");
+    }
+    
+    @Test
+    void spillsOlderChunksAndReadsThemBackByOffset() {
+        List<String> chunks = List.of("0123", "4567", "89ab", "cdef");
+        for (int sequence = 0; sequence < chunks.size(); sequence++) {
+            service.append(OPERATION_ID, sequence, "stdout", chunks.get(sequence), false);
+        }
+        // Only the newest 8 bytes stay in memory
+        assertThat(spillDir.resolve(OPERATION_ID + ".out")).exists();
+        
+        Map<String, Object> all = service.read(OPERATION_ID, 0, 1000).orElseThrow();
+        assertThat(text(all)).isEqualTo("0123456789abcdef");
+        assertThat(all).containsEntry("nextOffset", 16L).containsEntry("complete", false);
+        
+        Map<String, Object> spilled = service.read(OPERATION_ID, 4, 4).orElseThrow();
+        assertThat(text(spilled)).isEqualTo("4567");
+        assertThat(spilled).containsEntry("nextOffset", 8L);
+        
+        Map<String, Object> fromMemory = service.read(OPERATION_ID, 8, 1000).orElseThrow();
+        assertThat(text(fromMemory)).isEqualTo("89abcdef");
+    }
+    
+    @Test
+    void reportsCompletionAndRemovesTheSpillFileOnceExpired() {
+        service.append(OPERATION_ID, 0, "stdout", "01234567", false);
+        service.append(OPERATION_ID, 1, "stdout", "89", true);
+        Path spillFile = spillDir.resolve(OPERATION_ID + ".out");
+        assertThat(spillFile).exists();
+        
+        assertThat(service.read(OPERATION_ID, 0, 1000).orElseThrow()).containsEntry("complete", true);
+        
+        ReflectionTestUtils.setField(service, "retentionMinutes", -1L);
+        service.evictExpired();
+        
+        assertThat(service.read(OPERATION_ID, 0, 1000)).isEmpty();
+        assertThat(Files.exists(spillFile)).isFalse();
+    }
+    
+    @Test
+    void truncatesLongChunksOnACharacterBoundary() {
+        ReflectionTestUtils.setField(service, "maxChunkBytes", 5);
+        
+        // 'a' takes one byte, 'é' two and '€' three, so byte 5 falls inside the euro sign
+        service.append(OPERATION_ID, 0, "stdout", "aé€", false);
+        
+        assertThat(published()).singleElement().satisfies(message -> {
+            assertThat(message).containsEntry("data", "aé");
+            assertThat(message).containsEntry("nextOffset", 3L);
+        });
+    }
+    
+    @SuppressWarnings("unchecked")
+    private List<Map<String, Object>> published() {
+        ArgumentCaptor<Object> messages = ArgumentCaptor.forClass(Object.class);
+        verify(webSocketService, atLeast(0)).sendToPortal(eq("operations/" + OPERATION_ID + "/output"), messages.capture());
+        return messages.getAllValues().stream().map(message -> (Map<String, Object>) message).toList();
+    }
+    
+    @SuppressWarnings("unchecked")
+    private static String text(Map<String, Object> slice) {
+        StringBuilder text = new StringBuilder();
+        ((List<Map<String, Object>>) slice.get("chunks")).forEach(chunk -> text.append(chunk.get("data")));
+        return text.toString();
+    }
+}
\ No newline at end of file
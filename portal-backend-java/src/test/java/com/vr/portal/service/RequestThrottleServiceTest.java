@@ -0,0 +1,107 @@
+package com.vr.portal.service;
+
+import com.vr.portal.controller.ApiExceptionHandler;
+import com.vr.portal.exception.ThrottledException;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.catchThrowableOfType;
+
+class RequestThrottleServiceTest {
+    
+    @Test
+    void rejectsOnceTheUserBucketIsEmptyWithTheTimeToTheNextToken() {
+        RequestThrottleService service = service(1);
+        ReflectionTestUtils.setField(service, "userCapacity", 2);
+        ReflectionTestUtils.setField(service, "userRefillPerSecond", 0.5);
+        
+        service.admit("alice").close();
+        service.admit("alice").close();
+        ThrottledException e = catchThrowableOfType(() -> service.admit("alice"), ThrottledException.class);
+        
+        assertThat(e.getScope()).isEqualTo("user");
+        assertThat(e.getRetryAfterSeconds()).isEqualTo(2);
+        // Other users have their own bucket
+        service.admit("bob").close();
+    }
+    
+    @Test
+    void retryAfterHeaderCarriesTheWait() {
+        ResponseEntity<?> response = new ApiExceptionHandler()
+                .handleThrottled(new ThrottledException("user", 7, "Rate limit exceeded (user)"));
+        
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.TOO_MANY_REQUESTS);
+        assertThat(response.getHeaders().getFirst(HttpHeaders.RETRY_AFTER)).isEqualTo("7");
+    }
+    
+    @Test
+    void rejectsQueuedRequestsBeyondThePerUserLimit() {
+        RequestThrottleService service = service(1);
+        ReflectionTestUtils.setField(service, "maxQueuedPerUser", 0);
+        ReflectionTestUtils.setField(service, "maxQueueWaitMs", 1500L);
+        
+        try (RequestThrottleService.Permit held = service.admit("alice")) {
+            assertThatThrownBy(() -> service.admit("bob"))
+                    .isInstanceOfSatisfying(ThrottledException.class, e -> {
+                        assertThat(e.getScope()).isEqualTo("queue");
+                        assertThat(e.getRetryAfterSeconds()).isEqualTo(2);
+                    });
+        }
+        service.admit("bob").close();
+    }
+    
+    @Test
+    void queuedUsersTakeTurnsForFreedSlots() throws InterruptedException {
+        RequestThrottleService service = service(1);
+        ReflectionTestUtils.setField(service, "maxQueuedPerUser", 10);
+        ReflectionTestUtils.setField(service, "maxQueueWaitMs", 10_000L);
+        
+        List<String> granted = Collections.synchronizedList(new ArrayList<>());
+        List<Thread> waiting = new ArrayList<>();
+        RequestThrottleService.Permit held = service.admit("holder");
+        // The busy user queues three requests before the quiet user queues one
+        for (String user : List.of("busy", "busy", "busy", "quiet")) {
+            Thread thread = new Thread(() -> {
+                try (RequestThrottleService.Permit permit = service.admit(user)) {
+                    granted.add(user);
+                }
+            });
+            thread.start();
+            waiting.add(thread);
+            awaitWaiting(service, waiting.size());
+        }
+        
+        held.close();
+        for (Thread thread : waiting) {
+            thread.join(TimeUnit.SECONDS.toMillis(10));
+        }
+        
+        assertThat(granted).containsExactly("busy", "quiet", "busy", "busy");
+    }
+    
+    private static RequestThrottleService service(int maxConcurrent) {
+        RequestThrottleService service = new RequestThrottleService(1000, 1000, maxConcurrent, "");
+        ReflectionTestUtils.setField(service, "enabled", true);
+        ReflectionTestUtils.setField(service, "userCapacity", 100);
+        ReflectionTestUtils.setField(service, "userRefillPerSecond", 100);
+        return service;
+    }
+    
+    private static void awaitWaiting(RequestThrottleService service, int count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while ((int) service.getMetrics().get("waiting") < count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertThat(service.getMetrics()).containsEntry("waiting", count);
+    }
+}
\ No newline at end of file
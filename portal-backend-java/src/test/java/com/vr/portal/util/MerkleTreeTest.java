@@ -0,0 +1,67 @@
+package com.vr.portal.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class MerkleTreeTest {
+    
+    private static final List<MerkleTree.Entry> FILES = List.of(
+            new MerkleTree.Entry("bin/agent", "aa", 10),
+            new MerkleTree.Entry("bin/lib/core.so", "bb", 20),
+            new MerkleTree.Entry("conf/app.yml", "cc", 5));
+    
+    @Test
+    void rootHashDoesNotDependOnManifestOrder() {
+        MerkleTree tree = MerkleTree.build(FILES);
+        MerkleTree reversed = MerkleTree.build(List.of(FILES.get(2), FILES.get(1), FILES.get(0)));
+        
+        assertThat(reversed.rootHash()).isEqualTo(tree.rootHash());
+        assertThat(tree.fileCount()).isEqualTo(3);
+        assertThat(tree.totalBytes()).isEqualTo(35);
+    }
+    
+    @Test
+    void changedFileOnlyChangesTheDirectoriesAboveIt() {
+        MerkleTree tree = MerkleTree.build(FILES);
+        MerkleTree changed = MerkleTree.build(List.of(
+                FILES.get(0),
+                new MerkleTree.Entry("bin/lib/core.so", "BD", 20),
+                FILES.get(2)));
+        
+        assertThat(changed.rootHash()).isNotEqualTo(tree.rootHash());
+        assertThat(hashOf(changed, "", "bin")).isNotEqualTo(hashOf(tree, "", "bin"));
+        assertThat(hashOf(changed, "bin", "lib")).isNotEqualTo(hashOf(tree, "bin", "lib"));
+        assertThat(hashOf(changed, "", "conf")).isEqualTo(hashOf(tree, "", "conf"));
+        assertThat(hashOf(changed, "bin/lib", "core.so")).isEqualTo("bd");
+    }
+    
+    @Test
+    void directoryHashMatchesTheTreeForTheSameChildren() {
+        MerkleTree tree = MerkleTree.build(FILES);
+        
+        assertThat(MerkleTree.directoryHash(tree.children(""))).isEqualTo(tree.rootHash());
+        assertThat(tree.children("conf/app.yml")).isNull();
+        assertThat(tree.filesUnder("/bin/")).extracting(MerkleTree.Entry::path)
+                .containsExactly("bin/agent", "bin/lib/core.so");
+    }
+    
+    @Test
+    void rejectsPathsThroughAFile() {
+        assertThatThrownBy(() -> MerkleTree.build(List.of(
+                new MerkleTree.Entry("bin", "aa", 1),
+                new MerkleTree.Entry("bin/agent", "bb", 1))))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+    
+    private static String hashOf(MerkleTree tree, String directory, String name) {
+        return tree.children(directory).stream()
+                .filter(child -> child.name().equals(name))
+                .findFirst()
+                .orElseThrow()
+                .hash();
+    }
+}
\ No newline at end of file
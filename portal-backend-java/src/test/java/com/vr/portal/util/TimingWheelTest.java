@@ -0,0 +1,94 @@
+package com.vr.portal.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.entry;
+
+class TimingWheelTest {
+    
+    private static final long TICK = 10;
+    
+    // 4 slots per level and 2 levels, so the wheels cover 16 ticks
+    private final TimingWheel<String> wheel = new TimingWheel<>(TICK, 2, 2, 0);
+    
+    @Test
+    void firesEachEntryOnItsOwnTickAfterCascading() {
+        wheel.schedule(150, "level1-last-slot");
+        wheel.schedule(30, "level0");
+        wheel.schedule(90, "level1");
+        wheel.schedule(95, "level1-same-tick");
+        
+        Map<String, Long> fired = runUntil(200);
+        
+        assertThat(fired).containsExactly(
+                entry("level0", 30L),
+                entry("level1", 90L),
+                entry("level1-same-tick", 90L),
+                entry("level1-last-slot", 150L));
+        assertThat(wheel.size()).isZero();
+    }
+    
+    @Test
+    void keepsDeadlinesBeyondTheTopLevelInOverflowUntilTheirRevolution() {
+        wheel.schedule(400, "far");
+        wheel.schedule(170, "next-revolution");
+        
+        assertThat(wheel.overflowSize()).isEqualTo(2);
+        assertThat(wheel.size()).isEqualTo(2);
+        
+        Map<String, Long> fired = runUntil(500);
+        
+        assertThat(fired).containsExactly(
+                entry("next-revolution", 170L),
+                entry("far", 400L));
+        assertThat(wheel.overflowSize()).isZero();
+        assertThat(wheel.size()).isZero();
+    }
+    
+    @Test
+    void firesPastDeadlinesOnTheNextAdvance() {
+        wheel.advance(100, item -> {});
+        wheel.schedule(50, "late");
+        
+        Map<String, Long> fired = new LinkedHashMap<>();
+        wheel.advance(100, item -> fired.put(item, 100L));
+        
+        assertThat(fired).containsExactly(entry("late", 100L));
+    }
+    
+    @Test
+    void catchesUpWhenAdvancedPastSeveralDeadlinesAtOnce() {
+        wheel.schedule(20, "a");
+        wheel.schedule(120, "b");
+        wheel.schedule(300, "c");
+        
+        StringBuilder order = new StringBuilder();
+        wheel.advance(1000, order::append);
+        
+        assertThat(order).hasToString("abc");
+    }
+    
+    @Test
+    void removesEntriesFromSlotsAndOverflow() {
+        wheel.schedule(30, "keep");
+        wheel.schedule(90, "drop");
+        wheel.schedule(400, "drop-overflow");
+        
+        assertThat(wheel.removeIf(item -> item.startsWith("drop"))).isEqualTo(2);
+        assertThat(wheel.size()).isEqualTo(1);
+        assertThat(runUntil(500)).containsOnlyKeys("keep");
+    }
+    
+    private Map<String, Long> runUntil(long endMillis) {
+        Map<String, Long> fired = new LinkedHashMap<>();
+        for (long now = 0; now <= endMillis; now += TICK) {
+            long at = now;
+            wheel.advance(now, item -> fired.put(item, at));
+        }
+        return fired;
+    }
+}
\ No newline at end of file
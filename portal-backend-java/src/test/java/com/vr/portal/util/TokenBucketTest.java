@@ -0,0 +1,46 @@
+package com.vr.portal.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TokenBucketTest {
+    
+    @Test
+    void startsFullAndRejectsOnceEmpty() {
+        TokenBucket bucket = new TokenBucket(3, 0);
+        
+        assertThat(bucket.isFull()).isTrue();
+        assertThat(bucket.tryAcquire()).isZero();
+        assertThat(bucket.tryAcquire()).isZero();
+        assertThat(bucket.tryAcquire()).isZero();
+        assertThat(bucket.isFull()).isFalse();
+        // Without refill a token never comes back
+        assertThat(bucket.tryAcquire()).isEqualTo(Long.MAX_VALUE);
+    }
+    
+    @Test
+    void reportsTheWaitUntilTheNextToken() {
+        TokenBucket bucket = new TokenBucket(1, 2);
+        
+        assertThat(bucket.tryAcquire()).isZero();
+        assertThat(bucket.tryAcquire())
+                .isPositive()
+                .isLessThanOrEqualTo(TimeUnit.MILLISECONDS.toNanos(500));
+    }
+    
+    @Test
+    void refillsOverTimeUpToCapacity() throws InterruptedException {
+        TokenBucket bucket = new TokenBucket(2, 1000);
+        
+        assertThat(bucket.tryAcquire()).isZero();
+        assertThat(bucket.tryAcquire()).isZero();
+        Thread.sleep(20);
+        
+        assertThat(bucket.isFull()).isTrue();
+        assertThat(bucket.tryAcquire()).isZero();
+        assertThat(bucket.tryAcquire()).isZero();
+    }
+}
\ No newline at end of file
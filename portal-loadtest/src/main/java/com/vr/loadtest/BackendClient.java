@@ -0,0 +1,130 @@
+package com.vr.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * The backend's HTTP API as used by agents and the portal. One client, and one connection
+ * pool, is shared by every simulated agent.
+ */
+public final class BackendClient {
+
+    private final URI baseUrl;
+    private final HttpClient httpClient;
+    private final ObjectMapper objectMapper;
+    private volatile String token;
+
+    public BackendClient(URI baseUrl, ExecutorService executor, ObjectMapper objectMapper) {
+        this.baseUrl = baseUrl;
+        this.objectMapper = objectMapper;
+        this.httpClient = HttpClient.newBuilder()
+                .executor(executor)
+                .connectTimeout(Duration.ofSeconds(10))
+                .build();
+    }
+
+    public void login(String username, String password) throws IOException, InterruptedException {
+        JsonNode response = send(json("/api/auth/login", "POST", Map.of("username", username, "password", password)), false);
+        token = response.path("token").asText(null);
+        if (token == null) {
+            throw new IOException("Login response without token: " + response);
+        }
+    }
+
+    public void register(Map<String, Object> agent) throws IOException, InterruptedException {
+        send(json("/api/agents/register", "POST", agent), true);
+    }
+
+    public void heartbeat(String agentId) throws IOException, InterruptedException {
+        send(HttpRequest.newBuilder(baseUrl.resolve("/api/agents/" + agentId + "/heartbeat"))
+                .PUT(HttpRequest.BodyPublishers.noBody()), true);
+    }
+
+    /**
+     * Posts a JSON command request and returns the operationId the backend assigned.
+     */
+    public long submit(String path, Map<String, Object> body) throws IOException, InterruptedException {
+        return send(json(path, "POST", body), true).path("operationId").asLong();
+    }
+
+    public long upload(String agentId, String targetPath, String fileName, byte[] content) throws IOException, InterruptedException {
+        String boundary = "----loadtest" + UUID.randomUUID();
+        ByteArrayOutputStream body = new ByteArrayOutputStream(content.length + 512);
+        writePart(body, boundary, "agentId", null, agentId.getBytes(StandardCharsets.UTF_8));
+        writePart(body, boundary, "targetPath", null, targetPath.getBytes(StandardCharsets.UTF_8));
+        writePart(body, boundary, "file", fileName, content);
+        body.write(("--" + boundary + "--\r\n").getBytes(StandardCharsets.UTF_8));
+
+        HttpRequest.Builder request = HttpRequest.newBuilder(baseUrl.resolve("/api/files/upload"))
+                .header("Content-Type", "multipart/form-data; boundary=" + boundary)
+                .POST(HttpRequest.BodyPublishers.ofByteArray(body.toByteArray()));
+        return send(request, true).path("operationId").asLong();
+    }
+
+    /**
+     * Fetches an artifact URL the way an agent does and returns the number of bytes read.
+     */
+    public long download(String url) throws IOException, InterruptedException {
+        HttpResponse<byte[]> response = httpClient.send(
+                HttpRequest.newBuilder(URI.create(url)).timeout(Duration.ofSeconds(60)).GET().build(),
+                HttpResponse.BodyHandlers.ofByteArray());
+        if (response.statusCode() != 200) {
+            throw new IOException("GET " + url + " returned " + response.statusCode());
+        }
+        return response.body().length;
+    }
+
+    private HttpRequest.Builder json(String path, String method, Object body) throws IOException {
+        return HttpRequest.newBuilder(baseUrl.resolve(path))
+                .header("Content-Type", "application/json")
+                .method(method, HttpRequest.BodyPublishers.ofByteArray(objectMapper.writeValueAsBytes(body)));
+    }
+
+    private JsonNode send(HttpRequest.Builder request, boolean authenticated) throws IOException, InterruptedException {
+        if (authenticated) {
+            request.header("Authorization", "Bearer " + token);
+        }
+        HttpResponse<byte[]> response = httpClient.send(request.timeout(Duration.ofSeconds(30)).build(),
+                HttpResponse.BodyHandlers.ofByteArray());
+        if (response.statusCode() == 429) {
+            throw new ThrottledException(response.headers().firstValue("Retry-After").orElse("?"));
+        }
+        if (response.statusCode() / 100 != 2) {
+            throw new IOException(request.build().uri().getPath() + " returned " + response.statusCode());
+        }
+        return response.body().length == 0 ? objectMapper.createObjectNode() : objectMapper.readTree(response.body());
+    }
+
+    private static void writePart(ByteArrayOutputStream out, String boundary, String name, String fileName, byte[] content)
+            throws IOException {
+        StringBuilder header = new StringBuilder()
+                .append("--").append(boundary).append("\r\n")
+                .append("Content-Disposition: form-data; name=\"").append(name).append('"');
+        if (fileName != null) {
+            header.append("; filename=\"").append(fileName).append("\"\r\n")
+                    .append("Content-Type: application/octet-stream");
+        }
+        header.append("\r\n\r\n");
+        out.write(header.toString().getBytes(StandardCharsets.UTF_8));
+        out.write(content);
+        out.write("\r\n".getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static final class ThrottledException extends IOException {
+        public ThrottledException(String retryAfter) {
+            super("Throttled, retry after " + retryAfter + "s");
+        }
+    }
+}
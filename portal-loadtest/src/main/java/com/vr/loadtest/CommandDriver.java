@@ -0,0 +1,82 @@
+package com.vr.loadtest;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Issues portal commands at a fixed rate against random connected agents: 50% file_list,
+ * 40% system_info and 10% file_upload. Each submit runs on its own pool thread, so a
+ * slow backend shows up as latency rather than as a lower offered rate.
+ */
+public final class CommandDriver {
+
+    private static final String[] DIRECTORIES = {"C:\\VR\\PDV", "C:\\VR\\PDV\\config", "C:\\VR\\PDV\\logs", "D:\\backup"};
+
+    private final LoadTestOptions options;
+    private final BackendClient backendClient;
+    private final ExecutorService executor;
+    private final LoadStats stats;
+    private final byte[] uploadContent;
+    private volatile boolean running = true;
+
+    public CommandDriver(LoadTestOptions options, BackendClient backendClient, ExecutorService executor, LoadStats stats) {
+        this.options = options;
+        this.backendClient = backendClient;
+        this.executor = executor;
+        this.stats = stats;
+        this.uploadContent = new byte[options.uploadBytes()];
+        ThreadLocalRandom.current().nextBytes(uploadContent);
+    }
+
+    public void run(List<SimulatedAgent> agents) {
+        if (options.commandsPerSecond() <= 0) {
+            return;
+        }
+        long intervalNanos = (long) (1_000_000_000L / options.commandsPerSecond());
+        long next = System.nanoTime();
+        while (running) {
+            // Fixed schedule: a late tick is sent immediately instead of shifting later ones
+            next += intervalNanos;
+            SimulatedAgent agent = agents.get(ThreadLocalRandom.current().nextInt(agents.size()));
+            if (agent.isConnected()) {
+                executor.submit(() -> submit(agent.agentId()));
+            }
+            long wait = next - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+        }
+    }
+
+    public void stop() {
+        running = false;
+    }
+
+    private void submit(String agentId) {
+        int kind = ThreadLocalRandom.current().nextInt(10);
+        long start = System.nanoTime();
+        try {
+            long operationId;
+            if (kind < 5) {
+                String directory = DIRECTORIES[ThreadLocalRandom.current().nextInt(DIRECTORIES.length)];
+                operationId = backendClient.submit("/api/files/list", Map.of("agentId", agentId, "directoryPath", directory));
+            } else if (kind < 9) {
+                operationId = backendClient.submit("/api/system/info", Map.of("agentId", agentId));
+            } else {
+                operationId = backendClient.upload(agentId, "C:\\VR\\PDV\\update", "precos.dat", uploadContent);
+            }
+            stats.submitLatency.recordNanos(System.nanoTime() - start);
+            stats.commandsSubmitted.increment();
+            stats.submitted(operationId, start);
+        } catch (BackendClient.ThrottledException e) {
+            stats.commandsThrottled.increment();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            stats.commandsFailed.increment();
+        }
+    }
+}
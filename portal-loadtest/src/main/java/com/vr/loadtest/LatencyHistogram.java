@@ -0,0 +1,81 @@
+package com.vr.loadtest;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free log-linear histogram of microsecond latencies. Each power of two is split into
+ * 32 linear sub-buckets, so a reported percentile is within about 3% of the recorded value.
+ */
+public final class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    // Up to 2^45 microseconds, far beyond any run
+    private static final int MAGNITUDES = 40;
+    private static final int BUCKETS = (MAGNITUDES + 1) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong total = new AtomicLong();
+    private final AtomicLong sum = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    public void recordNanos(long nanos) {
+        long micros = Math.max(0, nanos / 1000);
+        counts.incrementAndGet(indexOf(micros));
+        total.incrementAndGet();
+        sum.addAndGet(micros);
+        max.accumulateAndGet(micros, Math::max);
+    }
+
+    public long count() {
+        return total.get();
+    }
+
+    public double meanMillis() {
+        long n = total.get();
+        return n == 0 ? 0 : sum.get() / 1000.0 / n;
+    }
+
+    public double maxMillis() {
+        return max.get() / 1000.0;
+    }
+
+    public double percentileMillis(double percentile) {
+        long n = total.get();
+        if (n == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(n * percentile / 100.0));
+        long seen = 0;
+        for (int i = 0; i < counts.length(); i++) {
+            seen += counts.get(i);
+            if (seen >= rank) {
+                return Math.min(upperBoundOf(i), max.get()) / 1000.0;
+            }
+        }
+        return maxMillis();
+    }
+
+    private static int indexOf(long micros) {
+        if (micros < SUB_BUCKETS) {
+            return (int) micros;
+        }
+        // Keep the top SUB_BUCKET_BITS + 1 bits: (micros >>> shift) is in [32, 64)
+        int shift = 63 - Long.numberOfLeadingZeros(micros) - SUB_BUCKET_BITS;
+        if (shift >= MAGNITUDES) {
+            return BUCKETS - 1;
+        }
+        int subBucket = (int) (micros >>> shift) - SUB_BUCKETS;
+        return (shift + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    private static long upperBoundOf(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int shift = index / SUB_BUCKETS - 1;
+        int subBucket = index % SUB_BUCKETS;
+        return ((SUB_BUCKETS + subBucket + 1L) << shift) - 1;
+    }
+}
@@ -0,0 +1,113 @@
+package com.vr.loadtest;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters and latency histograms shared by the simulated agents, portals and the command
+ * driver. An operation's timeline is stitched together from three sides that can report in
+ * any order: the HTTP submit (which learns the operation id from the response), the agent
+ * receiving the command, and the first portal client that sees the agent_response.
+ */
+public final class LoadStats {
+
+    public final LongAdder agentsRegistered = new LongAdder();
+    public final LongAdder agentsConnected = new LongAdder();
+    public final LongAdder agentConnectFailures = new LongAdder();
+    public final LongAdder heartbeats = new LongAdder();
+    public final LongAdder heartbeatFailures = new LongAdder();
+    public final LongAdder commandsSubmitted = new LongAdder();
+    public final LongAdder commandsCoalesced = new LongAdder();
+    public final LongAdder commandsThrottled = new LongAdder();
+    public final LongAdder commandsFailed = new LongAdder();
+    public final LongAdder commandsReceived = new LongAdder();
+    public final LongAdder responsesSent = new LongAdder();
+    public final LongAdder artifactBytes = new LongAdder();
+    public final LongAdder portalMessages = new LongAdder();
+    public final LongAdder portalBytes = new LongAdder();
+    public final LongAdder portalsConnected = new LongAdder();
+
+    // HTTP round trip of the submit call
+    public final LatencyHistogram submitLatency = new LatencyHistogram();
+    // Submit to the agent receiving the command on /queue/agent/{id}
+    public final LatencyHistogram dispatchLatency = new LatencyHistogram();
+    // Submit to the agent_response arriving on /topic/portal
+    public final LatencyHistogram endToEndLatency = new LatencyHistogram();
+    public final LatencyHistogram heartbeatLatency = new LatencyHistogram();
+
+    private final Map<Long, Timeline> timelines = new ConcurrentHashMap<>();
+    // Operations already measured end to end. The backend coalesces a request into an
+    // identical one in flight, and that one can finish before the duplicate's response
+    // arrives here, so its id must still be recognised once its timeline is gone.
+    private final Set<Long> finished = ConcurrentHashMap.newKeySet();
+
+    public void submitted(long operationId, long startNanos) {
+        Timeline timeline = timelines.computeIfAbsent(operationId, id -> new Timeline());
+        synchronized (timeline) {
+            if (timeline.submittedAt != 0 || finished.contains(operationId)) {
+                // Coalesced with an identical request that is in flight or has just finished
+                commandsCoalesced.increment();
+                if (timeline.submittedAt == 0) {
+                    timelines.remove(operationId, timeline);
+                }
+                return;
+            }
+            timeline.submittedAt = startNanos;
+            if (timeline.receivedAt != 0) {
+                dispatchLatency.recordNanos(timeline.receivedAt - startNanos);
+            }
+            if (timeline.completedAt != 0) {
+                endToEndLatency.recordNanos(timeline.completedAt - startNanos);
+                finish(operationId);
+            }
+        }
+    }
+
+    public void receivedByAgent(long operationId) {
+        long now = System.nanoTime();
+        Timeline timeline = timelines.computeIfAbsent(operationId, id -> new Timeline());
+        synchronized (timeline) {
+            timeline.receivedAt = now;
+            if (timeline.submittedAt != 0) {
+                dispatchLatency.recordNanos(now - timeline.submittedAt);
+            }
+        }
+    }
+
+    public void completedAtPortal(long operationId) {
+        long now = System.nanoTime();
+        Timeline timeline = timelines.get(operationId);
+        if (timeline == null) {
+            return;
+        }
+        synchronized (timeline) {
+            // Every portal client sees the broadcast; the first one measures
+            if (timeline.completedAt != 0) {
+                return;
+            }
+            timeline.completedAt = now;
+            if (timeline.submittedAt != 0) {
+                endToEndLatency.recordNanos(now - timeline.submittedAt);
+                finish(operationId);
+            }
+        }
+    }
+
+    public int inFlight() {
+        return timelines.size();
+    }
+
+    private void finish(long operationId) {
+        // Marked before removal, so a submit that recreates the timeline sees the mark
+        finished.add(operationId);
+        timelines.remove(operationId);
+    }
+
+    private static final class Timeline {
+        long submittedAt;
+        long receivedAt;
+        long completedAt;
+    }
+}
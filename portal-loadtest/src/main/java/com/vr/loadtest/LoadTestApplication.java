@@ -0,0 +1,200 @@
+package com.vr.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.websocket.ContainerProvider;
+import jakarta.websocket.WebSocketContainer;
+import org.springframework.messaging.converter.MappingJackson2MessageConverter;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.web.socket.client.WebSocketClient;
+import org.springframework.web.socket.client.standard.StandardWebSocketClient;
+import org.springframework.web.socket.messaging.WebSocketStompClient;
+import org.springframework.web.socket.sockjs.client.SockJsClient;
+import org.springframework.web.socket.sockjs.client.WebSocketTransport;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs simulated agents and portal clients against a running backend, all in this JVM, and
+ * prints throughput, latency percentiles and backend resource use. Agents are connected
+ * evenly over the ramp-up, then commands are issued for the configured duration.
+ */
+public class LoadTestApplication {
+
+    public static void main(String[] args) throws Exception {
+        LoadTestOptions options;
+        try {
+            options = LoadTestOptions.parse(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.exit(2);
+            return;
+        }
+        new LoadTestApplication().run(options);
+        System.exit(0);
+    }
+
+    public void run(LoadTestOptions options) throws Exception {
+        ObjectMapper objectMapper = new ObjectMapper();
+        LoadStats stats = new LoadStats();
+        // Blocking HTTP calls and STOMP sends; grows with the backend's latency, not the agent count
+        ExecutorService executor = Executors.newCachedThreadPool(daemonThreads("loadtest-"));
+        ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(2, daemonThreads("loadtest-timer-"));
+        BackendClient backendClient = new BackendClient(options.baseUrl(), executor, objectMapper);
+        WebSocketStompClient stompClient = stompClient(options, objectMapper);
+        Optional<ServerResourceSampler> sampler = ServerResourceSampler.forProcess(options.serverPid());
+
+        System.out.println("Load test against " + options.baseUrl() + ": " + options.agents() + " agents, "
+                + options.portals() + " portals, " + options.commandsPerSecond() + " commands/s, "
+                + (sampler.map(s -> "sampling pid " + s.pid()).orElse("no backend process to sample")));
+        backendClient.login(options.username(), options.password());
+
+        Thread samplerThread = new Thread(() -> {
+            while (!Thread.currentThread().isInterrupted()) {
+                sampler.ifPresent(ServerResourceSampler::sample);
+                try {
+                    Thread.sleep(1000);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }, "resource-sampler");
+        samplerThread.setDaemon(true);
+        samplerThread.start();
+
+        List<SimulatedPortal> portals = new ArrayList<>();
+        for (int i = 0; i < options.portals(); i++) {
+            SimulatedPortal portal = new SimulatedPortal(options, stompClient, stats);
+            portals.add(portal);
+            portal.start();
+        }
+
+        // Ramp-up: agents start at an even pace, like a store network coming back after a restart
+        List<SimulatedAgent> agents = new ArrayList<>(options.agents());
+        long rampNanos = options.rampUp().toNanos();
+        long rampStart = System.nanoTime();
+        for (int i = 0; i < options.agents(); i++) {
+            SimulatedAgent agent = new SimulatedAgent(i, options, backendClient, stompClient, executor, scheduler, stats);
+            agents.add(agent);
+            long startAt = rampStart + rampNanos * i / Math.max(1, options.agents());
+            long wait = startAt - System.nanoTime();
+            if (wait > 0) {
+                TimeUnit.NANOSECONDS.sleep(wait);
+            }
+            executor.submit(agent::start);
+        }
+        System.out.printf("Ramp-up done in %.1f s: %d registered, %d connected, %d failures%n",
+                (System.nanoTime() - rampStart) / 1e9, stats.agentsRegistered.sum(),
+                stats.agentsConnected.sum(), stats.agentConnectFailures.sum());
+
+        CommandDriver driver = new CommandDriver(options, backendClient, executor, stats);
+        Thread driverThread = new Thread(() -> driver.run(agents), "command-driver");
+        driverThread.start();
+
+        long measureStart = System.nanoTime();
+        long end = measureStart + options.duration().toNanos();
+        long submittedBefore = 0;
+        long portalBefore = 0;
+        while (System.nanoTime() < end) {
+            TimeUnit.SECONDS.sleep(10);
+            long submitted = stats.commandsSubmitted.sum();
+            long portal = stats.portalMessages.sum();
+            System.out.printf("[%3.0fs] %d agents connected, %.1f commands/s, %.1f portal msgs/s, p99 e2e %.1f ms, in flight %d%n",
+                    (System.nanoTime() - measureStart) / 1e9, stats.agentsConnected.sum(),
+                    (submitted - submittedBefore) / 10.0, (portal - portalBefore) / 10.0,
+                    stats.endToEndLatency.percentileMillis(99), stats.inFlight());
+            submittedBefore = submitted;
+            portalBefore = portal;
+        }
+        double seconds = (System.nanoTime() - measureStart) / 1e9;
+
+        driver.stop();
+        driverThread.join();
+        // Let in-flight responses arrive before the report
+        TimeUnit.SECONDS.sleep(Math.min(10, options.agentThinkTime().toSeconds() + 2));
+        samplerThread.interrupt();
+
+        printReport(stats, seconds, sampler);
+
+        agents.forEach(SimulatedAgent::stop);
+        portals.forEach(SimulatedPortal::stop);
+        stompClient.stop();
+        scheduler.shutdownNow();
+        executor.shutdownNow();
+    }
+
+    private static ThreadFactory daemonThreads(String prefix) {
+        AtomicInteger count = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    private WebSocketStompClient stompClient(LoadTestOptions options, ObjectMapper objectMapper) {
+        // file_list responses from a store can be large, and portals receive them again as
+        // agent_response broadcasts; the container's 8 KB default would close the session
+        int maxMessageBytes = 4 * 1024 * 1024;
+        WebSocketContainer container = ContainerProvider.getWebSocketContainer();
+        container.setDefaultMaxTextMessageBufferSize(maxMessageBytes);
+        container.setDefaultMaxBinaryMessageBufferSize(maxMessageBytes);
+
+        WebSocketClient transport = new StandardWebSocketClient(container);
+        if (options.sockJs()) {
+            transport = new SockJsClient(List.of(new WebSocketTransport(new StandardWebSocketClient(container))));
+        }
+        WebSocketStompClient stompClient = new WebSocketStompClient(transport);
+        MappingJackson2MessageConverter converter = new MappingJackson2MessageConverter();
+        converter.setObjectMapper(objectMapper);
+        stompClient.setMessageConverter(converter);
+        stompClient.setInboundMessageSizeLimit(maxMessageBytes);
+
+        // Receipts and STOMP heart-beats for every session; the work itself is tiny
+        ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
+        scheduler.setPoolSize(2);
+        scheduler.setThreadNamePrefix("stomp-");
+        scheduler.setDaemon(true);
+        scheduler.initialize();
+        stompClient.setTaskScheduler(scheduler);
+        return stompClient;
+    }
+
+    private void printReport(LoadStats stats, double seconds, Optional<ServerResourceSampler> sampler) {
+        System.out.println();
+        System.out.println("=== Load test report (" + String.format("%.0f", seconds) + " s measured) ===");
+        System.out.printf("Agents:    %d registered, %d connected at end, %d connect failures%n",
+                stats.agentsRegistered.sum(), stats.agentsConnected.sum(), stats.agentConnectFailures.sum());
+        System.out.printf("Portals:   %d connected, %d messages (%.1f/s), %.1f MB%n",
+                stats.portalsConnected.sum(), stats.portalMessages.sum(), stats.portalMessages.sum() / seconds,
+                stats.portalBytes.sum() / 1024.0 / 1024.0);
+        System.out.printf("Heartbeats: %d ok (%.1f/s), %d failed%n",
+                stats.heartbeats.sum(), stats.heartbeats.sum() / seconds, stats.heartbeatFailures.sum());
+        System.out.printf("Commands:  %d submitted (%.1f/s), %d coalesced, %d throttled (429), %d failed, %d still in flight%n",
+                stats.commandsSubmitted.sum(), stats.commandsSubmitted.sum() / seconds, stats.commandsCoalesced.sum(),
+                stats.commandsThrottled.sum(), stats.commandsFailed.sum(), stats.inFlight());
+        System.out.printf("Agents received %d commands, sent %d responses, downloaded %.1f MB of artifacts%n",
+                stats.commandsReceived.sum(), stats.responsesSent.sum(), stats.artifactBytes.sum() / 1024.0 / 1024.0);
+        System.out.println();
+        System.out.println("Latency (ms)        count      mean       p50       p90       p99     p99.9       max");
+        printLatency("submit (HTTP)", stats.submitLatency);
+        printLatency("dispatch to agent", stats.dispatchLatency);
+        printLatency("end-to-end", stats.endToEndLatency);
+        printLatency("heartbeat", stats.heartbeatLatency);
+        System.out.println();
+        System.out.println("Backend:   " + sampler.map(ServerResourceSampler::summary).orElse("not sampled"));
+    }
+
+    private void printLatency(String name, LatencyHistogram histogram) {
+        System.out.printf("%-18s %6d %9.1f %9.1f %9.1f %9.1f %9.1f %9.1f%n", name, histogram.count(),
+                histogram.meanMillis(), histogram.percentileMillis(50), histogram.percentileMillis(90),
+                histogram.percentileMillis(99), histogram.percentileMillis(99.9), histogram.maxMillis());
+    }
+}
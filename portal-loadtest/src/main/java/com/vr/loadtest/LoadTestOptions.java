@@ -0,0 +1,107 @@
+package com.vr.loadtest;
+
+import java.net.URI;
+import java.time.Duration;
+
+/**
+ * Command line options. Every option has a default, so a bare run simulates 1000 agents and
+ * 20 portal clients against a backend on localhost:3000 for five minutes.
+ */
+public record LoadTestOptions(
+        URI baseUrl,
+        String username,
+        String password,
+        int agents,
+        int portals,
+        int networks,
+        int storesPerNetwork,
+        Duration duration,
+        Duration rampUp,
+        Duration heartbeatInterval,
+        double commandsPerSecond,
+        Duration agentThinkTime,
+        int uploadBytes,
+        boolean sockJs,
+        long serverPid
+) {
+
+    public static LoadTestOptions parse(String[] args) {
+        URI baseUrl = URI.create("http://localhost:3000");
+        String username = "admin";
+        String password = "admin123";
+        int agents = 1000;
+        int portals = 20;
+        int networks = 5;
+        int storesPerNetwork = 50;
+        Duration duration = Duration.ofMinutes(5);
+        Duration rampUp = Duration.ofSeconds(60);
+        Duration heartbeatInterval = Duration.ofSeconds(30);
+        double commandsPerSecond = 50;
+        Duration agentThinkTime = Duration.ofMillis(50);
+        int uploadBytes = 64 * 1024;
+        boolean sockJs = false;
+        long serverPid = -1;
+
+        for (int i = 0; i < args.length; i++) {
+            String option = args[i];
+            if (option.equals("--sockjs")) {
+                sockJs = true;
+                continue;
+            }
+            if (option.equals("--help")) {
+                throw new IllegalArgumentException(usage());
+            }
+            if (i + 1 >= args.length) {
+                throw new IllegalArgumentException("Missing value for " + option + "\n" + usage());
+            }
+            String value = args[++i];
+            switch (option) {
+                case "--url" -> baseUrl = URI.create(value);
+                case "--username" -> username = value;
+                case "--password" -> password = value;
+                case "--agents" -> agents = Integer.parseInt(value);
+                case "--portals" -> portals = Integer.parseInt(value);
+                case "--networks" -> networks = Integer.parseInt(value);
+                case "--stores-per-network" -> storesPerNetwork = Integer.parseInt(value);
+                case "--duration" -> duration = Duration.ofSeconds(Long.parseLong(value));
+                case "--ramp-up" -> rampUp = Duration.ofSeconds(Long.parseLong(value));
+                case "--heartbeat" -> heartbeatInterval = Duration.ofSeconds(Long.parseLong(value));
+                case "--rate" -> commandsPerSecond = Double.parseDouble(value);
+                case "--think-ms" -> agentThinkTime = Duration.ofMillis(Long.parseLong(value));
+                case "--upload-bytes" -> uploadBytes = Integer.parseInt(value);
+                case "--server-pid" -> serverPid = Long.parseLong(value);
+                default -> throw new IllegalArgumentException("Unknown option " + option + "\n" + usage());
+            }
+        }
+
+        return new LoadTestOptions(baseUrl, username, password, agents, portals, networks, storesPerNetwork,
+                duration, rampUp, heartbeatInterval, commandsPerSecond, agentThinkTime, uploadBytes, sockJs, serverPid);
+    }
+
+    public URI webSocketUrl() {
+        String scheme = baseUrl.getScheme().equals("https") ? "wss" : "ws";
+        // The raw endpoint skips SockJS framing; SockJS clients connect to /ws itself
+        String path = sockJs ? "/ws" : "/ws/websocket";
+        return URI.create((sockJs ? baseUrl.getScheme() : scheme) + "://" + baseUrl.getAuthority() + path);
+    }
+
+    static String usage() {
+        return """
+                Usage: LoadTestApplication [options]
+                  --url URL                 Backend base URL (default http://localhost:3000)
+                  --username / --password   Portal user for the HTTP API (default admin/admin123)
+                  --agents N                Simulated agents (default 1000)
+                  --portals N               Simulated portal clients on /topic/portal (default 20)
+                  --networks N              Networks the agents are spread over (default 5)
+                  --stores-per-network N    Stores per network (default 50)
+                  --duration SECONDS        Measurement time after ramp-up (default 300)
+                  --ramp-up SECONDS         Time to connect all agents (default 60)
+                  --heartbeat SECONDS       Agent heartbeat interval (default 30)
+                  --rate N                  Portal commands per second across the fleet (default 50)
+                  --think-ms MS             Simulated agent work per command (default 50)
+                  --upload-bytes N          Size of the file_upload artifact (default 65536)
+                  --sockjs                  Connect through SockJS instead of the raw WebSocket endpoint
+                  --server-pid PID          Backend process to sample CPU and RSS from (default: found by name)
+                """;
+    }
+}
@@ -0,0 +1,100 @@
+package com.vr.loadtest;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+
+/**
+ * Samples CPU time, resident memory and thread count of the backend process from /proc once
+ * per second. Linux only; on other systems, or without a pid, sampling is skipped.
+ */
+public final class ServerResourceSampler {
+
+    // USER_HZ is 100 on every mainstream Linux build
+    private static final double CLOCK_TICKS_PER_SECOND = 100.0;
+
+    private final long pid;
+    private long firstCpuTicks = -1;
+    private long firstSampleNanos;
+    private long lastCpuTicks;
+    private long lastSampleNanos;
+    private double peakCpuPercent;
+    private long peakRssKb;
+    private long lastRssKb;
+    private int peakThreads;
+    private int samples;
+
+    private ServerResourceSampler(long pid) {
+        this.pid = pid;
+    }
+
+    /**
+     * Uses the given pid, or looks for a running portal-backend JVM when it is negative.
+     */
+    public static Optional<ServerResourceSampler> forProcess(long pid) {
+        if (!Files.isDirectory(Path.of("/proc"))) {
+            return Optional.empty();
+        }
+        if (pid > 0) {
+            return Optional.of(new ServerResourceSampler(pid));
+        }
+        return ProcessHandle.allProcesses()
+                .filter(process -> process.info().commandLine()
+                        .map(command -> command.contains("portal-backend") || command.contains("PortalBackendApplication"))
+                        .orElse(false))
+                .findFirst()
+                .map(process -> new ServerResourceSampler(process.pid()));
+    }
+
+    public long pid() {
+        return pid;
+    }
+
+    public synchronized void sample() {
+        try {
+            long cpuTicks = readCpuTicks();
+            long now = System.nanoTime();
+            if (firstCpuTicks < 0) {
+                firstCpuTicks = cpuTicks;
+                firstSampleNanos = now;
+            } else if (now > lastSampleNanos) {
+                double seconds = (now - lastSampleNanos) / 1e9;
+                double percent = (cpuTicks - lastCpuTicks) / CLOCK_TICKS_PER_SECOND / seconds * 100;
+                peakCpuPercent = Math.max(peakCpuPercent, percent);
+            }
+            lastCpuTicks = cpuTicks;
+            lastSampleNanos = now;
+
+            for (String line : Files.readAllLines(Path.of("/proc", Long.toString(pid), "status"))) {
+                if (line.startsWith("VmRSS:")) {
+                    lastRssKb = Long.parseLong(line.replaceAll("\\D", ""));
+                    peakRssKb = Math.max(peakRssKb, lastRssKb);
+                } else if (line.startsWith("Threads:")) {
+                    peakThreads = Math.max(peakThreads, Integer.parseInt(line.replaceAll("\\D", "")));
+                }
+            }
+            samples++;
+        } catch (IOException | RuntimeException e) {
+            // The process may have exited; keep what was sampled so far
+        }
+    }
+
+    public synchronized String summary() {
+        if (samples < 2) {
+            return "no samples for pid " + pid;
+        }
+        double seconds = (lastSampleNanos - firstSampleNanos) / 1e9;
+        double averageCpu = (lastCpuTicks - firstCpuTicks) / CLOCK_TICKS_PER_SECOND / seconds * 100;
+        return String.format("pid %d: cpu avg %.0f%% peak %.0f%% (100%% = one core), rss %d MB (peak %d MB), peak threads %d",
+                pid, averageCpu, peakCpuPercent, lastRssKb / 1024, peakRssKb / 1024, peakThreads);
+    }
+
+    private long readCpuTicks() throws IOException {
+        String stat = Files.readString(Path.of("/proc", Long.toString(pid), "stat"));
+        // The command name may contain spaces, so fields are counted after its closing parenthesis
+        String[] fields = stat.substring(stat.lastIndexOf(')') + 2).split(" ");
+        // utime and stime are fields 14 and 15 of the full line, 12 and 13 after the name
+        return Long.parseLong(fields[11]) + Long.parseLong(fields[12]);
+    }
+}
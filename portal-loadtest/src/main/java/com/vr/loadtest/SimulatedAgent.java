@@ -0,0 +1,276 @@
+package com.vr.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaders;
+import org.springframework.messaging.simp.stomp.StompSession;
+import org.springframework.messaging.simp.stomp.StompSessionHandlerAdapter;
+import org.springframework.web.socket.messaging.WebSocketStompClient;
+
+import java.lang.reflect.Type;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One PDV agent: registers over HTTP, keeps a STOMP session on /ws, heartbeats, and answers
+ * file_list, system_info and file_upload commands with payloads shaped like a real store's.
+ * Waits (heartbeat interval, think time, reconnect delay) are timers on a shared scheduler and
+ * only the blocking calls take a pool thread, so thousands of idle agents cost no threads.
+ */
+public final class SimulatedAgent extends StompSessionHandlerAdapter {
+
+    private static final String[] PDV_FILES = {
+            "vrpdv.exe", "vrpdv.dll", "vrfiscal.dll", "vrtef.dll", "config.ini", "pdv.properties",
+            "precos.dat", "produtos.dat", "clientes.dat", "sat.xml", "nfce.xml", "update.log"
+    };
+
+    private final String agentId;
+    private final String networkId;
+    private final String storeId;
+    private final LoadTestOptions options;
+    private final BackendClient backendClient;
+    private final WebSocketStompClient stompClient;
+    private final ExecutorService executor;
+    private final ScheduledExecutorService scheduler;
+    private final LoadStats stats;
+    private volatile StompSession session;
+    private volatile ScheduledFuture<?> heartbeats;
+    private volatile boolean running = true;
+
+    public SimulatedAgent(int index, LoadTestOptions options, BackendClient backendClient,
+                          WebSocketStompClient stompClient, ExecutorService executor,
+                          ScheduledExecutorService scheduler, LoadStats stats) {
+        this.options = options;
+        this.backendClient = backendClient;
+        this.stompClient = stompClient;
+        this.executor = executor;
+        this.scheduler = scheduler;
+        this.stats = stats;
+        int store = index % (options.networks() * options.storesPerNetwork());
+        this.networkId = "net-" + (store % options.networks());
+        this.storeId = networkId + "-store-" + (store / options.networks());
+        this.agentId = String.format("loadtest-%06d", index);
+    }
+
+    public String agentId() {
+        return agentId;
+    }
+
+    public boolean isConnected() {
+        StompSession current = session;
+        return current != null && current.isConnected();
+    }
+
+    /**
+     * Registers, connects and starts heartbeating. Called on a pool thread.
+     */
+    public void start() {
+        try {
+            Map<String, Object> registration = new LinkedHashMap<>();
+            registration.put("id", agentId);
+            registration.put("name", "PDV " + agentId);
+            registration.put("hostname", agentId.toUpperCase());
+            registration.put("platform", ThreadLocalRandom.current().nextInt(10) == 0 ? "linux" : "win32");
+            registration.put("version", ThreadLocalRandom.current().nextInt(4) == 0 ? "1.9.3" : "2.0.1");
+            registration.put("networkId", networkId);
+            registration.put("storeId", storeId);
+            registration.put("ipAddress", "10." + (agentId.hashCode() >>> 16 & 0xff) + "." + (agentId.hashCode() >>> 8 & 0xff) + ".10");
+            backendClient.register(registration);
+            stats.agentsRegistered.increment();
+        } catch (Exception e) {
+            stats.agentConnectFailures.increment();
+            return;
+        }
+        connect();
+        // Spread heartbeats over the interval instead of letting every agent fire together
+        long interval = options.heartbeatInterval().toMillis();
+        heartbeats = scheduler.scheduleAtFixedRate(() -> executor.submit(this::heartbeat),
+                ThreadLocalRandom.current().nextLong(interval + 1), interval, TimeUnit.MILLISECONDS);
+    }
+
+    public void stop() {
+        running = false;
+        ScheduledFuture<?> currentHeartbeats = heartbeats;
+        if (currentHeartbeats != null) {
+            currentHeartbeats.cancel(false);
+        }
+        StompSession current = session;
+        if (current != null && current.isConnected()) {
+            current.send("/app/agent/disconnect", Map.of("agentId", agentId));
+            current.disconnect();
+        }
+    }
+
+    private void connect() {
+        stompClient.connectAsync(options.webSocketUrl().toString(), this).exceptionally(e -> {
+            stats.agentConnectFailures.increment();
+            reconnectLater();
+            return null;
+        });
+    }
+
+    private void reconnectLater() {
+        if (!running) {
+            return;
+        }
+        scheduler.schedule(() -> {
+            if (running) {
+                connect();
+            }
+        }, 1000 + ThreadLocalRandom.current().nextLong(4000), TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void afterConnected(StompSession session, StompHeaders connectedHeaders) {
+        this.session = session;
+        session.subscribe("/queue/agent/" + agentId, this);
+        session.send("/app/agent/connect", Map.of("agentId", agentId, "sessionId", session.getSessionId()));
+        stats.agentsConnected.increment();
+    }
+
+    @Override
+    public Type getPayloadType(StompHeaders headers) {
+        return JsonNode.class;
+    }
+
+    @Override
+    public void handleFrame(StompHeaders headers, Object payload) {
+        // An empty body converts to null; seen as sessions close at shutdown
+        if (!(payload instanceof JsonNode command)) {
+            return;
+        }
+        long operationId = command.path("operationId").asLong(-1);
+        stats.commandsReceived.increment();
+        if (operationId >= 0) {
+            stats.receivedByAgent(operationId);
+        }
+        scheduler.schedule(() -> executor.submit(() -> respond(command, operationId)),
+                thinkTime().toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void handleException(StompSession session, StompCommand command, StompHeaders headers, byte[] payload, Throwable exception) {
+        System.err.println("Agent " + agentId + " failed to handle frame: " + exception.getMessage());
+    }
+
+    @Override
+    public void handleTransportError(StompSession session, Throwable exception) {
+        if (this.session == session) {
+            stats.agentsConnected.decrement();
+            this.session = null;
+            reconnectLater();
+        }
+    }
+
+    private void respond(JsonNode command, long operationId) {
+        String type = command.path("type").asText();
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("type", type + "_result");
+        response.put("agentId", agentId);
+        response.put("operationId", operationId);
+        try {
+            switch (type) {
+                case "file_list" -> response.put("files", fileListing(command.path("directoryPath").asText("C:\\VR")));
+                case "system_info" -> response.put("systemInfo", systemInfo());
+                case "file_upload" -> {
+                    long bytes = backendClient.download(command.path("url").asText());
+                    stats.artifactBytes.add(bytes);
+                    response.put("bytesWritten", bytes);
+                }
+                default -> response.put("output", "ok");
+            }
+            response.put("status", "completed");
+        } catch (Exception e) {
+            response.put("status", "failed");
+            response.put("error", e.getMessage());
+        }
+
+        StompSession current = session;
+        if (current != null && current.isConnected()) {
+            current.send("/app/agent/response", response);
+            stats.responsesSent.increment();
+        }
+    }
+
+    private void heartbeat() {
+        if (!running) {
+            return;
+        }
+        long start = System.nanoTime();
+        try {
+            backendClient.heartbeat(agentId);
+            stats.heartbeatLatency.recordNanos(System.nanoTime() - start);
+            stats.heartbeats.increment();
+            StompSession current = session;
+            if (current != null && current.isConnected()) {
+                current.send("/app/agent/response", Map.of(
+                        "type", "agent_status",
+                        "agentId", agentId,
+                        "status", "online",
+                        "timestamp", System.currentTimeMillis()
+                ));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            stats.heartbeatFailures.increment();
+        }
+    }
+
+    private List<Map<String, Object>> fileListing(String directory) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int count = 40 + random.nextInt(200);
+        List<Map<String, Object>> files = new ArrayList<>(count);
+        Instant now = Instant.now();
+        for (int i = 0; i < count; i++) {
+            boolean isDirectory = random.nextInt(10) == 0;
+            String name = i < PDV_FILES.length ? PDV_FILES[i]
+                    : isDirectory ? "backup_" + (2024 + i % 3) + String.format("%02d", 1 + i % 12)
+                    : "cupom_" + (100000 + random.nextInt(900000)) + ".xml";
+            Map<String, Object> file = new LinkedHashMap<>();
+            file.put("name", name);
+            file.put("path", directory + "\\" + name);
+            file.put("size", isDirectory ? 0 : 512 + random.nextInt(4 * 1024 * 1024));
+            file.put("modified", now.minusSeconds(random.nextInt(90 * 24 * 3600)).toString());
+            file.put("isDirectory", isDirectory);
+            files.add(file);
+        }
+        return files;
+    }
+
+    private Map<String, Object> systemInfo() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        Map<String, Object> info = new LinkedHashMap<>();
+        info.put("hostname", agentId.toUpperCase());
+        info.put("platform", "win32");
+        info.put("release", "10.0.19045");
+        info.put("arch", "x64");
+        info.put("cpus", 4);
+        info.put("totalMemory", 8L * 1024 * 1024 * 1024);
+        info.put("freeMemory", (1L + random.nextInt(6)) * 1024 * 1024 * 1024);
+        info.put("uptime", random.nextInt(30 * 24 * 3600));
+        info.put("loadAverage", List.of(random.nextDouble(2), random.nextDouble(2), random.nextDouble(2)));
+        info.put("disks", List.of(
+                Map.of("mount", "C:", "total", 256L * 1024 * 1024 * 1024, "free", (20L + random.nextInt(200)) * 1024 * 1024 * 1024),
+                Map.of("mount", "D:", "total", 512L * 1024 * 1024 * 1024, "free", (50L + random.nextInt(400)) * 1024 * 1024 * 1024)
+        ));
+        info.put("agentVersion", "2.0.1");
+        info.put("networkId", networkId);
+        info.put("storeId", storeId);
+        return info;
+    }
+
+    private Duration thinkTime() {
+        long millis = options.agentThinkTime().toMillis();
+        return Duration.ofMillis(millis / 2 + ThreadLocalRandom.current().nextLong(millis + 1));
+    }
+}
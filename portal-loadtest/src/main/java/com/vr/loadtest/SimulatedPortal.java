@@ -0,0 +1,73 @@
+package com.vr.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import org.springframework.messaging.simp.stomp.StompHeaders;
+import org.springframework.messaging.simp.stomp.StompSession;
+import org.springframework.messaging.simp.stomp.StompSessionHandlerAdapter;
+import org.springframework.web.socket.messaging.WebSocketStompClient;
+
+import java.lang.reflect.Type;
+
+/**
+ * A portal browser tab: subscribes to /topic/portal and /topic/agent_status_change and counts
+ * what it receives. The first portal to see an agent_response closes that operation's
+ * end-to-end latency measurement.
+ */
+public final class SimulatedPortal extends StompSessionHandlerAdapter {
+
+    private final LoadTestOptions options;
+    private final WebSocketStompClient stompClient;
+    private final LoadStats stats;
+    private volatile StompSession session;
+
+    public SimulatedPortal(LoadTestOptions options, WebSocketStompClient stompClient, LoadStats stats) {
+        this.options = options;
+        this.stompClient = stompClient;
+        this.stats = stats;
+    }
+
+    public void start() {
+        stompClient.connectAsync(options.webSocketUrl().toString(), this);
+    }
+
+    public void stop() {
+        StompSession current = session;
+        if (current != null && current.isConnected()) {
+            current.disconnect();
+        }
+    }
+
+    @Override
+    public void afterConnected(StompSession session, StompHeaders connectedHeaders) {
+        this.session = session;
+        session.subscribe("/topic/portal", this);
+        session.subscribe("/topic/agent_status_change", this);
+        stats.portalsConnected.increment();
+    }
+
+    @Override
+    public Type getPayloadType(StompHeaders headers) {
+        return JsonNode.class;
+    }
+
+    @Override
+    public void handleFrame(StompHeaders headers, Object payload) {
+        JsonNode message = (JsonNode) payload;
+        stats.portalMessages.increment();
+        stats.portalBytes.add(Math.max(0, headers.getContentLength()));
+        if ("agent_response".equals(message.path("type").asText())) {
+            JsonNode operationId = message.path("data").path("operationId");
+            if (operationId.canConvertToLong()) {
+                stats.completedAtPortal(operationId.asLong());
+            }
+        }
+    }
+
+    @Override
+    public void handleTransportError(StompSession session, Throwable exception) {
+        if (this.session == session) {
+            stats.portalsConnected.decrement();
+            this.session = null;
+        }
+    }
+}